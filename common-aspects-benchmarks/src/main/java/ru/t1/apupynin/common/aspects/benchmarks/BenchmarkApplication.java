@@ -0,0 +1,56 @@
+package ru.t1.apupynin.common.aspects.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.KafkaTemplate;
+import ru.t1.apupynin.common.aspects.autoconfigure.CommonAspectsAutoConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal non-web context with the starter's auto-configuration and an in-memory Kafka template.
+ */
+@Configuration(proxyBeanMethods = false)
+@ImportAutoConfiguration({AopAutoConfiguration.class, JacksonAutoConfiguration.class,
+        CommonAspectsAutoConfiguration.class})
+public class BenchmarkApplication {
+
+    @Bean
+    public KafkaTemplate<String, Map<String, Object>> kafkaTemplate(ObjectMapper objectMapper) {
+        return new InMemoryKafkaTemplate(objectMapper);
+    }
+
+    @Bean
+    public BenchmarkTarget benchmarkTarget() {
+        return new BenchmarkTarget();
+    }
+
+    /**
+     * @param inline publish log events on the calling thread instead of the pipeline's drainer
+     */
+    public static ConfigurableApplicationContext start(boolean inline, String... properties) {
+        List<String> all = new ArrayList<>(List.of(
+                "spring.main.banner-mode=off",
+                "logging.level.root=WARN",
+                "logging.level.ru.t1.apupynin=OFF",
+                "spring.application.name=benchmarks"));
+        all.addAll(List.of(properties));
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(BenchmarkApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .properties(all.toArray(String[]::new));
+        if (inline) {
+            builder.sources(InlinePipelineConfiguration.class);
+        }
+        return builder.run();
+    }
+}
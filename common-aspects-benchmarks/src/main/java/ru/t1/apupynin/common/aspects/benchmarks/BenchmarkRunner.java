@@ -0,0 +1,45 @@
+package ru.t1.apupynin.common.aspects.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Runs the benchmarks matching the first argument (all by default) at 1, 4 and
+ * {@code availableProcessors} threads with the GC profiler, writing one JSON result per thread count
+ * next to the benchmarks jar in {@code target/}.
+ * Plain JMH options are still available through {@code org.openjdk.jmh.Main}.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, URISyntaxException {
+        Path resultDir = Path.of(BenchmarkRunner.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                .getParent();
+        String include = args.length > 0 ? args[0] : BenchmarkRunner.class.getPackageName() + ".*Benchmark";
+        Set<Integer> threadCounts = new LinkedHashSet<>();
+        threadCounts.add(1);
+        threadCounts.add(4);
+        threadCounts.add(Runtime.getRuntime().availableProcessors());
+        for (int threads : threadCounts) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(resultDir.resolve("jmh-result-" + threads + "-threads.json").toString())
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package ru.t1.apupynin.common.aspects.benchmarks;
+
+import ru.t1.apupynin.common.aspects.annotation.Cached;
+import ru.t1.apupynin.common.aspects.annotation.HttpIncomeRequestLog;
+import ru.t1.apupynin.common.aspects.annotation.HttpOutcomeRequestLog;
+import ru.t1.apupynin.common.aspects.annotation.LogDatasourceError;
+import ru.t1.apupynin.common.aspects.annotation.Metric;
+
+/**
+ * Advised methods under measurement. Every method does the same trivial work as {@link #plain},
+ * so the difference to it is the advice overhead.
+ */
+public class BenchmarkTarget {
+
+    public Account plain(long id) {
+        return new Account(id, "owner-" + id, id * 100);
+    }
+
+    @Cached(cacheName = "benchmark-default-key", maxSize = 100_000)
+    public Account cachedDefaultKey(long id) {
+        return plain(id);
+    }
+
+    @Cached(cacheName = "benchmark-spel-key", key = "#id", maxSize = 100_000)
+    public Account cachedSpelKey(long id) {
+        return plain(id);
+    }
+
+    @Cached(cacheName = "benchmark-composite-key", maxSize = 100_000)
+    public Account cachedCompositeKey(long id, String region) {
+        return plain(id);
+    }
+
+    @Cached(cacheName = "benchmark-miss", maxSize = 1_024)
+    public Account cachedMiss(long id) {
+        return plain(id);
+    }
+
+    @Metric(thresholdMs = 60_000)
+    public Account metric(long id) {
+        return plain(id);
+    }
+
+    @HttpIncomeRequestLog
+    public Account income(long id, Transfer transfer) {
+        return plain(id);
+    }
+
+    @HttpOutcomeRequestLog(sampleRate = 1, ratePerSecond = 0)
+    public Account outcome(long id, Transfer transfer) {
+        return plain(id);
+    }
+
+    @HttpOutcomeRequestLog
+    public Account outcomeSampled(long id, Transfer transfer) {
+        return plain(id);
+    }
+
+    public Account plainFailing(long id) {
+        throw new IllegalStateException("Account " + id + " is locked");
+    }
+
+    @LogDatasourceError
+    public Account failing(long id) {
+        return plainFailing(id);
+    }
+
+    public record Account(long id, String owner, long balance) {
+    }
+
+    public record Transfer(String from, String to, long amount, String comment) {
+    }
+}
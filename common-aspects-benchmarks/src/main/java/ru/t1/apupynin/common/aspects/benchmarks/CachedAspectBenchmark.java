@@ -0,0 +1,158 @@
+package ru.t1.apupynin.common.aspects.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.t1.apupynin.common.aspects.annotation.Cached;
+import ru.t1.apupynin.common.aspects.aspect.CachedAspect;
+import ru.t1.apupynin.common.aspects.benchmarks.BenchmarkTarget.Account;
+import ru.t1.apupynin.common.aspects.cache.KeyGenerator;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code @Cached} hit and miss paths with the default, composite and SpEL key strategies,
+ * and key building on its own. The aspect's logger is at INFO with no appender, so {@code verbosity}
+ * shows the cost of per-call logging without the I/O. The {@code advice*} benchmarks invoke the
+ * advice with a reused {@link DirectJoinPoint}, so their allocation rate is that of the advice alone.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CachedAspectBenchmark {
+
+    private static final int HOT_KEYS = 1_000;
+
+    @State(Scope.Benchmark)
+    public static class Context {
+
+        @Param({"SUMMARY", "PER_CALL"})
+        String verbosity;
+
+        ConfigurableApplicationContext context;
+        BenchmarkTarget target;
+        CachedAspect aspect;
+        KeyGenerator keyGenerator;
+        Method singleArgMethod;
+        Method spelKeyMethod;
+        Method compositeKeyMethod;
+
+        @Setup(Level.Trial)
+        public void setUp() throws NoSuchMethodException {
+            context = BenchmarkApplication.start(false, "t1.aspect-logging.cache=" + verbosity,
+                    "logging.level.ru.t1.apupynin.common.aspects.aspect=INFO", "logging.pattern.console=");
+            target = context.getBean(BenchmarkTarget.class);
+            aspect = context.getBean(CachedAspect.class);
+            keyGenerator = context.getBean(KeyGenerator.class);
+            singleArgMethod = BenchmarkTarget.class.getMethod("cachedDefaultKey", long.class);
+            spelKeyMethod = BenchmarkTarget.class.getMethod("cachedSpelKey", long.class);
+            compositeKeyMethod = BenchmarkTarget.class.getMethod("cachedCompositeKey", long.class, String.class);
+            for (long id = 0; id < HOT_KEYS; id++) {
+                target.cachedDefaultKey(id);
+                target.cachedSpelKey(id);
+                target.cachedCompositeKey(id, "eu");
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            context.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Keys {
+
+        final Object[][] hotArgs = new Object[HOT_KEYS][];
+        long missId = ThreadLocalRandom.current().nextLong(1L << 40);
+        DirectJoinPoint defaultKeyJoinPoint;
+        DirectJoinPoint spelKeyJoinPoint;
+        Cached defaultKeyCached;
+        Cached spelKeyCached;
+
+        @Setup(Level.Trial)
+        public void setUp(Context context) {
+            for (int i = 0; i < HOT_KEYS; i++) {
+                hotArgs[i] = new Object[]{(long) i};
+            }
+            BenchmarkTarget target = new BenchmarkTarget();
+            defaultKeyJoinPoint = new DirectJoinPoint(target, context.singleArgMethod, hotArgs[0]);
+            spelKeyJoinPoint = new DirectJoinPoint(target, context.spelKeyMethod, hotArgs[0]);
+            defaultKeyCached = context.singleArgMethod.getAnnotation(Cached.class);
+            spelKeyCached = context.spelKeyMethod.getAnnotation(Cached.class);
+        }
+
+        Object[] hotArgs() {
+            return hotArgs[ThreadLocalRandom.current().nextInt(HOT_KEYS)];
+        }
+
+        long hot() {
+            return ThreadLocalRandom.current().nextInt(HOT_KEYS);
+        }
+
+        long cold() {
+            return missId++;
+        }
+    }
+
+    @Benchmark
+    public Account baseline(Context context, Keys keys) {
+        return context.target.plain(keys.hot());
+    }
+
+    @Benchmark
+    public Account hitDefaultKey(Context context, Keys keys) {
+        return context.target.cachedDefaultKey(keys.hot());
+    }
+
+    @Benchmark
+    public Account hitCompositeKey(Context context, Keys keys) {
+        return context.target.cachedCompositeKey(keys.hot(), "eu");
+    }
+
+    @Benchmark
+    public Account hitSpelKey(Context context, Keys keys) {
+        return context.target.cachedSpelKey(keys.hot());
+    }
+
+    @Benchmark
+    public Object adviceHitDefaultKey(Context context, Keys keys) throws Throwable {
+        return context.aspect.aroundCached(keys.defaultKeyJoinPoint.withArgs(keys.hotArgs()), keys.defaultKeyCached);
+    }
+
+    @Benchmark
+    public Object adviceHitSpelKey(Context context, Keys keys) throws Throwable {
+        return context.aspect.aroundCached(keys.spelKeyJoinPoint.withArgs(keys.hotArgs()), keys.spelKeyCached);
+    }
+
+    @Benchmark
+    public Account miss(Context context, Keys keys) {
+        return context.target.cachedMiss(keys.cold());
+    }
+
+    @Benchmark
+    public Object keySingleArgument(Context context, Keys keys) {
+        return context.keyGenerator.generate(context.target, context.singleArgMethod, new Object[]{keys.hot()});
+    }
+
+    @Benchmark
+    public Object keyComposite(Context context, Keys keys) {
+        return context.keyGenerator.generate(context.target, context.compositeKeyMethod,
+                new Object[]{keys.hot(), "eu"});
+    }
+}
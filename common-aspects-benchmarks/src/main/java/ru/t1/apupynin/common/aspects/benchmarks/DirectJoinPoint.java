@@ -0,0 +1,155 @@
+package ru.t1.apupynin.common.aspects.benchmarks;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.aspectj.lang.reflect.SourceLocation;
+import org.aspectj.runtime.internal.AroundClosure;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Reusable join point for invoking advice directly, so a benchmark measures the advice body
+ * alone without the allocations of a proxy invocation or an AspectJ closure.
+ */
+public class DirectJoinPoint implements ProceedingJoinPoint {
+
+    private final Object target;
+    private final Method method;
+    private final Signature signature;
+    private Object[] args;
+
+    public DirectJoinPoint(Object target, Method method, Object... args) {
+        this.target = target;
+        this.method = method;
+        this.signature = new DirectMethodSignature(method);
+        this.args = args;
+    }
+
+    public DirectJoinPoint withArgs(Object... args) {
+        this.args = args;
+        return this;
+    }
+
+    @Override
+    public Object proceed() throws Throwable {
+        return proceed(args);
+    }
+
+    @Override
+    public Object proceed(Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    @Override
+    public void set$AroundClosure(AroundClosure arc) {
+    }
+
+    @Override
+    public String toShortString() {
+        return signature.toShortString();
+    }
+
+    @Override
+    public String toLongString() {
+        return signature.toLongString();
+    }
+
+    @Override
+    public Object getThis() {
+        return target;
+    }
+
+    @Override
+    public Object getTarget() {
+        return target;
+    }
+
+    @Override
+    public Object[] getArgs() {
+        return args;
+    }
+
+    @Override
+    public Signature getSignature() {
+        return signature;
+    }
+
+    @Override
+    public SourceLocation getSourceLocation() {
+        return null;
+    }
+
+    @Override
+    public String getKind() {
+        return METHOD_EXECUTION;
+    }
+
+    @Override
+    public StaticPart getStaticPart() {
+        return null;
+    }
+
+    private record DirectMethodSignature(Method method) implements MethodSignature {
+
+        @Override
+        public Class<?> getReturnType() {
+            return method.getReturnType();
+        }
+
+        @Override
+        public Method getMethod() {
+            return method;
+        }
+
+        @Override
+        public Class<?>[] getParameterTypes() {
+            return method.getParameterTypes();
+        }
+
+        @Override
+        public String[] getParameterNames() {
+            return null;
+        }
+
+        @Override
+        public Class<?>[] getExceptionTypes() {
+            return method.getExceptionTypes();
+        }
+
+        @Override
+        public String toShortString() {
+            return method.getName();
+        }
+
+        @Override
+        public String toLongString() {
+            return method.toGenericString();
+        }
+
+        @Override
+        public String getName() {
+            return method.getName();
+        }
+
+        @Override
+        public int getModifiers() {
+            return method.getModifiers();
+        }
+
+        @Override
+        public Class<?> getDeclaringType() {
+            return method.getDeclaringClass();
+        }
+
+        @Override
+        public String getDeclaringTypeName() {
+            return method.getDeclaringClass().getName();
+        }
+    }
+}
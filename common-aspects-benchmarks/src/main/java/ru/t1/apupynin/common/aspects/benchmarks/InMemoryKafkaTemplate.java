@@ -0,0 +1,47 @@
+package ru.t1.apupynin.common.aspects.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.messaging.Message;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stand-in for the broker: every message is serialized exactly as the JSON producer would do it
+ * and then discarded, so benchmarks pay the serialization cost without any network I/O.
+ */
+public class InMemoryKafkaTemplate extends KafkaTemplate<String, Map<String, Object>> {
+
+    private final ObjectMapper objectMapper;
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    public InMemoryKafkaTemplate(ObjectMapper objectMapper) {
+        super(new DefaultKafkaProducerFactory<>(Map.of()));
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public CompletableFuture<SendResult<String, Map<String, Object>>> send(Message<?> message) {
+        try {
+            bytes.add(objectMapper.writeValueAsBytes(message.getPayload()).length);
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        messages.increment();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    public long messages() {
+        return messages.sum();
+    }
+
+    public long bytes() {
+        return bytes.sum();
+    }
+}
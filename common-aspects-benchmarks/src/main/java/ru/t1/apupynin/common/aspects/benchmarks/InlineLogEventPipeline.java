@@ -0,0 +1,27 @@
+package ru.t1.apupynin.common.aspects.benchmarks;
+
+import ru.t1.apupynin.common.aspects.logging.LogEvent;
+import ru.t1.apupynin.common.aspects.logging.LogEventPipeline;
+import ru.t1.apupynin.common.aspects.logging.LogEventSink;
+import ru.t1.apupynin.common.aspects.logging.OverflowPolicy;
+
+import java.util.List;
+
+/**
+ * Hands every event to the sink on the publishing thread, so the payload building and
+ * serialization that normally run on the drainer are measured as part of the advised call.
+ */
+public class InlineLogEventPipeline extends LogEventPipeline {
+
+    private final LogEventSink sink;
+
+    public InlineLogEventPipeline(LogEventSink sink) {
+        super(sink, 2, OverflowPolicy.DROP, 0, 0, 1, 1);
+        this.sink = sink;
+    }
+
+    @Override
+    public boolean publish(LogEvent event) {
+        return sink.send(event.topic(), List.of(event)) > 0;
+    }
+}
@@ -0,0 +1,19 @@
+package ru.t1.apupynin.common.aspects.benchmarks;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.t1.apupynin.common.aspects.logging.LogEventPipeline;
+import ru.t1.apupynin.common.aspects.logging.LogEventSink;
+
+/**
+ * Replaces the auto-configured pipeline with {@link InlineLogEventPipeline}; added to the context
+ * only for inline delivery.
+ */
+@Configuration(proxyBeanMethods = false)
+class InlinePipelineConfiguration {
+
+    @Bean
+    public LogEventPipeline logEventPipeline(LogEventSink logEventSink) {
+        return new InlineLogEventPipeline(logEventSink);
+    }
+}
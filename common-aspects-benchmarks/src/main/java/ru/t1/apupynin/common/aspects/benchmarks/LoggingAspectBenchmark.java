@@ -0,0 +1,166 @@
+package ru.t1.apupynin.common.aspects.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import ru.t1.apupynin.common.aspects.benchmarks.BenchmarkTarget.Account;
+import ru.t1.apupynin.common.aspects.benchmarks.BenchmarkTarget.Transfer;
+import ru.t1.apupynin.common.aspects.logging.LogEventPipeline;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Payload building and JSON serialization of the logging aspects. With {@code delivery=inline}
+ * the whole event is built and serialized on the calling thread; with {@code delivery=pipeline}
+ * the call only enqueues and the drainer does the rest, which is what production pays.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggingAspectBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Context {
+
+        @Param({"inline", "pipeline"})
+        String delivery;
+
+        @Param({"true", "false"})
+        boolean errorDedup;
+
+        ConfigurableApplicationContext context;
+        BenchmarkTarget target;
+        InMemoryKafkaTemplate kafkaTemplate;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            context = BenchmarkApplication.start("inline".equals(delivery), "t1.error-dedup.enabled=" + errorDedup);
+            target = context.getBean(BenchmarkTarget.class);
+            kafkaTemplate = context.getBean(InMemoryKafkaTemplate.class);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            context.close();
+        }
+
+        long dropped() {
+            return "inline".equals(delivery) ? 0 : context.getBean(LogEventPipeline.class).stats().dropped();
+        }
+    }
+
+    /**
+     * What reached the stand-in broker during an iteration, reported by JMH next to the timings.
+     * Shipping is not attributable to a calling thread, so the first thread reports the whole delta.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Shipped {
+
+        public long messages;
+        public long bytes;
+        public long dropped;
+
+        private boolean reporting;
+        private long startMessages;
+        private long startBytes;
+        private long startDropped;
+
+        @Setup(Level.Iteration)
+        public void start(Context context, ThreadParams thread) {
+            reporting = thread.getThreadIndex() == 0;
+            startMessages = context.kafkaTemplate.messages();
+            startBytes = context.kafkaTemplate.bytes();
+            startDropped = context.dropped();
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop(Context context) {
+            if (reporting) {
+                messages = context.kafkaTemplate.messages() - startMessages;
+                bytes = context.kafkaTemplate.bytes() - startBytes;
+                dropped = context.dropped() - startDropped;
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Request {
+
+        final Transfer transfer = new Transfer("40817810000000000001", "40817810000000000002", 150_000,
+                "Monthly rent payment");
+
+        @Setup(Level.Trial)
+        public void bind() {
+            MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/accounts/42/transfers");
+            request.setContentType("application/json");
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        }
+
+        @TearDown(Level.Trial)
+        public void unbind() {
+            RequestContextHolder.resetRequestAttributes();
+        }
+
+        long id() {
+            return ThreadLocalRandom.current().nextInt(1_000);
+        }
+    }
+
+    @Benchmark
+    public Account baseline(Context context, Request request) {
+        return context.target.plain(request.id());
+    }
+
+    @Benchmark
+    public Account income(Context context, Request request, Shipped shipped) {
+        return context.target.income(request.id(), request.transfer);
+    }
+
+    @Benchmark
+    public Account outcome(Context context, Request request, Shipped shipped) {
+        return context.target.outcome(request.id(), request.transfer);
+    }
+
+    @Benchmark
+    public Account outcomeSampled(Context context, Request request, Shipped shipped) {
+        return context.target.outcomeSampled(request.id(), request.transfer);
+    }
+
+    @Benchmark
+    public Object failingBaseline(Context context, Request request) {
+        try {
+            return context.target.plainFailing(request.id());
+        } catch (IllegalStateException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object failing(Context context, Request request, Shipped shipped) {
+        try {
+            return context.target.failing(request.id());
+        } catch (IllegalStateException e) {
+            return e;
+        }
+    }
+}
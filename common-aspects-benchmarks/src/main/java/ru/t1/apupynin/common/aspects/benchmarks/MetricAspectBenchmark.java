@@ -0,0 +1,62 @@
+package ru.t1.apupynin.common.aspects.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.t1.apupynin.common.aspects.benchmarks.BenchmarkTarget.Account;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code @Metric} timing of a fast call, with and without the per-method latency histogram.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricAspectBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Context {
+
+        @Param({"true", "false"})
+        boolean histogram;
+
+        ConfigurableApplicationContext context;
+        BenchmarkTarget target;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            context = BenchmarkApplication.start(false, "t1.metrics-histogram.enabled=" + histogram);
+            target = context.getBean(BenchmarkTarget.class);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            context.close();
+        }
+    }
+
+    @Benchmark
+    public Account baseline(Context context) {
+        return context.target.plain(ThreadLocalRandom.current().nextInt(1_000));
+    }
+
+    @Benchmark
+    public Account metric(Context context) {
+        return context.target.metric(ThreadLocalRandom.current().nextInt(1_000));
+    }
+}
@@ -0,0 +1,32 @@
+package ru.t1.apupynin.common.aspects.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Removes an entry of a {@link Cached} cache on this node and, when the invalidation bus is enabled, on every other replica.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CacheEvict {
+    String cacheName();
+
+    /**
+     * SpEL expression producing the same key the {@code @Cached} reader uses, e.g. {@code "#id"}.
+     */
+    String key() default "";
+
+    String keyGenerator() default "";
+
+    /**
+     * Clears the whole cache instead of a single key.
+     */
+    boolean allEntries() default false;
+
+    /**
+     * Evicts before the method runs, so the eviction happens even if it throws.
+     */
+    boolean beforeInvocation() default false;
+}
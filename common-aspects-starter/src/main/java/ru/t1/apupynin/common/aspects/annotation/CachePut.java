@@ -0,0 +1,28 @@
+package ru.t1.apupynin.common.aspects.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Always runs the method and stores its result in a {@link Cached} cache on this node;
+ * other replicas drop their copy of the key and reload it on the next read.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CachePut {
+    String cacheName();
+
+    String key() default "";
+
+    String keyGenerator() default "";
+
+    long ttlMs() default -1;
+
+    boolean cacheNulls() default false;
+
+    String condition() default "";
+
+    String unless() default "";
+}
@@ -9,6 +9,57 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Cached {
     String cacheName();
-}
 
+    /**
+     * SpEL expression for the cache key, e.g. {@code "#id"} or {@code "{#region, #code}"}.
+     */
+    String key() default "";
+
+    /**
+     * Name of a {@code KeyGenerator} bean; mutually exclusive with {@link #key()}.
+     */
+    String keyGenerator() default "";
+
+    /**
+     * Entry time-to-live; negative means {@code t1.cache-ttl-ms}.
+     */
+    long ttlMs() default -1;
+
+    /**
+     * Entry bound of the cache; negative means {@code t1.cache-max-size}.
+     */
+    long maxSize() default -1;
+
+    /**
+     * Whether {@code null} results are cached, so repeated "not found" lookups stop reaching the datasource.
+     */
+    boolean cacheNulls() default false;
 
+    /**
+     * SpEL expression evaluated before the lookup; when {@code false} the cache is bypassed entirely.
+     */
+    String condition() default "";
+
+    /**
+     * SpEL expression evaluated against {@code #result}; when {@code true} the result is not cached.
+     * In {@link #batch()} mode it is evaluated per result item.
+     */
+    String unless() default "";
+
+    /**
+     * Caches each element of the method's single {@code Collection} parameter as its own entry, keyed as
+     * a method taking just that element would be, so e.g. {@code findAllByIds(ids)} shares a cache with
+     * {@code findById(id)}. Only the elements missing from the cache are passed on, in one call, and the
+     * result is merged in request order. The method must return a {@code Map} by element, or a
+     * {@code Collection} together with {@link #resultKey()}; requests are not coalesced and
+     * {@link #key()} and {@link #keyGenerator()} do not apply.
+     */
+    boolean batch() default false;
+
+    /**
+     * SpEL expression giving the element a result item belongs to, with the item as {@code #result},
+     * e.g. {@code "#result.id"}; required in {@link #batch()} mode for methods returning a {@code Collection}.
+     * The value must equal the requested element, including its type.
+     */
+    String resultKey() default "";
+}
@@ -8,6 +8,15 @@ import java.lang.annotation.Target;
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface HttpIncomeRequestLog {
-}
 
+    /**
+     * Share of requests that are logged, from 0 to 1; negative means {@code t1.log-sampling.sample-rate}.
+     */
+    double sampleRate() default -1;
 
+    /**
+     * Upper bound of logged requests per second for this endpoint; 0 disables the limit,
+     * negative means {@code t1.log-sampling.rate-per-second}.
+     */
+    double ratePerSecond() default -1;
+}
@@ -8,6 +8,21 @@ import java.lang.annotation.Target;
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface HttpOutcomeRequestLog {
-}
 
+    /**
+     * Share of fast successful calls that are logged, from 0 to 1; negative means
+     * {@code t1.log-sampling.sample-rate}. Failed and slow calls are always logged.
+     */
+    double sampleRate() default -1;
+
+    /**
+     * Upper bound of logged fast successful calls per second for this endpoint; 0 disables the limit,
+     * negative means {@code t1.log-sampling.rate-per-second}.
+     */
+    double ratePerSecond() default -1;
 
+    /**
+     * Calls at least this slow bypass sampling; negative means {@code t1.log-sampling.slow-threshold-ms}.
+     */
+    long slowThresholdMs() default -1;
+}
@@ -8,6 +8,12 @@ import java.lang.annotation.Target;
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface LogDatasourceError {
+
+    /**
+     * Bulkhead size when {@code t1.datasource-resilience.enabled} is set; negative means
+     * {@code t1.datasource-resilience.max-concurrent-calls}, {@code 0} no limit.
+     */
+    int maxConcurrentCalls() default -1;
 }
 
 
@@ -8,6 +8,26 @@ import java.lang.annotation.Target;
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Metric {
-}
 
+    /**
+     * How a call is judged slow; {@link ThresholdMode#DEFAULT} follows {@code t1.metrics-adaptive.enabled}.
+     */
+    ThresholdMode mode() default ThresholdMode.DEFAULT;
+
+    /**
+     * Fixed slow-call threshold of this method; negative means {@code t1.metrics.threshold.ms}.
+     */
+    long thresholdMs() default -1;
 
+    enum ThresholdMode {
+        DEFAULT,
+        /**
+         * Calls at or above {@link #thresholdMs()} are slow.
+         */
+        FIXED,
+        /**
+         * Calls that deviate from the method's own rolling baseline are slow.
+         */
+        ADAPTIVE
+    }
+}
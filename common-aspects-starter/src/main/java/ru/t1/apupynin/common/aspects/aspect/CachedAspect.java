@@ -5,81 +5,386 @@ import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.CollectionFactory;
+import ru.t1.apupynin.common.aspects.annotation.CacheEvict;
+import ru.t1.apupynin.common.aspects.annotation.CachePut;
+import ru.t1.apupynin.common.aspects.autoconfigure.AspectProperties;
+import ru.t1.apupynin.common.aspects.cache.CacheEntry;
+import ru.t1.apupynin.common.aspects.cache.CacheExpressionEvaluator;
+import ru.t1.apupynin.common.aspects.cache.CacheInvalidator;
+import ru.t1.apupynin.common.aspects.cache.CacheOperation;
+import ru.t1.apupynin.common.aspects.cache.CacheOperationSource;
+import ru.t1.apupynin.common.aspects.cache.CacheRegistry;
+import ru.t1.apupynin.common.aspects.cache.NullValue;
+import ru.t1.apupynin.common.aspects.logging.LogVerbosity;
+import ru.t1.apupynin.common.aspects.support.AsyncResults;
+import ru.t1.apupynin.common.aspects.support.MethodMetadata;
+import ru.t1.apupynin.common.aspects.support.MethodMetadataRegistry;
+import ru.t1.apupynin.common.aspects.support.ReturnKind;
+import ru.t1.apupynin.common.aspects.trace.RequestTrace;
+import ru.t1.apupynin.common.aspects.trace.RequestTracer;
 
-import java.time.Instant;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
-import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Aspect
 @RequiredArgsConstructor
 public class CachedAspect {
 
-    private final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
+    private final CacheRegistry cacheRegistry;
+    private final CacheOperationSource operationSource;
+    private final CacheExpressionEvaluator evaluator;
+    private final CacheInvalidator invalidator;
+    private final MethodMetadataRegistry metadataRegistry;
+    private final AspectProperties properties;
 
-    @Value("${t1.cache.ttl.ms:60000}")
-    private long ttlMs;
+    /**
+     * {@code null} when request tracing is off.
+     */
+    private final RequestTracer tracer;
 
+    /**
+     * Inside a traced request the lookup becomes a span of the trace; for asynchronous results it
+     * covers the call up to returning the future or publisher.
+     */
     @Around("@annotation(cached)")
     public Object aroundCached(ProceedingJoinPoint pjp, ru.t1.apupynin.common.aspects.annotation.Cached cached) throws Throwable {
+        RequestTrace trace = tracer != null ? tracer.current() : null;
+        if (trace == null) {
+            return cached(pjp, cached);
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Object result = cached(pjp, cached);
+            failed = false;
+            return result;
+        } finally {
+            trace.addSpan("cache", metadataRegistry.get(pjp).getShortSignature(), start, System.nanoTime() - start,
+                    failed, false);
+        }
+    }
+
+    private Object cached(ProceedingJoinPoint pjp, ru.t1.apupynin.common.aspects.annotation.Cached cached) throws Throwable {
+        MethodMetadata metadata = metadataRegistry.get(pjp);
+        Method method = metadata.getMethod();
+        CacheOperation operation = operationSource.getOperation(method, cached);
+        Object target = pjp.getTarget();
         Object[] args = pjp.getArgs();
-        String cacheKey = buildKey(cached.cacheName(), args);
 
-        CacheEntry existing = cache.get(cacheKey);
-        if (existing != null && !existing.isExpired(ttlMs)) {
-            log.info("CACHE_HIT key={}", cacheKey);
-            return existing.value;
+        if (operation.condition() != null && !evaluator.evaluateCondition(operation.condition(), method, target, args)) {
+            return pjp.proceed();
         }
 
-        if (existing != null && existing.isExpired(ttlMs)) {
-            log.info("CACHE_EXPIRED key={}", cacheKey);
-        } else {
+        if (operation.isBatch()) {
+            return cachedBatch(pjp, operation, method);
+        }
+        Object cacheKey = operation.keyGenerator().generate(target, method, args);
+        if (metadata.getReturnKind().isAsync()) {
+            return cachedAsync(pjp, operation, method, cacheKey, metadata.getReturnKind());
+        }
+
+        CacheEntry existing = operation.cache().getEntry(cacheKey);
+        if (existing != null) {
+            if (logsPerCall()) {
+                log.info("CACHE_HIT key={}", cacheKey);
+            }
+            if (operation.spec().isRefreshAhead() && isRefreshDue(existing, operation)
+                    && operation.flight().executeAsync(cacheKey, () -> load(pjp, operation, method, cacheKey),
+                    cacheRegistry.getRefreshExecutor()) && logsPerCall()) {
+                log.info("CACHE_REFRESH key={}", cacheKey);
+            }
+            return NullValue.unwrap(existing.getValue());
+        }
+
+        if (logsPerCall()) {
             log.info("CACHE_MISS key={}", cacheKey);
         }
+        return operation.flight().execute(cacheKey, () -> load(pjp, operation, method, cacheKey));
+    }
+
+    @Around("@annotation(cachePut)")
+    public Object aroundCachePut(ProceedingJoinPoint pjp, CachePut cachePut) throws Throwable {
+        MethodMetadata metadata = metadataRegistry.get(pjp);
+        Method method = metadata.getMethod();
+        CacheOperation operation = operationSource.getOperation(method, cachePut);
 
         Object result = pjp.proceed();
 
-        if (result != null) {
-            cache.put(cacheKey, new CacheEntry(result));
-            log.info("CACHE_PUT key={}", cacheKey);
+        ReturnKind kind = metadata.getReturnKind();
+        if (kind.isAsync() && result != null) {
+            return AsyncResults.fromFuture(kind, () -> AsyncResults.toFuture(result, kind).thenApply(value -> {
+                put(pjp, operation, method, value);
+                return value;
+            }));
+        }
+        put(pjp, operation, method, result);
+        return result;
+    }
+
+    @Around("@annotation(cacheEvict)")
+    public Object aroundCacheEvict(ProceedingJoinPoint pjp, CacheEvict cacheEvict) throws Throwable {
+        if (cacheEvict.beforeInvocation()) {
+            evict(pjp, cacheEvict);
+            return pjp.proceed();
+        }
+        Object result = pjp.proceed();
+        ReturnKind kind = metadataRegistry.get(pjp).getReturnKind();
+        if (kind.isAsync() && result != null) {
+            return AsyncResults.onCompletion(result, kind, System.nanoTime(), (value, error, elapsedNanos, request) -> {
+                if (error == null) {
+                    evict(pjp, cacheEvict);
+                }
+            });
         }
+        evict(pjp, cacheEvict);
         return result;
     }
 
-    private String buildKey(String cacheName, Object[] args) {
-        StringBuilder sb = new StringBuilder(cacheName).append(":");
-        if (args == null || args.length == 0) {
-            return sb.append("noargs").toString();
+    private void put(ProceedingJoinPoint pjp, CacheOperation operation, Method method, Object result) {
+        Object target = pjp.getTarget();
+        Object[] args = pjp.getArgs();
+        if ((operation.condition() == null || evaluator.evaluateCondition(operation.condition(), method, target, args))
+                && isCacheable(pjp, operation, method, result)) {
+            Object cacheKey = operation.keyGenerator().generate(target, method, args);
+            invalidator.updated(operation.cacheName(), cacheKey);
+            operation.cache().put(cacheKey, NullValue.wrap(result), ttlNanos(operation));
+            if (logsPerCall()) {
+                log.info("CACHE_PUT key={}", cacheKey);
+            }
+        }
+    }
+
+    private void evict(ProceedingJoinPoint pjp, CacheEvict cacheEvict) {
+        if (cacheEvict.allEntries()) {
+            invalidator.evictAll(cacheEvict.cacheName());
+            if (logsPerCall()) {
+                log.info("CACHE_EVICT_ALL cache={}", cacheEvict.cacheName());
+            }
+            return;
+        }
+        Method method = metadataRegistry.get(pjp).getMethod();
+        CacheOperation operation = operationSource.getOperation(method, cacheEvict);
+        Object cacheKey = operation.keyGenerator().generate(pjp.getTarget(), method, pjp.getArgs());
+        invalidator.evict(operation.cacheName(), cacheKey);
+        if (logsPerCall()) {
+            log.info("CACHE_EVICT key={}", cacheKey);
         }
-        for (Object arg : args) {
-            if (arg == null) {
-                sb.append("null").append('|');
-            } else if (isPrimaryKeyCandidate(arg)) {
-                sb.append(arg).append('|');
+    }
+
+    /**
+     * Caches the resolved value rather than the future or publisher; a {@code Flux} is cached as the
+     * list of its elements. Publishers look the key up on every subscription.
+     */
+    private Object cachedAsync(ProceedingJoinPoint pjp, CacheOperation operation, Method method, Object cacheKey,
+                               ReturnKind kind) {
+        return AsyncResults.fromFuture(kind, () -> {
+            CacheEntry existing = operation.cache().getEntry(cacheKey);
+            if (existing != null) {
+                if (logsPerCall()) {
+                    log.info("CACHE_HIT key={}", cacheKey);
+                }
+                if (operation.spec().isRefreshAhead() && isRefreshDue(existing, operation)
+                        && operation.flight().executeAsync(cacheKey,
+                        () -> loadAsync(pjp, operation, method, cacheKey, kind).join(), cacheRegistry.getRefreshExecutor())
+                        && logsPerCall()) {
+                    log.info("CACHE_REFRESH key={}", cacheKey);
+                }
+                return CompletableFuture.completedFuture(NullValue.unwrap(existing.getValue()));
+            }
+            if (logsPerCall()) {
+                log.info("CACHE_MISS key={}", cacheKey);
+            }
+            return operation.flight().executeFuture(cacheKey, () -> loadAsync(pjp, operation, method, cacheKey, kind));
+        });
+    }
+
+    /**
+     * Looks each requested element up on its own and passes only the missing ones to the method.
+     * Requested elements the result has no item for are cached as {@code null} when null caching is on.
+     */
+    private Object cachedBatch(ProceedingJoinPoint pjp, CacheOperation operation, Method method) throws Throwable {
+        Object target = pjp.getTarget();
+        Object[] args = pjp.getArgs();
+        int index = operation.batchIndex();
+        Collection<?> requested = (Collection<?>) args[index];
+        if (requested == null || requested.isEmpty()) {
+            return pjp.proceed();
+        }
+
+        Map<Object, Object> found = new HashMap<>();
+        Map<Object, Object> missingKeys = new HashMap<>();
+        Collection<Object> missing = CollectionFactory.createCollection(method.getParameterTypes()[index],
+                requested.size());
+        for (Object element : requested) {
+            if (element == null || found.containsKey(element) || missingKeys.containsKey(element)) {
+                continue;
+            }
+            Object cacheKey = elementKey(operation, method, target, args, element);
+            CacheEntry existing = operation.cache().getEntry(cacheKey);
+            if (existing != null) {
+                found.put(element, existing.getValue());
             } else {
-                sb.append(Objects.hashCode(arg)).append('|');
+                missingKeys.put(element, cacheKey);
+                missing.add(element);
             }
         }
-        return sb.toString();
+        if (logsPerCall()) {
+            log.info("CACHE_BATCH cache={} hits={} misses={}", operation.cacheName(), found.size(), missing.size());
+        }
+
+        if (!missing.isEmpty()) {
+            Map<Object, Long> generations = new HashMap<>();
+            missingKeys.forEach((element, cacheKey) ->
+                    generations.put(element, invalidator.generation(operation.cacheName(), cacheKey)));
+            Object[] missingArgs = args.clone();
+            missingArgs[index] = missing;
+            Map<Object, Object> loaded = batchItems(operation, method, target, args, pjp.proceed(missingArgs));
+            for (Object element : missing) {
+                Object value = loaded.get(element);
+                if (value != null) {
+                    found.put(element, value);
+                }
+                if (value != null ? isCacheable(pjp, operation, method, value) : operation.cacheNulls()) {
+                    putLoaded(operation, missingKeys.get(element), value, generations.get(element));
+                }
+            }
+        }
+        return mergeBatch(method.getReturnType(), requested, found);
     }
 
-    private boolean isPrimaryKeyCandidate(Object arg) {
-        return arg instanceof Long || arg instanceof Integer || arg instanceof String;
+    /**
+     * Keys an element as the single-element counterpart of the batch method would.
+     */
+    private static Object elementKey(CacheOperation operation, Method method, Object target, Object[] args,
+                                     Object element) {
+        Object[] elementArgs;
+        if (args.length == 1) {
+            elementArgs = new Object[]{element};
+        } else {
+            elementArgs = args.clone();
+            elementArgs[operation.batchIndex()] = element;
+        }
+        return operation.keyGenerator().generate(target, method, elementArgs);
     }
 
-    private static class CacheEntry {
-        final Object value;
-        final long createdAtMillis;
-        CacheEntry(Object value) {
-            this.value = value;
-            this.createdAtMillis = Instant.now().toEpochMilli();
+    private Map<Object, Object> batchItems(CacheOperation operation, Method method, Object target, Object[] args,
+                                           Object result) {
+        if (result == null) {
+            return Map.of();
         }
-        boolean isExpired(long ttlMs) {
-            return (Instant.now().toEpochMilli() - createdAtMillis) >= ttlMs;
+        if (result instanceof Map<?, ?> map) {
+            return new HashMap<>(map);
         }
+        Map<Object, Object> items = new HashMap<>();
+        for (Object item : (Collection<?>) result) {
+            if (item != null) {
+                items.put(evaluator.evaluate(operation.resultKey(), method, target, args, item), item);
+            }
+        }
+        return items;
     }
-}
 
+    private static Object mergeBatch(Class<?> returnType, Collection<?> requested, Map<Object, Object> found) {
+        if (Map.class.isAssignableFrom(returnType)) {
+            Map<Object, Object> merged = CollectionFactory.createMap(returnType, found.size());
+            for (Object element : requested) {
+                Object value = found.get(element);
+                if (value != null && value != NullValue.INSTANCE) {
+                    merged.putIfAbsent(element, value);
+                }
+            }
+            return merged;
+        }
+        Collection<Object> merged = CollectionFactory.createCollection(returnType, found.size());
+        Set<Object> added = new HashSet<>();
+        for (Object element : requested) {
+            Object value = found.get(element);
+            if (value != null && value != NullValue.INSTANCE && added.add(element)) {
+                merged.add(value);
+            }
+        }
+        return merged;
+    }
+
+    private CompletableFuture<Object> loadAsync(ProceedingJoinPoint pjp, CacheOperation operation, Method method,
+                                                Object cacheKey, ReturnKind kind) {
+        long generation = invalidator.generation(operation.cacheName(), cacheKey);
+        CompletableFuture<Object> future;
+        try {
+            future = AsyncResults.toFuture(pjp.proceed(), kind);
+        } catch (Throwable t) {
+            return CompletableFuture.failedFuture(t);
+        }
+        return future.thenApply(result -> {
+            if (isCacheable(pjp, operation, method, result) && putLoaded(operation, cacheKey, result, generation)) {
+                if (logsPerCall()) {
+                    log.info("CACHE_PUT key={}", cacheKey);
+                }
+            }
+            return result;
+        });
+    }
+
+    private Object load(ProceedingJoinPoint pjp, CacheOperation operation, Method method, Object cacheKey) throws Throwable {
+        long generation = invalidator.generation(operation.cacheName(), cacheKey);
+        Object result = pjp.proceed();
 
+        if (isCacheable(pjp, operation, method, result) && putLoaded(operation, cacheKey, result, generation)) {
+            if (logsPerCall()) {
+                log.info("CACHE_PUT key={}", cacheKey);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stores a loaded value unless the key was invalidated after {@code generation} was taken, that is
+     * while the value was being read. The check is repeated after the write, since an eviction can land
+     * between the first check and the write.
+     *
+     * @return whether the value stayed in the cache
+     */
+    private boolean putLoaded(CacheOperation operation, Object cacheKey, Object value, long generation) {
+        if (!invalidator.isCurrent(operation.cacheName(), cacheKey, generation)) {
+            log.debug("Not caching {} of cache {}: invalidated while loading", cacheKey, operation.cacheName());
+            return false;
+        }
+        operation.cache().put(cacheKey, NullValue.wrap(value), ttlNanos(operation));
+        if (!invalidator.isCurrent(operation.cacheName(), cacheKey, generation)) {
+            operation.cache().invalidate(cacheKey);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean isCacheable(ProceedingJoinPoint pjp, CacheOperation operation, Method method, Object result) {
+        if (result == null && !operation.cacheNulls()) {
+            return false;
+        }
+        return operation.unless() == null
+                || !evaluator.evaluateUnless(operation.unless(), method, pjp.getTarget(), pjp.getArgs(), result);
+    }
+
+    private long ttlNanos(CacheOperation operation) {
+        return invalidator.ttlNanos(operation.cacheName(), operation.ttlNanos());
+    }
+
+    /**
+     * In {@code SUMMARY} mode the cache statistics are written by the {@code AspectLogSummary} instead.
+     */
+    private boolean logsPerCall() {
+        return properties.getAspectLogging().getCache() == LogVerbosity.PER_CALL && log.isInfoEnabled();
+    }
+
+    private boolean isRefreshDue(CacheEntry entry, CacheOperation operation) {
+        long ttlNanos = entry.getExpiresAtNanos() - entry.getWriteTimeNanos();
+        return System.nanoTime() - entry.getWriteTimeNanos() >= (long) (ttlNanos * operation.spec().refreshAheadRatio());
+    }
+}
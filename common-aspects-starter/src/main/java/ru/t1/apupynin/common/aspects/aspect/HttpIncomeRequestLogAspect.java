@@ -1,23 +1,31 @@
 package ru.t1.apupynin.common.aspects.aspect;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
-import org.aspectj.lang.annotation.Before;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.kafka.support.KafkaHeaders;
-import org.springframework.messaging.Message;
-import org.springframework.messaging.support.MessageBuilder;
-import org.springframework.web.context.request.RequestContextHolder;
-import org.springframework.web.context.request.ServletRequestAttributes;
-
-import java.io.BufferedReader;
+import ru.t1.apupynin.common.aspects.annotation.HttpIncomeRequestLog;
+import ru.t1.apupynin.common.aspects.autoconfigure.AspectProperties;
+import ru.t1.apupynin.common.aspects.logging.AspectLogSummary;
+import ru.t1.apupynin.common.aspects.logging.JsonLogField;
+import ru.t1.apupynin.common.aspects.logging.LogEvent;
+import ru.t1.apupynin.common.aspects.logging.LogEventPipeline;
+import ru.t1.apupynin.common.aspects.logging.LogSampler;
+import ru.t1.apupynin.common.aspects.logging.LogVerbosity;
+import ru.t1.apupynin.common.aspects.logging.SamplingPolicy;
+import ru.t1.apupynin.common.aspects.support.AsyncResults;
+import ru.t1.apupynin.common.aspects.support.MethodMetadata;
+import ru.t1.apupynin.common.aspects.support.MethodMetadataRegistry;
+import ru.t1.apupynin.common.aspects.support.ReturnKind;
+import ru.t1.apupynin.common.aspects.trace.RequestTrace;
+import ru.t1.apupynin.common.aspects.trace.RequestTracer;
+import ru.t1.apupynin.common.aspects.web.HttpRequestInfo;
+
 import java.time.LocalDateTime;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -26,8 +34,19 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class HttpIncomeRequestLogAspect {
 
-    private final KafkaTemplate<String, Map<String, Object>> kafkaTemplate;
+    private static final String SUMMARY_EVENT = "HTTP_INCOME_SUMMARY";
+
+    private final LogEventPipeline pipeline;
     private final ObjectMapper objectMapper;
+    private final LogSampler sampler;
+    private final MethodMetadataRegistry metadataRegistry;
+    private final AspectProperties properties;
+    private final AspectLogSummary summary;
+
+    /**
+     * {@code null} when request tracing is off.
+     */
+    private final RequestTracer tracer;
 
     @Value("${spring.application.name:service}")
     private String serviceName;
@@ -35,100 +54,137 @@ public class HttpIncomeRequestLogAspect {
     @Value("${t1.logging.topic:service_logs}")
     private String serviceLogsTopic;
 
-    @Before("@annotation(ru.t1.apupynin.common.aspects.annotation.HttpIncomeRequestLog)")
-    public void logHttpIncomeRequest(JoinPoint joinPoint) {
-        log.info("HTTP_INCOME start method={}", joinPoint.getSignature().toShortString());
-        try {
-            HttpServletRequest request = getCurrentHttpRequest();
-
-            LocalDateTime timestamp = LocalDateTime.now();
-            String methodSignature = joinPoint.getSignature().toLongString();
-            String uri = request != null ? request.getRequestURI() : "N/A";
-            String parameters = getMethodParameters(joinPoint.getArgs());
-            String body = getRequestBody(request);
-
-            Map<String, Object> logMessage = createLogMessage(
-                    timestamp, methodSignature, uri, parameters, body
-            );
-
-            sendToKafka(logMessage);
-
-            log.info("HTTP_INCOME done method={} uri={}", methodSignature, uri);
-
-        } catch (Exception e) {
-            log.error("Failed to log HTTP income request", e);
+    /**
+     * Publishers are logged when subscribed, so WebFlux handlers report the request of the
+     * subscribing exchange; everything else is logged before the call as a servlet request.
+     * With request tracing on, servlet requests are folded into the request trace instead.
+     */
+    @Around("@annotation(annotation)")
+    public Object logHttpIncomeRequest(ProceedingJoinPoint joinPoint, HttpIncomeRequestLog annotation) throws Throwable {
+        MethodMetadata metadata = metadataRegistry.get(joinPoint);
+        if (properties.getAspectLogging().getHttpIncome() == LogVerbosity.SUMMARY) {
+            AspectLogSummary.Tally tally = metadata.getAttribute(SUMMARY_EVENT,
+                    m -> summary.tally(SUMMARY_EVENT, m.getShortSignature()));
+            try {
+                Object result = logAndProceed(joinPoint, annotation, metadata);
+                tally.record(false);
+                return result;
+            } catch (Throwable t) {
+                tally.record(true);
+                throw t;
+            }
         }
+        return logAndProceed(joinPoint, annotation, metadata);
     }
 
-    private Map<String, Object> createLogMessage(LocalDateTime timestamp, String methodSignature,
-                                                 String uri, String parameters, String body) {
-        Map<String, Object> message = new HashMap<>();
-        message.put("timestamp", timestamp.toString());
-        message.put("methodSignature", methodSignature);
-        message.put("uri", uri);
-        message.put("parameters", parameters);
-        message.put("body", body);
-        message.put("serviceName", serviceName);
-        message.put("requestType", "INCOME");
-        return message;
+    private Object logAndProceed(ProceedingJoinPoint joinPoint, HttpIncomeRequestLog annotation,
+                                 MethodMetadata metadata) throws Throwable {
+        SamplingPolicy policy = metadata.getAttribute(HttpIncomeRequestLogAspect.class,
+                m -> sampler.createPolicy(annotation.sampleRate(), annotation.ratePerSecond(), -1));
+        ReturnKind kind = metadata.getReturnKind();
+        boolean publisher = kind == ReturnKind.MONO || kind == ReturnKind.FLUX;
+        if (tracer != null && !publisher) {
+            return traceAndProceed(joinPoint, metadata, policy, HttpRequestInfo.current(true));
+        }
+        if (!sampler.sampleHead(policy)) {
+            return joinPoint.proceed();
+        }
+        if (publisher) {
+            return AsyncResults.onSubscribe(joinPoint.proceed(), kind, request -> logIncome(joinPoint, metadata, request));
+        }
+        logIncome(joinPoint, metadata, HttpRequestInfo.current(true));
+        return joinPoint.proceed();
     }
 
-    private void sendToKafka(Map<String, Object> logMessage) {
-        try {
-            Message<Map<String, Object>> message = MessageBuilder
-                    .withPayload(logMessage)
-                    .setHeader(KafkaHeaders.TOPIC, serviceLogsTopic)
-                    .setHeader(KafkaHeaders.KEY, serviceName)
-                    .setHeader("type", "INFO")
-                    .build();
-
-            kafkaTemplate.send(message);
-            log.debug("Successfully sent HTTP income log to Kafka topic: {}", serviceLogsTopic);
-        } catch (Exception e) {
-            log.warn("Failed to send HTTP income log to Kafka: {}", e.getMessage());
+    /**
+     * Attaches the income fields to the request trace rather than publishing them. When this call
+     * opened the trace, it is published once the call completes, subject to the tail sampling of
+     * this method: the trace is only known to be slow or failed at the end, so it is not head-sampled.
+     */
+    private Object traceAndProceed(ProceedingJoinPoint joinPoint, MethodMetadata metadata, SamplingPolicy policy,
+                                   HttpRequestInfo request) throws Throwable {
+        RequestTrace joined = tracer.current();
+        RequestTrace trace = joined != null ? joined : tracer.open();
+        LocalDateTime timestamp = LocalDateTime.now();
+        String uri = request != null ? request.uri() : "N/A";
+        String body = request != null ? request.body() : "N/A";
+        Object[] args = joinPoint.getArgs();
+        trace.setIncome(() -> createLogMessage(timestamp, metadata.getLongSignature(), uri,
+                getMethodParameters(metadata, args), body));
+        if (joined != null) {
+            return joinPoint.proceed();
         }
-    }
 
-    private HttpServletRequest getCurrentHttpRequest() {
+        Object result;
         try {
-            ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.currentRequestAttributes();
-            return attributes.getRequest();
-        } catch (Exception e) {
-            log.debug("No HTTP request context available");
-            return null;
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            tracer.detach(trace);
+            publishTrace(trace, policy, e);
+            throw e;
         }
+        tracer.detach(trace);
+        if (metadata.getReturnKind().isAsync()) {
+            return AsyncResults.onCompletion(result, metadata.getReturnKind(), System.nanoTime(),
+                    (value, error, elapsedNanos, subscriber) -> publishTrace(trace, policy, error));
+        }
+        publishTrace(trace, policy, null);
+        return result;
     }
 
-    private String getMethodParameters(Object[] args) {
+    private void publishTrace(RequestTrace trace, SamplingPolicy policy, Throwable error) {
         try {
-            if (args == null || args.length == 0) {
-                return "[]";
+            long totalNanos = trace.close();
+            if (!sampler.sampleTail(policy, totalNanos, error != null)) {
+                return;
             }
-            return objectMapper.writeValueAsString(Arrays.asList(args));
+            pipeline.publish(new LogEvent(serviceLogsTopic, serviceName, error != null ? "ERROR" : "INFO",
+                    () -> trace.toMessage(serviceName, error)));
         } catch (Exception e) {
-            log.warn("Failed to serialize method parameters", e);
-            return "Failed to serialize parameters: " + e.getMessage();
+            log.error("Failed to log HTTP request trace", e);
         }
     }
 
-    private String getRequestBody(HttpServletRequest request) {
-        if (request == null) {
-            return "N/A";
+    private void logIncome(JoinPoint joinPoint, MethodMetadata metadata, HttpRequestInfo request) {
+        boolean logsPerCall = properties.getAspectLogging().getHttpIncome() == LogVerbosity.PER_CALL
+                && log.isInfoEnabled();
+        if (logsPerCall) {
+            log.info("HTTP_INCOME start method={}", metadata.getShortSignature());
         }
-
         try {
-            StringBuilder body = new StringBuilder();
-            BufferedReader reader = request.getReader();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                body.append(line);
+            LocalDateTime timestamp = LocalDateTime.now();
+            String uri = request != null ? request.uri() : "N/A";
+            String body = request != null ? request.body() : "N/A";
+            Object[] args = joinPoint.getArgs();
+
+            pipeline.publish(new LogEvent(serviceLogsTopic, serviceName, "INFO", () -> createLogMessage(
+                    timestamp, metadata.getLongSignature(), uri, getMethodParameters(metadata, args), body
+            )));
+
+            if (logsPerCall) {
+                log.info("HTTP_INCOME done method={} uri={}", metadata.getShortSignature(), uri);
             }
-            return body.toString();
+
         } catch (Exception e) {
-            log.debug("Could not read request body: {}", e.getMessage());
-            return "Body not available";
+            log.error("Failed to log HTTP income request", e);
         }
     }
-}
 
+    private Map<String, Object> createLogMessage(LocalDateTime timestamp, String methodSignature,
+                                                 String uri, JsonLogField parameters, String body) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("timestamp", timestamp.toString());
+        message.put("methodSignature", methodSignature);
+        message.put("uri", uri);
+        message.put("parameters", parameters);
+        message.put("body", body);
+        message.put("serviceName", serviceName);
+        message.put("requestType", "INCOME");
+        return message;
+    }
 
+    private JsonLogField getMethodParameters(MethodMetadata metadata, Object[] args) {
+        return JsonLogField.of(metadata.loggableArguments(args), objectMapper,
+                properties.getLogPayload().getMaxParametersBytes());
+    }
+}
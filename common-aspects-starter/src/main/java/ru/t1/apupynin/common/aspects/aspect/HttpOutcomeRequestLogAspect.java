@@ -1,32 +1,53 @@
 package ru.t1.apupynin.common.aspects.aspect;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.JoinPoint;
-import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.kafka.support.KafkaHeaders;
-import org.springframework.messaging.Message;
-import org.springframework.messaging.support.MessageBuilder;
-import org.springframework.web.context.request.RequestContextHolder;
-import org.springframework.web.context.request.ServletRequestAttributes;
+import ru.t1.apupynin.common.aspects.annotation.HttpOutcomeRequestLog;
+import ru.t1.apupynin.common.aspects.autoconfigure.AspectProperties;
+import ru.t1.apupynin.common.aspects.logging.AspectLogSummary;
+import ru.t1.apupynin.common.aspects.logging.JsonLogField;
+import ru.t1.apupynin.common.aspects.logging.LogEvent;
+import ru.t1.apupynin.common.aspects.logging.LogEventPipeline;
+import ru.t1.apupynin.common.aspects.logging.LogSampler;
+import ru.t1.apupynin.common.aspects.logging.LogVerbosity;
+import ru.t1.apupynin.common.aspects.logging.SamplingPolicy;
+import ru.t1.apupynin.common.aspects.support.AsyncResults;
+import ru.t1.apupynin.common.aspects.support.MethodMetadata;
+import ru.t1.apupynin.common.aspects.support.MethodMetadataRegistry;
+import ru.t1.apupynin.common.aspects.support.ReturnKind;
+import ru.t1.apupynin.common.aspects.trace.RequestTrace;
+import ru.t1.apupynin.common.aspects.trace.RequestTracer;
+import ru.t1.apupynin.common.aspects.web.HttpRequestInfo;
 
 import java.time.LocalDateTime;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Aspect
 @RequiredArgsConstructor
 public class HttpOutcomeRequestLogAspect {
 
-    private final KafkaTemplate<String, Map<String, Object>> kafkaTemplate;
+    private static final String SUMMARY_EVENT = "HTTP_OUTCOME_SUMMARY";
+
+    private final LogEventPipeline pipeline;
     private final ObjectMapper objectMapper;
+    private final LogSampler sampler;
+    private final MethodMetadataRegistry metadataRegistry;
+    private final AspectProperties properties;
+    private final AspectLogSummary summary;
+
+    /**
+     * {@code null} when request tracing is off.
+     */
+    private final RequestTracer tracer;
 
     @Value("${spring.application.name:service}")
     private String serviceName;
@@ -34,92 +55,140 @@ public class HttpOutcomeRequestLogAspect {
     @Value("${t1.logging.topic:service_logs}")
     private String serviceLogsTopic;
 
-    @AfterReturning(pointcut = "@annotation(ru.t1.apupynin.common.aspects.annotation.HttpOutcomeRequestLog)", returning = "result")
-    public void logHttpOutcomeRequest(JoinPoint joinPoint, Object result) {
-        log.info("HTTP_OUTCOME start method={}", joinPoint.getSignature().toShortString());
+    /**
+     * Asynchronous results are logged on their completion signal; the request is captured on the
+     * calling thread, or taken from the subscriber context for publishers. With request tracing on,
+     * non-publisher results close the request trace instead, or join the one already open.
+     */
+    @Around("@annotation(annotation)")
+    public Object logHttpOutcomeRequest(ProceedingJoinPoint joinPoint, HttpOutcomeRequestLog annotation) throws Throwable {
+        long start = System.nanoTime();
+        HttpRequestInfo request = HttpRequestInfo.current(false);
+        MethodMetadata metadata = metadataRegistry.get(joinPoint);
+        boolean traced = tracer != null && metadata.getReturnKind() != ReturnKind.MONO
+                && metadata.getReturnKind() != ReturnKind.FLUX;
+        RequestTrace joined = traced ? tracer.current() : null;
+        boolean owner = traced && joined == null;
+        RequestTrace trace = owner ? tracer.open() : joined;
+        Object result;
         try {
-            HttpServletRequest request = getCurrentHttpRequest();
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            if (owner) {
+                tracer.detach(trace);
+            }
+            logOutcome(joinPoint, annotation, request, null, e, System.nanoTime() - start, trace, owner);
+            throw e;
+        }
+        if (owner) {
+            tracer.detach(trace);
+        }
+        if (metadata.getReturnKind().isAsync()) {
+            return AsyncResults.onCompletion(result, metadata.getReturnKind(), start,
+                    (value, error, elapsedNanos, subscriber) -> logOutcome(joinPoint, annotation,
+                            subscriber != null ? subscriber : request, value, error, elapsedNanos, trace, owner));
+        }
+        logOutcome(joinPoint, annotation, request, result, null, System.nanoTime() - start, trace, owner);
+        return result;
+    }
 
+    private void logOutcome(JoinPoint joinPoint, HttpOutcomeRequestLog annotation, HttpRequestInfo request,
+                            Object result, Throwable error, long elapsedNanos, RequestTrace trace, boolean owner) {
+        MethodMetadata metadata = metadataRegistry.get(joinPoint);
+        if (properties.getAspectLogging().getHttpOutcome() == LogVerbosity.SUMMARY) {
+            metadata.getAttribute(SUMMARY_EVENT,
+                    m -> summary.tally(SUMMARY_EVENT, m.getShortSignature())).record(error != null);
+        }
+        if (trace != null) {
+            traceOutcome(joinPoint, annotation, metadata, request, result, error, elapsedNanos, trace, owner);
+            return;
+        }
+        if (!sampler.sampleTail(samplingPolicy(metadata, annotation), elapsedNanos, error != null)) {
+            return;
+        }
+        boolean logsPerCall = properties.getAspectLogging().getHttpOutcome() == LogVerbosity.PER_CALL
+                && log.isInfoEnabled();
+        if (logsPerCall) {
+            log.info("HTTP_OUTCOME start method={}", metadata.getShortSignature());
+        }
+        try {
             LocalDateTime timestamp = LocalDateTime.now();
-            String methodSignature = joinPoint.getSignature().toLongString();
-            String uri = request != null ? request.getRequestURI() : "N/A";
-            String parameters = getMethodParameters(joinPoint.getArgs());
-            String body = getResponseBody(result);
-
-            Map<String, Object> logMessage = createLogMessage(
-                    timestamp, methodSignature, uri, parameters, body
-            );
-
-            sendToKafka(logMessage);
-
-            log.info("HTTP_OUTCOME done method={} uri={}", methodSignature, uri);
+            String uri = request != null ? request.uri() : "N/A";
+            Object[] args = joinPoint.getArgs();
+            long durationMs = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+            String type = error != null ? "ERROR" : "INFO";
+
+            pipeline.publish(new LogEvent(serviceLogsTopic, serviceName, type, () -> createLogMessage(
+                    timestamp, metadata.getLongSignature(), uri, getMethodParameters(metadata, args), getResponseBody(result),
+                    durationMs, error
+            )));
+
+            if (logsPerCall) {
+                log.info("HTTP_OUTCOME done method={} uri={}", metadata.getShortSignature(), uri);
+            }
 
         } catch (Exception e) {
             log.error("Failed to log HTTP outcome request", e);
         }
     }
 
+    /**
+     * Attaches the outcome fields to the request trace. When this call opened the trace, it is closed
+     * and published as the request's single event, subject to the tail sampling of this method.
+     */
+    private void traceOutcome(JoinPoint joinPoint, HttpOutcomeRequestLog annotation, MethodMetadata metadata,
+                              HttpRequestInfo request, Object result, Throwable error, long elapsedNanos,
+                              RequestTrace trace, boolean owner) {
+        try {
+            LocalDateTime timestamp = LocalDateTime.now();
+            String uri = request != null ? request.uri() : "N/A";
+            Object[] args = joinPoint.getArgs();
+            long durationMs = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+            trace.setOutcome(() -> createLogMessage(timestamp, metadata.getLongSignature(), uri,
+                    getMethodParameters(metadata, args), getResponseBody(result), durationMs, error));
+            if (!owner) {
+                return;
+            }
+            long totalNanos = trace.close();
+            if (sampler.sampleTail(samplingPolicy(metadata, annotation), totalNanos, error != null)) {
+                pipeline.publish(new LogEvent(serviceLogsTopic, serviceName, error != null ? "ERROR" : "INFO",
+                        () -> trace.toMessage(serviceName, error)));
+            }
+        } catch (Exception e) {
+            log.error("Failed to log HTTP request trace", e);
+        }
+    }
+
+    private SamplingPolicy samplingPolicy(MethodMetadata metadata, HttpOutcomeRequestLog annotation) {
+        return metadata.getAttribute(HttpOutcomeRequestLogAspect.class, m ->
+                sampler.createPolicy(annotation.sampleRate(), annotation.ratePerSecond(), annotation.slowThresholdMs()));
+    }
+
     private Map<String, Object> createLogMessage(LocalDateTime timestamp, String methodSignature,
-                                                 String uri, String parameters, String body) {
+                                                 String uri, JsonLogField parameters, JsonLogField body,
+                                                 long durationMs, Throwable error) {
         Map<String, Object> message = new HashMap<>();
         message.put("timestamp", timestamp.toString());
         message.put("methodSignature", methodSignature);
         message.put("uri", uri);
         message.put("parameters", parameters);
         message.put("body", body);
+        message.put("durationMs", durationMs);
+        if (error != null) {
+            message.put("exceptionMessage", error.getClass().getName() + ": " + error.getMessage());
+        }
         message.put("serviceName", serviceName);
         message.put("requestType", "OUTCOME");
         return message;
     }
 
-    private void sendToKafka(Map<String, Object> logMessage) {
-        try {
-            Message<Map<String, Object>> message = MessageBuilder
-                    .withPayload(logMessage)
-                    .setHeader(KafkaHeaders.TOPIC, serviceLogsTopic)
-                    .setHeader(KafkaHeaders.KEY, serviceName)
-                    .setHeader("type", "INFO")
-                    .build();
-
-            kafkaTemplate.send(message);
-            log.debug("Successfully sent HTTP outcome log to Kafka topic: {}", serviceLogsTopic);
-        } catch (Exception e) {
-            log.warn("Failed to send HTTP outcome log to Kafka: {}", e.getMessage());
-        }
-    }
-
-    private HttpServletRequest getCurrentHttpRequest() {
-        try {
-            ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.currentRequestAttributes();
-            return attributes.getRequest();
-        } catch (Exception e) {
-            log.debug("No HTTP request context available");
-            return null;
-        }
-    }
-
-    private String getMethodParameters(Object[] args) {
-        try {
-            if (args == null || args.length == 0) {
-                return "[]";
-            }
-            return objectMapper.writeValueAsString(Arrays.asList(args));
-        } catch (Exception e) {
-            log.warn("Failed to serialize method parameters", e);
-            return "Failed to serialize parameters: " + e.getMessage();
-        }
+    private JsonLogField getMethodParameters(MethodMetadata metadata, Object[] args) {
+        return JsonLogField.of(metadata.loggableArguments(args), objectMapper,
+                properties.getLogPayload().getMaxParametersBytes());
     }
 
-    private String getResponseBody(Object result) {
-        try {
-            if (result == null) {
-                return "null";
-            }
-            return objectMapper.writeValueAsString(result);
-        } catch (Exception e) {
-            log.warn("Failed to serialize response body", e);
-            return "Failed to serialize response: " + e.getMessage();
-        }
+    private JsonLogField getResponseBody(Object result) {
+        return JsonLogField.of(result, objectMapper, properties.getLogPayload().getMaxResultBytes());
     }
 }
 
@@ -1,31 +1,52 @@
 package ru.t1.apupynin.common.aspects.aspect;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.JoinPoint;
-import org.aspectj.lang.annotation.AfterThrowing;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.kafka.support.KafkaHeaders;
-import org.springframework.messaging.Message;
-import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.core.annotation.AnnotationUtils;
+import ru.t1.apupynin.common.aspects.annotation.LogDatasourceError;
+import ru.t1.apupynin.common.aspects.autoconfigure.AspectProperties;
+import ru.t1.apupynin.common.aspects.logging.ErrorDeduplicator;
+import ru.t1.apupynin.common.aspects.logging.ErrorRepeats;
+import ru.t1.apupynin.common.aspects.logging.JsonLogField;
+import ru.t1.apupynin.common.aspects.logging.LogEvent;
+import ru.t1.apupynin.common.aspects.logging.LogEventPipeline;
+import ru.t1.apupynin.common.aspects.logging.StackTraces;
+import ru.t1.apupynin.common.aspects.resilience.CallGuard;
+import ru.t1.apupynin.common.aspects.resilience.CallNotPermittedException;
+import ru.t1.apupynin.common.aspects.resilience.CircuitBreaker;
+import ru.t1.apupynin.common.aspects.resilience.ResilienceRegistry;
+import ru.t1.apupynin.common.aspects.support.AsyncResults;
+import ru.t1.apupynin.common.aspects.support.MethodMetadata;
+import ru.t1.apupynin.common.aspects.support.MethodMetadataRegistry;
+import ru.t1.apupynin.common.aspects.support.ReturnKind;
+import ru.t1.apupynin.common.aspects.trace.RequestTrace;
+import ru.t1.apupynin.common.aspects.trace.RequestTracer;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.util.Arrays;
+import java.time.ZoneId;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 
 @Slf4j
 @Aspect
-@RequiredArgsConstructor
 public class LogDatasourceErrorAspect {
 
-    private final KafkaTemplate<String, Map<String, Object>> kafkaTemplate;
+    private final LogEventPipeline pipeline;
     private final ObjectMapper objectMapper;
+    private final MethodMetadataRegistry metadataRegistry;
+    private final AspectProperties properties;
+    private final ErrorDeduplicator deduplicator;
+    private final ResilienceRegistry resilience;
+    private final RequestTracer tracer;
 
     @Value("${spring.application.name:service}")
     private String serviceName;
@@ -33,33 +54,149 @@ public class LogDatasourceErrorAspect {
     @Value("${t1.logging.topic:service_logs}")
     private String serviceLogsTopic;
 
-    @AfterThrowing(pointcut = "@annotation(ru.t1.apupynin.common.aspects.annotation.LogDatasourceError)", throwing = "exception")
-    public void logDatasourceError(JoinPoint joinPoint, Throwable exception) {
-        log.error("Datasource error occurred in method: {}", joinPoint.getSignature().toShortString());
+    /**
+     * @param deduplicator collapses repeated errors; {@code null} reports every error in full
+     * @param resilience   guards the annotated methods with a circuit breaker and bulkhead; {@code null} to only observe
+     * @param tracer       records the calls as spans of the request trace; {@code null} when tracing is off
+     */
+    public LogDatasourceErrorAspect(LogEventPipeline pipeline, ObjectMapper objectMapper,
+                                    MethodMetadataRegistry metadataRegistry, AspectProperties properties,
+                                    ErrorDeduplicator deduplicator, ResilienceRegistry resilience,
+                                    RequestTracer tracer) {
+        this.pipeline = pipeline;
+        this.objectMapper = objectMapper;
+        this.metadataRegistry = metadataRegistry;
+        this.properties = properties;
+        this.deduplicator = deduplicator;
+        this.resilience = resilience;
+        this.tracer = tracer;
+        if (deduplicator != null) {
+            deduplicator.addRepeatListener(this::logRepeats);
+        }
+        if (resilience != null) {
+            resilience.addTransitionListener(this::logTransition);
+        }
+    }
+
+    /**
+     * Failures of asynchronous results are reported when the error signal arrives. A guarded
+     * publisher takes its permit per subscription, when the datasource is actually called.
+     */
+    @Around("@annotation(ru.t1.apupynin.common.aspects.annotation.LogDatasourceError)")
+    public Object logDatasourceError(ProceedingJoinPoint joinPoint) throws Throwable {
+        MethodMetadata metadata = metadataRegistry.get(joinPoint);
+        RequestTrace trace = tracer != null ? tracer.current() : null;
+        if (resilience == null) {
+            return observe(joinPoint, metadata, null, null, trace);
+        }
+        CallGuard guard = metadata.getAttribute(CallGuard.class, this::createGuard);
+        ReturnKind kind = metadata.getReturnKind();
+        if (kind == ReturnKind.MONO || kind == ReturnKind.FLUX) {
+            return AsyncResults.withPermit(observe(joinPoint, metadata, null, null, trace), kind, guard::acquire,
+                    guard::release);
+        }
+        return observe(joinPoint, metadata, guard, guard.acquire(), trace);
+    }
 
+    private Object observe(ProceedingJoinPoint joinPoint, MethodMetadata metadata, CallGuard guard,
+                           CircuitBreaker.Phase permit, RequestTrace trace) throws Throwable {
+        long start = System.nanoTime();
+        Object result;
         try {
-            LocalDateTime timestamp = LocalDateTime.now();
-            String methodSignature = joinPoint.getSignature().toLongString();
-            String stackTrace = getStackTrace(exception);
-            String exceptionMessage = exception.getMessage();
-            String methodParameters = getMethodParameters(joinPoint.getArgs());
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            if (guard != null) {
+                guard.release(permit, e);
+            }
+            addSpan(trace, metadata, start, System.nanoTime() - start, e);
+            logError(joinPoint, e, trace);
+            throw e;
+        }
+        if (metadata.getReturnKind().isAsync()) {
+            return AsyncResults.onCompletion(result, metadata.getReturnKind(), start,
+                    (value, error, elapsedNanos, request) -> {
+                        if (guard != null) {
+                            guard.release(permit, error);
+                        }
+                        addSpan(trace, metadata, start, elapsedNanos, error);
+                        if (error != null) {
+                            logError(joinPoint, error, trace);
+                        }
+                    });
+        }
+        if (guard != null) {
+            guard.release(permit, null);
+        }
+        addSpan(trace, metadata, start, System.nanoTime() - start, null);
+        return result;
+    }
+
+    private static void addSpan(RequestTrace trace, MethodMetadata metadata, long startNanos, long elapsedNanos,
+                                Throwable error) {
+        if (trace != null) {
+            trace.addSpan("datasource", metadata.getShortSignature(), startNanos, elapsedNanos, error != null, false);
+        }
+    }
+
+    private CallGuard createGuard(MethodMetadata metadata) {
+        LogDatasourceError annotation = AnnotationUtils.findAnnotation(metadata.getMethod(), LogDatasourceError.class);
+        return resilience.guard(metadata.getLongSignature(), annotation != null ? annotation.maxConcurrentCalls() : -1);
+    }
 
-            Map<String, Object> logMessage = createLogMessage(
-                    timestamp, methodSignature, stackTrace, exceptionMessage, methodParameters
-            );
+    /**
+     * A new fingerprint is sent with its full stack trace, a known one opening a new window with a
+     * trace of {@code t1.error-dedup.stack-frames} frames, and repeats inside the window not at all.
+     */
+    private void logError(JoinPoint joinPoint, Throwable exception, RequestTrace trace) {
+        MethodMetadata metadata = metadataRegistry.get(joinPoint);
+        if (exception instanceof CallNotPermittedException) {
+            log.debug("Datasource call rejected in method {}: {}", metadata.getShortSignature(), exception.getMessage());
+            return;
+        }
+        if (exception instanceof CancellationException) {
+            log.debug("Datasource call cancelled in method {}", metadata.getShortSignature());
+            return;
+        }
+        ErrorDeduplicator.Result occurrence = deduplicator != null
+                ? deduplicator.record(metadata.getLongSignature(), exception) : null;
+        if (occurrence != null && occurrence.occurrence() == ErrorDeduplicator.Occurrence.SUPPRESSED) {
+            log.debug("Repeated datasource error in method: {}", metadata.getShortSignature());
+            return;
+        }
+        log.error("Datasource error occurred in method: {}", metadata.getShortSignature());
+
+        try {
+            LocalDateTime timestamp = LocalDateTime.now();
+            Object[] args = joinPoint.getArgs();
+            boolean fullTrace = occurrence == null || occurrence.occurrence() == ErrorDeduplicator.Occurrence.NEW;
+            String fingerprint = occurrence != null ? occurrence.fingerprintHex() : null;
+            String traceId = trace != null ? trace.getTraceId() : null;
 
-            sendToKafka(logMessage);
+            pipeline.publish(new LogEvent(serviceLogsTopic, serviceName, "ERROR", () -> createLogMessage(
+                    timestamp, metadata.getLongSignature(), getStackTrace(exception, fullTrace), exception.getMessage(),
+                    getMethodParameters(metadata, args), fingerprint, traceId
+            )));
 
-            log.error("Error details - Method: {}, Exception: {}, Parameters: {}",
-                    methodSignature, exceptionMessage, methodParameters);
+            log.error("Error details - Method: {}, Exception: {}", metadata.getShortSignature(), exception.getMessage());
 
         } catch (Exception e) {
             log.error("Failed to log datasource error", e);
         }
     }
 
+    private void logRepeats(ErrorRepeats repeats) {
+        pipeline.publish(new LogEvent(serviceLogsTopic, serviceName, "ERROR", () -> createRepeatsMessage(repeats)));
+        log.warn("Datasource error in {} repeated {} times", repeats.methodSignature(), repeats.count());
+    }
+
+    private void logTransition(CircuitBreaker.Transition transition) {
+        pipeline.publish(new LogEvent(serviceLogsTopic, serviceName, "WARNING", () -> createTransitionMessage(transition)));
+        log.warn("Circuit breaker of {} changed from {} to {}", transition.name(), transition.from(), transition.to());
+    }
+
     private Map<String, Object> createLogMessage(LocalDateTime timestamp, String methodSignature,
-                                                 String stackTrace, String exceptionMessage, String methodParameters) {
+                                                 String stackTrace, String exceptionMessage, JsonLogField methodParameters,
+                                                 String fingerprint, String traceId) {
         Map<String, Object> message = new HashMap<>();
         message.put("timestamp", timestamp.toString());
         message.put("methodSignature", methodSignature);
@@ -68,42 +205,65 @@ public class LogDatasourceErrorAspect {
         message.put("methodParameters", methodParameters);
         message.put("serviceName", serviceName);
         message.put("type", "ERROR");
+        if (fingerprint != null) {
+            message.put("fingerprint", fingerprint);
+        }
+        if (traceId != null) {
+            message.put("traceId", traceId);
+        }
         return message;
     }
 
-    private void sendToKafka(Map<String, Object> logMessage) {
-        try {
-            Message<Map<String, Object>> message = MessageBuilder
-                    .withPayload(logMessage)
-                    .setHeader(KafkaHeaders.TOPIC, serviceLogsTopic)
-                    .setHeader(KafkaHeaders.KEY, serviceName)
-                    .setHeader("type", "ERROR")
-                    .build();
-
-            kafkaTemplate.send(message);
-            log.debug("Successfully sent error log to Kafka topic: {}", serviceLogsTopic);
-        } catch (Exception e) {
-            log.warn("Failed to send error log to Kafka: {}", e.getMessage());
+    private Map<String, Object> createRepeatsMessage(ErrorRepeats repeats) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("timestamp", LocalDateTime.now().toString());
+        message.put("methodSignature", repeats.methodSignature());
+        message.put("exceptionMessage", repeats.lastMessage());
+        message.put("fingerprint", repeats.fingerprint());
+        message.put("count", repeats.count());
+        message.put("firstTimestamp", toLocalDateTime(repeats.firstEpochMs()).toString());
+        message.put("lastTimestamp", toLocalDateTime(repeats.lastEpochMs()).toString());
+        message.put("serviceName", serviceName);
+        message.put("type", "ERROR");
+        message.put("event", "ERROR_REPEATED");
+        return message;
+    }
+
+    private Map<String, Object> createTransitionMessage(CircuitBreaker.Transition transition) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("timestamp", LocalDateTime.now().toString());
+        message.put("methodSignature", transition.name());
+        message.put("fromState", transition.from().name());
+        message.put("toState", transition.to().name());
+        if (transition.failureRate() >= 0) {
+            message.put("failureRate", transition.failureRate());
         }
+        message.put("calls", transition.calls());
+        message.put("serviceName", serviceName);
+        message.put("type", "WARNING");
+        message.put("event", "CIRCUIT_BREAKER_STATE");
+        return message;
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMs) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMs), ZoneId.systemDefault());
     }
 
-    private String getStackTrace(Throwable throwable) {
+    private String getStackTrace(Throwable throwable, boolean full) {
+        int maxChars = properties.getLogPayload().getMaxStackTraceChars();
+        if (!full) {
+            String trace = StackTraces.render(throwable, properties.getErrorDedup().getStackFrames());
+            return JsonLogField.truncate(trace, maxChars);
+        }
         StringWriter sw = new StringWriter();
         PrintWriter pw = new PrintWriter(sw);
         throwable.printStackTrace(pw);
-        return sw.toString();
+        return JsonLogField.truncate(sw.toString(), maxChars);
     }
 
-    private String getMethodParameters(Object[] args) {
-        try {
-            if (args == null || args.length == 0) {
-                return "[]";
-            }
-            return objectMapper.writeValueAsString(Arrays.asList(args));
-        } catch (Exception e) {
-            log.warn("Failed to serialize method parameters", e);
-            return "Failed to serialize parameters: " + e.getMessage();
-        }
+    private JsonLogField getMethodParameters(MethodMetadata metadata, Object[] args) {
+        return JsonLogField.of(metadata.loggableArguments(args), objectMapper,
+                properties.getLogPayload().getMaxParametersBytes());
     }
 }
 
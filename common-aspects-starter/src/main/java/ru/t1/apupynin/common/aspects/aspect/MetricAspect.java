@@ -7,21 +7,39 @@ import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.kafka.support.KafkaHeaders;
-import org.springframework.messaging.Message;
-import org.springframework.messaging.support.MessageBuilder;
+import ru.t1.apupynin.common.aspects.annotation.Metric;
+import ru.t1.apupynin.common.aspects.autoconfigure.AspectProperties;
+import ru.t1.apupynin.common.aspects.logging.JsonLogField;
+import ru.t1.apupynin.common.aspects.logging.LogEvent;
+import ru.t1.apupynin.common.aspects.logging.LogEventPipeline;
+import ru.t1.apupynin.common.aspects.metrics.LatencyObserver;
+import ru.t1.apupynin.common.aspects.metrics.SlowCallThreshold;
+import ru.t1.apupynin.common.aspects.support.AsyncResults;
+import ru.t1.apupynin.common.aspects.support.MethodMetadata;
+import ru.t1.apupynin.common.aspects.support.MethodMetadataRegistry;
+import ru.t1.apupynin.common.aspects.trace.RequestTrace;
+import ru.t1.apupynin.common.aspects.trace.RequestTracer;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Aspect
 @RequiredArgsConstructor
 public class MetricAspect {
 
-    private final KafkaTemplate<String, Map<String, Object>> kafkaTemplate;
+    private final LogEventPipeline pipeline;
     private final ObjectMapper objectMapper;
+    private final List<LatencyObserver> latencyObservers;
+    private final MethodMetadataRegistry metadataRegistry;
+    private final AspectProperties properties;
+
+    /**
+     * {@code null} when request tracing is off.
+     */
+    private final RequestTracer tracer;
 
     @Value("${t1.metrics.threshold.ms:100}")
     private long thresholdMs;
@@ -32,48 +50,96 @@ public class MetricAspect {
     @Value("${t1.logging.topic:service_logs}")
     private String serviceLogsTopic;
 
-    @Around("@annotation(ru.t1.apupynin.common.aspects.annotation.Metric)")
-    public Object measureExecutionTime(ProceedingJoinPoint pjp) throws Throwable {
-        long start = System.currentTimeMillis();
+    /**
+     * Inside a traced request the call becomes a span of the trace, and a slow call is flagged on
+     * that span instead of being published as its own warning.
+     */
+    @Around("@annotation(metric)")
+    public Object measureExecutionTime(ProceedingJoinPoint pjp, Metric metric) throws Throwable {
+        long start = System.nanoTime();
+        RequestTrace trace = tracer != null ? tracer.current() : null;
+        Object result;
         try {
-            return pjp.proceed();
-        } finally {
-            long elapsed = System.currentTimeMillis() - start;
-            if (elapsed >= thresholdMs) {
-                sendWarning(pjp, elapsed);
+            result = pjp.proceed();
+        } catch (Throwable t) {
+            record(pjp, metric, trace, start, System.nanoTime() - start, true);
+            throw t;
+        }
+        MethodMetadata metadata = metadataRegistry.get(pjp);
+        if (metadata.getReturnKind().isAsync()) {
+            return AsyncResults.onCompletion(result, metadata.getReturnKind(), start,
+                    (value, error, elapsedNanos, request) -> record(pjp, metric, trace, start, elapsedNanos,
+                            error != null));
+        }
+        record(pjp, metric, trace, start, System.nanoTime() - start, false);
+        return result;
+    }
+
+    private void record(ProceedingJoinPoint pjp, Metric metric, RequestTrace trace, long startNanos,
+                        long elapsedNanos, boolean failed) {
+        MethodMetadata metadata = metadataRegistry.get(pjp);
+        for (LatencyObserver observer : latencyObservers) {
+            observer.record(metadata, elapsedNanos);
+        }
+        SlowCallThreshold threshold = metadata.getAttribute(MetricAspect.class, m -> createThreshold(metric));
+        boolean slow = threshold.isSlow(elapsedNanos);
+        if (trace != null && trace.addSpan("metric", metadata.getShortSignature(), startNanos, elapsedNanos,
+                failed, slow)) {
+            if (slow) {
+                log.warn("SLOW_METHOD {} took {} ms in trace {}", metadata.getShortSignature(),
+                        TimeUnit.NANOSECONDS.toMillis(elapsedNanos), trace.getTraceId());
             }
+            return;
+        }
+        if (slow) {
+            sendWarning(pjp, metadata, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), threshold);
+        }
+    }
+
+    private SlowCallThreshold createThreshold(Metric metric) {
+        AspectProperties.Adaptive adaptiveProperties = properties.getMetricsAdaptive();
+        boolean adaptive = metric.mode() == Metric.ThresholdMode.ADAPTIVE
+                || metric.mode() == Metric.ThresholdMode.DEFAULT && adaptiveProperties.isEnabled();
+        if (adaptive) {
+            return SlowCallThreshold.adaptive(adaptiveProperties.getAlpha(), adaptiveProperties.getDeviationFactor(),
+                    adaptiveProperties.getMinDeviationRatio(), adaptiveProperties.getWarmupCalls());
         }
+        return SlowCallThreshold.fixed(metric.thresholdMs() >= 0 ? metric.thresholdMs() : thresholdMs);
     }
 
-    private void sendWarning(ProceedingJoinPoint pjp, long elapsedMs) {
+    private void sendWarning(ProceedingJoinPoint pjp, MethodMetadata metadata, long elapsedMs,
+                             SlowCallThreshold threshold) {
         try {
-            String signature = pjp.getSignature().toLongString();
-            String params;
-            try {
-                params = objectMapper.writeValueAsString(pjp.getArgs());
-            } catch (Exception e) {
-                params = "[]";
-            }
+            Object[] args = pjp.getArgs();
+            long thresholdNanos = threshold.thresholdNanos();
+            long baselineNanos = threshold.isAdaptive() ? threshold.baselineNanos() : -1;
+
+            pipeline.publish(new LogEvent(serviceLogsTopic, null, null, () -> createPayload(
+                    metadata, elapsedMs, thresholdNanos, baselineNanos, args
+            )));
 
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("service", serviceName);
-            payload.put("type", "WARNING");
-            payload.put("event", "SLOW_METHOD");
-            payload.put("method", signature);
-            payload.put("elapsedMs", elapsedMs);
-            payload.put("params", params);
-
-            Message<Map<String, Object>> message = MessageBuilder
-                    .withPayload(payload)
-                    .setHeader(KafkaHeaders.TOPIC, serviceLogsTopic)
-                    .build();
-
-            kafkaTemplate.send(message);
-            log.warn("SLOW_METHOD {} took {} ms", signature, elapsedMs);
+            log.warn("SLOW_METHOD {} took {} ms", metadata.getShortSignature(), elapsedMs);
         } catch (Exception ex) {
             log.error("Failed to send slow method warning", ex);
         }
     }
-}
 
+    private Map<String, Object> createPayload(MethodMetadata metadata, long elapsedMs, long thresholdNanos,
+                                              long baselineNanos, Object[] args) {
+        JsonLogField params = JsonLogField.of(metadata.loggableArguments(args), objectMapper,
+                properties.getLogPayload().getMaxParametersBytes());
 
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("service", serviceName);
+        payload.put("type", "WARNING");
+        payload.put("event", "SLOW_METHOD");
+        payload.put("method", metadata.getLongSignature());
+        payload.put("elapsedMs", elapsedMs);
+        payload.put("thresholdMs", thresholdNanos / 1e6);
+        if (baselineNanos >= 0) {
+            payload.put("baselineMs", baselineNanos / 1e6);
+        }
+        payload.put("params", params);
+        return payload;
+    }
+}
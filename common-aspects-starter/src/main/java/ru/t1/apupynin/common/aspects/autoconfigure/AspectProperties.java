@@ -1,12 +1,45 @@
 package ru.t1.apupynin.common.aspects.autoconfigure;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import ru.t1.apupynin.common.aspects.logging.LogEncoding;
+import ru.t1.apupynin.common.aspects.logging.LogVerbosity;
+import ru.t1.apupynin.common.aspects.logging.OverflowPolicy;
+import ru.t1.apupynin.common.aspects.weaving.WeavingMode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @ConfigurationProperties(prefix = "t1")
 public class AspectProperties {
     private String loggingTopic = "service_logs";
     private long metricsThresholdMs = 100;
     private long cacheTtlMs = 60000;
+    private long cacheMaxSize = 10000;
+    private long cacheCleanupIntervalMs = 5000;
+    private double cacheRefreshAheadRatio = 0;
+    private int cacheRefreshThreads = 2;
+    private String cacheL2Directory = System.getProperty("java.io.tmpdir") + "/t1-cache";
+    private List<String> cacheCodecTrustedPackages = new ArrayList<>();
+    private Map<String, Cache> caches = new HashMap<>();
+    private Invalidation cacheInvalidation = new Invalidation();
+    private Warmup cacheWarmup = new Warmup();
+    private Pipeline logPipeline = new Pipeline();
+    private Payload logPayload = new Payload();
+    private RequestCapture requestCapture = new RequestCapture();
+    private Sampling logSampling = new Sampling();
+    private Histogram metricsHistogram = new Histogram();
+    private Adaptive metricsAdaptive = new Adaptive();
+    private Encoding logEncoding = new Encoding();
+    private Spool logSpool = new Spool();
+    private Dedup errorDedup = new Dedup();
+    private Resilience datasourceResilience = new Resilience();
+    private Tracing requestTrace = new Tracing();
+    private Weaving weaving = new Weaving();
+    private Verbosity aspectLogging = new Verbosity();
 
     public String getLoggingTopic() {
         return loggingTopic;
@@ -31,6 +64,960 @@ public class AspectProperties {
     public void setCacheTtlMs(long cacheTtlMs) {
         this.cacheTtlMs = cacheTtlMs;
     }
-}
 
+    public long getCacheMaxSize() {
+        return cacheMaxSize;
+    }
+
+    public void setCacheMaxSize(long cacheMaxSize) {
+        this.cacheMaxSize = cacheMaxSize;
+    }
+
+    public long getCacheCleanupIntervalMs() {
+        return cacheCleanupIntervalMs;
+    }
+
+    public void setCacheCleanupIntervalMs(long cacheCleanupIntervalMs) {
+        this.cacheCleanupIntervalMs = cacheCleanupIntervalMs;
+    }
+
+    public double getCacheRefreshAheadRatio() {
+        return cacheRefreshAheadRatio;
+    }
+
+    public void setCacheRefreshAheadRatio(double cacheRefreshAheadRatio) {
+        this.cacheRefreshAheadRatio = cacheRefreshAheadRatio;
+    }
+
+    public int getCacheRefreshThreads() {
+        return cacheRefreshThreads;
+    }
+
+    public void setCacheRefreshThreads(int cacheRefreshThreads) {
+        this.cacheRefreshThreads = cacheRefreshThreads;
+    }
+
+    public String getCacheL2Directory() {
+        return cacheL2Directory;
+    }
+
+    public void setCacheL2Directory(String cacheL2Directory) {
+        this.cacheL2Directory = cacheL2Directory;
+    }
+
+    public List<String> getCacheCodecTrustedPackages() {
+        return cacheCodecTrustedPackages;
+    }
+
+    public void setCacheCodecTrustedPackages(List<String> cacheCodecTrustedPackages) {
+        this.cacheCodecTrustedPackages = cacheCodecTrustedPackages;
+    }
+
+    public Map<String, Cache> getCaches() {
+        return caches;
+    }
+
+    public void setCaches(Map<String, Cache> caches) {
+        this.caches = caches;
+    }
+
+    public Invalidation getCacheInvalidation() {
+        return cacheInvalidation;
+    }
+
+    public void setCacheInvalidation(Invalidation cacheInvalidation) {
+        this.cacheInvalidation = cacheInvalidation;
+    }
+
+    public Warmup getCacheWarmup() {
+        return cacheWarmup;
+    }
+
+    public void setCacheWarmup(Warmup cacheWarmup) {
+        this.cacheWarmup = cacheWarmup;
+    }
+
+    public Pipeline getLogPipeline() {
+        return logPipeline;
+    }
+
+    public void setLogPipeline(Pipeline logPipeline) {
+        this.logPipeline = logPipeline;
+    }
+
+    public Payload getLogPayload() {
+        return logPayload;
+    }
+
+    public void setLogPayload(Payload logPayload) {
+        this.logPayload = logPayload;
+    }
+
+    public RequestCapture getRequestCapture() {
+        return requestCapture;
+    }
+
+    public void setRequestCapture(RequestCapture requestCapture) {
+        this.requestCapture = requestCapture;
+    }
+
+    public Sampling getLogSampling() {
+        return logSampling;
+    }
+
+    public void setLogSampling(Sampling logSampling) {
+        this.logSampling = logSampling;
+    }
+
+    public Histogram getMetricsHistogram() {
+        return metricsHistogram;
+    }
+
+    public void setMetricsHistogram(Histogram metricsHistogram) {
+        this.metricsHistogram = metricsHistogram;
+    }
+
+    public Adaptive getMetricsAdaptive() {
+        return metricsAdaptive;
+    }
+
+    public void setMetricsAdaptive(Adaptive metricsAdaptive) {
+        this.metricsAdaptive = metricsAdaptive;
+    }
+
+    public Encoding getLogEncoding() {
+        return logEncoding;
+    }
+
+    public void setLogEncoding(Encoding logEncoding) {
+        this.logEncoding = logEncoding;
+    }
+
+    public Spool getLogSpool() {
+        return logSpool;
+    }
+
+    public void setLogSpool(Spool logSpool) {
+        this.logSpool = logSpool;
+    }
+
+    public Dedup getErrorDedup() {
+        return errorDedup;
+    }
+
+    public void setErrorDedup(Dedup errorDedup) {
+        this.errorDedup = errorDedup;
+    }
+
+    public Resilience getDatasourceResilience() {
+        return datasourceResilience;
+    }
+
+    public void setDatasourceResilience(Resilience datasourceResilience) {
+        this.datasourceResilience = datasourceResilience;
+    }
+
+    public Tracing getRequestTrace() {
+        return requestTrace;
+    }
+
+    public void setRequestTrace(Tracing requestTrace) {
+        this.requestTrace = requestTrace;
+    }
+
+    public Weaving getWeaving() {
+        return weaving;
+    }
+
+    public void setWeaving(Weaving weaving) {
+        this.weaving = weaving;
+    }
+
+    public Verbosity getAspectLogging() {
+        return aspectLogging;
+    }
+
+    public void setAspectLogging(Verbosity aspectLogging) {
+        this.aspectLogging = aspectLogging;
+    }
+
+    /**
+     * Binds the properties from the environment, for conditions evaluated before the bean exists.
+     */
+    static AspectProperties bind(Environment environment) {
+        return Binder.get(environment).bind("t1", AspectProperties.class).orElseGet(AspectProperties::new);
+    }
+
+    public static class Cache {
+        private Long maxSize;
+        private Long maxWeight;
+        private Double refreshAheadRatio;
+        private Long ttlMs;
+        private Boolean cacheNulls;
+        private L2 l2 = new L2();
+
+        public Long getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(Long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public Long getMaxWeight() {
+            return maxWeight;
+        }
+
+        public void setMaxWeight(Long maxWeight) {
+            this.maxWeight = maxWeight;
+        }
+
+        public Double getRefreshAheadRatio() {
+            return refreshAheadRatio;
+        }
+
+        public void setRefreshAheadRatio(Double refreshAheadRatio) {
+            this.refreshAheadRatio = refreshAheadRatio;
+        }
+
+        public Long getTtlMs() {
+            return ttlMs;
+        }
+
+        public void setTtlMs(Long ttlMs) {
+            this.ttlMs = ttlMs;
+        }
+
+        public Boolean getCacheNulls() {
+            return cacheNulls;
+        }
+
+        public void setCacheNulls(Boolean cacheNulls) {
+            this.cacheNulls = cacheNulls;
+        }
+
+        public L2 getL2() {
+            return l2;
+        }
+
+        public void setL2(L2 l2) {
+            this.l2 = l2;
+        }
+    }
+
+    public static class L2 {
+        private boolean enabled;
+        private long capacityBytes = 64L * 1024 * 1024;
+        private boolean persistent;
+        private String directory;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getCapacityBytes() {
+            return capacityBytes;
+        }
+
+        public void setCapacityBytes(long capacityBytes) {
+            this.capacityBytes = capacityBytes;
+        }
+
+        public boolean isPersistent() {
+            return persistent;
+        }
+
+        public void setPersistent(boolean persistent) {
+            this.persistent = persistent;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+    }
+
+    public static class Warmup {
+        private boolean snapshotEnabled;
+        private String directory = System.getProperty("java.io.tmpdir") + "/t1-cache-snapshot";
+        private List<String> cacheNames = new ArrayList<>();
+        private int maxEntries = 1000;
+        private long snapshotIntervalMs = 0;
+        private long timeoutMs = 30000;
+        private int threads = 4;
+
+        public boolean isSnapshotEnabled() {
+            return snapshotEnabled;
+        }
+
+        public void setSnapshotEnabled(boolean snapshotEnabled) {
+            this.snapshotEnabled = snapshotEnabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public List<String> getCacheNames() {
+            return cacheNames;
+        }
+
+        public void setCacheNames(List<String> cacheNames) {
+            this.cacheNames = cacheNames;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public long getSnapshotIntervalMs() {
+            return snapshotIntervalMs;
+        }
+
+        public void setSnapshotIntervalMs(long snapshotIntervalMs) {
+            this.snapshotIntervalMs = snapshotIntervalMs;
+        }
+
+        public long getTimeoutMs() {
+            return timeoutMs;
+        }
+
+        public void setTimeoutMs(long timeoutMs) {
+            this.timeoutMs = timeoutMs;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+    }
+
+    public static class Invalidation {
+        private boolean enabled;
+        private String topic;
+        private long batchIntervalMs = 50;
+        private int maxBatchSize = 500;
+        private long fallbackTtlMs = 5000;
+        private long fallbackPeriodMs = 60000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+
+        public void setTopic(String topic) {
+            this.topic = topic;
+        }
+
+        public long getBatchIntervalMs() {
+            return batchIntervalMs;
+        }
+
+        public void setBatchIntervalMs(long batchIntervalMs) {
+            this.batchIntervalMs = batchIntervalMs;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public void setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        public long getFallbackTtlMs() {
+            return fallbackTtlMs;
+        }
+
+        public void setFallbackTtlMs(long fallbackTtlMs) {
+            this.fallbackTtlMs = fallbackTtlMs;
+        }
+
+        public long getFallbackPeriodMs() {
+            return fallbackPeriodMs;
+        }
 
+        public void setFallbackPeriodMs(long fallbackPeriodMs) {
+            this.fallbackPeriodMs = fallbackPeriodMs;
+        }
+    }
+
+    public static class Pipeline {
+        private int capacity = 8192;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+        private double sampleRatio = 0.1;
+        private long blockTimeoutMs = 50;
+        private int batchSize = 256;
+        private long idleWaitMs = 5;
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public OverflowPolicy getOverflowPolicy() {
+            return overflowPolicy;
+        }
+
+        public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+        }
+
+        public double getSampleRatio() {
+            return sampleRatio;
+        }
+
+        public void setSampleRatio(double sampleRatio) {
+            this.sampleRatio = sampleRatio;
+        }
+
+        public long getBlockTimeoutMs() {
+            return blockTimeoutMs;
+        }
+
+        public void setBlockTimeoutMs(long blockTimeoutMs) {
+            this.blockTimeoutMs = blockTimeoutMs;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getIdleWaitMs() {
+            return idleWaitMs;
+        }
+
+        public void setIdleWaitMs(long idleWaitMs) {
+            this.idleWaitMs = idleWaitMs;
+        }
+    }
+
+    public static class Payload {
+        private int maxParametersBytes = 16384;
+        private int maxResultBytes = 65536;
+        private int maxStackTraceChars = 32768;
+
+        public int getMaxParametersBytes() {
+            return maxParametersBytes;
+        }
+
+        public void setMaxParametersBytes(int maxParametersBytes) {
+            this.maxParametersBytes = maxParametersBytes;
+        }
+
+        public int getMaxResultBytes() {
+            return maxResultBytes;
+        }
+
+        public void setMaxResultBytes(int maxResultBytes) {
+            this.maxResultBytes = maxResultBytes;
+        }
+
+        public int getMaxStackTraceChars() {
+            return maxStackTraceChars;
+        }
+
+        public void setMaxStackTraceChars(int maxStackTraceChars) {
+            this.maxStackTraceChars = maxStackTraceChars;
+        }
+    }
+
+    public static class RequestCapture {
+        private boolean enabled = true;
+        private int maxBytes = 65536;
+        private int poolSize = 64;
+        private List<String> contentTypes = new ArrayList<>(List.of(
+                "application/json", "application/*+json", "application/xml", "application/*+xml",
+                "text/*", "application/x-www-form-urlencoded"));
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxBytes() {
+            return maxBytes;
+        }
+
+        public void setMaxBytes(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public void setPoolSize(int poolSize) {
+            this.poolSize = poolSize;
+        }
+
+        public List<String> getContentTypes() {
+            return contentTypes;
+        }
+
+        public void setContentTypes(List<String> contentTypes) {
+            this.contentTypes = contentTypes;
+        }
+    }
+
+    public static class Sampling {
+        private double sampleRate = 1.0;
+        private double ratePerSecond = 0;
+        private int burst = 0;
+        private long slowThresholdMs = 1000;
+
+        public double getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(double sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        public double getRatePerSecond() {
+            return ratePerSecond;
+        }
+
+        public void setRatePerSecond(double ratePerSecond) {
+            this.ratePerSecond = ratePerSecond;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+
+        public long getSlowThresholdMs() {
+            return slowThresholdMs;
+        }
+
+        public void setSlowThresholdMs(long slowThresholdMs) {
+            this.slowThresholdMs = slowThresholdMs;
+        }
+    }
+
+    public static class Histogram {
+        private boolean enabled = true;
+        private long publishIntervalMs = 60000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getPublishIntervalMs() {
+            return publishIntervalMs;
+        }
+
+        public void setPublishIntervalMs(long publishIntervalMs) {
+            this.publishIntervalMs = publishIntervalMs;
+        }
+    }
+
+    public static class Adaptive {
+        private boolean enabled;
+        private double alpha = 0.05;
+        private double deviationFactor = 3.0;
+        private double minDeviationRatio = 0.5;
+        private long warmupCalls = 100;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getAlpha() {
+            return alpha;
+        }
+
+        public void setAlpha(double alpha) {
+            this.alpha = alpha;
+        }
+
+        public double getDeviationFactor() {
+            return deviationFactor;
+        }
+
+        public void setDeviationFactor(double deviationFactor) {
+            this.deviationFactor = deviationFactor;
+        }
+
+        public double getMinDeviationRatio() {
+            return minDeviationRatio;
+        }
+
+        public void setMinDeviationRatio(double minDeviationRatio) {
+            this.minDeviationRatio = minDeviationRatio;
+        }
+
+        public long getWarmupCalls() {
+            return warmupCalls;
+        }
+
+        public void setWarmupCalls(long warmupCalls) {
+            this.warmupCalls = warmupCalls;
+        }
+    }
+
+    public static class Encoding {
+        private LogEncoding format = LogEncoding.JSON;
+        private int maxEventsPerMessage = 1;
+        private boolean compressionEnabled = true;
+        private int compressionThresholdBytes = 1024;
+
+        public LogEncoding getFormat() {
+            return format;
+        }
+
+        public void setFormat(LogEncoding format) {
+            this.format = format;
+        }
+
+        public int getMaxEventsPerMessage() {
+            return maxEventsPerMessage;
+        }
+
+        public void setMaxEventsPerMessage(int maxEventsPerMessage) {
+            this.maxEventsPerMessage = maxEventsPerMessage;
+        }
+
+        public boolean isCompressionEnabled() {
+            return compressionEnabled;
+        }
+
+        public void setCompressionEnabled(boolean compressionEnabled) {
+            this.compressionEnabled = compressionEnabled;
+        }
+
+        public int getCompressionThresholdBytes() {
+            return compressionThresholdBytes;
+        }
+
+        public void setCompressionThresholdBytes(int compressionThresholdBytes) {
+            this.compressionThresholdBytes = compressionThresholdBytes;
+        }
+    }
+
+    public static class Spool {
+        private boolean enabled;
+        private String directory = System.getProperty("java.io.tmpdir") + "/t1-log-spool";
+        private int segmentBytes = 16 * 1024 * 1024;
+        private long maxBytes = 256L * 1024 * 1024;
+        private double replayRatePerSecond = 500;
+        private int replayBatchSize = 100;
+        private long retryBackoffMs = 1000;
+        private long ackTimeoutMs = 30000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public int getSegmentBytes() {
+            return segmentBytes;
+        }
+
+        public void setSegmentBytes(int segmentBytes) {
+            this.segmentBytes = segmentBytes;
+        }
+
+        public long getMaxBytes() {
+            return maxBytes;
+        }
+
+        public void setMaxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        public double getReplayRatePerSecond() {
+            return replayRatePerSecond;
+        }
+
+        public void setReplayRatePerSecond(double replayRatePerSecond) {
+            this.replayRatePerSecond = replayRatePerSecond;
+        }
+
+        public int getReplayBatchSize() {
+            return replayBatchSize;
+        }
+
+        public void setReplayBatchSize(int replayBatchSize) {
+            this.replayBatchSize = replayBatchSize;
+        }
+
+        public long getRetryBackoffMs() {
+            return retryBackoffMs;
+        }
+
+        public void setRetryBackoffMs(long retryBackoffMs) {
+            this.retryBackoffMs = retryBackoffMs;
+        }
+
+        public long getAckTimeoutMs() {
+            return ackTimeoutMs;
+        }
+
+        public void setAckTimeoutMs(long ackTimeoutMs) {
+            this.ackTimeoutMs = ackTimeoutMs;
+        }
+    }
+
+    public static class Dedup {
+        private boolean enabled = true;
+        private long windowMs = 60000;
+        private int fingerprintFrames = 5;
+        private int stackFrames = 10;
+        private int maxFingerprints = 10000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getWindowMs() {
+            return windowMs;
+        }
+
+        public void setWindowMs(long windowMs) {
+            this.windowMs = windowMs;
+        }
+
+        public int getFingerprintFrames() {
+            return fingerprintFrames;
+        }
+
+        public void setFingerprintFrames(int fingerprintFrames) {
+            this.fingerprintFrames = fingerprintFrames;
+        }
+
+        public int getStackFrames() {
+            return stackFrames;
+        }
+
+        public void setStackFrames(int stackFrames) {
+            this.stackFrames = stackFrames;
+        }
+
+        public int getMaxFingerprints() {
+            return maxFingerprints;
+        }
+
+        public void setMaxFingerprints(int maxFingerprints) {
+            this.maxFingerprints = maxFingerprints;
+        }
+    }
+
+    public static class Resilience {
+        private boolean enabled;
+        private double failureRateThreshold = 0.5;
+        private int minimumCalls = 20;
+        private long windowMs = 10000;
+        private int windowBuckets = 10;
+        private long openDurationMs = 30000;
+        private int halfOpenCalls = 5;
+        private int maxConcurrentCalls = 25;
+        private long maxWaitMs = 0;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getFailureRateThreshold() {
+            return failureRateThreshold;
+        }
+
+        public void setFailureRateThreshold(double failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+        }
+
+        public int getMinimumCalls() {
+            return minimumCalls;
+        }
+
+        public void setMinimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+        }
+
+        public long getWindowMs() {
+            return windowMs;
+        }
+
+        public void setWindowMs(long windowMs) {
+            this.windowMs = windowMs;
+        }
+
+        public int getWindowBuckets() {
+            return windowBuckets;
+        }
+
+        public void setWindowBuckets(int windowBuckets) {
+            this.windowBuckets = windowBuckets;
+        }
+
+        public long getOpenDurationMs() {
+            return openDurationMs;
+        }
+
+        public void setOpenDurationMs(long openDurationMs) {
+            this.openDurationMs = openDurationMs;
+        }
+
+        public int getHalfOpenCalls() {
+            return halfOpenCalls;
+        }
+
+        public void setHalfOpenCalls(int halfOpenCalls) {
+            this.halfOpenCalls = halfOpenCalls;
+        }
+
+        public int getMaxConcurrentCalls() {
+            return maxConcurrentCalls;
+        }
+
+        public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+            this.maxConcurrentCalls = maxConcurrentCalls;
+        }
+
+        public long getMaxWaitMs() {
+            return maxWaitMs;
+        }
+
+        public void setMaxWaitMs(long maxWaitMs) {
+            this.maxWaitMs = maxWaitMs;
+        }
+    }
+
+    public static class Tracing {
+        private boolean enabled;
+        private int maxSpans = 64;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxSpans() {
+            return maxSpans;
+        }
+
+        public void setMaxSpans(int maxSpans) {
+            this.maxSpans = maxSpans;
+        }
+    }
+
+    public static class Weaving {
+        private WeavingMode mode = WeavingMode.PROXY;
+
+        public WeavingMode getMode() {
+            return mode;
+        }
+
+        public void setMode(WeavingMode mode) {
+            this.mode = mode;
+        }
+    }
+
+    public static class Verbosity {
+        private LogVerbosity cache = LogVerbosity.SUMMARY;
+        private LogVerbosity httpIncome = LogVerbosity.SUMMARY;
+        private LogVerbosity httpOutcome = LogVerbosity.SUMMARY;
+        private long summaryIntervalMs = 60000;
+
+        public LogVerbosity getCache() {
+            return cache;
+        }
+
+        public void setCache(LogVerbosity cache) {
+            this.cache = cache;
+        }
+
+        public LogVerbosity getHttpIncome() {
+            return httpIncome;
+        }
+
+        public void setHttpIncome(LogVerbosity httpIncome) {
+            this.httpIncome = httpIncome;
+        }
+
+        public LogVerbosity getHttpOutcome() {
+            return httpOutcome;
+        }
+
+        public void setHttpOutcome(LogVerbosity httpOutcome) {
+            this.httpOutcome = httpOutcome;
+        }
+
+        public long getSummaryIntervalMs() {
+            return summaryIntervalMs;
+        }
+
+        public void setSummaryIntervalMs(long summaryIntervalMs) {
+            this.summaryIntervalMs = summaryIntervalMs;
+        }
+    }
+}
@@ -1,18 +1,87 @@
 package ru.t1.apupynin.common.aspects.autoconfigure;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackages;
+import org.springframework.boot.autoconfigure.condition.AnyNestedCondition;
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.web.filter.reactive.ServerWebExchangeContextFilter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import ru.t1.apupynin.common.aspects.aspect.MetricAspect;
 import ru.t1.apupynin.common.aspects.aspect.CachedAspect;
 import ru.t1.apupynin.common.aspects.aspect.HttpIncomeRequestLogAspect;
 import ru.t1.apupynin.common.aspects.aspect.HttpOutcomeRequestLogAspect;
 import ru.t1.apupynin.common.aspects.aspect.LogDatasourceErrorAspect;
+import ru.t1.apupynin.common.aspects.cache.CacheCodec;
+import ru.t1.apupynin.common.aspects.cache.CacheDeclarations;
+import ru.t1.apupynin.common.aspects.cache.CacheEngineFactory;
+import ru.t1.apupynin.common.aspects.cache.CacheExpressionEvaluator;
+import ru.t1.apupynin.common.aspects.cache.CacheInvalidationBus;
+import ru.t1.apupynin.common.aspects.cache.CacheInvalidator;
+import ru.t1.apupynin.common.aspects.cache.CacheKeyResolver;
+import ru.t1.apupynin.common.aspects.cache.CacheOperationSource;
+import ru.t1.apupynin.common.aspects.cache.CachePreloader;
+import ru.t1.apupynin.common.aspects.cache.CacheRegistry;
+import ru.t1.apupynin.common.aspects.cache.CacheSnapshotStore;
+import ru.t1.apupynin.common.aspects.cache.CacheStats;
+import ru.t1.apupynin.common.aspects.cache.CacheWarmer;
+import ru.t1.apupynin.common.aspects.cache.DefaultCacheEngineFactory;
+import ru.t1.apupynin.common.aspects.cache.DefaultKeyGenerator;
+import ru.t1.apupynin.common.aspects.cache.JacksonCacheCodec;
+import ru.t1.apupynin.common.aspects.cache.KafkaCacheInvalidationBus;
+import ru.t1.apupynin.common.aspects.cache.KeyGenerator;
+import ru.t1.apupynin.common.aspects.cache.Weigher;
+import ru.t1.apupynin.common.aspects.logging.AspectLogSummary;
+import ru.t1.apupynin.common.aspects.logging.BinaryLogEventCodec;
+import ru.t1.apupynin.common.aspects.logging.CodecKafkaLogEventSink;
+import ru.t1.apupynin.common.aspects.logging.ErrorDeduplicator;
+import ru.t1.apupynin.common.aspects.logging.KafkaLogEventSink;
+import ru.t1.apupynin.common.aspects.logging.LogEncoding;
+import ru.t1.apupynin.common.aspects.logging.LogEventCodec;
+import ru.t1.apupynin.common.aspects.logging.LogEventPipeline;
+import ru.t1.apupynin.common.aspects.logging.LogEventSink;
+import ru.t1.apupynin.common.aspects.logging.LogEventSpool;
+import ru.t1.apupynin.common.aspects.logging.LogSampler;
+import ru.t1.apupynin.common.aspects.logging.LogVerbosity;
+import ru.t1.apupynin.common.aspects.metrics.CommonAspectsMeterBinder;
+import ru.t1.apupynin.common.aspects.metrics.LatencyObserver;
+import ru.t1.apupynin.common.aspects.metrics.LatencyRecorder;
+import ru.t1.apupynin.common.aspects.resilience.ResilienceRegistry;
+import ru.t1.apupynin.common.aspects.support.MethodMetadataRegistry;
+import ru.t1.apupynin.common.aspects.trace.RequestTracer;
+import ru.t1.apupynin.common.aspects.weaving.AnnotationDelegatingAspect;
+import ru.t1.apupynin.common.aspects.weaving.AspectDelegates;
+import ru.t1.apupynin.common.aspects.weaving.AutoProxyExclusionPostProcessor;
+import ru.t1.apupynin.common.aspects.weaving.WeavingMode;
+import ru.t1.apupynin.common.aspects.web.RequestBodyCaptureFilter;
 
 @AutoConfiguration
 @ConditionalOnClass(KafkaTemplate.class)
@@ -21,43 +90,410 @@ public class CommonAspectsAutoConfiguration {
 
     @Bean
     @ConditionalOnMissingBean
-    public MetricAspect metricAspect(KafkaTemplate<String, Map<String, Object>> kafkaTemplate,
-                                     ObjectMapper objectMapper) {
-        return new MetricAspect(kafkaTemplate, objectMapper);
+    public MethodMetadataRegistry methodMetadataRegistry() {
+        return new MethodMetadataRegistry();
     }
 
     @Bean
     @ConditionalOnMissingBean
-    public CachedAspect cachedAspect() {
-        return new CachedAspect();
+    public LogEventSink logEventSink(KafkaTemplate<String, Map<String, Object>> kafkaTemplate) {
+        return new KafkaLogEventSink(kafkaTemplate);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public LogEventPipeline logEventPipeline(LogEventSink logEventSink, ObjectProvider<LogEventSpool> logEventSpool,
+                                             AspectProperties properties) {
+        AspectProperties.Pipeline pipeline = properties.getLogPipeline();
+        LogEventSpool spool = logEventSpool.getIfAvailable();
+        return new LogEventPipeline(spool != null ? spool.sink() : logEventSink, pipeline.getCapacity(), pipeline.getOverflowPolicy(),
+                pipeline.getSampleRatio(), pipeline.getBlockTimeoutMs(), pipeline.getBatchSize(),
+                pipeline.getIdleWaitMs());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public LogSampler logSampler(AspectProperties properties) {
+        AspectProperties.Sampling sampling = properties.getLogSampling();
+        return new LogSampler(sampling.getSampleRate(), sampling.getRatePerSecond(), sampling.getBurst(),
+                sampling.getSlowThresholdMs());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public AspectLogSummary aspectLogSummary(AspectProperties properties, CacheRegistry cacheRegistry) {
+        AspectProperties.Verbosity verbosity = properties.getAspectLogging();
+        AspectLogSummary summary = new AspectLogSummary(verbosity.getSummaryIntervalMs());
+        if (verbosity.getCache() == LogVerbosity.SUMMARY) {
+            summary.addSection("CACHE_SUMMARY", () -> {
+                Map<String, long[]> totals = new HashMap<>();
+                cacheRegistry.getCaches().forEach((name, cache) -> {
+                    CacheStats stats = cache.stats();
+                    totals.put(name, new long[]{stats.hits(), stats.misses(), stats.puts(), stats.evictions()});
+                });
+                return totals;
+            }, "hits", "misses", "puts", "evictions");
+        }
+        return summary;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "t1.metrics-histogram", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public LatencyRecorder latencyRecorder(LogEventPipeline logEventPipeline, AspectProperties properties,
+                                           Environment environment) {
+        return new LatencyRecorder(logEventPipeline, environment.getProperty("t1.logging.topic", "service_logs"),
+                environment.getProperty("spring.application.name", "service"),
+                properties.getMetricsHistogram().getPublishIntervalMs());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public MetricAspect metricAspect(LogEventPipeline logEventPipeline, ObjectMapper objectMapper,
+                                     ObjectProvider<LatencyObserver> latencyObservers,
+                                     MethodMetadataRegistry methodMetadataRegistry, AspectProperties properties,
+                                     ObjectProvider<RequestTracer> requestTracer) {
+        return new MetricAspect(logEventPipeline, objectMapper, latencyObservers.orderedStream().toList(),
+                methodMetadataRegistry, properties, requestTracer.getIfAvailable());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public CacheCodec cacheCodec(ObjectMapper objectMapper, AspectProperties properties, BeanFactory beanFactory) {
+        List<String> trustedPackages = properties.getCacheCodecTrustedPackages();
+        if (trustedPackages.isEmpty() && AutoConfigurationPackages.has(beanFactory)) {
+            trustedPackages = AutoConfigurationPackages.get(beanFactory);
+        }
+        return new JacksonCacheCodec(objectMapper, trustedPackages);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public CacheEngineFactory cacheEngineFactory(ObjectProvider<Weigher> weigher, CacheCodec cacheCodec) {
+        return new DefaultCacheEngineFactory(weigher.getIfAvailable(() -> Weigher.SINGLETON), cacheCodec);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public CacheDeclarations cacheDeclarations(ListableBeanFactory beanFactory) {
+        return new CacheDeclarations(beanFactory);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public CacheRegistry cacheRegistry(AspectProperties properties, CacheEngineFactory cacheEngineFactory,
+                                       CacheDeclarations cacheDeclarations) {
+        return new CacheRegistry(properties, cacheEngineFactory, cacheDeclarations);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public KeyGenerator cacheKeyGenerator() {
+        return new DefaultKeyGenerator();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public CacheExpressionEvaluator cacheExpressionEvaluator(MethodMetadataRegistry methodMetadataRegistry) {
+        return new CacheExpressionEvaluator(methodMetadataRegistry);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public CacheKeyResolver cacheKeyResolver(KeyGenerator keyGenerator, CacheExpressionEvaluator evaluator,
+                                             BeanFactory beanFactory) {
+        return new CacheKeyResolver(keyGenerator, evaluator, beanFactory);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public CacheOperationSource cacheOperationSource(CacheRegistry cacheRegistry, CacheKeyResolver cacheKeyResolver,
+                                                     AspectProperties properties, Environment environment) {
+        long defaultTtlMs = environment.getProperty("t1.cache.ttl.ms", Long.class, properties.getCacheTtlMs());
+        return new CacheOperationSource(cacheRegistry, cacheKeyResolver, properties, defaultTtlMs);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "t1.cache-invalidation", name = "enabled", havingValue = "true")
+    public CacheInvalidationBus cacheInvalidationBus(KafkaTemplate<String, Map<String, Object>> kafkaTemplate,
+                                                     ObjectMapper objectMapper,
+                                                     AspectProperties properties, Environment environment) {
+        AspectProperties.Invalidation invalidation = properties.getCacheInvalidation();
+        String serviceName = environment.getProperty("spring.application.name", "service");
+        String topic = invalidation.getTopic() != null ? invalidation.getTopic() : serviceName + "_cache_invalidation";
+        return new KafkaCacheInvalidationBus(kafkaTemplate, objectMapper, topic, serviceName,
+                invalidation.getBatchIntervalMs(), invalidation.getMaxBatchSize());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public CacheInvalidator cacheInvalidator(CacheRegistry cacheRegistry, ObjectProvider<CacheInvalidationBus> bus,
+                                             AspectProperties properties) {
+        AspectProperties.Invalidation invalidation = properties.getCacheInvalidation();
+        return new CacheInvalidator(cacheRegistry, bus.getIfAvailable(), invalidation.getFallbackTtlMs(),
+                invalidation.getFallbackPeriodMs());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "t1.cache-warmup", name = "snapshot-enabled", havingValue = "true")
+    public CacheSnapshotStore cacheSnapshotStore(CacheCodec cacheCodec, AspectProperties properties) {
+        return new CacheSnapshotStore(Path.of(properties.getCacheWarmup().getDirectory()), cacheCodec);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @Conditional(CacheWarmupCondition.class)
+    public CacheWarmer cacheWarmer(CacheRegistry cacheRegistry, CacheOperationSource cacheOperationSource,
+                                   ObjectProvider<CacheSnapshotStore> cacheSnapshotStore,
+                                   ObjectProvider<CachePreloader> cachePreloaders,
+                                   CacheDeclarations cacheDeclarations, AspectProperties properties) {
+        AspectProperties.Warmup warmup = properties.getCacheWarmup();
+        return new CacheWarmer(cacheRegistry, cacheOperationSource, cacheSnapshotStore.getIfAvailable(),
+                cachePreloaders.orderedStream().toList(), cacheDeclarations, warmup.getCacheNames(),
+                warmup.getMaxEntries(), warmup.getSnapshotIntervalMs(), warmup.getTimeoutMs(), warmup.getThreads());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public CachedAspect cachedAspect(CacheRegistry cacheRegistry, CacheOperationSource cacheOperationSource,
+                                     CacheExpressionEvaluator cacheExpressionEvaluator,
+                                     CacheInvalidator cacheInvalidator,
+                                     MethodMetadataRegistry methodMetadataRegistry, AspectProperties properties,
+                                     ObjectProvider<RequestTracer> requestTracer) {
+        return new CachedAspect(cacheRegistry, cacheOperationSource, cacheExpressionEvaluator, cacheInvalidator,
+                methodMetadataRegistry, properties, requestTracer.getIfAvailable());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "t1.request-trace", name = "enabled", havingValue = "true")
+    public RequestTracer requestTracer(AspectProperties properties) {
+        return new RequestTracer(properties.getRequestTrace().getMaxSpans());
     }
 
     @Bean
     @ConditionalOnMissingBean
     public HttpIncomeRequestLogAspect httpIncomeRequestLogAspect(
-            KafkaTemplate<String, Map<String, Object>> kafkaTemplate,
-            ObjectMapper objectMapper
+            LogEventPipeline logEventPipeline,
+            ObjectMapper objectMapper,
+            LogSampler logSampler,
+            MethodMetadataRegistry methodMetadataRegistry,
+            AspectProperties properties,
+            AspectLogSummary aspectLogSummary,
+            ObjectProvider<RequestTracer> requestTracer
     ) {
-        return new HttpIncomeRequestLogAspect(kafkaTemplate, objectMapper);
+        return new HttpIncomeRequestLogAspect(logEventPipeline, objectMapper, logSampler, methodMetadataRegistry,
+                properties, aspectLogSummary, requestTracer.getIfAvailable());
     }
 
     @Bean
     @ConditionalOnMissingBean
     public HttpOutcomeRequestLogAspect httpOutcomeRequestLogAspect(
-            KafkaTemplate<String, Map<String, Object>> kafkaTemplate,
-            ObjectMapper objectMapper
+            LogEventPipeline logEventPipeline,
+            ObjectMapper objectMapper,
+            LogSampler logSampler,
+            MethodMetadataRegistry methodMetadataRegistry,
+            AspectProperties properties,
+            AspectLogSummary aspectLogSummary,
+            ObjectProvider<RequestTracer> requestTracer
     ) {
-        return new HttpOutcomeRequestLogAspect(kafkaTemplate, objectMapper);
+        return new HttpOutcomeRequestLogAspect(logEventPipeline, objectMapper, logSampler, methodMetadataRegistry,
+                properties, aspectLogSummary, requestTracer.getIfAvailable());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "t1.error-dedup", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public ErrorDeduplicator errorDeduplicator(AspectProperties properties) {
+        AspectProperties.Dedup dedup = properties.getErrorDedup();
+        return new ErrorDeduplicator(dedup.getWindowMs(), dedup.getFingerprintFrames(), dedup.getMaxFingerprints());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "t1.datasource-resilience", name = "enabled", havingValue = "true")
+    public ResilienceRegistry resilienceRegistry(AspectProperties properties) {
+        AspectProperties.Resilience resilience = properties.getDatasourceResilience();
+        return new ResilienceRegistry(resilience.getFailureRateThreshold(), resilience.getMinimumCalls(),
+                resilience.getWindowMs(), resilience.getWindowBuckets(), resilience.getOpenDurationMs(),
+                resilience.getHalfOpenCalls(), resilience.getMaxConcurrentCalls(), resilience.getMaxWaitMs());
     }
 
     @Bean
     @ConditionalOnMissingBean
     public LogDatasourceErrorAspect logDatasourceErrorAspect(
-            KafkaTemplate<String, Map<String, Object>> kafkaTemplate,
-            ObjectMapper objectMapper
+            LogEventPipeline logEventPipeline,
+            ObjectMapper objectMapper,
+            MethodMetadataRegistry methodMetadataRegistry,
+            AspectProperties properties,
+            ObjectProvider<ErrorDeduplicator> errorDeduplicator,
+            ObjectProvider<ResilienceRegistry> resilienceRegistry,
+            ObjectProvider<RequestTracer> requestTracer
     ) {
-        return new LogDatasourceErrorAspect(kafkaTemplate, objectMapper);
+        return new LogDatasourceErrorAspect(logEventPipeline, objectMapper, methodMetadataRegistry, properties,
+                errorDeduplicator.getIfAvailable(), resilienceRegistry.getIfAvailable(),
+                requestTracer.getIfAvailable());
     }
-}
 
+    /**
+     * Registers the cache warmer only when it has something to do: a snapshot store or at least one preloader.
+     */
+    static class CacheWarmupCondition extends AnyNestedCondition {
+
+        CacheWarmupCondition() {
+            super(ConfigurationPhase.REGISTER_BEAN);
+        }
+
+        @ConditionalOnBean(CacheSnapshotStore.class)
+        static class SnapshotStore {
+        }
 
+        @ConditionalOnBean(CachePreloader.class)
+        static class Preloaders {
+        }
+    }
+
+    /**
+     * Sends log events as codec bytes through a producer built from the application's producer
+     * configuration, keeping the application's own value serializer untouched.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @Conditional(BinaryLogEncodingCondition.class)
+    static class BinaryLogEncodingConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public LogEventCodec logEventCodec(ObjectMapper objectMapper, AspectProperties properties) {
+            AspectProperties.Encoding encoding = properties.getLogEncoding();
+            return new BinaryLogEventCodec(objectMapper, encoding.isCompressionEnabled(),
+                    encoding.getCompressionThresholdBytes());
+        }
+
+        @Bean
+        @ConditionalOnMissingBean(LogEventSink.class)
+        public CodecKafkaLogEventSink codecLogEventSink(ProducerFactory<?, ?> producerFactory, LogEventCodec codec,
+                                                        AspectProperties properties) {
+            KafkaTemplate<String, byte[]> kafkaTemplate = new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(
+                    producerFactory.getConfigurationProperties(), new StringSerializer(), new ByteArraySerializer()));
+            return new CodecKafkaLogEventSink(kafkaTemplate, codec, properties.getLogEncoding().getMaxEventsPerMessage());
+        }
+    }
+
+    /**
+     * Reads {@code t1.log-encoding.format} through {@link AspectProperties}, so its type and default live there.
+     */
+    static class BinaryLogEncodingCondition extends SpringBootCondition {
+
+        @Override
+        public ConditionOutcome getMatchOutcome(ConditionContext context, AnnotatedTypeMetadata metadata) {
+            LogEncoding format = AspectProperties.bind(context.getEnvironment()).getLogEncoding().getFormat();
+            return format == LogEncoding.BINARY
+                    ? ConditionOutcome.match("t1.log-encoding.format is " + format)
+                    : ConditionOutcome.noMatch("t1.log-encoding.format is " + format);
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(prefix = "t1.log-spool", name = "enabled", havingValue = "true")
+    static class LogSpoolConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public LogEventSpool logEventSpool(LogEventSink logEventSink, ObjectMapper objectMapper,
+                                           AspectProperties properties) throws IOException {
+            AspectProperties.Spool spool = properties.getLogSpool();
+            return new LogEventSpool(logEventSink, objectMapper, Path.of(spool.getDirectory()), spool.getSegmentBytes(),
+                    spool.getMaxBytes(), spool.getReplayRatePerSecond(), spool.getReplayBatchSize(),
+                    spool.getRetryBackoffMs(), spool.getAckTimeoutMs());
+        }
+    }
+
+    /**
+     * Applies the aspects through AspectJ weaving instead of proxies, see {@link AnnotationDelegatingAspect}.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @Conditional(AspectJWeavingCondition.class)
+    static class AspectJWeavingConfiguration {
+
+        @Bean
+        public static AutoProxyExclusionPostProcessor aspectAutoProxyExclusion() {
+            return new AutoProxyExclusionPostProcessor(CachedAspect.class, MetricAspect.class,
+                    HttpIncomeRequestLogAspect.class, HttpOutcomeRequestLogAspect.class, LogDatasourceErrorAspect.class);
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        public AspectDelegates aspectDelegates(ObjectProvider<CachedAspect> cachedAspect,
+                                               ObjectProvider<MetricAspect> metricAspect,
+                                               ObjectProvider<HttpIncomeRequestLogAspect> httpIncomeRequestLogAspect,
+                                               ObjectProvider<HttpOutcomeRequestLogAspect> httpOutcomeRequestLogAspect,
+                                               ObjectProvider<LogDatasourceErrorAspect> logDatasourceErrorAspect) {
+            return new AspectDelegates(cachedAspect.getIfAvailable(), metricAspect.getIfAvailable(),
+                    httpIncomeRequestLogAspect.getIfAvailable(), httpOutcomeRequestLogAspect.getIfAvailable(),
+                    logDatasourceErrorAspect.getIfAvailable());
+        }
+    }
+
+    /**
+     * Reads {@code t1.weaving.mode} through {@link AspectProperties}, so its type and default live there.
+     */
+    static class AspectJWeavingCondition extends SpringBootCondition {
+
+        @Override
+        public ConditionOutcome getMatchOutcome(ConditionContext context, AnnotatedTypeMetadata metadata) {
+            WeavingMode mode = AspectProperties.bind(context.getEnvironment()).getWeaving().getMode();
+            return mode == WeavingMode.ASPECTJ
+                    ? ConditionOutcome.match("t1.weaving.mode is " + mode)
+                    : ConditionOutcome.noMatch("t1.weaving.mode is " + mode);
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    @ConditionalOnProperty(prefix = "t1.request-capture", name = "enabled", havingValue = "true", matchIfMissing = true)
+    static class RequestBodyCaptureConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean(name = "requestBodyCaptureFilter")
+        public FilterRegistrationBean<RequestBodyCaptureFilter> requestBodyCaptureFilter(AspectProperties properties) {
+            AspectProperties.RequestCapture capture = properties.getRequestCapture();
+            FilterRegistrationBean<RequestBodyCaptureFilter> registration = new FilterRegistrationBean<>(
+                    new RequestBodyCaptureFilter(capture.getMaxBytes(), capture.getContentTypes(), capture.getPoolSize()));
+            registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+            return registration;
+        }
+    }
+
+    /**
+     * Exposes the exchange in the Reactor context, where the HTTP log aspects look up the request
+     * of {@code Mono} and {@code Flux} handlers.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    @ConditionalOnClass(ServerWebExchangeContextFilter.class)
+    static class ReactiveRequestContextConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public ServerWebExchangeContextFilter serverWebExchangeContextFilter() {
+            return new ServerWebExchangeContextFilter();
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(MeterBinder.class)
+    static class MicrometerConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public CommonAspectsMeterBinder commonAspectsMeterBinder(CacheRegistry cacheRegistry,
+                                                                 LogEventPipeline logEventPipeline,
+                                                                 LogSampler logSampler,
+                                                                 ObjectProvider<ResilienceRegistry> resilienceRegistry) {
+            return new CommonAspectsMeterBinder(cacheRegistry, logEventPipeline, logSampler,
+                    resilienceRegistry.getIfAvailable());
+        }
+    }
+}
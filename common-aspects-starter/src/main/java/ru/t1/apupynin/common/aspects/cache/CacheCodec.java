@@ -0,0 +1,12 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+/**
+ * Turns cache keys and values into bytes for storage outside the heap.
+ * {@link #decode} must return an object equal to the one passed to {@link #encode}.
+ */
+public interface CacheCodec {
+
+    byte[] encode(Object value) throws Exception;
+
+    Object decode(byte[] bytes) throws Exception;
+}
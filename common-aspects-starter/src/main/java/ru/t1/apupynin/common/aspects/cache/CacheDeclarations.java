@@ -0,0 +1,76 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.ClassUtils;
+import ru.t1.apupynin.common.aspects.annotation.Cached;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The {@code @Cached} methods of all beans, found from the bean types on first use without
+ * instantiating any bean. Lets a cache get the bound its {@code @Cached} methods declare even when
+ * a {@code @CachePut}, an eviction or a warm-up reaches it first.
+ */
+@Slf4j
+public class CacheDeclarations {
+
+    private final ListableBeanFactory beanFactory;
+    private volatile Map<Method, Cached> methods;
+    private volatile Map<String, Long> maxSizes;
+
+    public CacheDeclarations(ListableBeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    public Map<Method, Cached> getMethods() {
+        scan();
+        return methods;
+    }
+
+    /**
+     * @return the largest {@code maxSize} declared for the cache, or {@code -1} when none is
+     */
+    public long getMaxSize(String cacheName) {
+        scan();
+        return maxSizes.getOrDefault(cacheName, -1L);
+    }
+
+    private void scan() {
+        if (maxSizes != null) {
+            return;
+        }
+        synchronized (this) {
+            if (maxSizes != null) {
+                return;
+            }
+            Map<Method, Cached> found = new LinkedHashMap<>();
+            for (String beanName : beanFactory.getBeanDefinitionNames()) {
+                try {
+                    Class<?> type = beanFactory.getType(beanName, false);
+                    if (type != null) {
+                        found.putAll(MethodIntrospector.selectMethods(ClassUtils.getUserClass(type),
+                                (MethodIntrospector.MetadataLookup<Cached>) method ->
+                                        AnnotationUtils.findAnnotation(method, Cached.class)));
+                    }
+                } catch (Exception | LinkageError e) {
+                    log.debug("Could not inspect bean {} for @Cached methods: {}", beanName, e.getMessage());
+                }
+            }
+            Map<String, Long> sizes = new HashMap<>();
+            found.values().forEach(cached -> {
+                if (cached.maxSize() > 0) {
+                    sizes.merge(cached.cacheName(), cached.maxSize(), Math::max);
+                }
+            });
+            methods = Collections.unmodifiableMap(found);
+            maxSizes = sizes;
+        }
+    }
+}
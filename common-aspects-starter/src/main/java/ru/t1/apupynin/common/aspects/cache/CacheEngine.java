@@ -0,0 +1,42 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import java.util.Map;
+
+/**
+ * Storage behind a single {@code @Cached} cache name.
+ * Implementations must be thread-safe and keep their size within the {@link CacheSpec} they were built with.
+ */
+public interface CacheEngine extends AutoCloseable {
+
+    /**
+     * @return the live entry for the key, or {@code null} when it is absent or expired
+     */
+    CacheEntry getEntry(Object key);
+
+    void put(Object key, Object value, long ttlNanos);
+
+    void invalidate(Object key);
+
+    void invalidateAll();
+
+    /**
+     * Removes expired entries and performs pending maintenance.
+     */
+    void cleanUp();
+
+    long size();
+
+    CacheStats stats();
+
+    /**
+     * @return up to {@code limit} live entries, most frequently used first; engines that do not track
+     * popularity return none, which leaves them out of cache snapshots
+     */
+    default Map<Object, CacheEntry> hottest(int limit) {
+        return Map.of();
+    }
+
+    @Override
+    default void close() {
+    }
+}
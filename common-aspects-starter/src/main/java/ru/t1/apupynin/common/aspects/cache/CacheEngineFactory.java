@@ -0,0 +1,7 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+@FunctionalInterface
+public interface CacheEngineFactory {
+
+    CacheEngine create(String cacheName, CacheSpec spec);
+}
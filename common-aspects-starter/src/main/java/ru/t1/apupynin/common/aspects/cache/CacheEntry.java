@@ -0,0 +1,14 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+public interface CacheEntry {
+
+    Object getValue();
+
+    long getWriteTimeNanos();
+
+    long getExpiresAtNanos();
+
+    default boolean isExpired(long nowNanos) {
+        return nowNanos - getExpiresAtNanos() >= 0;
+    }
+}
@@ -0,0 +1,126 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Evaluates SpEL expressions declared on {@code @Cached}. Method parameters are available by name
+ * and as {@code #p0}/{@code #a0}; the root object exposes {@code method}, {@code target} and {@code args}.
+ * {@code unless} and {@code resultKey} expressions additionally see the invocation outcome as {@code #result}.
+ * Parsed expressions are kept for the lifetime of the application.
+ */
+public class CacheExpressionEvaluator {
+
+    private static final Pattern VARIABLE_REFERENCE = Pattern.compile("#([A-Za-z_$][A-Za-z0-9_$]*)");
+    private static final Pattern INDEXED_REFERENCE = Pattern.compile("[ap](\\d{1,3})");
+
+    private final SpelExpressionParser parser = new SpelExpressionParser();
+    private final ParameterNameDiscoverer parameterNameDiscoverer;
+    private final Map<String, Expression> expressions = new ConcurrentHashMap<>();
+
+    public CacheExpressionEvaluator() {
+        this(new DefaultParameterNameDiscoverer());
+    }
+
+    /**
+     * @param parameterNameDiscoverer source of the names under which arguments are visible; should cache them,
+     *                                as every evaluation asks for the names again
+     */
+    public CacheExpressionEvaluator(ParameterNameDiscoverer parameterNameDiscoverer) {
+        this.parameterNameDiscoverer = parameterNameDiscoverer;
+    }
+
+    public Object evaluate(String expression, Method method, Object target, Object[] args) {
+        return getExpression(expression).getValue(createContext(method, target, args));
+    }
+
+    public boolean evaluateCondition(String expression, Method method, Object target, Object[] args) {
+        return Boolean.TRUE.equals(getExpression(expression).getValue(createContext(method, target, args), Boolean.class));
+    }
+
+    public boolean evaluateUnless(String expression, Method method, Object target, Object[] args, Object result) {
+        MethodBasedEvaluationContext context = createContext(method, target, args);
+        context.setVariable("result", result);
+        return Boolean.TRUE.equals(getExpression(expression).getValue(context, Boolean.class));
+    }
+
+    public Object evaluate(String expression, Method method, Object target, Object[] args, Object result) {
+        MethodBasedEvaluationContext context = createContext(method, target, args);
+        context.setVariable("result", result);
+        return getExpression(expression).getValue(context);
+    }
+
+    /**
+     * @return index of the argument that {@code expression} merely references, as in {@code #id},
+     * {@code #p0} or {@code #a0}, or {@code -1} when the expression needs to be evaluated
+     */
+    public int argumentIndex(String expression, Method method) {
+        Matcher matcher = VARIABLE_REFERENCE.matcher(expression.trim());
+        if (!matcher.matches()) {
+            return -1;
+        }
+        String name = matcher.group(1);
+        if (name.equals("root") || name.equals("this")) {
+            return -1;
+        }
+        String[] parameterNames = parameterNameDiscoverer.getParameterNames(method);
+        if (parameterNames != null) {
+            for (int i = parameterNames.length - 1; i >= 0; i--) {
+                if (name.equals(parameterNames[i])) {
+                    return i;
+                }
+            }
+        }
+        Matcher indexed = INDEXED_REFERENCE.matcher(name);
+        if (indexed.matches()) {
+            int index = Integer.parseInt(indexed.group(1));
+            return index < method.getParameterCount() ? index : -1;
+        }
+        return -1;
+    }
+
+    private MethodBasedEvaluationContext createContext(Method method, Object target, Object[] args) {
+        return new MethodBasedEvaluationContext(new Root(method, target, args), method, args, parameterNameDiscoverer);
+    }
+
+    private Expression getExpression(String expression) {
+        Expression parsed = expressions.get(expression);
+        if (parsed != null) {
+            return parsed;
+        }
+        return expressions.computeIfAbsent(expression, parser::parseExpression);
+    }
+
+    public static class Root {
+        private final Method method;
+        private final Object target;
+        private final Object[] args;
+
+        Root(Method method, Object target, Object[] args) {
+            this.method = method;
+            this.target = target;
+            this.args = args;
+        }
+
+        public Method getMethod() {
+            return method;
+        }
+
+        public Object getTarget() {
+            return target;
+        }
+
+        public Object[] getArgs() {
+            return args;
+        }
+    }
+}
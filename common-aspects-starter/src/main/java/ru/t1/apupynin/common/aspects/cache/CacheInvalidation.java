@@ -0,0 +1,9 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import java.util.Collection;
+
+/**
+ * Keys of one cache that a node has changed. {@code allEntries} clears the cache and ignores {@code keys}.
+ */
+public record CacheInvalidation(String origin, String cacheName, Collection<Object> keys, boolean allEntries) {
+}
@@ -0,0 +1,20 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries {@link CacheInvalidation}s between replicas. Delivery is at-most-once and may be batched;
+ * listeners receive the node's own invalidations too and are expected to skip them by origin.
+ */
+public interface CacheInvalidationBus {
+
+    void publish(CacheInvalidation invalidation);
+
+    void subscribe(Consumer<CacheInvalidation> listener);
+
+    /**
+     * Registers a callback for published invalidations the bus failed to hand over to the other replicas.
+     */
+    default void subscribeFailures(Consumer<CacheInvalidation> listener) {
+    }
+}
@@ -0,0 +1,192 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Applies evictions on this node and broadcasts them to the other replicas through the {@link CacheInvalidationBus}.
+ * Without a bus evictions stay local.
+ * <p>
+ * When the bus reports that one of this node's invalidations did not go out, the keys are evicted here
+ * again and the cache is written with at most {@code fallbackTtlMs} for the next {@code fallbackPeriodMs},
+ * so entries other replicas could not be told about stay stale only briefly.
+ * <p>
+ * Every eviction, local or remote, bumps an invalidation generation of the key before removing it. A loader
+ * takes the {@link #generation} before reading the source and stores its value only while the generation is
+ * {@link #isCurrent current}, so a value read before an eviction is not written back after it. Generations are
+ * striped by key hash: a collision only makes an unrelated load skip its write.
+ */
+@Slf4j
+public class CacheInvalidator {
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final CacheRegistry cacheRegistry;
+    private final CacheInvalidationBus bus;
+    private final long fallbackTtlNanos;
+    private final long fallbackPeriodNanos;
+    private final Map<String, Long> degradedUntil = new ConcurrentHashMap<>();
+    private final Map<String, Generations> generations = new ConcurrentHashMap<>();
+
+    public CacheInvalidator(CacheRegistry cacheRegistry, CacheInvalidationBus bus,
+                            long fallbackTtlMs, long fallbackPeriodMs) {
+        this.cacheRegistry = cacheRegistry;
+        this.bus = bus;
+        this.fallbackTtlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, fallbackTtlMs));
+        this.fallbackPeriodNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, fallbackPeriodMs));
+        if (bus != null) {
+            bus.subscribe(this::onInvalidation);
+            bus.subscribeFailures(this::onPublishFailure);
+        }
+    }
+
+    public void evict(String cacheName, Object key) {
+        bump(cacheName, key);
+        cacheRegistry.getCache(cacheName).invalidate(key);
+        broadcast(new CacheInvalidation(nodeId, cacheName, List.of(key), false));
+    }
+
+    public void evictAll(String cacheName) {
+        bumpAll(cacheName);
+        cacheRegistry.getCache(cacheName).invalidateAll();
+        broadcast(new CacheInvalidation(nodeId, cacheName, List.of(), true));
+    }
+
+    /**
+     * Tells other replicas that this node stores a new value for the key. Call it before the write, so loads
+     * of the key already in flight here do not overwrite the new value.
+     */
+    public void updated(String cacheName, Object key) {
+        bump(cacheName, key);
+        broadcast(new CacheInvalidation(nodeId, cacheName, List.of(key), false));
+    }
+
+    /**
+     * @return the TTL to write entries of the cache with: {@code ttlNanos}, capped by the fallback TTL
+     * while a failed broadcast for the cache is recent
+     */
+    public long ttlNanos(String cacheName, long ttlNanos) {
+        Long until = degradedUntil.get(cacheName);
+        if (until == null) {
+            return ttlNanos;
+        }
+        if (System.nanoTime() - until >= 0) {
+            degradedUntil.remove(cacheName, until);
+            return ttlNanos;
+        }
+        return Math.min(ttlNanos, fallbackTtlNanos);
+    }
+
+    public long generation(String cacheName, Object key) {
+        return generations.computeIfAbsent(cacheName, name -> new Generations()).get(key);
+    }
+
+    /**
+     * @return {@code false} once the key has been invalidated since {@code generation} was taken
+     */
+    public boolean isCurrent(String cacheName, Object key, long generation) {
+        return generation(cacheName, key) == generation;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    private void broadcast(CacheInvalidation invalidation) {
+        if (bus == null) {
+            return;
+        }
+        try {
+            bus.publish(invalidation);
+        } catch (Exception e) {
+            log.warn("Failed to publish invalidation for cache {}: {}", invalidation.cacheName(), e.getMessage());
+            onPublishFailure(invalidation);
+        }
+    }
+
+    private void onInvalidation(CacheInvalidation invalidation) {
+        if (nodeId.equals(invalidation.origin())) {
+            return;
+        }
+        if (apply(invalidation)) {
+            log.debug("Applied invalidation from {} to cache {}", invalidation.origin(), invalidation.cacheName());
+        }
+    }
+
+    private void onPublishFailure(CacheInvalidation invalidation) {
+        if (!nodeId.equals(invalidation.origin())) {
+            return;
+        }
+        degradedUntil.put(invalidation.cacheName(), System.nanoTime() + fallbackPeriodNanos);
+        apply(invalidation);
+        log.warn("Invalidation of cache {} did not reach other replicas, writing it with a {} ms TTL for {} ms",
+                invalidation.cacheName(), TimeUnit.NANOSECONDS.toMillis(fallbackTtlNanos),
+                TimeUnit.NANOSECONDS.toMillis(fallbackPeriodNanos));
+    }
+
+    private boolean apply(CacheInvalidation invalidation) {
+        if (invalidation.allEntries()) {
+            bumpAll(invalidation.cacheName());
+        } else {
+            invalidation.keys().forEach(key -> bump(invalidation.cacheName(), key));
+        }
+        CacheEngine cache = cacheRegistry.getCaches().get(invalidation.cacheName());
+        if (cache == null) {
+            return false;
+        }
+        if (invalidation.allEntries()) {
+            cache.invalidateAll();
+        } else {
+            invalidation.keys().forEach(cache::invalidate);
+        }
+        return true;
+    }
+
+    private void bump(String cacheName, Object key) {
+        Generations cacheGenerations = generations.get(cacheName);
+        if (cacheGenerations != null) {
+            cacheGenerations.bump(key);
+        }
+    }
+
+    private void bumpAll(String cacheName) {
+        Generations cacheGenerations = generations.get(cacheName);
+        if (cacheGenerations != null) {
+            cacheGenerations.bumpAll();
+        }
+    }
+
+    /**
+     * Both counters only grow, so their sum changes whenever either does.
+     */
+    private static final class Generations {
+
+        private static final int STRIPES = 256;
+
+        private final AtomicLongArray keys = new AtomicLongArray(STRIPES);
+        private final AtomicLong all = new AtomicLong();
+
+        long get(Object key) {
+            return all.get() + keys.get(stripe(key));
+        }
+
+        void bump(Object key) {
+            keys.incrementAndGet(stripe(key));
+        }
+
+        void bumpAll() {
+            all.incrementAndGet();
+        }
+
+        private static int stripe(Object key) {
+            int hash = key == null ? 0 : key.hashCode();
+            return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Arrays;
+
+/**
+ * Composite key over the invocation arguments with a precomputed hash.
+ * Equality is value-based ({@link Arrays#deepEquals}), so arguments that merely share a hash code never collide.
+ */
+public final class CacheKey {
+
+    public static final CacheKey EMPTY = new CacheKey();
+
+    private final Object[] args;
+    private final int hash;
+
+    @JsonCreator
+    public CacheKey(@JsonProperty("args") Object... args) {
+        this.args = args;
+        this.hash = Arrays.deepHashCode(args);
+    }
+
+    public Object[] getArgs() {
+        return args;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return this == other || (other instanceof CacheKey key
+                && hash == key.hash && Arrays.deepEquals(args, key.args));
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheKey" + Arrays.deepToString(args);
+    }
+}
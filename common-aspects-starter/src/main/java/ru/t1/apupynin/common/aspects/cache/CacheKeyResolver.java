@@ -0,0 +1,53 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import org.springframework.beans.factory.BeanFactory;
+
+import java.lang.reflect.Method;
+
+/**
+ * Picks the key strategy of a cache annotated method: the {@code key} expression,
+ * the named {@code keyGenerator} bean, or the default {@link KeyGenerator}. A key expression that only
+ * references an argument, such as {@code #id}, returns the argument without evaluating SpEL. Arrays are
+ * wrapped in a {@link CacheKey} as the default generator wraps them, so they compare by value.
+ */
+public class CacheKeyResolver {
+
+    private static final CacheKey NULL_KEY = new CacheKey((Object) null);
+
+    private final KeyGenerator defaultKeyGenerator;
+    private final CacheExpressionEvaluator evaluator;
+    private final BeanFactory beanFactory;
+
+    public CacheKeyResolver(KeyGenerator defaultKeyGenerator, CacheExpressionEvaluator evaluator,
+                            BeanFactory beanFactory) {
+        this.defaultKeyGenerator = defaultKeyGenerator;
+        this.evaluator = evaluator;
+        this.beanFactory = beanFactory;
+    }
+
+    public KeyGenerator resolveGenerator(String expression, String keyGenerator, Method method) {
+        boolean hasKey = !expression.isEmpty();
+        boolean hasGenerator = !keyGenerator.isEmpty();
+        if (hasKey && hasGenerator) {
+            throw new IllegalStateException("Cache annotation on " + method + " declares both key and keyGenerator");
+        }
+        if (hasKey) {
+            int index = evaluator.argumentIndex(expression, method);
+            if (index >= 0) {
+                return (target, m, args) -> toKey(args[index]);
+            }
+            return (target, m, args) -> toKey(evaluator.evaluate(expression, m, target, args));
+        }
+        if (hasGenerator) {
+            return beanFactory.getBean(keyGenerator, KeyGenerator.class);
+        }
+        return defaultKeyGenerator;
+    }
+
+    private static Object toKey(Object value) {
+        if (value == null) {
+            return NULL_KEY;
+        }
+        return value.getClass().isArray() ? new CacheKey(value) : value;
+    }
+}
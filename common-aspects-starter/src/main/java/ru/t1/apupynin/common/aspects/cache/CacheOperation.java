@@ -0,0 +1,25 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+/**
+ * Everything {@code CachedAspect} needs for one annotated method, resolved on first invocation.
+ * Expressions are {@code null} when not declared. {@code batchIndex} is the collection parameter
+ * of a batch method and {@code -1} otherwise.
+ */
+public record CacheOperation(
+        String cacheName,
+        CacheEngine cache,
+        SingleFlight flight,
+        CacheSpec spec,
+        KeyGenerator keyGenerator,
+        long ttlNanos,
+        boolean cacheNulls,
+        String condition,
+        String unless,
+        int batchIndex,
+        String resultKey
+) {
+
+    public boolean isBatch() {
+        return batchIndex >= 0;
+    }
+}
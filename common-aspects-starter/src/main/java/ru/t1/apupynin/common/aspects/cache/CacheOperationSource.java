@@ -0,0 +1,142 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import ru.t1.apupynin.common.aspects.annotation.CacheEvict;
+import ru.t1.apupynin.common.aspects.annotation.CachePut;
+import ru.t1.apupynin.common.aspects.annotation.Cached;
+import ru.t1.apupynin.common.aspects.autoconfigure.AspectProperties;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves {@link CacheOperation}s per method. Settings under {@code t1.caches.<name>} win over
+ * the annotation, which wins over the global defaults.
+ */
+public class CacheOperationSource {
+
+    private final CacheRegistry cacheRegistry;
+    private final CacheKeyResolver keyResolver;
+    private final AspectProperties properties;
+    private final long defaultTtlMs;
+    private final Map<Method, CacheOperation> cachedOperations = new ConcurrentHashMap<>();
+    private final Map<Method, CacheOperation> putOperations = new ConcurrentHashMap<>();
+    private final Map<Method, CacheOperation> evictOperations = new ConcurrentHashMap<>();
+
+    public CacheOperationSource(CacheRegistry cacheRegistry, CacheKeyResolver keyResolver,
+                                AspectProperties properties, long defaultTtlMs) {
+        this.cacheRegistry = cacheRegistry;
+        this.keyResolver = keyResolver;
+        this.properties = properties;
+        this.defaultTtlMs = defaultTtlMs;
+    }
+
+    public CacheOperation getOperation(Method method, Cached cached) {
+        CacheOperation operation = cachedOperations.get(method);
+        if (operation != null) {
+            return operation;
+        }
+        return cachedOperations.computeIfAbsent(method, m -> resolve(m, cached.cacheName(), cached.key(),
+                cached.keyGenerator(), cached.ttlMs(), cached.maxSize(), cached.cacheNulls(),
+                cached.condition(), cached.unless(), cached.batch(), cached.resultKey()));
+    }
+
+    public CacheOperation getOperation(Method method, CachePut cachePut) {
+        CacheOperation operation = putOperations.get(method);
+        if (operation != null) {
+            return operation;
+        }
+        return putOperations.computeIfAbsent(method, m -> resolve(m, cachePut.cacheName(), cachePut.key(),
+                cachePut.keyGenerator(), cachePut.ttlMs(), -1, cachePut.cacheNulls(),
+                cachePut.condition(), cachePut.unless(), false, ""));
+    }
+
+    public CacheOperation getOperation(Method method, CacheEvict cacheEvict) {
+        CacheOperation operation = evictOperations.get(method);
+        if (operation != null) {
+            return operation;
+        }
+        return evictOperations.computeIfAbsent(method, m -> resolve(m, cacheEvict.cacheName(), cacheEvict.key(),
+                cacheEvict.keyGenerator(), -1, -1, false, "", "", false, ""));
+    }
+
+    /**
+     * @return the TTL of {@code @Cached} entries of the cache, taken from an operation resolved for it
+     * or, when none is, from {@code t1.caches.<name>.ttl-ms} and the global default
+     */
+    public long getTtlNanos(String cacheName) {
+        for (CacheOperation operation : cachedOperations.values()) {
+            if (operation.cacheName().equals(cacheName)) {
+                return operation.ttlNanos();
+            }
+        }
+        AspectProperties.Cache cacheProperties = properties.getCaches().get(cacheName);
+        long ttlMs = cacheProperties != null && cacheProperties.getTtlMs() != null
+                ? cacheProperties.getTtlMs() : defaultTtlMs;
+        return TimeUnit.MILLISECONDS.toNanos(ttlMs);
+    }
+
+    private CacheOperation resolve(Method method, String cacheName, String key, String keyGenerator,
+                                   long declaredTtlMs, long declaredMaxSize, boolean declaredCacheNulls,
+                                   String condition, String unless, boolean batch, String resultKey) {
+        AspectProperties.Cache cacheProperties = properties.getCaches().get(cacheName);
+
+        long ttlMs = declaredTtlMs >= 0 ? declaredTtlMs : defaultTtlMs;
+        boolean cacheNulls = declaredCacheNulls;
+        if (cacheProperties != null) {
+            if (cacheProperties.getTtlMs() != null) {
+                ttlMs = cacheProperties.getTtlMs();
+            }
+            if (cacheProperties.getCacheNulls() != null) {
+                cacheNulls = cacheProperties.getCacheNulls();
+            }
+        }
+
+        CacheEngine cache = cacheRegistry.getCache(cacheName, declaredMaxSize);
+        return new CacheOperation(
+                cacheName,
+                cache,
+                cacheRegistry.getSingleFlight(cacheName),
+                cacheRegistry.getSpec(cacheName),
+                keyResolver.resolveGenerator(key, keyGenerator, method),
+                TimeUnit.MILLISECONDS.toNanos(ttlMs),
+                cacheNulls,
+                condition.isEmpty() ? null : condition,
+                unless.isEmpty() ? null : unless,
+                batch ? batchIndex(method, key, keyGenerator, resultKey) : -1,
+                resultKey.isEmpty() ? null : resultKey
+        );
+    }
+
+    private static int batchIndex(Method method, String key, String keyGenerator, String resultKey) {
+        if (!key.isEmpty() || !keyGenerator.isEmpty()) {
+            throw new IllegalStateException("Batch @Cached on " + method + " cannot declare key or keyGenerator");
+        }
+        int index = -1;
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (Collection.class.isAssignableFrom(parameterTypes[i])) {
+                if (index >= 0) {
+                    throw new IllegalStateException("Batch @Cached on " + method
+                            + " has more than one collection parameter");
+                }
+                index = i;
+            }
+        }
+        if (index < 0) {
+            throw new IllegalStateException("Batch @Cached on " + method + " has no collection parameter");
+        }
+        Class<?> returnType = method.getReturnType();
+        if (Collection.class.isAssignableFrom(returnType)) {
+            if (resultKey.isEmpty()) {
+                throw new IllegalStateException("Batch @Cached on " + method
+                        + " returns a collection but declares no resultKey");
+            }
+        } else if (!Map.class.isAssignableFrom(returnType)) {
+            throw new IllegalStateException("Batch @Cached on " + method + " must return a Map or a Collection");
+        }
+        return index;
+    }
+}
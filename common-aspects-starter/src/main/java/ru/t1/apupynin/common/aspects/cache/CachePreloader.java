@@ -0,0 +1,35 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Fills a cache at startup, before the application reports ready; declare one bean per cache name.
+ * Keys must have the form the cache's {@code @Cached} methods generate: the argument itself for a
+ * single-argument method, a {@link CacheKey} of the arguments otherwise, or the result of the
+ * {@code key} expression. Entries get the TTL of the cache's {@code @Cached} method and preloaded
+ * values replace entries restored from a snapshot.
+ */
+public interface CachePreloader {
+
+    String cacheName();
+
+    /**
+     * @return the entries to put; {@code null} values are skipped
+     */
+    Map<?, ?> load() throws Exception;
+
+    static CachePreloader of(String cacheName, Callable<? extends Map<?, ?>> loader) {
+        return new CachePreloader() {
+            @Override
+            public String cacheName() {
+                return cacheName;
+            }
+
+            @Override
+            public Map<?, ?> load() throws Exception {
+                return loader.call();
+            }
+        };
+    }
+}
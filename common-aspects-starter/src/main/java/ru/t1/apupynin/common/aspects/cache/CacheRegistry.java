@@ -0,0 +1,174 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.t1.apupynin.common.aspects.autoconfigure.AspectProperties;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Holds one {@link CacheEngine} per {@code cacheName}, removes expired entries in the background
+ * and runs refresh-ahead reloads on a small bounded executor.
+ */
+@Slf4j
+public class CacheRegistry implements AutoCloseable {
+
+    private static final int REFRESH_QUEUE_CAPACITY = 1024;
+
+    private final Map<String, CacheEngine> caches = new ConcurrentHashMap<>();
+    private final Map<String, CacheSpec> specs = new ConcurrentHashMap<>();
+    private final Map<String, SingleFlight> flights = new ConcurrentHashMap<>();
+    private final List<BiConsumer<String, CacheEngine>> cacheListeners = new CopyOnWriteArrayList<>();
+    private final AspectProperties properties;
+    private final CacheEngineFactory engineFactory;
+    private final CacheDeclarations declarations;
+    private final ScheduledExecutorService cleaner;
+    private final ThreadPoolExecutor refreshExecutor;
+
+    /**
+     * @param declarations bounds declared by {@code @Cached} methods; {@code null} to use only the
+     *                     bound passed to {@link #getCache(String, long)}
+     */
+    public CacheRegistry(AspectProperties properties, CacheEngineFactory engineFactory,
+                         CacheDeclarations declarations) {
+        this.properties = properties;
+        this.engineFactory = engineFactory;
+        this.declarations = declarations;
+        this.cleaner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "t1-cache-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMs = Math.max(1, properties.getCacheCleanupIntervalMs());
+        cleaner.scheduleWithFixedDelay(this::cleanUp, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+
+        AtomicInteger refreshThreads = new AtomicInteger();
+        int maxRefreshThreads = Math.max(1, properties.getCacheRefreshThreads());
+        this.refreshExecutor = new ThreadPoolExecutor(maxRefreshThreads, maxRefreshThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(REFRESH_QUEUE_CAPACITY), r -> {
+            Thread thread = new Thread(r, "t1-cache-refresh-" + refreshThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        refreshExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    public CacheEngine getCache(String cacheName) {
+        return getCache(cacheName, -1);
+    }
+
+    /**
+     * @param declaredMaxSize entry bound declared in code, used when {@code t1.caches.<name>.max-size}
+     *                        is not set; negative to fall back to {@code t1.cache-max-size}. The largest
+     *                        bound declared by any {@code @Cached} method of the cache applies as well,
+     *                        so the limits do not depend on which call creates the cache.
+     */
+    public CacheEngine getCache(String cacheName, long declaredMaxSize) {
+        CacheEngine cache = caches.get(cacheName);
+        if (cache != null) {
+            return cache;
+        }
+        CacheEngine[] created = new CacheEngine[1];
+        cache = caches.computeIfAbsent(cacheName, name -> created[0] = engineFactory.create(name,
+                specs.computeIfAbsent(name, n -> resolveSpec(n, declaredMaxSize))));
+        if (created[0] != null) {
+            for (BiConsumer<String, CacheEngine> listener : cacheListeners) {
+                listener.accept(cacheName, created[0]);
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Registers a callback for caches created from now on; existing ones are available from {@link #getCaches()}.
+     */
+    public void addCacheListener(BiConsumer<String, CacheEngine> listener) {
+        cacheListeners.add(listener);
+    }
+
+    public CacheSpec getSpec(String cacheName) {
+        CacheSpec spec = specs.get(cacheName);
+        if (spec != null) {
+            return spec;
+        }
+        return specs.computeIfAbsent(cacheName, name -> resolveSpec(name, -1));
+    }
+
+    public SingleFlight getSingleFlight(String cacheName) {
+        return flights.computeIfAbsent(cacheName, name -> new SingleFlight());
+    }
+
+    public Executor getRefreshExecutor() {
+        return refreshExecutor;
+    }
+
+    public Map<String, CacheEngine> getCaches() {
+        return Collections.unmodifiableMap(caches);
+    }
+
+    private CacheSpec resolveSpec(String cacheName, long declaredMaxSize) {
+        AspectProperties.Cache cache = properties.getCaches().get(cacheName);
+        if (declarations != null) {
+            declaredMaxSize = Math.max(declaredMaxSize, declarations.getMaxSize(cacheName));
+        }
+        long maxSize = declaredMaxSize > 0 ? declaredMaxSize : properties.getCacheMaxSize();
+        long maxWeight = 0;
+        double refreshAheadRatio = properties.getCacheRefreshAheadRatio();
+        if (cache != null) {
+            if (cache.getMaxSize() != null) {
+                maxSize = cache.getMaxSize();
+            }
+            if (cache.getMaxWeight() != null) {
+                maxWeight = cache.getMaxWeight();
+            }
+            if (cache.getRefreshAheadRatio() != null) {
+                refreshAheadRatio = cache.getRefreshAheadRatio();
+            }
+        }
+        return new CacheSpec(maxSize, maxWeight, refreshAheadRatio, resolveL2(cacheName, cache));
+    }
+
+    private CacheSpec.L2 resolveL2(String cacheName, AspectProperties.Cache cache) {
+        if (cache == null || !cache.getL2().isEnabled()) {
+            return null;
+        }
+        AspectProperties.L2 l2 = cache.getL2();
+        String directory = l2.getDirectory() != null ? l2.getDirectory() : properties.getCacheL2Directory();
+        return new CacheSpec.L2(Path.of(directory, cacheName + ".l2"), l2.getCapacityBytes(), l2.isPersistent());
+    }
+
+    private void cleanUp() {
+        for (Map.Entry<String, CacheEngine> entry : caches.entrySet()) {
+            try {
+                entry.getValue().cleanUp();
+            } catch (Exception e) {
+                log.warn("Failed to clean up cache {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        cleaner.shutdownNow();
+        refreshExecutor.shutdownNow();
+        for (Map.Entry<String, CacheEngine> entry : caches.entrySet()) {
+            try {
+                entry.getValue().close();
+            } catch (Exception e) {
+                log.warn("Failed to close cache {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+}
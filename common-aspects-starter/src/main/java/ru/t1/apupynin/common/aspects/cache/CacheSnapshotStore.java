@@ -0,0 +1,146 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the hottest entries of each cache in {@code <directory>/<cacheName>.snapshot}, encoded with
+ * the {@link CacheCodec}.
+ * <p>
+ * A snapshot is written to a temporary file and moved into place, so a crash never leaves a torn one.
+ * Expiry is stored as wall-clock time: restored entries live only for the rest of their TTL, which
+ * also bounds how stale they can be after changes made while the node was down. Entries are written
+ * coldest first, so on restore the hottest ones are the most recent puts and survive admission.
+ */
+@Slf4j
+public class CacheSnapshotStore {
+
+    private static final int MAGIC = 0x54314353;
+    private static final int VERSION = 1;
+    private static final int END = -1;
+    private static final String SUFFIX = ".snapshot";
+
+    private final Path directory;
+    private final CacheCodec codec;
+
+    public CacheSnapshotStore(Path directory, CacheCodec codec) {
+        this.directory = directory;
+        this.codec = codec;
+    }
+
+    /**
+     * @return the cache names that have a snapshot
+     */
+    public List<String> cacheNames() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(SUFFIX))
+                    .map(name -> name.substring(0, name.length() - SUFFIX.length()))
+                    .toList();
+        }
+    }
+
+    /**
+     * @param entries hottest first, as returned by {@link CacheEngine#hottest}
+     * @return the number of entries written
+     */
+    public int write(String cacheName, Map<Object, CacheEntry> entries) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(cacheName + SUFFIX);
+        Path temp = directory.resolve(cacheName + SUFFIX + ".tmp");
+        List<Map.Entry<Object, CacheEntry>> coldestFirst = new ArrayList<>(entries.entrySet());
+        int written = 0;
+        int skipped = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            long nowMillis = System.currentTimeMillis();
+            long nowNanos = System.nanoTime();
+            for (int i = coldestFirst.size() - 1; i >= 0; i--) {
+                Map.Entry<Object, CacheEntry> entry = coldestFirst.get(i);
+                long remainingNanos = entry.getValue().getExpiresAtNanos() - nowNanos;
+                if (remainingNanos <= 0) {
+                    continue;
+                }
+                byte[] key;
+                byte[] value;
+                try {
+                    key = codec.encode(entry.getKey());
+                    value = codec.encode(entry.getValue().getValue());
+                } catch (Exception e) {
+                    skipped++;
+                    continue;
+                }
+                out.writeInt(key.length);
+                out.write(key);
+                out.writeInt(value.length);
+                out.write(value);
+                out.writeLong(nowMillis + TimeUnit.NANOSECONDS.toMillis(remainingNanos));
+                written++;
+            }
+            out.writeInt(END);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (skipped > 0) {
+            log.warn("Left {} entries of cache {} out of its snapshot: the codec could not encode them",
+                    skipped, cacheName);
+        }
+        return written;
+    }
+
+    /**
+     * Puts the unexpired entries of the cache's snapshot into {@code cache}; entries the codec can no
+     * longer decode, e.g. after a class changed, are skipped.
+     *
+     * @return the number of entries restored
+     */
+    public int restore(String cacheName, CacheEngine cache) throws IOException {
+        Path file = directory.resolve(cacheName + SUFFIX);
+        int restored = 0;
+        int skipped = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                log.warn("Ignoring snapshot {}: unknown format", file);
+                return 0;
+            }
+            int keyLength;
+            while ((keyLength = in.readInt()) != END) {
+                byte[] key = in.readNBytes(keyLength);
+                byte[] value = in.readNBytes(in.readInt());
+                long remainingMillis = in.readLong() - System.currentTimeMillis();
+                if (remainingMillis <= 0) {
+                    continue;
+                }
+                try {
+                    cache.put(codec.decode(key), codec.decode(value), TimeUnit.MILLISECONDS.toNanos(remainingMillis));
+                    restored++;
+                } catch (Exception e) {
+                    skipped++;
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+        if (skipped > 0) {
+            log.warn("Skipped {} entries of the cache {} snapshot the codec could not decode", skipped, cacheName);
+        }
+        return restored;
+    }
+}
@@ -0,0 +1,27 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import java.nio.file.Path;
+
+/**
+ * Resolved limits of a single cache.
+ * When {@code maxWeight} is positive the cache is bounded by total weight, otherwise by entry count.
+ * A positive {@code refreshAheadRatio} reloads an entry in the background once it has lived that share of its TTL.
+ * A non-null {@code l2} adds an off-heap second tier, in which case the limits above bound only the on-heap tier.
+ */
+public record CacheSpec(long maxSize, long maxWeight, double refreshAheadRatio, L2 l2) {
+
+    public record L2(Path file, long capacityBytes, boolean persistent) {
+    }
+
+    public boolean isRefreshAhead() {
+        return refreshAheadRatio > 0 && refreshAheadRatio < 1;
+    }
+
+    public boolean isWeighted() {
+        return maxWeight > 0;
+    }
+
+    public long maximum() {
+        return isWeighted() ? maxWeight : maxSize;
+    }
+}
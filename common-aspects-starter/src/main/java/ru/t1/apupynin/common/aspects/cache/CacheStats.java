@@ -0,0 +1,9 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+public record CacheStats(long hits, long misses, long puts, long evictions, long expirations) {
+
+    public double hitRatio() {
+        long requests = hits + misses;
+        return requests == 0 ? 1.0 : (double) hits / requests;
+    }
+}
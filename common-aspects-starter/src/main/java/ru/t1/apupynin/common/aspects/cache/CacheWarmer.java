@@ -0,0 +1,218 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Warms caches up at startup and snapshots them while running.
+ * <p>
+ * On start every cache with a snapshot or a {@link CachePreloader} is filled by its own task on a
+ * small pool, snapshot first and preloaders after it, and start returns once all tasks finished or
+ * the timeout passed; the lifecycle phase puts this before the web server and message listeners,
+ * so the application reports ready with warm caches. The {@code @Cached} methods of all beans are
+ * resolved first, so preloaded entries get their declared TTL.
+ * The hottest entries are written on stop and, when an interval is set, periodically.
+ */
+@Slf4j
+public class CacheWarmer implements SmartLifecycle {
+
+    private final CacheRegistry cacheRegistry;
+    private final CacheOperationSource operationSource;
+    private final CacheSnapshotStore snapshotStore;
+    private final List<CachePreloader> preloaders;
+    private final CacheDeclarations declarations;
+    private final Set<String> snapshotCacheNames;
+    private final int maxEntries;
+    private final long snapshotIntervalMs;
+    private final long timeoutMs;
+    private final int threads;
+    private ScheduledExecutorService snapshotWriter;
+    private volatile boolean running;
+
+    /**
+     * @param snapshotStore      {@code null} to run only the preloaders
+     * @param snapshotCacheNames caches to snapshot; empty for all
+     */
+    public CacheWarmer(CacheRegistry cacheRegistry, CacheOperationSource operationSource,
+                       CacheSnapshotStore snapshotStore, List<CachePreloader> preloaders,
+                       CacheDeclarations declarations, Collection<String> snapshotCacheNames, int maxEntries,
+                       long snapshotIntervalMs, long timeoutMs, int threads) {
+        this.cacheRegistry = cacheRegistry;
+        this.operationSource = operationSource;
+        this.snapshotStore = snapshotStore;
+        this.preloaders = preloaders;
+        this.declarations = declarations;
+        this.snapshotCacheNames = Set.copyOf(snapshotCacheNames);
+        this.maxEntries = maxEntries;
+        this.snapshotIntervalMs = snapshotIntervalMs;
+        this.timeoutMs = timeoutMs;
+        this.threads = Math.max(1, threads);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        Set<String> cacheNames = new LinkedHashSet<>();
+        if (snapshotStore != null) {
+            try {
+                snapshotStore.cacheNames().stream().filter(this::isSnapshotted).forEach(cacheNames::add);
+            } catch (Exception e) {
+                log.warn("Failed to list cache snapshots: {}", e.getMessage());
+            }
+        }
+        preloaders.forEach(preloader -> cacheNames.add(preloader.cacheName()));
+        if (!cacheNames.isEmpty()) {
+            resolveCachedMethods();
+            warmUp(cacheNames);
+        }
+        if (snapshotStore != null && snapshotIntervalMs > 0) {
+            snapshotWriter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "t1-cache-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotWriter.scheduleWithFixedDelay(this::writeSnapshots, snapshotIntervalMs, snapshotIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (snapshotWriter != null) {
+            snapshotWriter.shutdownNow();
+        }
+        writeSnapshots();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // start before the web server and message listeners so no traffic meets a cold cache,
+        // stop after them so the snapshot holds the final state
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    public synchronized void writeSnapshots() {
+        if (snapshotStore == null) {
+            return;
+        }
+        cacheRegistry.getCaches().forEach((cacheName, cache) -> {
+            if (!isSnapshotted(cacheName)) {
+                return;
+            }
+            try {
+                Map<Object, CacheEntry> hottest = cache.hottest(maxEntries);
+                if (!hottest.isEmpty()) {
+                    int written = snapshotStore.write(cacheName, hottest);
+                    log.debug("Wrote {} entries of cache {} to its snapshot", written, cacheName);
+                }
+            } catch (Exception e) {
+                log.warn("Failed to write snapshot of cache {}: {}", cacheName, e.getMessage());
+            }
+        });
+    }
+
+    private void warmUp(Set<String> cacheNames) {
+        long start = System.nanoTime();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, cacheNames.size()), r -> {
+            Thread thread = new Thread(r, "t1-cache-warmup-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Map<String, Future<Integer>> results = new LinkedHashMap<>();
+        try {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (String cacheName : cacheNames) {
+                tasks.add(() -> warmUp(cacheName));
+            }
+            List<Future<Integer>> futures = executor.invokeAll(tasks, timeoutMs, TimeUnit.MILLISECONDS);
+            int i = 0;
+            for (String cacheName : cacheNames) {
+                results.put(cacheName, futures.get(i++));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int entries = 0;
+        for (Map.Entry<String, Future<Integer>> result : results.entrySet()) {
+            try {
+                entries += result.getValue().get();
+            } catch (Exception e) {
+                log.warn("Cache {} was not warmed up: {}", result.getKey(),
+                        result.getValue().isCancelled() ? "timed out after " + timeoutMs + " ms" : e.getMessage());
+            }
+        }
+        log.info("Warmed up {} caches with {} entries in {} ms", cacheNames.size(), entries,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private int warmUp(String cacheName) throws Exception {
+        CacheEngine cache = cacheRegistry.getCache(cacheName);
+        int entries = 0;
+        if (snapshotStore != null && isSnapshotted(cacheName)) {
+            try {
+                entries += snapshotStore.restore(cacheName, cache);
+            } catch (Exception e) {
+                log.warn("Failed to restore snapshot of cache {}: {}", cacheName, e.getMessage());
+            }
+        }
+        long ttlNanos = operationSource.getTtlNanos(cacheName);
+        for (CachePreloader preloader : preloaders) {
+            if (!preloader.cacheName().equals(cacheName) || Thread.currentThread().isInterrupted()) {
+                continue;
+            }
+            Map<?, ?> loaded = preloader.load();
+            if (loaded == null) {
+                continue;
+            }
+            for (Map.Entry<?, ?> entry : loaded.entrySet()) {
+                if (entry.getKey() != null && entry.getValue() != null) {
+                    cache.put(entry.getKey(), entry.getValue(), ttlNanos);
+                    entries++;
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Resolves the {@code @Cached} methods up front so warmed entries get the TTL those methods declare.
+     */
+    private void resolveCachedMethods() {
+        declarations.getMethods().forEach((method, cached) -> {
+            try {
+                operationSource.getOperation(method, cached);
+            } catch (Exception e) {
+                log.debug("Could not resolve @Cached method {}: {}", method, e.getMessage());
+            }
+        });
+    }
+
+    private boolean isSnapshotted(String cacheName) {
+        return snapshotCacheNames.isEmpty() || snapshotCacheNames.contains(cacheName);
+    }
+}
@@ -0,0 +1,33 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+
+/**
+ * Builds a {@link WTinyLfuCache}, fronting a {@link MappedFileStore} when the spec asks for an L2 tier.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class DefaultCacheEngineFactory implements CacheEngineFactory {
+
+    private final Weigher weigher;
+    private final CacheCodec codec;
+
+    @Override
+    public CacheEngine create(String cacheName, CacheSpec spec) {
+        CacheEngine l1 = new WTinyLfuCache(spec, weigher);
+        CacheSpec.L2 l2 = spec.l2();
+        if (l2 == null) {
+            return l1;
+        }
+        try {
+            MappedFileStore store = new MappedFileStore(l2.file(), l2.capacityBytes(), l2.persistent(), codec);
+            return new TieredCache(cacheName, l1, store, codec);
+        } catch (IOException e) {
+            log.warn("Could not open L2 store {} for cache {}, using heap only: {}", l2.file(), cacheName, e.getMessage());
+            return l1;
+        }
+    }
+}
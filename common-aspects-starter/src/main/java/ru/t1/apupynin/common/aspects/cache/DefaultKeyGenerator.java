@@ -0,0 +1,24 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import java.lang.reflect.Method;
+
+/**
+ * Uses a single non-array argument as the key itself, so the common {@code findById(id)} hit allocates nothing;
+ * otherwise wraps the arguments in a {@link CacheKey}.
+ */
+public class DefaultKeyGenerator implements KeyGenerator {
+
+    @Override
+    public Object generate(Object target, Method method, Object[] args) {
+        if (args == null || args.length == 0) {
+            return CacheKey.EMPTY;
+        }
+        if (args.length == 1) {
+            Object arg = args[0];
+            if (arg != null && !arg.getClass().isArray()) {
+                return arg;
+            }
+        }
+        return new CacheKey(args);
+    }
+}
@@ -0,0 +1,212 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Encoding of cache keys on the invalidation topic. It is a closed set of tagged value types, so
+ * a record from the topic can never make a node instantiate a type of the sender's choosing:
+ * strings, boxed primitives, big numbers, UUIDs, common {@code java.time} values, enum constants
+ * and {@link CacheKey}s of those. Other keys are not encodable and are invalidated by clearing
+ * the cache instead.
+ */
+final class InvalidationKeyCodec {
+
+    private static final int MAX_ARGS = 256;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte SHORT = 4;
+    private static final byte BYTE = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte FLOAT = 7;
+    private static final byte BOOLEAN = 8;
+    private static final byte CHAR = 9;
+    private static final byte BIG_DECIMAL = 10;
+    private static final byte BIG_INTEGER = 11;
+    private static final byte UUID_VALUE = 12;
+    private static final byte ENUM = 13;
+    private static final byte LOCAL_DATE = 14;
+    private static final byte LOCAL_DATE_TIME = 15;
+    private static final byte INSTANT = 16;
+    private static final byte CACHE_KEY = 17;
+
+    private InvalidationKeyCodec() {
+    }
+
+    /**
+     * @return the encoded key, or {@code null} when the key holds a type outside the supported set
+     */
+    static byte[] encode(Object key) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            if (!write(out, key, true)) {
+                return null;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+
+    static Object decode(byte[] bytes) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            Object key = read(in, true);
+            if (in.available() > 0) {
+                throw new IOException("Trailing bytes after invalidation key");
+            }
+            return key;
+        }
+    }
+
+    private static boolean write(DataOutputStream out, Object value, boolean topLevel) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String string) {
+            out.writeByte(STRING);
+            writeString(out, string);
+        } else if (value instanceof Integer number) {
+            out.writeByte(INT);
+            out.writeInt(number);
+        } else if (value instanceof Long number) {
+            out.writeByte(LONG);
+            out.writeLong(number);
+        } else if (value instanceof Short number) {
+            out.writeByte(SHORT);
+            out.writeShort(number);
+        } else if (value instanceof Byte number) {
+            out.writeByte(BYTE);
+            out.writeByte(number);
+        } else if (value instanceof Double number) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(number);
+        } else if (value instanceof Float number) {
+            out.writeByte(FLOAT);
+            out.writeFloat(number);
+        } else if (value instanceof Boolean bool) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean(bool);
+        } else if (value instanceof Character character) {
+            out.writeByte(CHAR);
+            out.writeChar(character);
+        } else if (value instanceof BigDecimal number) {
+            out.writeByte(BIG_DECIMAL);
+            writeString(out, number.toString());
+        } else if (value instanceof BigInteger number) {
+            out.writeByte(BIG_INTEGER);
+            writeString(out, number.toString());
+        } else if (value instanceof UUID uuid) {
+            out.writeByte(UUID_VALUE);
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        } else if (value instanceof Enum<?> constant) {
+            out.writeByte(ENUM);
+            writeString(out, constant.getDeclaringClass().getName());
+            writeString(out, constant.name());
+        } else if (value instanceof LocalDate date) {
+            out.writeByte(LOCAL_DATE);
+            writeString(out, date.toString());
+        } else if (value instanceof LocalDateTime dateTime) {
+            out.writeByte(LOCAL_DATE_TIME);
+            writeString(out, dateTime.toString());
+        } else if (value instanceof Instant instant) {
+            out.writeByte(INSTANT);
+            writeString(out, instant.toString());
+        } else if (value instanceof CacheKey key && topLevel && key.getArgs().length <= MAX_ARGS) {
+            out.writeByte(CACHE_KEY);
+            out.writeShort(key.getArgs().length);
+            for (Object arg : key.getArgs()) {
+                if (!write(out, arg, false)) {
+                    return false;
+                }
+            }
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static Object read(DataInputStream in, boolean topLevel) throws IOException {
+        byte tag = in.readByte();
+        return switch (tag) {
+            case NULL -> null;
+            case STRING -> readString(in);
+            case INT -> in.readInt();
+            case LONG -> in.readLong();
+            case SHORT -> in.readShort();
+            case BYTE -> in.readByte();
+            case DOUBLE -> in.readDouble();
+            case FLOAT -> in.readFloat();
+            case BOOLEAN -> in.readBoolean();
+            case CHAR -> in.readChar();
+            case BIG_DECIMAL -> new BigDecimal(readString(in));
+            case BIG_INTEGER -> new BigInteger(readString(in));
+            case UUID_VALUE -> new UUID(in.readLong(), in.readLong());
+            case ENUM -> readEnum(readString(in), readString(in));
+            case LOCAL_DATE -> LocalDate.parse(readString(in));
+            case LOCAL_DATE_TIME -> LocalDateTime.parse(readString(in));
+            case INSTANT -> Instant.parse(readString(in));
+            case CACHE_KEY -> {
+                if (!topLevel) {
+                    throw new IOException("Nested cache key in invalidation");
+                }
+                int count = in.readUnsignedShort();
+                if (count > MAX_ARGS) {
+                    throw new IOException("Too many cache key arguments: " + count);
+                }
+                Object[] args = new Object[count];
+                for (int i = 0; i < count; i++) {
+                    args[i] = read(in, false);
+                }
+                yield new CacheKey(args);
+            }
+            default -> throw new IOException("Unknown invalidation key tag " + tag);
+        };
+    }
+
+    /**
+     * Loads the class without initializing it and only accepts enum types, so a name from the topic
+     * cannot trigger static initializers of arbitrary classes.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object readEnum(String className, String constant) throws IOException {
+        Class<?> type;
+        try {
+            type = Class.forName(className, false, InvalidationKeyCodec.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unknown enum type " + className);
+        }
+        if (!type.isEnum()) {
+            throw new IOException(className + " is not an enum");
+        }
+        return Enum.valueOf((Class<? extends Enum>) type, constant);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,75 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.cfg.MapperConfig;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JSON codec on a copy of the application {@link ObjectMapper} with default typing enabled,
+ * so DTO graphs, collections and boxed keys round-trip to their original types.
+ * Type ids are restricted to {@code java.*}, {@link CacheKey} and {@code trustedPackages}; other types,
+ * including {@code Object} itself, are rejected so a tampered L2 file or snapshot cannot name a gadget class.
+ */
+public class JacksonCacheCodec implements CacheCodec {
+
+    private static final byte[] NULL_VALUE = new byte[0];
+
+    private final ObjectWriter writer;
+    private final ObjectReader reader;
+
+    public JacksonCacheCodec(ObjectMapper objectMapper, List<String> trustedPackages) {
+        BasicPolymorphicTypeValidator.Builder validator = BasicPolymorphicTypeValidator.builder();
+        List<String> prefixes = new ArrayList<>();
+        prefixes.add("java.");
+        if (trustedPackages != null) {
+            trustedPackages.stream()
+                    .filter(name -> !name.isBlank())
+                    .map(name -> name.endsWith(".") ? name : name + ".")
+                    .forEach(prefixes::add);
+        }
+        prefixes.forEach(validator::allowIfSubType);
+        validator.allowIfSubType(CacheKey.class)
+                .allowIfSubType(new BasicPolymorphicTypeValidator.TypeMatcher() {
+                    @Override
+                    public boolean match(MapperConfig<?> config, Class<?> type) {
+                        return type.isArray() && isTrustedElement(type.getComponentType(), prefixes);
+                    }
+                });
+        ObjectMapper mapper = objectMapper.copy()
+                .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
+                .activateDefaultTyping(validator.build(), ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+        this.writer = mapper.writerFor(Object.class);
+        this.reader = mapper.readerFor(Object.class);
+    }
+
+    private static boolean isTrustedElement(Class<?> type, List<String> prefixes) {
+        if (type.isArray()) {
+            return isTrustedElement(type.getComponentType(), prefixes);
+        }
+        return type.isPrimitive() || type == CacheKey.class
+                || prefixes.stream().anyMatch(prefix -> type.getName().startsWith(prefix));
+    }
+
+    @Override
+    public byte[] encode(Object value) throws Exception {
+        if (value == NullValue.INSTANCE) {
+            return NULL_VALUE;
+        }
+        return writer.writeValueAsBytes(value);
+    }
+
+    @Override
+    public Object decode(byte[] bytes) throws Exception {
+        if (bytes.length == 0) {
+            return NullValue.INSTANCE;
+        }
+        return reader.readValue(bytes);
+    }
+}
@@ -0,0 +1,271 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Invalidation bus over the application's {@link KafkaTemplate}.
+ * <p>
+ * Published invalidations are deduplicated by key and flushed per cache every {@code batchIntervalMs}.
+ * Each node reads the topic with its own consumer group starting from the latest offset, so every
+ * replica sees every batch. The groups never commit offsets, so the broker drops a group as soon as its
+ * node leaves instead of keeping one per restart. Records carry the service name and records of
+ * other services sharing the topic are skipped. Keys travel as Base64 of the {@link InvalidationKeyCodec} encoding, which
+ * never resolves type names from the record; a batch holding a key outside that encoding is sent
+ * as a whole-cache invalidation instead.
+ * <p>
+ * A send that fails, synchronously or when the broker answers, is counted and reported to the
+ * {@link #subscribeFailures failure listeners} with the keys of its batch.
+ */
+@Slf4j
+public class KafkaCacheInvalidationBus implements CacheInvalidationBus, SmartLifecycle {
+
+    private static final List<String> SHARED_CLIENT_PROPERTIES = List.of(
+            "bootstrap.servers", "client.dns.lookup", "security.", "ssl.", "sasl.");
+
+    private final KafkaTemplate<String, Map<String, Object>> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final String topic;
+    private final String serviceName;
+    private final long batchIntervalMs;
+    private final int maxBatchSize;
+
+    private final List<Consumer<CacheInvalidation>> listeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<CacheInvalidation>> failureListeners = new CopyOnWriteArrayList<>();
+    private final LongAdder failedSends = new LongAdder();
+    private final Map<List<String>, Batch> pending = new LinkedHashMap<>();
+    private final ReentrantLock pendingLock = new ReentrantLock();
+    private final KafkaMessageListenerContainer<byte[], byte[]> container;
+    private ScheduledExecutorService flusher;
+    private volatile boolean running;
+
+    public KafkaCacheInvalidationBus(KafkaTemplate<String, Map<String, Object>> kafkaTemplate, ObjectMapper objectMapper,
+                                     String topic, String serviceName,
+                                     long batchIntervalMs, int maxBatchSize) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.topic = topic;
+        this.serviceName = serviceName;
+        this.batchIntervalMs = Math.max(1, batchIntervalMs);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+
+        Map<String, Object> consumerProperties = new HashMap<>();
+        kafkaTemplate.getProducerFactory().getConfigurationProperties().forEach((key, value) -> {
+            if (SHARED_CLIENT_PROPERTIES.stream().anyMatch(key::startsWith)) {
+                consumerProperties.put(key, value);
+            }
+        });
+        consumerProperties.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        consumerProperties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+
+        ContainerProperties containerProperties = new ContainerProperties(topic);
+        containerProperties.setGroupId(serviceName + "-cache-invalidation-" + UUID.randomUUID());
+        containerProperties.setAckMode(ContainerProperties.AckMode.MANUAL);
+        containerProperties.setAssignmentCommitOption(ContainerProperties.AssignmentCommitOption.NEVER);
+        containerProperties.setMessageListener((MessageListener<byte[], byte[]>) record -> onRecord(record.value()));
+        this.container = new KafkaMessageListenerContainer<>(new DefaultKafkaConsumerFactory<>(
+                consumerProperties, new ByteArrayDeserializer(), new ByteArrayDeserializer()), containerProperties);
+    }
+
+    @Override
+    public void publish(CacheInvalidation invalidation) {
+        pendingLock.lock();
+        try {
+            Batch batch = pending.computeIfAbsent(List.of(invalidation.origin(), invalidation.cacheName()), k -> new Batch());
+            if (invalidation.allEntries()) {
+                batch.allEntries = true;
+                batch.keys.clear();
+            } else if (!batch.allEntries) {
+                batch.keys.addAll(invalidation.keys());
+            }
+        } finally {
+            pendingLock.unlock();
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<CacheInvalidation> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void subscribeFailures(Consumer<CacheInvalidation> listener) {
+        failureListeners.add(listener);
+    }
+
+    /**
+     * Kafka sends that failed since startup; each covers up to {@code maxBatchSize} keys.
+     */
+    public long getFailedSends() {
+        return failedSends.sum();
+    }
+
+    public void flush() {
+        Map<List<String>, Batch> batches;
+        pendingLock.lock();
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batches = new LinkedHashMap<>(pending);
+            pending.clear();
+        } finally {
+            pendingLock.unlock();
+        }
+        batches.forEach((id, batch) -> send(id.get(0), id.get(1), batch));
+    }
+
+    private void send(String origin, String cacheName, Batch batch) {
+        CacheInvalidation invalidation = new CacheInvalidation(origin, cacheName, new ArrayList<>(batch.keys),
+                batch.allEntries);
+        if (batch.allEntries) {
+            sendToKafka(invalidation, List.of(), true);
+            return;
+        }
+        List<String> chunk = new ArrayList<>();
+        List<String> encodedKeys = new ArrayList<>(batch.keys.size());
+        for (Object key : batch.keys) {
+            byte[] encoded = InvalidationKeyCodec.encode(key);
+            if (encoded == null) {
+                log.debug("Key of type {} cannot be sent, invalidating all entries of cache {}",
+                        key.getClass().getName(), cacheName);
+                sendToKafka(invalidation, List.of(), true);
+                return;
+            }
+            encodedKeys.add(Base64.getEncoder().encodeToString(encoded));
+        }
+        for (String key : encodedKeys) {
+            chunk.add(key);
+            if (chunk.size() == maxBatchSize) {
+                sendToKafka(invalidation, chunk, false);
+                chunk = new ArrayList<>();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            sendToKafka(invalidation, chunk, false);
+        }
+    }
+
+    /**
+     * @param invalidation the batch the keys belong to, reported to the failure listeners when the send fails
+     */
+    private void sendToKafka(CacheInvalidation invalidation, List<String> keys, boolean allEntries) {
+        String cacheName = invalidation.cacheName();
+        try {
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("service", serviceName);
+            payload.put("origin", invalidation.origin());
+            payload.put("cacheName", cacheName);
+            payload.put("keys", keys);
+            payload.put("allEntries", allEntries);
+
+            Message<Map<String, Object>> message = MessageBuilder
+                    .withPayload(payload)
+                    .setHeader(KafkaHeaders.TOPIC, topic)
+                    .setHeader(KafkaHeaders.KEY, cacheName)
+                    .build();
+
+            kafkaTemplate.send(message).whenComplete((result, error) -> {
+                if (error != null) {
+                    onSendFailure(invalidation, error);
+                }
+            });
+            log.debug("Sent {} invalidations of cache {} to Kafka topic: {}", keys.size(), cacheName, topic);
+        } catch (Exception e) {
+            onSendFailure(invalidation, e);
+        }
+    }
+
+    private void onSendFailure(CacheInvalidation invalidation, Throwable error) {
+        failedSends.increment();
+        log.warn("Failed to send invalidation of cache {} to Kafka: {}", invalidation.cacheName(), error.getMessage());
+        for (Consumer<CacheInvalidation> listener : failureListeners) {
+            try {
+                listener.accept(invalidation);
+            } catch (Exception e) {
+                log.warn("Invalidation failure listener failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void onRecord(byte[] value) {
+        try {
+            Map<String, Object> payload = objectMapper.readValue(value, Map.class);
+            if (!serviceName.equals(payload.get("service"))) {
+                return;
+            }
+            List<Object> keys = new ArrayList<>();
+            for (String encoded : (List<String>) payload.getOrDefault("keys", List.of())) {
+                keys.add(InvalidationKeyCodec.decode(Base64.getDecoder().decode(encoded)));
+            }
+            CacheInvalidation invalidation = new CacheInvalidation((String) payload.get("origin"),
+                    (String) payload.get("cacheName"), keys, Boolean.TRUE.equals(payload.get("allEntries")));
+            for (Consumer<CacheInvalidation> listener : listeners) {
+                listener.accept(invalidation);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to apply cache invalidation from Kafka: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "t1-cache-invalidation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, batchIntervalMs, batchIntervalMs, TimeUnit.MILLISECONDS);
+        container.start();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        flush();
+        container.stop();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private static final class Batch {
+        final Set<Object> keys = new LinkedHashSet<>();
+        boolean allEntries;
+    }
+}
@@ -0,0 +1,13 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import java.lang.reflect.Method;
+
+/**
+ * Strategy for turning a {@code @Cached} invocation into a cache key.
+ * Keys must implement {@code equals}/{@code hashCode} by value and are scoped to a single cache name.
+ */
+@FunctionalInterface
+public interface KeyGenerator {
+
+    Object generate(Object target, Method method, Object[] args);
+}
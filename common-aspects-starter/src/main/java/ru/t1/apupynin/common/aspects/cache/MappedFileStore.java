@@ -0,0 +1,289 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Off-heap byte store over a memory-mapped file, used as the second cache tier.
+ * <p>
+ * Records are appended in a ring: when the write position reaches the end of the region it wraps
+ * to the start and overwrites the oldest records, so the file never grows beyond its capacity.
+ * Only the key-to-offset index lives on the heap. Expiry is kept as wall-clock time so that a
+ * persistent store can be reopened after a restart; recovery replays the current lap and the
+ * intact tail of the previous one, keeping the newest record of each key. A removed or replaced
+ * record is flagged dead in place by zeroing its expiry, so recovery never brings it back and at
+ * most one live record per key remains in the file.
+ */
+@Slf4j
+public class MappedFileStore implements AutoCloseable {
+
+    private static final int FILE_MAGIC = 0x54314332;
+    private static final int FILE_VERSION = 1;
+    private static final int RECORD_MAGIC = 0x7E1C0DE5;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_HEADER_SIZE = 32;
+    private static final long DEAD = 0;
+
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_WRITE_POSITION = 8;
+    private static final int OFFSET_TAIL_START = 16;
+    private static final int OFFSET_WRAP_LIMIT = 24;
+    private static final int OFFSET_SEQUENCE = 32;
+
+    private final Path file;
+    private final boolean persistent;
+    private final CacheCodec codec;
+    private final int capacity;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Object, Integer> index = new ConcurrentHashMap<>();
+    private final NavigableMap<Integer, Object> keysByOffset = new TreeMap<>();
+    private int writePosition = HEADER_SIZE;
+    private int wrapLimit;
+    private long sequence;
+
+    public MappedFileStore(Path file, long capacityBytes, boolean persistent, CacheCodec codec) throws IOException {
+        this.file = file;
+        this.persistent = persistent;
+        this.codec = codec;
+        this.capacity = (int) Math.min(Math.max(capacityBytes, HEADER_SIZE * 2L), Integer.MAX_VALUE);
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        boolean reuse = persistent && Files.exists(file);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (!reuse || channel.size() != capacity) {
+            channel.truncate(0);
+            reuse = false;
+        }
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+
+        if (reuse && buffer.getInt(OFFSET_MAGIC) == FILE_MAGIC && buffer.getInt(OFFSET_VERSION) == FILE_VERSION) {
+            recover();
+        } else {
+            buffer.putInt(OFFSET_MAGIC, FILE_MAGIC);
+            buffer.putInt(OFFSET_VERSION, FILE_VERSION);
+            writeHeader(HEADER_SIZE);
+        }
+    }
+
+    /**
+     * @return the stored value bytes, or {@code null} when absent, overwritten or expired
+     */
+    public byte[] get(Object key) {
+        lock.readLock().lock();
+        try {
+            Integer offset = index.get(key);
+            if (offset == null) {
+                return null;
+            }
+            if (buffer.getLong(offset + 16) <= System.currentTimeMillis()) {
+                index.remove(key, offset);
+                return null;
+            }
+            int keyLength = buffer.getInt(offset + 24);
+            int valueLength = buffer.getInt(offset + 28);
+            byte[] value = new byte[valueLength];
+            buffer.get(offset + RECORD_HEADER_SIZE + keyLength, value);
+            return value;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getExpiresAtMillis(Object key) {
+        lock.readLock().lock();
+        try {
+            Integer offset = index.get(key);
+            return offset == null ? 0 : buffer.getLong(offset + 16);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return {@code false} when the record does not fit into the region at all
+     */
+    public boolean put(Object key, byte[] keyBytes, byte[] value, long expiresAtMillis) {
+        long length = (long) RECORD_HEADER_SIZE + keyBytes.length + value.length;
+        if (length > capacity - HEADER_SIZE) {
+            return false;
+        }
+        int recordLength = (int) length;
+
+        lock.writeLock().lock();
+        try {
+            if (writePosition + recordLength > capacity) {
+                evictRange(writePosition, capacity);
+                wrapLimit = writePosition;
+                writePosition = HEADER_SIZE;
+            }
+            evictRange(writePosition, writePosition + recordLength);
+
+            int offset = writePosition;
+            buffer.putInt(offset, RECORD_MAGIC);
+            buffer.putInt(offset + 4, recordLength);
+            buffer.putLong(offset + 8, ++sequence);
+            buffer.putLong(offset + 16, expiresAtMillis);
+            buffer.putInt(offset + 24, keyBytes.length);
+            buffer.putInt(offset + 28, value.length);
+            buffer.put(offset + RECORD_HEADER_SIZE, keyBytes);
+            buffer.put(offset + RECORD_HEADER_SIZE + keyBytes.length, value);
+
+            Integer previous = index.put(key, offset);
+            if (previous != null) {
+                keysByOffset.remove(previous);
+                markDead(previous);
+            }
+            keysByOffset.put(offset, key);
+            writeHeader(offset + recordLength);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Object key) {
+        lock.writeLock().lock();
+        try {
+            Integer offset = index.remove(key);
+            if (offset != null) {
+                keysByOffset.remove(offset);
+                markDead(offset);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            index.clear();
+            keysByOffset.clear();
+            wrapLimit = 0;
+            writeHeader(HEADER_SIZE);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeExpired() {
+        long now = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            index.entrySet().removeIf(entry -> {
+                if (buffer.getLong(entry.getValue() + 16) <= now) {
+                    keysByOffset.remove(entry.getValue());
+                    return true;
+                }
+                return false;
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long size() {
+        return index.size();
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (persistent) {
+                buffer.force();
+            }
+            channel.close();
+            if (!persistent) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to close cache store {}: {}", file, e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void markDead(int offset) {
+        buffer.putLong(offset + 16, DEAD);
+    }
+
+    private void evictRange(int from, int to) {
+        NavigableMap<Integer, Object> overwritten = keysByOffset.subMap(from, true, to, false);
+        for (Map.Entry<Integer, Object> entry : overwritten.entrySet()) {
+            index.remove(entry.getValue(), entry.getKey());
+        }
+        overwritten.clear();
+    }
+
+    private void writeHeader(int newWritePosition) {
+        writePosition = newWritePosition;
+        Integer tailStart = wrapLimit > writePosition ? keysByOffset.ceilingKey(writePosition) : null;
+        buffer.putLong(OFFSET_WRITE_POSITION, writePosition);
+        buffer.putLong(OFFSET_TAIL_START, tailStart != null ? tailStart : 0);
+        buffer.putLong(OFFSET_WRAP_LIMIT, wrapLimit);
+        buffer.putLong(OFFSET_SEQUENCE, sequence);
+    }
+
+    private void recover() {
+        int savedWritePosition = (int) buffer.getLong(OFFSET_WRITE_POSITION);
+        int tailStart = (int) buffer.getLong(OFFSET_TAIL_START);
+        wrapLimit = (int) buffer.getLong(OFFSET_WRAP_LIMIT);
+        sequence = buffer.getLong(OFFSET_SEQUENCE);
+
+        Map<Object, long[]> newest = new HashMap<>();
+        long now = System.currentTimeMillis();
+        scan(HEADER_SIZE, savedWritePosition, now, newest);
+        if (tailStart >= savedWritePosition && wrapLimit > tailStart) {
+            scan(tailStart, wrapLimit, now, newest);
+        }
+        for (Map.Entry<Object, long[]> entry : newest.entrySet()) {
+            int offset = (int) entry.getValue()[1];
+            index.put(entry.getKey(), offset);
+            keysByOffset.put(offset, entry.getKey());
+        }
+        writePosition = savedWritePosition;
+        log.info("Recovered {} entries from cache store {}", index.size(), file);
+    }
+
+    private void scan(int from, int to, long now, Map<Object, long[]> newest) {
+        int offset = from;
+        while (offset + RECORD_HEADER_SIZE <= to && buffer.getInt(offset) == RECORD_MAGIC) {
+            int recordLength = buffer.getInt(offset + 4);
+            if (recordLength < RECORD_HEADER_SIZE || offset + recordLength > to) {
+                return;
+            }
+            long recordSequence = buffer.getLong(offset + 8);
+            if (buffer.getLong(offset + 16) > now) {
+                byte[] keyBytes = new byte[buffer.getInt(offset + 24)];
+                buffer.get(offset + RECORD_HEADER_SIZE, keyBytes);
+                try {
+                    Object key = codec.decode(keyBytes);
+                    long[] current = newest.get(key);
+                    if (current == null || current[0] < recordSequence) {
+                        newest.put(key, new long[]{recordSequence, offset});
+                    }
+                } catch (Exception e) {
+                    log.debug("Skipping unreadable cache record at {} in {}: {}", offset, file, e.getMessage());
+                }
+            }
+            offset += recordLength;
+        }
+    }
+}
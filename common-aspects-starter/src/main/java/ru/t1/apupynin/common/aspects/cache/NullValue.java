@@ -0,0 +1,25 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+/**
+ * Stored in place of a {@code null} result when null caching is enabled.
+ */
+public final class NullValue {
+
+    public static final NullValue INSTANCE = new NullValue();
+
+    private NullValue() {
+    }
+
+    public static Object wrap(Object value) {
+        return value == null ? INSTANCE : value;
+    }
+
+    public static Object unwrap(Object value) {
+        return value == INSTANCE ? null : value;
+    }
+
+    @Override
+    public String toString() {
+        return "NullValue";
+    }
+}
@@ -0,0 +1,120 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller computes the value,
+ * everyone arriving while it runs waits on the same future.
+ */
+public final class SingleFlight {
+
+    private final ConcurrentHashMap<Object, Flight> flights = new ConcurrentHashMap<>();
+
+    public Object execute(Object key, Loader loader) throws Throwable {
+        Flight flight = new Flight(Thread.currentThread());
+        Flight existing;
+        while ((existing = flights.putIfAbsent(key, flight)) != null) {
+            if (existing.owner == Thread.currentThread()) {
+                return loader.load();
+            }
+            try {
+                return await(existing);
+            } catch (CancellationException e) {
+                flights.remove(key, existing);
+            }
+        }
+        try {
+            Object value = loader.load();
+            flight.complete(value);
+            return value;
+        } catch (Throwable t) {
+            flight.completeExceptionally(t);
+            throw t;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * Starts a background load unless one is already running for the key.
+     *
+     * @return {@code false} when a load was already in flight or the executor rejected the task
+     */
+    public boolean executeAsync(Object key, Loader loader, Executor executor) {
+        Flight flight = new Flight(null);
+        if (flights.putIfAbsent(key, flight) != null) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    flight.complete(loader.load());
+                } catch (Throwable t) {
+                    flight.completeExceptionally(t);
+                } finally {
+                    flights.remove(key, flight);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            flights.remove(key, flight);
+            flight.cancel(false);
+            return false;
+        }
+    }
+
+    /**
+     * Non-blocking counterpart of {@link #execute}: callers arriving while a load is in flight
+     * receive a copy of its future instead of waiting on it.
+     */
+    public CompletableFuture<Object> executeFuture(Object key, Supplier<CompletableFuture<Object>> loader) {
+        Flight flight = new Flight(null);
+        Flight existing = flights.putIfAbsent(key, flight);
+        if (existing != null) {
+            return existing.copy();
+        }
+        try {
+            loader.get().whenComplete((value, error) -> {
+                flights.remove(key, flight);
+                if (error != null) {
+                    flight.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error);
+                } else {
+                    flight.complete(value);
+                }
+            });
+        } catch (Throwable t) {
+            flights.remove(key, flight);
+            flight.completeExceptionally(t);
+        }
+        return flight.copy();
+    }
+
+    private static Object await(Flight flight) throws Throwable {
+        try {
+            return flight.get();
+        } catch (ExecutionException | CompletionException e) {
+            throw e.getCause() != null ? e.getCause() : e;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        Object load() throws Throwable;
+    }
+
+    private static final class Flight extends CompletableFuture<Object> {
+        final Thread owner;
+
+        Flight(Thread owner) {
+            this.owner = owner;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Small on-heap L1 in front of an off-heap {@link MappedFileStore}.
+ * Puts are written through to both tiers; an L2 hit is decoded once and promoted into L1
+ * for the rest of its remaining lifetime.
+ */
+@Slf4j
+public class TieredCache implements CacheEngine {
+
+    private final String cacheName;
+    private final CacheEngine l1;
+    private final MappedFileStore l2;
+    private final CacheCodec codec;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+
+    public TieredCache(String cacheName, CacheEngine l1, MappedFileStore l2, CacheCodec codec) {
+        this.cacheName = cacheName;
+        this.l1 = l1;
+        this.l2 = l2;
+        this.codec = codec;
+    }
+
+    @Override
+    public CacheEntry getEntry(Object key) {
+        CacheEntry entry = l1.getEntry(key);
+        if (entry != null) {
+            hits.increment();
+            return entry;
+        }
+        byte[] bytes = l2.get(key);
+        if (bytes == null) {
+            misses.increment();
+            return null;
+        }
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(l2.getExpiresAtMillis(key) - System.currentTimeMillis());
+        if (remainingNanos <= 0) {
+            misses.increment();
+            return null;
+        }
+        try {
+            Object value = codec.decode(bytes);
+            l1.put(key, value, remainingNanos);
+            hits.increment();
+            long now = System.nanoTime();
+            return new DecodedEntry(value, now, now + remainingNanos);
+        } catch (Exception e) {
+            log.warn("Failed to decode L2 entry of cache {}: {}", cacheName, e.getMessage());
+            l2.remove(key);
+            misses.increment();
+            return null;
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value, long ttlNanos) {
+        l1.put(key, value, ttlNanos);
+        puts.increment();
+        try {
+            long expiresAtMillis = System.currentTimeMillis() + TimeUnit.NANOSECONDS.toMillis(ttlNanos);
+            if (!l2.put(key, codec.encode(key), codec.encode(value), expiresAtMillis)) {
+                log.debug("Entry too large for L2 of cache {}", cacheName);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to write L2 entry of cache {}: {}", cacheName, e.getMessage());
+        }
+    }
+
+    @Override
+    public void invalidate(Object key) {
+        l1.invalidate(key);
+        l2.remove(key);
+    }
+
+    @Override
+    public void invalidateAll() {
+        l1.invalidateAll();
+        l2.clear();
+    }
+
+    @Override
+    public void cleanUp() {
+        l1.cleanUp();
+        l2.removeExpired();
+    }
+
+    @Override
+    public long size() {
+        return Math.max(l1.size(), l2.size());
+    }
+
+    @Override
+    public CacheStats stats() {
+        CacheStats l1Stats = l1.stats();
+        return new CacheStats(hits.sum(), misses.sum(), puts.sum(), l1Stats.evictions(), l1Stats.expirations());
+    }
+
+    @Override
+    public Map<Object, CacheEntry> hottest(int limit) {
+        return l1.hottest(limit);
+    }
+
+    @Override
+    public void close() {
+        l2.close();
+    }
+
+    private record DecodedEntry(Object value, long writeTimeNanos, long expiresAtNanos) implements CacheEntry {
+
+        @Override
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public long getWriteTimeNanos() {
+            return writeTimeNanos;
+        }
+
+        @Override
+        public long getExpiresAtNanos() {
+            return expiresAtNanos;
+        }
+    }
+}
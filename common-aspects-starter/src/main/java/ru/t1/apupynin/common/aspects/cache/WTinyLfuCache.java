@@ -0,0 +1,444 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded cache with Window TinyLFU admission and a segmented LRU main space.
+ * <p>
+ * New entries land in a small LRU window; entries leaving the window compete with the
+ * probation victim and are admitted only when the {@link FrequencySketch} estimates them
+ * as more popular. Reads are recorded through a lossy buffer and replayed under the
+ * eviction lock, so a hit never blocks on policy maintenance.
+ */
+public final class WTinyLfuCache implements CacheEngine {
+
+    private static final int READ_BUFFER_SIZE = 128;
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+    private static final int DRAIN_THRESHOLD_MASK = 31;
+    private static final double WINDOW_RATIO = 0.01;
+    private static final double PROTECTED_RATIO = 0.80;
+    private static final long WEIGHTED_SKETCH_ENTRIES = 1 << 16;
+
+    private static final byte WINDOW = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+
+    private final ConcurrentHashMap<Object, Node> data = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final AtomicReferenceArray<Node> readBuffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+    private final AtomicLong readCounter = new AtomicLong();
+
+    private final Weigher weigher;
+    private final FrequencySketch sketch;
+    private final long maximum;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+
+    private final AccessOrderDeque window = new AccessOrderDeque();
+    private final AccessOrderDeque probation = new AccessOrderDeque();
+    private final AccessOrderDeque protectedQueue = new AccessOrderDeque();
+    private long windowWeight;
+    private long protectedWeight;
+    private long totalWeight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public WTinyLfuCache(CacheSpec spec, Weigher weigher) {
+        this.weigher = spec.isWeighted() ? weigher : Weigher.SINGLETON;
+        this.maximum = Math.max(1, spec.maximum());
+        this.windowMaximum = Math.max(1, (long) (maximum * WINDOW_RATIO));
+        this.protectedMaximum = (long) ((maximum - windowMaximum) * PROTECTED_RATIO);
+        long expectedEntries = spec.isWeighted()
+                ? (spec.maxSize() > 0 ? spec.maxSize() : Math.min(maximum, WEIGHTED_SKETCH_ENTRIES))
+                : maximum;
+        this.sketch = new FrequencySketch(expectedEntries);
+    }
+
+    @Override
+    public CacheEntry getEntry(Object key) {
+        Node node = data.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        if (node.isExpired(System.nanoTime())) {
+            misses.increment();
+            if (data.remove(key, node)) {
+                expirations.increment();
+                evictionLock.lock();
+                try {
+                    unlink(node);
+                } finally {
+                    evictionLock.unlock();
+                }
+            }
+            return null;
+        }
+        hits.increment();
+        afterRead(node);
+        return node;
+    }
+
+    @Override
+    public void put(Object key, Object value, long ttlNanos) {
+        long now = System.nanoTime();
+        Node node = new Node(key, value, Math.max(0, weigher.weigh(key, value)), now, now + ttlNanos);
+        Node previous = data.put(key, node);
+        puts.increment();
+
+        evictionLock.lock();
+        try {
+            if (previous != null) {
+                unlink(previous);
+            }
+            if (data.get(key) == node) {
+                sketch.increment(key);
+                link(node);
+            }
+            drainReadBuffer();
+            evictEntries();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void invalidate(Object key) {
+        Node node = data.remove(key);
+        if (node == null) {
+            return;
+        }
+        evictionLock.lock();
+        try {
+            unlink(node);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        evictionLock.lock();
+        try {
+            data.clear();
+            window.clear();
+            probation.clear();
+            protectedQueue.clear();
+            windowWeight = 0;
+            protectedWeight = 0;
+            totalWeight = 0;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void cleanUp() {
+        long now = System.nanoTime();
+        List<Node> expired = new ArrayList<>();
+        for (Node node : data.values()) {
+            if (node.isExpired(now) && data.remove(node.key, node)) {
+                expired.add(node);
+            }
+        }
+        evictionLock.lock();
+        try {
+            for (Node node : expired) {
+                unlink(node);
+            }
+            drainReadBuffer();
+        } finally {
+            evictionLock.unlock();
+        }
+        expirations.add(expired.size());
+    }
+
+    @Override
+    public long size() {
+        return data.mappingCount();
+    }
+
+    @Override
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), puts.sum(), evictions.sum(), expirations.sum());
+    }
+
+    /**
+     * Ranks by the sketch estimate; ties keep the policy order, protected before window before
+     * probation and recently used first within each segment.
+     */
+    @Override
+    public Map<Object, CacheEntry> hottest(int limit) {
+        List<Node> nodes = new ArrayList<>();
+        long[] ranks;
+        evictionLock.lock();
+        try {
+            drainReadBuffer();
+            protectedQueue.collectMostRecentFirst(nodes);
+            window.collectMostRecentFirst(nodes);
+            probation.collectMostRecentFirst(nodes);
+            ranks = new long[nodes.size()];
+            for (int i = 0; i < ranks.length; i++) {
+                ranks[i] = ((long) (15 - sketch.frequency(nodes.get(i).key)) << 32) | i;
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+        Arrays.sort(ranks);
+
+        long now = System.nanoTime();
+        Map<Object, CacheEntry> hottest = new LinkedHashMap<>();
+        for (int i = 0; i < ranks.length && hottest.size() < limit; i++) {
+            Node node = nodes.get((int) ranks[i]);
+            if (!node.isExpired(now)) {
+                hottest.put(node.key, node);
+            }
+        }
+        return hottest;
+    }
+
+    private void afterRead(Node node) {
+        long count = readCounter.getAndIncrement();
+        readBuffer.lazySet((int) (count & READ_BUFFER_MASK), node);
+        if ((count & DRAIN_THRESHOLD_MASK) == 0 && evictionLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void drainReadBuffer() {
+        for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+            Node node = readBuffer.getAndSet(i, null);
+            if (node != null) {
+                onAccess(node);
+            }
+        }
+    }
+
+    private void onAccess(Node node) {
+        if (!node.linked) {
+            return;
+        }
+        sketch.increment(node.key);
+        switch (node.queue) {
+            case WINDOW -> window.moveToBack(node);
+            case PROBATION -> {
+                probation.remove(node);
+                node.queue = PROTECTED;
+                protectedQueue.addLast(node);
+                protectedWeight += node.weight;
+                demoteProtectedOverflow();
+            }
+            default -> protectedQueue.moveToBack(node);
+        }
+    }
+
+    private void demoteProtectedOverflow() {
+        while (protectedWeight > protectedMaximum) {
+            Node demoted = protectedQueue.pollFirst();
+            if (demoted == null) {
+                return;
+            }
+            protectedWeight -= demoted.weight;
+            demoted.queue = PROBATION;
+            probation.addLast(demoted);
+        }
+    }
+
+    private void evictEntries() {
+        int candidates = 0;
+        while (windowWeight > windowMaximum) {
+            Node node = window.pollFirst();
+            if (node == null) {
+                break;
+            }
+            windowWeight -= node.weight;
+            node.queue = PROBATION;
+            probation.addLast(node);
+            candidates++;
+        }
+
+        while (totalWeight > maximum) {
+            Node victim = probation.peekFirst();
+            if (victim == null) {
+                victim = protectedQueue.peekFirst() != null ? protectedQueue.peekFirst() : window.peekFirst();
+                if (victim == null) {
+                    return;
+                }
+                evict(victim);
+                continue;
+            }
+            Node candidate = candidates > 0 ? probation.peekLast() : null;
+            if (candidate == null || candidate == victim) {
+                if (candidate != null) {
+                    candidates--;
+                }
+                evict(victim);
+            } else if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                evict(victim);
+            } else {
+                candidates--;
+                evict(candidate);
+            }
+        }
+    }
+
+    private void evict(Node node) {
+        unlink(node);
+        if (data.remove(node.key, node)) {
+            evictions.increment();
+        }
+    }
+
+    private void link(Node node) {
+        node.queue = WINDOW;
+        node.linked = true;
+        window.addLast(node);
+        windowWeight += node.weight;
+        totalWeight += node.weight;
+    }
+
+    private void unlink(Node node) {
+        if (!node.linked) {
+            return;
+        }
+        switch (node.queue) {
+            case WINDOW -> {
+                window.remove(node);
+                windowWeight -= node.weight;
+            }
+            case PROBATION -> probation.remove(node);
+            default -> {
+                protectedQueue.remove(node);
+                protectedWeight -= node.weight;
+            }
+        }
+        totalWeight -= node.weight;
+        node.linked = false;
+    }
+
+    private static final class Node implements CacheEntry {
+        final Object key;
+        final Object value;
+        final int weight;
+        final long writeTimeNanos;
+        final long expiresAtNanos;
+
+        byte queue;
+        boolean linked;
+        Node prev;
+        Node next;
+
+        Node(Object key, Object value, int weight, long writeTimeNanos, long expiresAtNanos) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.writeTimeNanos = writeTimeNanos;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        @Override
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public long getWriteTimeNanos() {
+            return writeTimeNanos;
+        }
+
+        @Override
+        public long getExpiresAtNanos() {
+            return expiresAtNanos;
+        }
+    }
+
+    private static final class AccessOrderDeque {
+        private Node head;
+        private Node tail;
+
+        void addLast(Node node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        void remove(Node node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToBack(Node node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        Node peekFirst() {
+            return head;
+        }
+
+        Node peekLast() {
+            return tail;
+        }
+
+        void collectMostRecentFirst(List<Node> into) {
+            for (Node node = tail; node != null; node = node.prev) {
+                into.add(node);
+            }
+        }
+
+        Node pollFirst() {
+            Node node = head;
+            if (node != null) {
+                remove(node);
+            }
+            return node;
+        }
+
+        void clear() {
+            Node node = head;
+            while (node != null) {
+                Node next = node.next;
+                node.linked = false;
+                node.prev = null;
+                node.next = null;
+                node = next;
+            }
+            head = null;
+            tail = null;
+        }
+    }
+}
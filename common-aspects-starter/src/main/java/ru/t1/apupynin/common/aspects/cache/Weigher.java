@@ -0,0 +1,9 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+@FunctionalInterface
+public interface Weigher {
+
+    Weigher SINGLETON = (key, value) -> 1;
+
+    int weigh(Object key, Object value);
+}
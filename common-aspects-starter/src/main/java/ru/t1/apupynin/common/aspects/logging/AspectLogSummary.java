@@ -0,0 +1,142 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Replaces per-call log lines of aspects in {@link LogVerbosity#SUMMARY} mode: once per interval it
+ * writes one INFO line per name whose counters moved, with the increments since the previous line.
+ * Counters come either from {@link Tally tallies} the aspects bump per call, or from the cumulative
+ * totals of a component that already counts, such as the cache statistics.
+ */
+@Slf4j
+public class AspectLogSummary implements SmartLifecycle {
+
+    private final List<Section> sections = new CopyOnWriteArrayList<>();
+    private final Map<String, Map<String, Tally>> tallies = new ConcurrentHashMap<>();
+    private final long intervalMs;
+    private ScheduledExecutorService writer;
+    private volatile boolean running;
+
+    public AspectLogSummary(long intervalMs) {
+        this.intervalMs = Math.max(1, intervalMs);
+    }
+
+    /**
+     * Registers cumulative totals, keyed by name, whose values line up with {@code fields}.
+     */
+    public void addSection(String event, Supplier<Map<String, long[]>> totals, String... fields) {
+        sections.add(new Section(event, totals, fields));
+    }
+
+    /**
+     * @return the call and error counters of {@code name}, meant to be looked up once per method and kept
+     */
+    public Tally tally(String event, String name) {
+        Map<String, Tally> byName = tallies.computeIfAbsent(event, e -> {
+            Map<String, Tally> created = new ConcurrentHashMap<>();
+            addSection(e, () -> {
+                Map<String, long[]> totals = new HashMap<>();
+                created.forEach((n, tally) -> totals.put(n, new long[]{tally.calls.sum(), tally.errors.sum()}));
+                return totals;
+            }, "calls", "errors");
+            return created;
+        });
+        return byName.computeIfAbsent(name, n -> new Tally());
+    }
+
+    public synchronized void write() {
+        for (Section section : sections) {
+            section.write();
+        }
+    }
+
+    @Override
+    public void start() {
+        writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "t1-log-summary");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleAtFixedRate(() -> {
+            try {
+                write();
+            } catch (Exception e) {
+                log.warn("Failed to write aspect log summary: {}", e.getMessage());
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (writer != null) {
+            writer.shutdownNow();
+        }
+        write();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    public static final class Tally {
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        public void record(boolean error) {
+            calls.increment();
+            if (error) {
+                errors.increment();
+            }
+        }
+    }
+
+    private static final class Section {
+
+        private final String event;
+        private final Supplier<Map<String, long[]>> totals;
+        private final String[] fields;
+        private final Map<String, long[]> written = new LinkedHashMap<>();
+
+        Section(String event, Supplier<Map<String, long[]>> totals, String[] fields) {
+            this.event = event;
+            this.totals = totals;
+            this.fields = fields;
+        }
+
+        void write() {
+            totals.get().forEach((name, current) -> {
+                long[] previous = written.put(name, current.clone());
+                long[] deltas = new long[Math.min(fields.length, current.length)];
+                boolean moved = false;
+                for (int i = 0; i < deltas.length; i++) {
+                    deltas[i] = current[i] - (previous != null ? previous[i] : 0);
+                    moved |= deltas[i] != 0;
+                }
+                if (moved && log.isInfoEnabled()) {
+                    StringBuilder line = new StringBuilder(event).append(" name=").append(name);
+                    for (int i = 0; i < deltas.length; i++) {
+                        line.append(' ').append(fields[i]).append('=').append(deltas[i]);
+                    }
+                    log.info(line.toString());
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compact encoding of log payloads.
+ * <p>
+ * A message is {@code 'T' version flags body}, the body optionally gzip-compressed. The body is a
+ * varint event count followed by the events, each a varint field count and its fields. Field names
+ * known to {@link #FIELDS} are written as their index; any other name, and every string value, goes
+ * through a per-message string table, so a method signature or service name repeated across
+ * the events of one message is written once and referenced by index afterwards. Values are tagged:
+ * integers as zig-zag varints, decimals as 8 bytes, maps and lists recursively, and
+ * {@link JsonLogField}s and other objects as their JSON text.
+ * <p>
+ * {@link #FIELDS} is part of the format: fields may only be appended, together with a new version
+ * whose table size goes into {@link #FIELD_COUNTS}, so messages of older versions (spooled to disk,
+ * say) still decode.
+ */
+public class BinaryLogEventCodec implements LogEventCodec {
+
+    static final byte MAGIC = 'T';
+    static final byte VERSION = 2;
+    static final int FLAG_GZIP = 1;
+
+    static final List<String> FIELDS = List.of(
+            "timestamp", "methodSignature", "uri", "parameters", "body", "serviceName", "requestType",
+            "durationMs", "exceptionMessage", "stackTrace", "methodParameters", "type", "service", "event",
+            "method", "elapsedMs", "thresholdMs", "baselineMs", "params", "count", "throughputPerSec",
+            "meanMs", "p50Ms", "p90Ms", "p99Ms", "p999Ms", "maxMs",
+            "fingerprint", "traceId", "firstTimestamp", "lastTimestamp", "fromState", "toState", "failureRate",
+            "calls", "spans", "totalDurationMs", "droppedSpans", "income", "outcome", "kind", "name", "offsetMs",
+            "totalMs", "errors", "slow");
+
+    /**
+     * Number of {@link #FIELDS} known to each version, indexed by version.
+     */
+    private static final int[] FIELD_COUNTS = {0, 27, FIELDS.size()};
+
+    private static final Map<String, Integer> FIELD_INDEX = new HashMap<>();
+
+    static {
+        for (int i = 0; i < FIELDS.size(); i++) {
+            FIELD_INDEX.put(FIELDS.get(i), i);
+        }
+    }
+
+    private static final int MAX_INTERNED_CHARS = 512;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_TRUE = 1;
+    private static final int TAG_FALSE = 2;
+    private static final int TAG_INTEGER = 3;
+    private static final int TAG_DECIMAL = 4;
+    private static final int TAG_STRING = 5;
+    private static final int TAG_JSON = 6;
+    private static final int TAG_MAP = 7;
+    private static final int TAG_LIST = 8;
+
+    private static final int STRING_NEW = 0;
+    private static final int STRING_INLINE = 1;
+    private static final int STRING_REF_BASE = 2;
+
+    private final ObjectMapper objectMapper;
+    private final boolean compress;
+    private final int compressionThresholdBytes;
+
+    /**
+     * @param compress whether to gzip bodies of at least {@code compressionThresholdBytes}
+     */
+    public BinaryLogEventCodec(ObjectMapper objectMapper, boolean compress, int compressionThresholdBytes) {
+        this.objectMapper = objectMapper;
+        this.compress = compress;
+        this.compressionThresholdBytes = compressionThresholdBytes;
+    }
+
+    @Override
+    public String format() {
+        return "t1-binary-v" + VERSION;
+    }
+
+    @Override
+    public byte[] encode(List<Map<String, Object>> payloads) throws IOException {
+        Writer writer = new Writer();
+        writer.varint(payloads.size());
+        for (Map<String, Object> payload : payloads) {
+            writer.map(payload);
+        }
+        boolean gzip = compress && writer.out.size() >= compressionThresholdBytes;
+
+        Buffer message = new Buffer(gzip ? writer.out.size() / 4 + 16 : writer.out.size() + 3);
+        message.write(MAGIC);
+        message.write(VERSION);
+        message.write(gzip ? FLAG_GZIP : 0);
+        if (gzip) {
+            try (GZIPOutputStream out = new GZIPOutputStream(message, 8192)) {
+                out.write(writer.out.bytes, 0, writer.out.size());
+            }
+        } else {
+            message.write(writer.out.bytes, 0, writer.out.size());
+        }
+        return message.toByteArray();
+    }
+
+    @Override
+    public List<Map<String, Object>> decode(byte[] bytes) throws IOException {
+        if (bytes.length < 3 || bytes[0] != MAGIC) {
+            throw new IOException("Not a binary log message");
+        }
+        if (bytes[1] < 1 || bytes[1] > VERSION) {
+            throw new IOException("Unsupported binary log version " + bytes[1]);
+        }
+        byte[] body = (bytes[2] & FLAG_GZIP) != 0
+                ? new GZIPInputStream(new ByteArrayInputStream(bytes, 3, bytes.length - 3)).readAllBytes()
+                : Arrays.copyOfRange(bytes, 3, bytes.length);
+
+        Reader reader = new Reader(body, FIELD_COUNTS[bytes[1]]);
+        int count = reader.size();
+        List<Map<String, Object>> payloads = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            payloads.add(reader.map());
+        }
+        return payloads;
+    }
+
+    private final class Writer {
+
+        private final Buffer out = new Buffer(1024);
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        void map(Map<?, ?> map) throws IOException {
+            varint(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                String name = String.valueOf(entry.getKey());
+                Integer field = FIELD_INDEX.get(name);
+                if (field != null) {
+                    varint(field);
+                } else {
+                    varint(FIELDS.size());
+                    string(name);
+                }
+                value(entry.getValue());
+            }
+        }
+
+        void value(Object value) throws IOException {
+            if (value == null) {
+                out.write(TAG_NULL);
+            } else if (value instanceof Boolean bool) {
+                out.write(bool ? TAG_TRUE : TAG_FALSE);
+            } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                    || value instanceof Byte) {
+                out.write(TAG_INTEGER);
+                long number = ((Number) value).longValue();
+                varlong((number << 1) ^ (number >> 63));
+            } else if (value instanceof Double || value instanceof Float) {
+                out.write(TAG_DECIMAL);
+                long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    out.write((int) (bits >>> shift));
+                }
+            } else if (value instanceof CharSequence || value instanceof Enum<?>) {
+                out.write(TAG_STRING);
+                string(value.toString());
+            } else if (value instanceof Map<?, ?> map) {
+                out.write(TAG_MAP);
+                map(map);
+            } else if (value instanceof Collection<?> collection) {
+                out.write(TAG_LIST);
+                varint(collection.size());
+                for (Object element : collection) {
+                    value(element);
+                }
+            } else if (value instanceof Object[] array) {
+                out.write(TAG_LIST);
+                varint(array.length);
+                for (Object element : array) {
+                    value(element);
+                }
+            } else {
+                out.write(TAG_JSON);
+                string(objectMapper.writeValueAsString(value));
+            }
+        }
+
+        void string(String value) {
+            if (value.length() > MAX_INTERNED_CHARS) {
+                varint(STRING_INLINE);
+                utf8(value);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index != null) {
+                varint(STRING_REF_BASE + index);
+                return;
+            }
+            strings.put(value, strings.size());
+            varint(STRING_NEW);
+            utf8(value);
+        }
+
+        void utf8(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            varint(bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        void varint(int value) {
+            varlong(value & 0xFFFFFFFFL);
+        }
+
+        void varlong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+    }
+
+    private final class Reader {
+
+        private final byte[] bytes;
+        private final int fieldCount;
+        private final List<String> strings = new ArrayList<>();
+        private int position;
+
+        Reader(byte[] bytes, int fieldCount) {
+            this.bytes = bytes;
+            this.fieldCount = fieldCount;
+        }
+
+        Map<String, Object> map() throws IOException {
+            int size = size();
+            Map<String, Object> map = new LinkedHashMap<>(Math.max(4, size * 2));
+            for (int i = 0; i < size; i++) {
+                int field = varint();
+                String name;
+                if (field >= 0 && field < fieldCount) {
+                    name = FIELDS.get(field);
+                } else if (field == fieldCount) {
+                    name = string();
+                } else {
+                    throw new IOException("Unknown field " + field);
+                }
+                map.put(name, value());
+            }
+            return map;
+        }
+
+        Object value() throws IOException {
+            int tag = next();
+            return switch (tag) {
+                case TAG_NULL -> null;
+                case TAG_TRUE -> Boolean.TRUE;
+                case TAG_FALSE -> Boolean.FALSE;
+                case TAG_INTEGER -> {
+                    long zigzag = varlong();
+                    yield (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+                case TAG_DECIMAL -> {
+                    long bits = 0;
+                    for (int i = 0; i < 8; i++) {
+                        bits = (bits << 8) | next();
+                    }
+                    yield Double.longBitsToDouble(bits);
+                }
+                case TAG_STRING -> string();
+                case TAG_JSON -> objectMapper.readValue(string(), Object.class);
+                case TAG_MAP -> map();
+                case TAG_LIST -> {
+                    int size = size();
+                    List<Object> list = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(value());
+                    }
+                    yield list;
+                }
+                default -> throw new IOException("Unknown value tag " + tag);
+            };
+        }
+
+        String string() throws IOException {
+            int reference = varint();
+            if (reference >= STRING_REF_BASE) {
+                int index = reference - STRING_REF_BASE;
+                if (index >= strings.size()) {
+                    throw new IOException("Unknown string reference " + index);
+                }
+                return strings.get(index);
+            }
+            int length = varint();
+            if (length < 0 || length > bytes.length - position) {
+                throw new IOException("Truncated string");
+            }
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            if (reference == STRING_NEW) {
+                strings.add(value);
+            }
+            return value;
+        }
+
+        /**
+         * Reads an element count, which cannot exceed the remaining bytes since every element takes one.
+         */
+        int size() throws IOException {
+            int size = varint();
+            if (size < 0 || size > bytes.length - position) {
+                throw new IOException("Invalid size " + size);
+            }
+            return size;
+        }
+
+        int varint() throws IOException {
+            return (int) varlong();
+        }
+
+        long varlong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = next();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        private int next() throws IOException {
+            if (position >= bytes.length) {
+                throw new IOException("Unexpected end of message");
+            }
+            return bytes[position++] & 0xFF;
+        }
+    }
+
+    /**
+     * Unsynchronized growable byte buffer.
+     */
+    private static final class Buffer extends OutputStream {
+
+        private byte[] bytes;
+        private int count;
+
+        Buffer(int capacity) {
+            this.bytes = new byte[Math.max(16, capacity)];
+        }
+
+        @Override
+        public void write(int b) {
+            ensure(1);
+            bytes[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensure(len);
+            System.arraycopy(b, off, bytes, count, len);
+            count += len;
+        }
+
+        int size() {
+            return count;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, count);
+        }
+
+        private void ensure(int extra) {
+            if (count + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(count + extra, bytes.length * 2));
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Sends events encoded by a {@link LogEventCodec} as raw bytes. With {@code maxEventsPerMessage}
+ * above one, events sharing a key and type are packed into one message, so the codec's string table
+ * and compression work across them.
+ */
+@Slf4j
+public class CodecKafkaLogEventSink implements LogEventSink, DisposableBean {
+
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final LogEventCodec codec;
+    private final int maxEventsPerMessage;
+    private final byte[] format;
+
+    public CodecKafkaLogEventSink(KafkaTemplate<String, byte[]> kafkaTemplate, LogEventCodec codec,
+                                  int maxEventsPerMessage) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.codec = codec;
+        this.maxEventsPerMessage = Math.max(1, maxEventsPerMessage);
+        this.format = codec.format().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int send(String topic, List<LogEvent> batch) {
+        int sent = 0;
+        for (Map.Entry<Group, List<LogEvent>> message : pack(batch).entrySet()) {
+            try {
+                send(topic, message.getKey(), message.getValue());
+                sent += message.getValue().size();
+            } catch (Exception e) {
+                log.warn("Failed to send log events to Kafka topic {}: {}", topic, e.getMessage());
+            }
+        }
+        log.debug("Sent {} of {} log events to Kafka topic: {}", sent, batch.size(), topic);
+        return sent;
+    }
+
+    @Override
+    public CompletableFuture<Void> send(String topic, List<LogEvent> batch, Consumer<LogEvent> failures) {
+        List<CompletableFuture<?>> acks = new ArrayList<>();
+        for (Map.Entry<Group, List<LogEvent>> message : pack(batch).entrySet()) {
+            List<LogEvent> events = message.getValue();
+            try {
+                acks.add(send(topic, message.getKey(), events).handle((result, error) -> {
+                    if (error != null) {
+                        events.forEach(failures);
+                    }
+                    return null;
+                }));
+            } catch (Exception e) {
+                log.warn("Failed to send log events to Kafka topic {}: {}", topic, e.getMessage());
+                events.forEach(failures);
+            }
+        }
+        return CompletableFuture.allOf(acks.toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Splits the batch into messages of up to {@code maxEventsPerMessage} events sharing a key and type.
+     */
+    private Map<Group, List<LogEvent>> pack(List<LogEvent> batch) {
+        Map<Group, List<LogEvent>> messages = new LinkedHashMap<>();
+        Map<Group, Integer> sequence = new HashMap<>();
+        for (LogEvent event : batch) {
+            Group group = new Group(event.key(), event.type(), 0);
+            int index = sequence.getOrDefault(group, 0);
+            Group message = new Group(group.key(), group.type(), index);
+            List<LogEvent> events = messages.computeIfAbsent(message, g -> new ArrayList<>());
+            events.add(event);
+            if (events.size() >= maxEventsPerMessage) {
+                sequence.put(group, index + 1);
+            }
+        }
+        return messages;
+    }
+
+    private CompletableFuture<?> send(String topic, Group group, List<LogEvent> events) throws Exception {
+        List<Map<String, Object>> payloads = new ArrayList<>(events.size());
+        for (LogEvent event : events) {
+            payloads.add(event.payload().get());
+        }
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(LogEventCodec.FORMAT_HEADER, format);
+        if (group.type() != null) {
+            headers.add("type", group.type().getBytes(StandardCharsets.UTF_8));
+        }
+        return kafkaTemplate.send(new ProducerRecord<>(topic, null, group.key(), codec.encode(payloads), headers));
+    }
+
+    @Override
+    public void destroy() {
+        kafkaTemplate.getProducerFactory().reset();
+    }
+
+    private record Group(String key, String type, int index) {
+    }
+}
@@ -0,0 +1,216 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Collapses error storms. The first occurrence of a fingerprint opens a window of {@code windowMs};
+ * further occurrences inside it are only counted, and when the window closes the listeners receive
+ * one {@link ErrorRepeats} with the count and the first and last time. A fingerprint is remembered
+ * for ten windows after it was last seen, which is what makes it {@link Occurrence#KNOWN} rather
+ * than {@link Occurrence#NEW} when it opens another window.
+ * <p>
+ * At most {@code maxFingerprints} are remembered. While the table is full, errors with a fingerprint
+ * not in it are {@link Occurrence#SUPPRESSED} and only counted, so a storm of distinct errors cannot
+ * turn into a storm of full reports; the count is logged on the next flush.
+ */
+@Slf4j
+public class ErrorDeduplicator implements SmartLifecycle {
+
+    private static final int RETENTION_WINDOWS = 10;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final List<Consumer<ErrorRepeats>> listeners = new CopyOnWriteArrayList<>();
+    private final LongAdder overflowed = new LongAdder();
+    private long reportedOverflowed;
+    private final long windowMs;
+    private final int fingerprintFrames;
+    private final int maxFingerprints;
+    private ScheduledExecutorService flusher;
+    private volatile boolean running;
+
+    public ErrorDeduplicator(long windowMs, int fingerprintFrames, int maxFingerprints) {
+        this.windowMs = Math.max(1, windowMs);
+        this.fingerprintFrames = fingerprintFrames;
+        this.maxFingerprints = maxFingerprints;
+    }
+
+    public void addRepeatListener(Consumer<ErrorRepeats> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Counts one occurrence of {@code error} thrown by {@code methodSignature}.
+     */
+    public Result record(String methodSignature, Throwable error) {
+        long fingerprint = StackTraces.fingerprint(error, fingerprintFrames) * 31 + methodSignature.hashCode();
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(fingerprint);
+        if (entry == null) {
+            if (entries.size() >= maxFingerprints) {
+                overflowed.increment();
+                return new Result(fingerprint, Occurrence.SUPPRESSED);
+            }
+            Entry created = new Entry(methodSignature, now);
+            entry = entries.putIfAbsent(fingerprint, created);
+            if (entry == null) {
+                return new Result(fingerprint, Occurrence.NEW);
+            }
+        }
+        ErrorRepeats closed = null;
+        Occurrence occurrence;
+        synchronized (entry) {
+            entry.lastSeen = now;
+            if (entry.windowStart >= 0 && now - entry.windowStart < windowMs) {
+                if (entry.repeats++ == 0) {
+                    entry.firstRepeat = now;
+                }
+                entry.lastRepeat = now;
+                entry.lastMessage = error.getMessage();
+                occurrence = Occurrence.SUPPRESSED;
+            } else {
+                closed = entry.close(fingerprint);
+                entry.windowStart = now;
+                occurrence = Occurrence.KNOWN;
+            }
+        }
+        if (closed != null) {
+            publish(closed);
+        }
+        return new Result(fingerprint, occurrence);
+    }
+
+    /**
+     * Errors suppressed because the fingerprint table was full.
+     */
+    public long getOverflowed() {
+        return overflowed.sum();
+    }
+
+    /**
+     * Closes expired windows; with {@code all}, every window with pending repeats.
+     */
+    public void flush(boolean all) {
+        long now = System.currentTimeMillis();
+        reportOverflow();
+        Iterator<Map.Entry<Long, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, Entry> next = iterator.next();
+            Entry entry = next.getValue();
+            ErrorRepeats closed = null;
+            synchronized (entry) {
+                if (all || entry.windowStart >= 0 && now - entry.windowStart >= windowMs) {
+                    closed = entry.close(next.getKey());
+                }
+                if (now - entry.lastSeen >= windowMs * RETENTION_WINDOWS) {
+                    iterator.remove();
+                }
+            }
+            if (closed != null) {
+                publish(closed);
+            }
+        }
+    }
+
+    private synchronized void reportOverflow() {
+        long total = overflowed.sum();
+        if (total > reportedOverflowed) {
+            log.warn("Suppressed {} errors with new fingerprints: {} fingerprints are tracked already",
+                    total - reportedOverflowed, maxFingerprints);
+            reportedOverflowed = total;
+        }
+    }
+
+    private void publish(ErrorRepeats repeats) {
+        for (Consumer<ErrorRepeats> listener : listeners) {
+            try {
+                listener.accept(repeats);
+            } catch (Exception e) {
+                log.warn("Failed to publish repeated error summary: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "t1-error-dedup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long periodMs = Math.min(1000, windowMs);
+        flusher.scheduleAtFixedRate(() -> flush(false), periodMs, periodMs, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        flush(true);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    public enum Occurrence {
+        /**
+         * Not seen recently: report it in full.
+         */
+        NEW,
+        /**
+         * Seen before, first in a new window: report it with a shortened trace.
+         */
+        KNOWN,
+        /**
+         * Repeat inside an open window: counted into the next {@link ErrorRepeats}.
+         */
+        SUPPRESSED
+    }
+
+    public record Result(long fingerprint, Occurrence occurrence) {
+
+        public String fingerprintHex() {
+            return Long.toHexString(fingerprint);
+        }
+    }
+
+    private static final class Entry {
+        final String methodSignature;
+        long windowStart;
+        long lastSeen;
+        long repeats;
+        long firstRepeat;
+        long lastRepeat;
+        String lastMessage;
+
+        Entry(String methodSignature, long now) {
+            this.methodSignature = methodSignature;
+            this.windowStart = now;
+            this.lastSeen = now;
+        }
+
+        ErrorRepeats close(long fingerprint) {
+            ErrorRepeats closed = repeats > 0 ? new ErrorRepeats(Long.toHexString(fingerprint), methodSignature,
+                    lastMessage, repeats, firstRepeat, lastRepeat) : null;
+            repeats = 0;
+            windowStart = -1;
+            return closed;
+        }
+    }
+}
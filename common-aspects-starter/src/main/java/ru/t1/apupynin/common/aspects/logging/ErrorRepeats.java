@@ -0,0 +1,11 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+/**
+ * Occurrences of one error fingerprint that {@link ErrorDeduplicator} suppressed within a window.
+ *
+ * @param firstEpochMs time of the first suppressed occurrence
+ * @param lastEpochMs  time of the last suppressed occurrence
+ */
+public record ErrorRepeats(String fingerprint, String methodSignature, String lastMessage, long count,
+                           long firstEpochMs, long lastEpochMs) {
+}
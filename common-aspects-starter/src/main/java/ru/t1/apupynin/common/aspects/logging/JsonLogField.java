@@ -0,0 +1,140 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Payload field holding an arbitrary object that is rendered as embedded JSON when the
+ * surrounding log message is serialized, instead of being turned into a JSON string up front.
+ * <p>
+ * Without a limit the value is written straight into the outer generator. With a limit it is
+ * rendered into a buffer of at most {@code maxBytes}; a value that does not fit is abandoned as
+ * soon as the limit is reached and replaced by a string holding the truncated prefix. Truncation
+ * never splits a UTF-8 sequence or a surrogate pair.
+ */
+@JsonSerialize(using = JsonLogField.Serializer.class)
+public final class JsonLogField {
+
+    public static final String TRUNCATED_SUFFIX = "...(truncated)";
+
+    private final Object value;
+    private final ObjectMapper objectMapper;
+    private final int maxBytes;
+
+    private JsonLogField(Object value, ObjectMapper objectMapper, int maxBytes) {
+        this.value = value;
+        this.objectMapper = objectMapper;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param maxBytes upper bound of the rendered JSON, {@code 0} or less for no limit
+     */
+    public static JsonLogField of(Object value, ObjectMapper objectMapper, int maxBytes) {
+        return new JsonLogField(value, objectMapper, maxBytes);
+    }
+
+    /**
+     * @param maxChars upper bound of the returned string, {@code 0} or less for no limit
+     */
+    public static String truncate(String text, int maxChars) {
+        if (text == null || maxChars <= 0 || text.length() <= maxChars) {
+            return text;
+        }
+        int end = Character.isHighSurrogate(text.charAt(maxChars - 1)) ? maxChars - 1 : maxChars;
+        return text.substring(0, end) + TRUNCATED_SUFFIX;
+    }
+
+    static class Serializer extends StdSerializer<JsonLogField> {
+
+        private static final long serialVersionUID = 1L;
+
+        Serializer() {
+            super(JsonLogField.class);
+        }
+
+        @Override
+        public void serialize(JsonLogField field, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            if (field.value == null) {
+                gen.writeNull();
+                return;
+            }
+            if (field.maxBytes <= 0) {
+                field.objectMapper.writeValue(gen, field.value);
+                return;
+            }
+            BoundedOutputStream out = new BoundedOutputStream(field.maxBytes);
+            try {
+                field.objectMapper.writeValue(out, field.value);
+                gen.writeRawValue(out.toString());
+            } catch (Exception e) {
+                if (!out.overflowed) {
+                    gen.writeString("Failed to serialize value: " + e.getMessage());
+                } else {
+                    gen.writeString(out + TRUNCATED_SUFFIX);
+                }
+            }
+        }
+    }
+
+    private static final class BoundedOutputStream extends OutputStream {
+
+        private final int limit;
+        private byte[] buffer;
+        private int count;
+        private boolean overflowed;
+
+        BoundedOutputStream(int limit) {
+            this.limit = limit;
+            this.buffer = new byte[Math.min(limit, 256)];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int fits = Math.min(len, limit - count);
+            if (count + fits > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.min(limit, Math.max(count + fits, buffer.length * 2)));
+            }
+            System.arraycopy(b, off, buffer, count, fits);
+            count += fits;
+            if (fits < len) {
+                overflowed = true;
+                throw new IOException("Value exceeds " + limit + " bytes");
+            }
+        }
+
+        /**
+         * Leaves out a multi-byte sequence cut off by the limit.
+         */
+        @Override
+        public String toString() {
+            return new String(buffer, 0, overflowed ? completeLength() : count, StandardCharsets.UTF_8);
+        }
+
+        private int completeLength() {
+            int start = count - 1;
+            while (start > 0 && (buffer[start] & 0xC0) == 0x80) {
+                start--;
+            }
+            if (start < 0) {
+                return 0;
+            }
+            int lead = buffer[start] & 0xFF;
+            int length = lead < 0x80 ? 1 : lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : 2;
+            return start + length <= count ? count : start;
+        }
+    }
+}
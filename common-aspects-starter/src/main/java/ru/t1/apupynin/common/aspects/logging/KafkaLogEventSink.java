@@ -0,0 +1,70 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+@Slf4j
+@RequiredArgsConstructor
+public class KafkaLogEventSink implements LogEventSink {
+
+    private final KafkaTemplate<String, Map<String, Object>> kafkaTemplate;
+
+    @Override
+    public int send(String topic, List<LogEvent> batch) {
+        int sent = 0;
+        for (LogEvent event : batch) {
+            try {
+                send(topic, event);
+                sent++;
+            } catch (Exception e) {
+                log.warn("Failed to send log event to Kafka topic {}: {}", topic, e.getMessage());
+            }
+        }
+        log.debug("Sent {} of {} log events to Kafka topic: {}", sent, batch.size(), topic);
+        return sent;
+    }
+
+    @Override
+    public CompletableFuture<Void> send(String topic, List<LogEvent> batch, Consumer<LogEvent> failures) {
+        List<CompletableFuture<?>> acks = new ArrayList<>(batch.size());
+        for (LogEvent event : batch) {
+            try {
+                acks.add(send(topic, event).handle((result, error) -> {
+                    if (error != null) {
+                        failures.accept(event);
+                    }
+                    return null;
+                }));
+            } catch (Exception e) {
+                log.warn("Failed to send log event to Kafka topic {}: {}", topic, e.getMessage());
+                failures.accept(event);
+            }
+        }
+        return CompletableFuture.allOf(acks.toArray(CompletableFuture[]::new));
+    }
+
+    private CompletableFuture<?> send(String topic, LogEvent event) {
+        MessageBuilder<Map<String, Object>> builder = MessageBuilder
+                .withPayload(event.payload().get())
+                .setHeader(KafkaHeaders.TOPIC, topic);
+        if (event.key() != null) {
+            builder.setHeader(KafkaHeaders.KEY, event.key());
+        }
+        if (event.type() != null) {
+            builder.setHeader("type", event.type());
+        }
+        Message<Map<String, Object>> message = builder.build();
+
+        return kafkaTemplate.send(message);
+    }
+}
@@ -0,0 +1,12 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+public enum LogEncoding {
+    /**
+     * Each event is sent as a JSON map through the application's {@code KafkaTemplate}.
+     */
+    JSON,
+    /**
+     * Events are encoded by a {@link LogEventCodec}, {@link BinaryLogEventCodec} by default.
+     */
+    BINARY
+}
@@ -0,0 +1,11 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A log message waiting in the pipeline. The payload is built by the drainer thread,
+ * so everything the supplier captures must be safe to read after the advised call has returned.
+ */
+public record LogEvent(String topic, String key, String type, Supplier<Map<String, Object>> payload) {
+}
@@ -0,0 +1,23 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns log payloads into message bytes. A message may carry several events; consumers pick the
+ * codec by the {@link #FORMAT_HEADER} header.
+ */
+public interface LogEventCodec {
+
+    String FORMAT_HEADER = "t1-log-format";
+
+    /**
+     * @return value of the {@link #FORMAT_HEADER} header, including the format version
+     */
+    String format();
+
+    byte[] encode(List<Map<String, Object>> payloads) throws IOException;
+
+    List<Map<String, Object>> decode(byte[] bytes) throws IOException;
+}
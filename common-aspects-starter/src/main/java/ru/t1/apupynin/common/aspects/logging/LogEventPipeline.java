@@ -0,0 +1,159 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves log shipping off the advised call: {@link #publish} only enqueues into a bounded
+ * lock-free ring buffer, and a dedicated drainer thread groups events per topic and hands
+ * them to the {@link LogEventSink}.
+ */
+@Slf4j
+public class LogEventPipeline implements SmartLifecycle {
+
+    private static final double SAMPLE_HIGH_WATER_MARK = 0.75;
+
+    private final MpscRingBuffer<LogEvent> buffer;
+    private final LogEventSink sink;
+    private final OverflowPolicy overflowPolicy;
+    private final double sampleRatio;
+    private final long blockTimeoutNanos;
+    private final int batchSize;
+    private final long idleWaitNanos;
+    private final int sampleThreshold;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder shipped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private volatile Thread drainer;
+    private volatile boolean running;
+
+    public LogEventPipeline(LogEventSink sink, int capacity, OverflowPolicy overflowPolicy, double sampleRatio,
+                            long blockTimeoutMs, int batchSize, long idleWaitMs) {
+        this.buffer = new MpscRingBuffer<>(capacity);
+        this.sink = sink;
+        this.overflowPolicy = overflowPolicy;
+        this.sampleRatio = sampleRatio;
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMs);
+        this.batchSize = Math.max(1, batchSize);
+        this.idleWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, idleWaitMs));
+        this.sampleThreshold = (int) (buffer.capacity() * SAMPLE_HIGH_WATER_MARK);
+    }
+
+    /**
+     * @return {@code false} when the event was dropped by the overflow policy
+     */
+    public boolean publish(LogEvent event) {
+        if (overflowPolicy == OverflowPolicy.SAMPLE && buffer.size() >= sampleThreshold
+                && ThreadLocalRandom.current().nextDouble() >= sampleRatio) {
+            dropped.increment();
+            return false;
+        }
+        if (buffer.offer(event)) {
+            published.increment();
+            return true;
+        }
+        if (overflowPolicy == OverflowPolicy.BLOCK && offerBlocking(event)) {
+            published.increment();
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    private boolean offerBlocking(LogEvent event) {
+        long deadline = System.nanoTime() + blockTimeoutNanos;
+        while (System.nanoTime() - deadline < 0) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+            if (buffer.offer(event)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public LogPipelineStats stats() {
+        return new LogPipelineStats(published.sum(), dropped.sum(), shipped.sum(), failed.sum(), buffer.size());
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        Thread thread = new Thread(this::drainLoop, "t1-log-pipeline");
+        thread.setDaemon(true);
+        drainer = thread;
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = drainer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // stop after the components that publish into the pipeline, so their last events are drained
+        return SmartLifecycle.DEFAULT_PHASE - 1024;
+    }
+
+    private void drainLoop() {
+        Map<String, List<LogEvent>> batches = new LinkedHashMap<>();
+        while (running) {
+            if (drainOnce(batches) == 0) {
+                LockSupport.parkNanos(idleWaitNanos);
+            }
+        }
+        int remaining;
+        do {
+            remaining = drainOnce(batches);
+        } while (remaining > 0);
+    }
+
+    private int drainOnce(Map<String, List<LogEvent>> batches) {
+        int drained = buffer.drain(event -> batches.computeIfAbsent(event.topic(), t -> new ArrayList<>()).add(event), batchSize);
+        if (drained == 0) {
+            return 0;
+        }
+        for (Map.Entry<String, List<LogEvent>> entry : batches.entrySet()) {
+            List<LogEvent> batch = entry.getValue();
+            if (batch.isEmpty()) {
+                continue;
+            }
+            try {
+                int sent = sink.send(entry.getKey(), batch);
+                shipped.add(sent);
+                failed.add(batch.size() - sent);
+            } catch (Exception e) {
+                failed.add(batch.size());
+                log.warn("Failed to ship {} log events to {}: {}", batch.size(), entry.getKey(), e.getMessage());
+            }
+            batch.clear();
+        }
+        return drained;
+    }
+}
@@ -0,0 +1,32 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Destination of drained events; called only from the pipeline's drainer thread.
+ */
+public interface LogEventSink {
+
+    /**
+     * @return number of events that were handed to the transport successfully
+     */
+    int send(String topic, List<LogEvent> batch);
+
+    /**
+     * Delivery-tracking variant used by {@link LogEventSpool}: every event the transport could not
+     * deliver is passed to {@code failures}, including failures reported after this method returned.
+     * The default sends events one by one and treats a rejected send as a failure.
+     *
+     * @return completes once every event was acknowledged or reported as failed
+     */
+    default CompletableFuture<Void> send(String topic, List<LogEvent> batch, Consumer<LogEvent> failures) {
+        for (LogEvent event : batch) {
+            if (send(topic, List.of(event)) == 0) {
+                failures.accept(event);
+            }
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+}
@@ -0,0 +1,296 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps log events on local disk while the transport cannot take them and replays them once it can.
+ * <p>
+ * Events normally go straight to the delegate sink. The first event the delegate reports as undelivered
+ * switches to spooling: from then on every event is appended to a {@link SpoolStore} in arrival order and
+ * the producer is not touched, so an unavailable broker no longer stalls the drainer on each send. A
+ * replay thread sends spooled events back in order, at most {@code replayRatePerSecond}, and consumes a
+ * chunk only after the delegate acknowledged all of it, so delivery is at-least-once. Direct sending
+ * resumes when the spool is empty. Events left on disk at shutdown are replayed after the next start.
+ */
+@Slf4j
+public class LogEventSpool implements SmartLifecycle {
+
+    private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    private final LogEventSink delegate;
+    private final BinaryLogEventCodec codec;
+    private final SpoolStore store;
+    private final TokenBucket replayLimiter;
+    private final int replayBatchSize;
+    private final long retryBackoffMs;
+    private final long ackTimeoutMs;
+    private final LogEventSink sink = new SpoolingSink();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final LongAdder spooled = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile boolean spooling;
+    private boolean closed;
+    private volatile boolean running;
+    private volatile Thread replayer;
+
+    public LogEventSpool(LogEventSink delegate, ObjectMapper objectMapper, Path directory, int segmentBytes,
+                         long maxBytes, double replayRatePerSecond, int replayBatchSize, long retryBackoffMs,
+                         long ackTimeoutMs) throws IOException {
+        this.delegate = delegate;
+        this.codec = new BinaryLogEventCodec(objectMapper, false, 0);
+        this.store = new SpoolStore(directory, segmentBytes, maxBytes);
+        this.replayBatchSize = Math.max(1, replayBatchSize);
+        this.replayLimiter = new TokenBucket(replayRatePerSecond, this.replayBatchSize);
+        this.retryBackoffMs = Math.max(1, retryBackoffMs);
+        this.ackTimeoutMs = ackTimeoutMs;
+        this.spooling = !store.isEmpty();
+    }
+
+    /**
+     * The sink to hand to the {@link LogEventPipeline} in place of the delegate.
+     */
+    public LogEventSink sink() {
+        return sink;
+    }
+
+    public boolean isSpooling() {
+        return spooling;
+    }
+
+    public LogSpoolStats stats() {
+        return new LogSpoolStats(spooled.sum(), replayed.sum(), rejected.sum(), store.pendingRecords());
+    }
+
+    private void spool(LogEvent event) {
+        lock.lock();
+        try {
+            if (!spooling) {
+                log.warn("LOG_SPOOL delivery failed, spooling log events to disk");
+                spooling = true;
+            }
+            append(event);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean append(LogEvent event) {
+        try {
+            if (!closed && store.append(encode(event))) {
+                spooled.increment();
+                return true;
+            }
+            log.debug("Log spool is full, rejecting event for topic {}", event.topic());
+        } catch (Exception e) {
+            log.warn("Failed to spool log event for topic {}: {}", event.topic(), e.getMessage());
+        }
+        rejected.increment();
+        return false;
+    }
+
+    private byte[] encode(LogEvent event) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(event.topic());
+        writeNullable(out, event.key());
+        writeNullable(out, event.type());
+        byte[] payload = codec.encode(List.of(event.payload().get()));
+        out.writeInt(payload.length);
+        out.write(payload);
+        return bytes.toByteArray();
+    }
+
+    private LogEvent decode(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        String topic = in.readUTF();
+        String key = readNullable(in);
+        String type = readNullable(in);
+        byte[] payload = in.readNBytes(in.readInt());
+        Map<String, Object> message = codec.decode(payload).get(0);
+        return new LogEvent(topic, key, type, () -> message);
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private void replayLoop() {
+        long backoffMs = retryBackoffMs;
+        while (running) {
+            try {
+                if (!spooling) {
+                    LockSupport.parkNanos(IDLE_WAIT_NANOS);
+                    continue;
+                }
+                SpoolStore.Batch chunk = store.peek(replayBatchSize);
+                if (chunk.records().isEmpty()) {
+                    resumeIfDrained();
+                    continue;
+                }
+                List<LogEvent> events = new ArrayList<>(chunk.records().size());
+                for (byte[] record : chunk.records()) {
+                    try {
+                        events.add(decode(record));
+                    } catch (Exception e) {
+                        log.warn("Skipping unreadable spooled log event: {}", e.getMessage());
+                    }
+                }
+                if (!acquire(events.size())) {
+                    continue;
+                }
+                if (deliver(events)) {
+                    store.commit(chunk);
+                    replayed.add(events.size());
+                    backoffMs = retryBackoffMs;
+                } else {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(backoffMs));
+                    backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+                }
+            } catch (Exception e) {
+                log.warn("Failed to replay spooled log events: {}", e.getMessage());
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(backoffMs));
+            }
+        }
+    }
+
+    private void resumeIfDrained() {
+        lock.lock();
+        try {
+            if (store.isEmpty()) {
+                spooling = false;
+                log.info("LOG_SPOOL drained, resuming direct delivery");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean acquire(int permits) {
+        for (int i = 0; i < permits; i++) {
+            while (!replayLimiter.tryAcquire()) {
+                if (!running) {
+                    return false;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sends the events in order, one batch per run of equal topics, and waits for every acknowledgement.
+     */
+    private boolean deliver(List<LogEvent> events) throws Exception {
+        AtomicBoolean failed = new AtomicBoolean();
+        List<CompletableFuture<Void>> acks = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= events.size(); i++) {
+            if (i == events.size() || !events.get(i).topic().equals(events.get(start).topic())) {
+                acks.add(delegate.send(events.get(start).topic(), events.subList(start, i), e -> failed.set(true)));
+                start = i;
+            }
+        }
+        try {
+            CompletableFuture.allOf(acks.toArray(CompletableFuture[]::new)).get(ackTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return false;
+        }
+        return !failed.get();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        Thread thread = new Thread(this::replayLoop, "t1-log-spool-replay");
+        thread.setDaemon(true);
+        replayer = thread;
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = replayer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        lock.lock();
+        try {
+            closed = true;
+            store.close();
+        } catch (IOException e) {
+            log.warn("Failed to close log spool: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // stop after the pipeline, which may still spool the events it drains on shutdown
+        return SmartLifecycle.DEFAULT_PHASE - 2048;
+    }
+
+    private final class SpoolingSink implements LogEventSink {
+
+        @Override
+        public int send(String topic, List<LogEvent> batch) {
+            lock.lock();
+            try {
+                if (spooling) {
+                    int accepted = 0;
+                    for (LogEvent event : batch) {
+                        if (append(event)) {
+                            accepted++;
+                        }
+                    }
+                    return accepted;
+                }
+            } finally {
+                lock.unlock();
+            }
+            delegate.send(topic, batch, LogEventSpool.this::spool);
+            return batch.size();
+        }
+    }
+}
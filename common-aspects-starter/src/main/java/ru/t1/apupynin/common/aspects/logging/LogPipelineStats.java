@@ -0,0 +1,4 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+public record LogPipelineStats(long published, long dropped, long shipped, long failed, int queued) {
+}
@@ -0,0 +1,69 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides which HTTP calls are shipped as log events.
+ * <p>
+ * Head sampling keeps a random share of calls and then applies the endpoint's token bucket, so
+ * volume grows with traffic only up to the configured rate. Tail sampling is decided after the
+ * call: failed and slow calls are always kept, fast successes go through head sampling.
+ */
+public class LogSampler {
+
+    private final double defaultSampleRate;
+    private final double defaultRatePerSecond;
+    private final int burst;
+    private final long defaultSlowThresholdMs;
+
+    private final LongAdder kept = new LongAdder();
+    private final LongAdder forced = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+
+    public LogSampler(double defaultSampleRate, double defaultRatePerSecond, int burst, long defaultSlowThresholdMs) {
+        this.defaultSampleRate = defaultSampleRate;
+        this.defaultRatePerSecond = defaultRatePerSecond;
+        this.burst = burst;
+        this.defaultSlowThresholdMs = defaultSlowThresholdMs;
+    }
+
+    /**
+     * Negative arguments fall back to the configured defaults.
+     */
+    public SamplingPolicy createPolicy(double sampleRate, double ratePerSecond, long slowThresholdMs) {
+        double rate = ratePerSecond >= 0 ? ratePerSecond : defaultRatePerSecond;
+        long slowMs = slowThresholdMs >= 0 ? slowThresholdMs : defaultSlowThresholdMs;
+        return new SamplingPolicy(
+                sampleRate >= 0 ? Math.min(sampleRate, 1) : defaultSampleRate,
+                rate > 0 ? new TokenBucket(rate, burst > 0 ? burst : (int) Math.ceil(rate)) : null,
+                slowMs > 0 ? TimeUnit.MILLISECONDS.toNanos(slowMs) : Long.MAX_VALUE);
+    }
+
+    public boolean sampleHead(SamplingPolicy policy) {
+        if (policy.sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= policy.sampleRate) {
+            sampledOut.increment();
+            return false;
+        }
+        if (policy.rateLimiter != null && !policy.rateLimiter.tryAcquire()) {
+            rateLimited.increment();
+            return false;
+        }
+        kept.increment();
+        return true;
+    }
+
+    public boolean sampleTail(SamplingPolicy policy, long elapsedNanos, boolean failed) {
+        if (failed || elapsedNanos >= policy.slowThresholdNanos) {
+            forced.increment();
+            return true;
+        }
+        return sampleHead(policy);
+    }
+
+    public LogSamplingStats stats() {
+        return new LogSamplingStats(kept.sum(), forced.sum(), sampledOut.sum(), rateLimited.sum());
+    }
+}
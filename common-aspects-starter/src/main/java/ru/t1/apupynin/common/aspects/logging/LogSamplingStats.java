@@ -0,0 +1,10 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+/**
+ * @param kept        events that passed sampling
+ * @param forced      events kept regardless of sampling because the call failed or was slow
+ * @param sampledOut  events dropped by probabilistic sampling
+ * @param rateLimited events dropped by an endpoint's rate limit
+ */
+public record LogSamplingStats(long kept, long forced, long sampledOut, long rateLimited) {
+}
@@ -0,0 +1,8 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+/**
+ * Counters of a {@link LogEventSpool}: events written to disk, replayed from it, rejected because the
+ * spool was full or unwritable, and still waiting for replay.
+ */
+public record LogSpoolStats(long spooled, long replayed, long rejected, long pending) {
+}
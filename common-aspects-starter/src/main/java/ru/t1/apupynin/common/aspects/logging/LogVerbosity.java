@@ -0,0 +1,20 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+/**
+ * How much an aspect writes to the application log. Events shipped through the {@link LogEventPipeline}
+ * are not affected.
+ */
+public enum LogVerbosity {
+    /**
+     * One INFO line per advised call, written only when INFO is enabled for the aspect's logger.
+     */
+    PER_CALL,
+    /**
+     * No per-call lines; counters are written once per summary interval by {@link AspectLogSummary}.
+     */
+    SUMMARY,
+    /**
+     * Nothing.
+     */
+    OFF
+}
@@ -0,0 +1,68 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free multi-producer single-consumer queue.
+ * Producers claim a slot with a CAS on the producer index; the single consumer frees slots in order.
+ */
+final class MpscRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> buffer;
+    private final int mask;
+    private final int capacity;
+    private final AtomicLong producerIndex = new AtomicLong();
+    private final AtomicLong consumerIndex = new AtomicLong();
+
+    MpscRingBuffer(int requestedCapacity) {
+        int normalized = Integer.highestOneBit(Math.max(2, requestedCapacity) - 1) << 1;
+        this.capacity = normalized;
+        this.mask = normalized - 1;
+        this.buffer = new AtomicReferenceArray<>(normalized);
+    }
+
+    boolean offer(E element) {
+        while (true) {
+            long producer = producerIndex.get();
+            if (producer - consumerIndex.get() >= capacity) {
+                return false;
+            }
+            if (producerIndex.compareAndSet(producer, producer + 1)) {
+                buffer.lazySet((int) (producer & mask), element);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Consumer side only.
+     *
+     * @return number of elements handed to the consumer
+     */
+    int drain(Consumer<E> consumer, int limit) {
+        long consumer0 = consumerIndex.get();
+        int drained = 0;
+        while (drained < limit) {
+            int index = (int) ((consumer0 + drained) & mask);
+            E element = buffer.get(index);
+            if (element == null) {
+                break;
+            }
+            buffer.lazySet(index, null);
+            drained++;
+            consumerIndex.lazySet(consumer0 + drained);
+            consumer.accept(element);
+        }
+        return drained;
+    }
+
+    int size() {
+        return (int) Math.max(0, producerIndex.get() - consumerIndex.get());
+    }
+
+    int capacity() {
+        return capacity;
+    }
+}
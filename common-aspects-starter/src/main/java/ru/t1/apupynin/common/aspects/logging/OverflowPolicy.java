@@ -0,0 +1,19 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+/**
+ * What {@link LogEventPipeline#publish} does when the buffer cannot take more events.
+ */
+public enum OverflowPolicy {
+    /**
+     * Drop the new event.
+     */
+    DROP,
+    /**
+     * Above the high-water mark keep only a share of events, drop when full.
+     */
+    SAMPLE,
+    /**
+     * Park the caller until space frees up or the block timeout passes, then drop.
+     */
+    BLOCK
+}
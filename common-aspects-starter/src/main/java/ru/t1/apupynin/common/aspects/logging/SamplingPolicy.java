@@ -0,0 +1,18 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+/**
+ * Resolved sampling settings of one advised endpoint, created by {@link LogSampler#createPolicy}.
+ * Holds the endpoint's own token bucket, so it is meant to be created once per method and reused.
+ */
+public final class SamplingPolicy {
+
+    final double sampleRate;
+    final TokenBucket rateLimiter;
+    final long slowThresholdNanos;
+
+    SamplingPolicy(double sampleRate, TokenBucket rateLimiter, long slowThresholdNanos) {
+        this.sampleRate = sampleRate;
+        this.rateLimiter = rateLimiter;
+        this.slowThresholdNanos = slowThresholdNanos;
+    }
+}
@@ -0,0 +1,249 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only record log in fixed-size memory-mapped segment files, consumed from the head.
+ * <p>
+ * A record is {@code int length, int crc32, bytes}; a zero length ends a segment's data, and a
+ * record whose checksum does not match (a write torn by a crash) is treated the same way. The read
+ * position is kept in a mapped checkpoint file, and segments are deleted once fully consumed.
+ * Disk usage is bounded by {@code maxSegments} segments: appends are rejected when they are all in use.
+ */
+final class SpoolStore implements Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int HEADER_BYTES = 8;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private final FileChannel checkpointChannel;
+    private final MappedByteBuffer checkpoint;
+    private final ReentrantLock lock = new ReentrantLock();
+    private int readOffset;
+    private long pendingRecords;
+
+    SpoolStore(Path directory, int segmentBytes, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = (int) Math.max(2, maxBytes / segmentBytes);
+        Files.createDirectories(directory);
+
+        checkpointChannel = FileChannel.open(directory.resolve("checkpoint"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        checkpoint = checkpointChannel.map(FileChannel.MapMode.READ_WRITE, 0, 12);
+        long checkpointSegment = checkpoint.getLong(0);
+        int checkpointOffset = checkpoint.getInt(8);
+
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+        }
+        for (Path file : files) {
+            long id = Long.parseLong(file.getFileName().toString().replace(SEGMENT_SUFFIX, ""));
+            if (id < checkpointSegment) {
+                Files.deleteIfExists(file);
+            } else {
+                segments.addLast(open(id));
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.addLast(open(Math.max(1, checkpointSegment)));
+        } else if (segments.peekFirst().id == checkpointSegment) {
+            readOffset = checkpointOffset;
+        }
+        for (Segment segment : segments) {
+            segment.writeOffset = scan(segment, 0).offset;
+        }
+        int offset = readOffset;
+        for (Segment segment : segments) {
+            pendingRecords += scan(segment, offset).records;
+            offset = 0;
+        }
+    }
+
+    /**
+     * @return {@code false} when the record is larger than a segment or the spool is full
+     */
+    boolean append(byte[] record) throws IOException {
+        if (record.length + HEADER_BYTES > segmentBytes) {
+            return false;
+        }
+        lock.lock();
+        try {
+            Segment tail = segments.peekLast();
+            if (tail.writeOffset + HEADER_BYTES + record.length > segmentBytes) {
+                if (segments.size() >= maxSegments) {
+                    return false;
+                }
+                tail.buffer.force();
+                tail = open(tail.id + 1);
+                segments.addLast(tail);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            MappedByteBuffer buffer = tail.buffer;
+            buffer.put(tail.writeOffset + HEADER_BYTES, record);
+            buffer.putInt(tail.writeOffset + 4, (int) crc.getValue());
+            buffer.putInt(tail.writeOffset, record.length);
+            tail.writeOffset += HEADER_BYTES + record.length;
+            pendingRecords++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads up to {@code max} records from the head without consuming them.
+     */
+    Batch peek(int max) {
+        lock.lock();
+        try {
+            List<byte[]> records = new ArrayList<>();
+            Iterator<Segment> iterator = segments.iterator();
+            Segment segment = iterator.next();
+            int offset = readOffset;
+            while (records.size() < max) {
+                if (offset < segment.writeOffset) {
+                    int length = segment.buffer.getInt(offset);
+                    byte[] record = new byte[length];
+                    segment.buffer.get(offset + HEADER_BYTES, record);
+                    records.add(record);
+                    offset += HEADER_BYTES + length;
+                } else if (iterator.hasNext()) {
+                    segment = iterator.next();
+                    offset = 0;
+                } else {
+                    break;
+                }
+            }
+            return new Batch(records, segment.id, offset);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Consumes the records returned by {@link #peek}, deleting the segments left behind.
+     */
+    void commit(Batch batch) throws IOException {
+        lock.lock();
+        try {
+            while (segments.size() > 1 && segments.peekFirst().id < batch.segmentId) {
+                delete(segments.pollFirst());
+            }
+            readOffset = batch.offset;
+            Segment head = segments.peekFirst();
+            if (segments.size() > 1 && readOffset >= head.writeOffset) {
+                delete(segments.pollFirst());
+                readOffset = 0;
+            }
+            pendingRecords -= batch.records.size();
+            checkpoint.putLong(0, segments.peekFirst().id);
+            checkpoint.putInt(8, readOffset);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isEmpty() {
+        return pendingRecords() == 0;
+    }
+
+    long pendingRecords() {
+        lock.lock();
+        try {
+            return pendingRecords;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            for (Segment segment : segments) {
+                segment.buffer.force();
+                segment.channel.close();
+            }
+            checkpoint.force();
+            checkpointChannel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Segment open(long id) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", id, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        return new Segment(id, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+    }
+
+    private void delete(Segment segment) throws IOException {
+        segment.channel.close();
+        Files.deleteIfExists(segment.path);
+    }
+
+    /**
+     * Walks valid records from {@code offset}, stopping at the end marker or a corrupt record.
+     */
+    private Scan scan(Segment segment, int offset) {
+        int records = 0;
+        CRC32 crc = new CRC32();
+        while (offset + HEADER_BYTES <= segmentBytes) {
+            int length = segment.buffer.getInt(offset);
+            if (length <= 0 || offset + HEADER_BYTES + length > segmentBytes) {
+                break;
+            }
+            byte[] record = new byte[length];
+            segment.buffer.get(offset + HEADER_BYTES, record);
+            crc.reset();
+            crc.update(record);
+            if ((int) crc.getValue() != segment.buffer.getInt(offset + 4)) {
+                break;
+            }
+            offset += HEADER_BYTES + length;
+            records++;
+        }
+        return new Scan(offset, records);
+    }
+
+    record Batch(List<byte[]> records, long segmentId, int offset) {
+    }
+
+    private record Scan(int offset, int records) {
+    }
+
+    private static final class Segment {
+        final long id;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int writeOffset;
+
+        Segment(long id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+}
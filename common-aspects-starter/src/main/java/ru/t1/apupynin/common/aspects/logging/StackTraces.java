@@ -0,0 +1,69 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Cheap alternatives to {@link Throwable#printStackTrace()} for repeated errors.
+ */
+public final class StackTraces {
+
+    private static final int MAX_CAUSES = 8;
+
+    private StackTraces() {
+    }
+
+    /**
+     * Identifies where an error comes from: the type and top {@code frames} frames of the error and
+     * each of its causes. Messages are ignored, so the same failure with different ids or values
+     * maps to one fingerprint.
+     */
+    public static long fingerprint(Throwable error, int frames) {
+        long hash = 0xcbf29ce484222325L;
+        int depth = 0;
+        for (Throwable current = error; current != null && depth < MAX_CAUSES; current = current.getCause(), depth++) {
+            hash = mix(hash, current.getClass().getName().hashCode());
+            StackTraceElement[] trace = current.getStackTrace();
+            for (int i = 0; i < Math.min(frames, trace.length); i++) {
+                hash = mix(hash, trace[i].getClassName().hashCode());
+                hash = mix(hash, trace[i].getMethodName().hashCode());
+                hash = mix(hash, trace[i].getLineNumber());
+            }
+            if (current.getCause() == current) {
+                break;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Renders the error and its causes like {@code printStackTrace}, but with at most
+     * {@code maxFrames} frames per throwable and without suppressed exceptions.
+     */
+    public static String render(Throwable error, int maxFrames) {
+        StringBuilder out = new StringBuilder(256);
+        Set<Throwable> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Throwable current = error; current != null && seen.add(current); current = current.getCause()) {
+            if (current != error) {
+                out.append("Caused by: ");
+            }
+            out.append(current).append('\n');
+            StackTraceElement[] trace = current.getStackTrace();
+            int shown = Math.min(maxFrames, trace.length);
+            for (int i = 0; i < shown; i++) {
+                out.append("\tat ").append(trace[i]).append('\n');
+            }
+            if (shown < trace.length) {
+                out.append("\t... ").append(trace.length - shown).append(" more\n");
+            }
+        }
+        return out.toString();
+    }
+
+    private static long mix(long hash, int value) {
+        hash ^= value;
+        hash *= 0x100000001b3L;
+        return hash ^ (hash >>> 29);
+    }
+}
@@ -0,0 +1,174 @@
+package ru.t1.apupynin.common.aspects.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import ru.t1.apupynin.common.aspects.cache.CacheEngine;
+import ru.t1.apupynin.common.aspects.cache.CacheRegistry;
+import ru.t1.apupynin.common.aspects.cache.CacheStats;
+import ru.t1.apupynin.common.aspects.logging.LogEventPipeline;
+import ru.t1.apupynin.common.aspects.logging.LogPipelineStats;
+import ru.t1.apupynin.common.aspects.logging.LogSampler;
+import ru.t1.apupynin.common.aspects.logging.LogSamplingStats;
+import ru.t1.apupynin.common.aspects.resilience.Bulkhead;
+import ru.t1.apupynin.common.aspects.resilience.CallGuard;
+import ru.t1.apupynin.common.aspects.resilience.ResilienceRegistry;
+import ru.t1.apupynin.common.aspects.support.MethodMetadata;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Exposes the starter's internal counters to Micrometer.
+ * <p>
+ * Cache, pipeline, sampling and resilience meters are function counters and gauges over the existing stats, so
+ * they cost nothing until scraped. {@code @Metric} timings go to one {@link Timer} per method and bound
+ * registry, built on the first call and kept in the method's {@link MethodMetadata}, so later calls only record.
+ */
+public class CommonAspectsMeterBinder implements MeterBinder, LatencyObserver {
+
+    private final CacheRegistry cacheRegistry;
+    private final LogEventPipeline pipeline;
+    private final LogSampler sampler;
+    private final ResilienceRegistry resilience;
+    private volatile MeterRegistry[] registries = new MeterRegistry[0];
+
+    public CommonAspectsMeterBinder(CacheRegistry cacheRegistry, LogEventPipeline pipeline, LogSampler sampler,
+                                    ResilienceRegistry resilience) {
+        this.cacheRegistry = cacheRegistry;
+        this.pipeline = pipeline;
+        this.sampler = sampler;
+        this.resilience = resilience;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        synchronized (this) {
+            MeterRegistry[] bound = Arrays.copyOf(registries, registries.length + 1);
+            bound[bound.length - 1] = registry;
+            registries = bound;
+        }
+
+        if (cacheRegistry != null) {
+            cacheRegistry.addCacheListener((name, cache) -> bindCache(registry, name, cache));
+            cacheRegistry.getCaches().forEach((name, cache) -> bindCache(registry, name, cache));
+        }
+        if (pipeline != null) {
+            bindPipelineCounter(registry, "published", LogPipelineStats::published);
+            bindPipelineCounter(registry, "dropped", LogPipelineStats::dropped);
+            bindPipelineCounter(registry, "shipped", LogPipelineStats::shipped);
+            bindPipelineCounter(registry, "failed", LogPipelineStats::failed);
+            Gauge.builder("t1.log.pipeline.queued", pipeline, p -> p.stats().queued())
+                    .description("Log events waiting to be shipped")
+                    .register(registry);
+        }
+        if (sampler != null) {
+            bindSamplingCounter(registry, "kept", LogSamplingStats::kept);
+            bindSamplingCounter(registry, "forced", LogSamplingStats::forced);
+            bindSamplingCounter(registry, "sampled_out", LogSamplingStats::sampledOut);
+            bindSamplingCounter(registry, "rate_limited", LogSamplingStats::rateLimited);
+        }
+        if (resilience != null) {
+            resilience.addGuardListener((name, guard) -> bindGuard(registry, name, guard));
+            resilience.getGuards().forEach((name, guard) -> bindGuard(registry, name, guard));
+        }
+    }
+
+    @Override
+    public void record(MethodMetadata method, long elapsedNanos) {
+        MeterRegistry[] bound = registries;
+        if (bound.length == 0) {
+            return;
+        }
+        MethodTimers methodTimers = method.getAttribute(CommonAspectsMeterBinder.class, m -> new MethodTimers());
+        Timer[] timers = methodTimers.timers;
+        if (timers.length != bound.length) {
+            timers = methodTimers.register(method, bound);
+        }
+        for (Timer timer : timers) {
+            timer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void bindCache(MeterRegistry registry, String name, CacheEngine cache) {
+        Tags tags = Tags.of("cache", name);
+        bindCacheCounter(registry, "t1.cache.gets", tags.and("result", "hit"), cache, CacheStats::hits);
+        bindCacheCounter(registry, "t1.cache.gets", tags.and("result", "miss"), cache, CacheStats::misses);
+        bindCacheCounter(registry, "t1.cache.puts", tags, cache, CacheStats::puts);
+        bindCacheCounter(registry, "t1.cache.evictions", tags, cache, CacheStats::evictions);
+        bindCacheCounter(registry, "t1.cache.expirations", tags, cache, CacheStats::expirations);
+        Gauge.builder("t1.cache.size", cache, CacheEngine::size)
+                .tags(tags)
+                .description("Number of entries in the cache")
+                .register(registry);
+        Gauge.builder("t1.cache.hit.ratio", cache, c -> c.stats().hitRatio())
+                .tags(tags)
+                .register(registry);
+    }
+
+    private void bindGuard(MeterRegistry registry, String name, CallGuard guard) {
+        Tags tags = Tags.of("method", name);
+        Gauge.builder("t1.datasource.breaker.state", guard, g -> g.getBreaker().getState().ordinal())
+                .tags(tags)
+                .description("Circuit breaker state: 0 closed, 1 open, 2 half-open")
+                .register(registry);
+        FunctionCounter.builder("t1.datasource.calls.rejected", guard, CallGuard::getRejected)
+                .tags(tags)
+                .description("Calls rejected by the circuit breaker or bulkhead")
+                .register(registry);
+        if (guard.getBulkhead() != null) {
+            Gauge.builder("t1.datasource.calls.active", guard.getBulkhead(), Bulkhead::getActiveCalls)
+                    .tags(tags)
+                    .register(registry);
+        }
+    }
+
+    private static void bindCacheCounter(MeterRegistry registry, String name, Tags tags, CacheEngine cache,
+                                         ToDoubleFunction<CacheStats> value) {
+        FunctionCounter.builder(name, cache, c -> value.applyAsDouble(c.stats()))
+                .tags(tags)
+                .register(registry);
+    }
+
+    private void bindPipelineCounter(MeterRegistry registry, String outcome, ToDoubleFunction<LogPipelineStats> value) {
+        FunctionCounter.builder("t1.log.pipeline.events", pipeline, p -> value.applyAsDouble(p.stats()))
+                .tag("outcome", outcome)
+                .description("Log events by pipeline outcome")
+                .register(registry);
+    }
+
+    private void bindSamplingCounter(MeterRegistry registry, String decision, ToDoubleFunction<LogSamplingStats> value) {
+        FunctionCounter.builder("t1.log.sampling.events", sampler, s -> value.applyAsDouble(s.stats()))
+                .tag("decision", decision)
+                .description("HTTP log events by sampling decision")
+                .register(registry);
+    }
+
+    /**
+     * Timers of one method, in the order of the registries they were built for. Registries are only
+     * ever appended and {@link Timer.Builder#register} returns the existing timer, so a racing rebuild
+     * is harmless.
+     */
+    private static final class MethodTimers {
+
+        private volatile Timer[] timers = new Timer[0];
+
+        Timer[] register(MethodMetadata method, MeterRegistry[] registries) {
+            Tags tags = Tags.of("class", method.getMethod().getDeclaringClass().getSimpleName(),
+                    "method", method.getMethod().getName());
+            Timer[] registered = new Timer[registries.length];
+            for (int i = 0; i < registries.length; i++) {
+                registered[i] = Timer.builder("t1.method.duration")
+                        .description("Duration of @Metric methods")
+                        .tags(tags)
+                        .register(registries[i]);
+            }
+            timers = registered;
+            return registered;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package ru.t1.apupynin.common.aspects.metrics;
+
+/**
+ * Latency distribution of one publishing interval; all values are in nanoseconds.
+ */
+public record HistogramSnapshot(long count, long mean, long p50, long p90, long p99, long p999, long max) {
+
+    public static final HistogramSnapshot EMPTY = new HistogramSnapshot(0, 0, 0, 0, 0, 0, 0);
+}
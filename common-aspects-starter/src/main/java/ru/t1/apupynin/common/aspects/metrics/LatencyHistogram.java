@@ -0,0 +1,104 @@
+package ru.t1.apupynin.common.aspects.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram in the style of HdrHistogram: every power-of-two range of
+ * nanoseconds is split into {@code 2^(SUB_BUCKET_BITS - 1)} equal sub-buckets, each {@code 1/32} of
+ * its range wide. Percentiles report the midpoint of their bucket, which bounds their relative error
+ * to {@code 1/64} (about 1.6%) over the whole {@code long} range; values below
+ * {@code 2^SUB_BUCKET_BITS} are exact. Recording is an index computation plus one atomic increment
+ * and never allocates.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        total.add(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Moves everything recorded since the previous call into a snapshot. Values recorded
+     * concurrently land either in this snapshot or in the next one, never in neither.
+     */
+    public HistogramSnapshot snapshotAndReset() {
+        long[] interval = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (counts.get(i) != 0) {
+                interval[i] = counts.getAndSet(i, 0);
+                count += interval[i];
+            }
+        }
+        long intervalMax = max.getAndSet(0);
+        long sum = total.sumThenReset();
+        if (count == 0) {
+            return HistogramSnapshot.EMPTY;
+        }
+        return new HistogramSnapshot(count, sum / count,
+                valueAt(interval, count, 0.50, intervalMax), valueAt(interval, count, 0.90, intervalMax),
+                valueAt(interval, count, 0.99, intervalMax), valueAt(interval, count, 0.999, intervalMax),
+                intervalMax);
+    }
+
+    static int indexOf(long value) {
+        int shift = Math.max(0, Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        if (shift == 0) {
+            return (int) value;
+        }
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + (int) (value >>> shift) - SUB_BUCKET_HALF;
+    }
+
+    static long lowestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int offset = index - SUB_BUCKET_COUNT;
+        long subBucket = offset % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return subBucket << shiftAt(index);
+    }
+
+    static long highestValueAt(int index) {
+        return lowestValueAt(index) + (widthAt(index) - 1);
+    }
+
+    static long medianValueAt(int index) {
+        return lowestValueAt(index) + (widthAt(index) >> 1);
+    }
+
+    private static long widthAt(int index) {
+        return 1L << shiftAt(index);
+    }
+
+    private static int shiftAt(int index) {
+        return index < SUB_BUCKET_COUNT ? 0 : (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+    }
+
+    private static long valueAt(long[] interval, long count, double quantile, long intervalMax) {
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < interval.length; i++) {
+            seen += interval[i];
+            if (seen >= rank) {
+                return Math.min(medianValueAt(i), intervalMax);
+            }
+        }
+        return intervalMax;
+    }
+}
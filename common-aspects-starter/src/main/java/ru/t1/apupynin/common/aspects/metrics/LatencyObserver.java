@@ -0,0 +1,12 @@
+package ru.t1.apupynin.common.aspects.metrics;
+
+import ru.t1.apupynin.common.aspects.support.MethodMetadata;
+
+/**
+ * Receives the duration of every {@code @Metric} call; invoked on the caller thread, so
+ * implementations must not block or allocate per call.
+ */
+public interface LatencyObserver {
+
+    void record(MethodMetadata method, long elapsedNanos);
+}
@@ -0,0 +1,116 @@
+package ru.t1.apupynin.common.aspects.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import ru.t1.apupynin.common.aspects.logging.LogEvent;
+import ru.t1.apupynin.common.aspects.logging.LogEventPipeline;
+import ru.t1.apupynin.common.aspects.support.MethodMetadata;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps one {@link LatencyHistogram} per {@code @Metric} method and publishes an interval
+ * snapshot of every method that was called since the previous publication.
+ */
+@Slf4j
+public class LatencyRecorder implements LatencyObserver, SmartLifecycle {
+
+    private final Map<Method, Entry> histograms = new ConcurrentHashMap<>();
+    private final LogEventPipeline pipeline;
+    private final String topic;
+    private final String serviceName;
+    private final long publishIntervalMs;
+    private ScheduledExecutorService publisher;
+    private long lastPublishNanos = System.nanoTime();
+    private volatile boolean running;
+
+    public LatencyRecorder(LogEventPipeline pipeline, String topic, String serviceName, long publishIntervalMs) {
+        this.pipeline = pipeline;
+        this.topic = topic;
+        this.serviceName = serviceName;
+        this.publishIntervalMs = publishIntervalMs;
+    }
+
+    @Override
+    public void record(MethodMetadata method, long elapsedNanos) {
+        Entry entry = histograms.get(method.getMethod());
+        if (entry == null) {
+            entry = histograms.computeIfAbsent(method.getMethod(), m -> new Entry(method.getLongSignature(),
+                    new LatencyHistogram()));
+        }
+        entry.histogram().record(elapsedNanos);
+    }
+
+    public synchronized void publish() {
+        long now = System.nanoTime();
+        double intervalSeconds = Math.max(1, now - lastPublishNanos) / 1e9;
+        lastPublishNanos = now;
+        for (Entry entry : histograms.values()) {
+            HistogramSnapshot snapshot = entry.histogram().snapshotAndReset();
+            if (snapshot.count() > 0) {
+                pipeline.publish(new LogEvent(topic, null, null, () -> createPayload(entry.name(), snapshot, intervalSeconds)));
+            }
+        }
+    }
+
+    private Map<String, Object> createPayload(String method, HistogramSnapshot snapshot, double intervalSeconds) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("service", serviceName);
+        payload.put("type", "METRIC");
+        payload.put("event", "LATENCY_SNAPSHOT");
+        payload.put("method", method);
+        payload.put("count", snapshot.count());
+        payload.put("throughputPerSec", snapshot.count() / intervalSeconds);
+        payload.put("meanMs", toMillis(snapshot.mean()));
+        payload.put("p50Ms", toMillis(snapshot.p50()));
+        payload.put("p90Ms", toMillis(snapshot.p90()));
+        payload.put("p99Ms", toMillis(snapshot.p99()));
+        payload.put("p999Ms", toMillis(snapshot.p999()));
+        payload.put("maxMs", toMillis(snapshot.max()));
+        return payload;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    @Override
+    public void start() {
+        publisher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "t1-metrics-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        publisher.scheduleAtFixedRate(() -> {
+            try {
+                publish();
+            } catch (Exception e) {
+                log.warn("Failed to publish latency snapshots: {}", e.getMessage());
+            }
+        }, publishIntervalMs, publishIntervalMs, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (publisher != null) {
+            publisher.shutdownNow();
+        }
+        publish();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private record Entry(String name, LatencyHistogram histogram) {
+    }
+}
@@ -0,0 +1,91 @@
+package ru.t1.apupynin.common.aspects.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Slow-call test of one {@code @Metric} method, either against a fixed threshold or against
+ * the method's own baseline.
+ * <p>
+ * The adaptive baseline is an exponentially weighted mean and variance of the call durations.
+ * A call is slow when it exceeds the mean by {@code deviationFactor} standard deviations and by
+ * at least {@code minDeviationRatio} of the mean, the latter keeping very stable methods from
+ * being flagged for scheduling jitter. Nothing is flagged during the first {@code warmupCalls}.
+ * Concurrent updates are not serialized: a lost update only drops one sample from the baseline.
+ */
+public final class SlowCallThreshold {
+
+    private final long fixedNanos;
+    private final double alpha;
+    private final double deviationFactor;
+    private final double minDeviationRatio;
+    private final long warmupCalls;
+
+    private final AtomicLong calls = new AtomicLong();
+    private volatile double mean;
+    private volatile double variance;
+
+    private SlowCallThreshold(long fixedNanos, double alpha, double deviationFactor, double minDeviationRatio,
+                              long warmupCalls) {
+        this.fixedNanos = fixedNanos;
+        this.alpha = alpha;
+        this.deviationFactor = deviationFactor;
+        this.minDeviationRatio = minDeviationRatio;
+        this.warmupCalls = warmupCalls;
+    }
+
+    public static SlowCallThreshold fixed(long thresholdMs) {
+        return new SlowCallThreshold(TimeUnit.MILLISECONDS.toNanos(thresholdMs), 0, 0, 0, 0);
+    }
+
+    public static SlowCallThreshold adaptive(double alpha, double deviationFactor, double minDeviationRatio,
+                                             long warmupCalls) {
+        return new SlowCallThreshold(-1, alpha, deviationFactor, minDeviationRatio, Math.max(1, warmupCalls));
+    }
+
+    public boolean isAdaptive() {
+        return fixedNanos < 0;
+    }
+
+    /**
+     * Tests the call against the threshold and, in adaptive mode, feeds it into the baseline afterwards.
+     */
+    public boolean isSlow(long elapsedNanos) {
+        if (!isAdaptive()) {
+            return elapsedNanos >= fixedNanos;
+        }
+        long seen = calls.incrementAndGet();
+        boolean slow = seen > warmupCalls && elapsedNanos > thresholdNanos();
+        update(elapsedNanos, seen);
+        return slow;
+    }
+
+    /**
+     * @return the current threshold; in adaptive mode 0 until the first call has been seen
+     */
+    public long thresholdNanos() {
+        if (!isAdaptive()) {
+            return fixedNanos;
+        }
+        double currentMean = mean;
+        double deviation = Math.max(deviationFactor * Math.sqrt(variance), minDeviationRatio * currentMean);
+        return (long) (currentMean + deviation);
+    }
+
+    public long baselineNanos() {
+        return isAdaptive() ? (long) mean : fixedNanos;
+    }
+
+    private void update(long elapsedNanos, long seen) {
+        double currentMean = mean;
+        if (seen == 1) {
+            mean = elapsedNanos;
+            return;
+        }
+        // faster convergence while warming up, then the configured smoothing
+        double weight = seen <= warmupCalls ? Math.max(alpha, 1.0 / seen) : alpha;
+        double delta = elapsedNanos - currentMean;
+        mean = currentMean + weight * delta;
+        variance = (1 - weight) * (variance + weight * delta * delta);
+    }
+}
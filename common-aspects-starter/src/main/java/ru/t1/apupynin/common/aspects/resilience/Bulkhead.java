@@ -0,0 +1,40 @@
+package ru.t1.apupynin.common.aspects.resilience;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps concurrent calls with a semaphore; a call waits at most {@code maxWaitMs} for a permit.
+ */
+public final class Bulkhead {
+
+    private final Semaphore permits;
+    private final int maxConcurrentCalls;
+    private final long maxWaitMs;
+
+    public Bulkhead(int maxConcurrentCalls, long maxWaitMs) {
+        this.permits = new Semaphore(maxConcurrentCalls);
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    public boolean tryAcquire() {
+        if (maxWaitMs <= 0) {
+            return permits.tryAcquire();
+        }
+        try {
+            return permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public int getActiveCalls() {
+        return maxConcurrentCalls - permits.availablePermits();
+    }
+}
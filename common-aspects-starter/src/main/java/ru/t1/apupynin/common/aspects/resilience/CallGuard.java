@@ -0,0 +1,69 @@
+package ru.t1.apupynin.common.aspects.resilience;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Circuit breaker and optional bulkhead of one method. Every permit from {@link #acquire()} must be
+ * passed back to {@link #release} exactly once.
+ */
+public final class CallGuard {
+
+    private final CircuitBreaker breaker;
+    private final Bulkhead bulkhead;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param bulkhead {@code null} for no concurrency limit
+     */
+    public CallGuard(CircuitBreaker breaker, Bulkhead bulkhead) {
+        this.breaker = breaker;
+        this.bulkhead = bulkhead;
+    }
+
+    /**
+     * @throws CallNotPermittedException when the bulkhead is full or the breaker is open
+     */
+    public CircuitBreaker.Phase acquire() {
+        if (bulkhead != null && !bulkhead.tryAcquire()) {
+            rejected.increment();
+            throw new CallNotPermittedException("Bulkhead of " + breaker.getName() + " is full");
+        }
+        CircuitBreaker.Phase permit = breaker.tryAcquire();
+        if (permit == null) {
+            if (bulkhead != null) {
+                bulkhead.release();
+            }
+            rejected.increment();
+            throw new CallNotPermittedException("Circuit breaker of " + breaker.getName() + " is open");
+        }
+        return permit;
+    }
+
+    /**
+     * @param error the failure of the call; a rejection of a nested guarded call and a cancellation
+     *              are neither a success nor a failure of this one
+     */
+    public void release(CircuitBreaker.Phase permit, Throwable error) {
+        if (bulkhead != null) {
+            bulkhead.release();
+        }
+        if (error instanceof CallNotPermittedException || error instanceof CancellationException) {
+            breaker.ignore(permit);
+        } else {
+            breaker.record(permit, error != null);
+        }
+    }
+
+    public CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    public Bulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,14 @@
+package ru.t1.apupynin.common.aspects.resilience;
+
+/**
+ * Thrown instead of calling a guarded method while its circuit breaker is open or its bulkhead is full.
+ * Carries no stack trace, so shedding load stays cheap.
+ */
+public class CallNotPermittedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CallNotPermittedException(String message) {
+        super(message, null, false, false);
+    }
+}
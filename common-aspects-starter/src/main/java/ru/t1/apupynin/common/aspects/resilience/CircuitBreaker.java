@@ -0,0 +1,164 @@
+package ru.t1.apupynin.common.aspects.resilience;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Failure-rate circuit breaker over a {@link SlidingWindow}.
+ * <p>
+ * While {@code CLOSED} every call is permitted; once the window holds at least {@code minimumCalls}
+ * and the failure rate reaches the threshold, the breaker opens and rejects calls for
+ * {@code openNanos}. It then lets {@code halfOpenCalls} probes through: one failure opens it again,
+ * that many successes close it with an empty window. A probe without an outcome hands its slot back
+ * through {@link #ignore}, and when no slot has freed up for {@code openNanos} since the last probe
+ * was let through the breaker opens again, so it cannot stay half-open for good. State lives in an immutable {@link Phase}
+ * swapped by compare-and-set, and a result only counts towards the phase its call was admitted in,
+ * so late results of calls started before a transition are ignored.
+ */
+@Slf4j
+public final class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    public record Transition(String name, State from, State to, double failureRate, long calls) {
+    }
+
+    private final String name;
+    private final double failureRateThreshold;
+    private final int minimumCalls;
+    private final long windowNanos;
+    private final int windowBuckets;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final Consumer<Transition> listener;
+    private final AtomicReference<Phase> phase;
+
+    public CircuitBreaker(String name, double failureRateThreshold, int minimumCalls, long windowNanos,
+                          int windowBuckets, long openNanos, int halfOpenCalls, Consumer<Transition> listener) {
+        this.name = name;
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumCalls = Math.max(1, minimumCalls);
+        this.windowNanos = windowNanos;
+        this.windowBuckets = windowBuckets;
+        this.openNanos = openNanos;
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        this.listener = listener;
+        this.phase = new AtomicReference<>(closed());
+    }
+
+    /**
+     * @return the phase to report the call's result to, or {@code null} when the call is not permitted
+     */
+    public Phase tryAcquire() {
+        while (true) {
+            Phase current = phase.get();
+            switch (current.state) {
+                case CLOSED -> {
+                    return current;
+                }
+                case HALF_OPEN -> {
+                    int permits = current.permits.get();
+                    if (permits < halfOpenCalls) {
+                        if (current.permits.compareAndSet(permits, permits + 1)) {
+                            current.lastPermitNanos = System.nanoTime();
+                            return current;
+                        }
+                        continue;
+                    }
+                    if (System.nanoTime() - current.lastPermitNanos < openNanos) {
+                        return null;
+                    }
+                    transition(current, new Phase(State.OPEN, null), -1, current.successes.get());
+                    return null;
+                }
+                default -> {
+                    if (System.nanoTime() - current.sinceNanos < openNanos) {
+                        return null;
+                    }
+                    transition(current, new Phase(State.HALF_OPEN, null), -1, 0);
+                }
+            }
+        }
+    }
+
+    public void record(Phase admitted, boolean failure) {
+        if (phase.get() != admitted) {
+            return;
+        }
+        if (admitted.state == State.CLOSED) {
+            long now = System.nanoTime();
+            admitted.window.record(failure, now);
+            if (failure) {
+                long totals = admitted.window.totals(now);
+                long calls = totals >>> 32;
+                double failureRate = (double) (totals & 0xFFFFFFFFL) / calls;
+                if (calls >= minimumCalls && failureRate >= failureRateThreshold) {
+                    transition(admitted, new Phase(State.OPEN, null), failureRate, calls);
+                }
+            }
+        } else if (admitted.state == State.HALF_OPEN) {
+            if (failure) {
+                transition(admitted, new Phase(State.OPEN, null), -1, admitted.successes.get() + 1);
+            } else if (admitted.successes.incrementAndGet() >= halfOpenCalls) {
+                transition(admitted, closed(), 0, halfOpenCalls);
+            }
+        }
+    }
+
+    /**
+     * Gives back the permit of a call that ended without a verdict on the guarded method, such as
+     * a rejection further down or a cancellation, so a half-open probe slot is not lost.
+     */
+    public void ignore(Phase admitted) {
+        if (admitted.state == State.HALF_OPEN && phase.get() == admitted) {
+            admitted.permits.decrementAndGet();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public State getState() {
+        return phase.get().state;
+    }
+
+    private Phase closed() {
+        return new Phase(State.CLOSED, new SlidingWindow(windowNanos, windowBuckets));
+    }
+
+    private void transition(Phase from, Phase to, double failureRate, long calls) {
+        if (!phase.compareAndSet(from, to)) {
+            return;
+        }
+        try {
+            listener.accept(new Transition(name, from.state, to.state, failureRate, calls));
+        } catch (Exception e) {
+            log.error("Failed to handle circuit breaker transition of {}", name, e);
+        }
+    }
+
+    public static final class Phase {
+
+        private final State state;
+        private final SlidingWindow window;
+        private final long sinceNanos = System.nanoTime();
+        private final AtomicInteger permits = new AtomicInteger();
+        private final AtomicInteger successes = new AtomicInteger();
+        private volatile long lastPermitNanos;
+
+        private Phase(State state, SlidingWindow window) {
+            this.state = state;
+            this.window = window;
+        }
+
+        public State getState() {
+            return state;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package ru.t1.apupynin.common.aspects.resilience;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Creates and holds one {@link CallGuard} per guarded method, all with the same breaker settings.
+ */
+public class ResilienceRegistry {
+
+    private final Map<String, CallGuard> guards = new ConcurrentHashMap<>();
+    private final List<Consumer<CircuitBreaker.Transition>> transitionListeners = new CopyOnWriteArrayList<>();
+    private final List<BiConsumer<String, CallGuard>> guardListeners = new CopyOnWriteArrayList<>();
+    private final double failureRateThreshold;
+    private final int minimumCalls;
+    private final long windowMs;
+    private final int windowBuckets;
+    private final long openMs;
+    private final int halfOpenCalls;
+    private final int maxConcurrentCalls;
+    private final long maxWaitMs;
+
+    /**
+     * @param maxConcurrentCalls bulkhead size of methods that do not declare one; {@code 0} for none
+     */
+    public ResilienceRegistry(double failureRateThreshold, int minimumCalls, long windowMs, int windowBuckets,
+                              long openMs, int halfOpenCalls, int maxConcurrentCalls, long maxWaitMs) {
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumCalls = minimumCalls;
+        this.windowMs = windowMs;
+        this.windowBuckets = windowBuckets;
+        this.openMs = openMs;
+        this.halfOpenCalls = halfOpenCalls;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    /**
+     * @param declaredMaxConcurrentCalls bulkhead size declared in code; negative for the default,
+     *                                   {@code 0} for none. Only the first call for a name decides.
+     */
+    public CallGuard guard(String name, int declaredMaxConcurrentCalls) {
+        CallGuard guard = guards.get(name);
+        if (guard != null) {
+            return guard;
+        }
+        CallGuard[] created = new CallGuard[1];
+        guard = guards.computeIfAbsent(name, n -> created[0] = createGuard(n, declaredMaxConcurrentCalls));
+        if (created[0] != null) {
+            for (BiConsumer<String, CallGuard> listener : guardListeners) {
+                listener.accept(name, created[0]);
+            }
+        }
+        return guard;
+    }
+
+    public void addTransitionListener(Consumer<CircuitBreaker.Transition> listener) {
+        transitionListeners.add(listener);
+    }
+
+    /**
+     * Registers a callback for guards created from now on; existing ones are available from {@link #getGuards()}.
+     */
+    public void addGuardListener(BiConsumer<String, CallGuard> listener) {
+        guardListeners.add(listener);
+    }
+
+    public Map<String, CallGuard> getGuards() {
+        return Collections.unmodifiableMap(guards);
+    }
+
+    private CallGuard createGuard(String name, int declaredMaxConcurrentCalls) {
+        int concurrency = declaredMaxConcurrentCalls >= 0 ? declaredMaxConcurrentCalls : maxConcurrentCalls;
+        CircuitBreaker breaker = new CircuitBreaker(name, failureRateThreshold, minimumCalls,
+                TimeUnit.MILLISECONDS.toNanos(windowMs), windowBuckets, TimeUnit.MILLISECONDS.toNanos(openMs),
+                halfOpenCalls, this::onTransition);
+        return new CallGuard(breaker, concurrency > 0 ? new Bulkhead(concurrency, maxWaitMs) : null);
+    }
+
+    private void onTransition(CircuitBreaker.Transition transition) {
+        for (Consumer<CircuitBreaker.Transition> listener : transitionListeners) {
+            listener.accept(transition);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package ru.t1.apupynin.common.aspects.resilience;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free call and failure counts over the last {@code buckets} time slices.
+ * <p>
+ * Each slice is one {@code long} packing the slice number with both counts, so recording is a
+ * single compare-and-set and a slice left over from an earlier lap of the ring is recognised by its
+ * number and starts again from zero. Counts saturate at about four million per slice.
+ */
+final class SlidingWindow {
+
+    private static final int COUNT_BITS = 22;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final int EPOCH_SHIFT = 2 * COUNT_BITS;
+    private static final long EPOCH_MASK = (1L << (Long.SIZE - EPOCH_SHIFT)) - 1;
+
+    private final AtomicLongArray slices;
+    private final long sliceNanos;
+    private final long originNanos = System.nanoTime();
+
+    SlidingWindow(long windowNanos, int buckets) {
+        this.slices = new AtomicLongArray(Math.max(1, buckets));
+        this.sliceNanos = Math.max(1, windowNanos / slices.length());
+    }
+
+    void record(boolean failure, long nowNanos) {
+        long epoch = epoch(nowNanos);
+        int index = (int) (epoch % slices.length());
+        while (true) {
+            long current = slices.get(index);
+            long calls = 0;
+            long failures = 0;
+            if (current >>> EPOCH_SHIFT == epoch) {
+                calls = (current >>> COUNT_BITS) & COUNT_MASK;
+                failures = current & COUNT_MASK;
+            }
+            calls = Math.min(calls + 1, COUNT_MASK);
+            if (failure) {
+                failures = Math.min(failures + 1, COUNT_MASK);
+            }
+            if (slices.compareAndSet(index, current, epoch << EPOCH_SHIFT | calls << COUNT_BITS | failures)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return calls in the high and failures in the low 32 bits
+     */
+    long totals(long nowNanos) {
+        long epoch = epoch(nowNanos);
+        long calls = 0;
+        long failures = 0;
+        for (int i = 0; i < slices.length(); i++) {
+            long slice = slices.get(i);
+            if (((epoch - (slice >>> EPOCH_SHIFT)) & EPOCH_MASK) < slices.length()) {
+                calls += (slice >>> COUNT_BITS) & COUNT_MASK;
+                failures += slice & COUNT_MASK;
+            }
+        }
+        return Math.min(calls, Integer.MAX_VALUE) << 32 | Math.min(failures, Integer.MAX_VALUE);
+    }
+
+    private long epoch(long nowNanos) {
+        return ((nowNanos - originNanos) / sliceNanos) & EPOCH_MASK;
+    }
+}
@@ -0,0 +1,130 @@
+package ru.t1.apupynin.common.aspects.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.ClassUtils;
+import ru.t1.apupynin.common.aspects.web.HttpRequestInfo;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Adapts {@code CompletionStage}, {@code Mono} and {@code Flux} results so aspects can act on the
+ * completion signal rather than on method return. Reactor types are only touched when Reactor is
+ * on the classpath and the method actually returns them.
+ * <p>
+ * Publishers stay lazy: callbacks are attached at subscription, elapsed time is measured from
+ * subscription, and the HTTP request is read from the subscriber context, not from a thread-local.
+ */
+@Slf4j
+public final class AsyncResults {
+
+    static final boolean REACTOR_PRESENT = ClassUtils.isPresent("reactor.core.publisher.Mono",
+            AsyncResults.class.getClassLoader());
+
+    private AsyncResults() {
+    }
+
+    /**
+     * Subscribes to the result and exposes its value as a future; a {@code Flux} is collected to a {@code List}.
+     */
+    @SuppressWarnings("unchecked")
+    public static CompletableFuture<Object> toFuture(Object result, ReturnKind kind) {
+        if (result == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return switch (kind) {
+            case SYNC -> CompletableFuture.completedFuture(result);
+            case COMPLETION_STAGE -> ((CompletionStage<Object>) result).toCompletableFuture();
+            case MONO, FLUX -> ReactorResults.toFuture(result, kind);
+        };
+    }
+
+    /**
+     * Inverse of {@link #toFuture}: a publisher calls the supplier once per subscription, a
+     * completion stage calls it immediately.
+     */
+    public static Object fromFuture(ReturnKind kind, Supplier<CompletableFuture<Object>> supplier) {
+        return switch (kind) {
+            case SYNC -> supplier.get().join();
+            case COMPLETION_STAGE -> supplier.get();
+            case MONO, FLUX -> ReactorResults.fromFuture(kind, supplier);
+        };
+    }
+
+    /**
+     * Calls {@code completion} once the result completes, fails or, for a publisher, is cancelled, which
+     * is reported as a {@code CancellationException}; only the first of these signals is reported per
+     * subscription. A completion stage is returned unchanged; a {@code Flux} reports a {@code null}
+     * value since its elements are not retained.
+     *
+     * @param startNanos start of the call, used for completion stages
+     */
+    public static Object onCompletion(Object result, ReturnKind kind, long startNanos, Completion completion) {
+        switch (result == null ? ReturnKind.SYNC : kind) {
+            case COMPLETION_STAGE -> {
+                ((CompletionStage<?>) result).whenComplete((value, error) ->
+                        complete(completion, value, unwrap(error), System.nanoTime() - startNanos, null));
+                return result;
+            }
+            case MONO, FLUX -> {
+                return ReactorResults.onCompletion(result, kind, completion);
+            }
+            default -> {
+                complete(completion, result, null, System.nanoTime() - startNanos, null);
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Calls {@code action} when a publisher is subscribed, with the request of the subscribing
+     * exchange; other results are returned as they are without calling it.
+     */
+    public static Object onSubscribe(Object result, ReturnKind kind, Consumer<HttpRequestInfo> action) {
+        if (result == null || (kind != ReturnKind.MONO && kind != ReturnKind.FLUX)) {
+            return result;
+        }
+        return ReactorResults.onSubscribe(result, kind, action);
+    }
+
+    /**
+     * Runs {@code acquire} at every subscription of a publisher and {@code release} once that
+     * subscription terminates, with the error it failed with, or is cancelled, with a
+     * {@code CancellationException}; an exception from {@code acquire} fails the subscription.
+     * Other results are returned as they are.
+     */
+    public static <P> Object withPermit(Object result, ReturnKind kind, Supplier<P> acquire,
+                                        BiConsumer<P, Throwable> release) {
+        if (result == null || (kind != ReturnKind.MONO && kind != ReturnKind.FLUX)) {
+            return result;
+        }
+        return ReactorResults.withPermit(result, kind, acquire, release);
+    }
+
+    public static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    static void complete(Completion completion, Object value, Throwable error, long elapsedNanos,
+                         HttpRequestInfo request) {
+        try {
+            completion.complete(value, error, elapsedNanos, request);
+        } catch (Exception e) {
+            log.error("Failed to handle asynchronous completion", e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Completion {
+
+        /**
+         * @param request the request of the subscribing exchange, {@code null} for completion stages
+         *                or outside WebFlux
+         */
+        void complete(Object value, Throwable error, long elapsedNanos, HttpRequestInfo request);
+    }
+}
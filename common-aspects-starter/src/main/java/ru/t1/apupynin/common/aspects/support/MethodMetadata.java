@@ -0,0 +1,178 @@
+package ru.t1.apupynin.common.aspects.support;
+
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import ru.t1.apupynin.common.aspects.annotation.Sensitive;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Everything the aspects derive from an advised {@link Method}, computed once by
+ * {@link MethodMetadataRegistry}. Aspects keep their own per-method state in {@link #getAttribute}.
+ */
+public final class MethodMetadata {
+
+    private static final String SENSITIVE_PLACEHOLDER = "***";
+
+    private static final Set<String> UNLOGGABLE_TYPES = Set.of(
+            "jakarta.servlet.ServletRequest",
+            "jakarta.servlet.ServletResponse",
+            "jakarta.servlet.http.HttpSession",
+            "org.springframework.web.multipart.MultipartFile",
+            "org.springframework.validation.Errors",
+            "java.io.InputStream",
+            "java.io.OutputStream",
+            "java.io.Reader",
+            "java.io.Writer");
+
+    private final Method method;
+    private final String longSignature;
+    private final String shortSignature;
+    private final String[] parameterNames;
+    private final String[] placeholders;
+    private final boolean allLoggable;
+    private final ReturnKind returnKind;
+    private final Map<Object, Object> attributes = new ConcurrentHashMap<>();
+
+    MethodMetadata(Method method, String[] parameterNames) {
+        this(method, method, parameterNames);
+    }
+
+    /**
+     * @param signatureMethod the method the join point reports, which names the signatures; behind a
+     *                        JDK proxy that is the interface method rather than {@code method}
+     */
+    MethodMetadata(Method method, Method signatureMethod, String[] parameterNames) {
+        this.method = method;
+        this.longSignature = longSignature(signatureMethod);
+        this.shortSignature = signatureMethod.getDeclaringClass().getSimpleName() + "." + signatureMethod.getName()
+                + (signatureMethod.getParameterCount() > 0 ? "(..)" : "()");
+        this.parameterNames = parameterNames;
+
+        Parameter[] parameters = method.getParameters();
+        this.placeholders = new String[parameters.length];
+        boolean loggable = true;
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i].isAnnotationPresent(Sensitive.class)) {
+                placeholders[i] = SENSITIVE_PLACEHOLDER;
+            } else if (isUnloggable(parameters[i].getType())) {
+                placeholders[i] = "<" + parameters[i].getType().getSimpleName() + ">";
+            }
+            loggable &= placeholders[i] == null;
+        }
+        this.allLoggable = loggable;
+        this.returnKind = ReturnKind.of(method.getReturnType());
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Same text as the join point's {@code Signature.toLongString()}, e.g.
+     * {@code public java.lang.String a.B$C.find(long)}: binary type names, so nested types keep their
+     * {@code $}.
+     */
+    public String getLongSignature() {
+        return longSignature;
+    }
+
+    /**
+     * Same text as the join point's {@code Signature.toShortString()}, e.g. {@code C.find(..)} for a
+     * method of the nested type {@code B.C}, or {@code C.list()} without parameters.
+     */
+    public String getShortSignature() {
+        return shortSignature;
+    }
+
+    /**
+     * @return parameter names, or {@code null} when the class was compiled without them
+     */
+    public String[] getParameterNames() {
+        return parameterNames;
+    }
+
+    public ReturnKind getReturnKind() {
+        return returnKind;
+    }
+
+    /**
+     * Arguments as they may appear in a log event: {@code @Sensitive} values are masked and
+     * request, stream and upload objects are replaced by their type name.
+     */
+    public List<Object> loggableArguments(Object[] args) {
+        if (args == null || args.length == 0) {
+            return List.of();
+        }
+        if (allLoggable || args.length != placeholders.length) {
+            return Arrays.asList(args);
+        }
+        Object[] copy = args.clone();
+        for (int i = 0; i < copy.length; i++) {
+            if (placeholders[i] != null && copy[i] != null) {
+                copy[i] = placeholders[i];
+            }
+        }
+        return Arrays.asList(copy);
+    }
+
+    public <A extends Annotation> A getAnnotation(Class<A> annotationType) {
+        Optional<A> annotation = getAttribute(annotationType, m ->
+                Optional.ofNullable(AnnotatedElementUtils.findMergedAnnotation(m.getMethod(), annotationType)));
+        return annotation.orElse(null);
+    }
+
+    /**
+     * Per-method state owned by one aspect, created on first access.
+     *
+     * @param key unique to the owner, typically the aspect class
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getAttribute(Object key, Function<MethodMetadata, T> factory) {
+        Object value = attributes.get(key);
+        if (value == null) {
+            value = attributes.computeIfAbsent(key, k -> factory.apply(this));
+        }
+        return (T) value;
+    }
+
+    private static String longSignature(Method method) {
+        String modifiers = Modifier.toString(method.getModifiers() & Modifier.methodModifiers());
+        return (modifiers.isEmpty() ? "" : modifiers + " ") + typeName(method.getReturnType()) + " "
+                + typeName(method.getDeclaringClass()) + "." + method.getName()
+                + Arrays.stream(method.getParameterTypes()).map(MethodMetadata::typeName)
+                .collect(Collectors.joining(",", "(", ")"));
+    }
+
+    private static String typeName(Class<?> type) {
+        return type.isArray() ? typeName(type.getComponentType()) + "[]" : type.getName();
+    }
+
+    private static boolean isUnloggable(Class<?> type) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            if (UNLOGGABLE_TYPES.contains(current.getName()) || hasUnloggableInterface(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasUnloggableInterface(Class<?> type) {
+        for (Class<?> candidate : type.getInterfaces()) {
+            if (UNLOGGABLE_TYPES.contains(candidate.getName()) || hasUnloggableInterface(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,67 @@
+package ru.t1.apupynin.common.aspects.support;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared, lazily populated {@link MethodMetadata} of every advised method, so that no aspect formats
+ * signatures or inspects parameters per call. Also serves the cached parameter names to SpEL.
+ * <p>
+ * Join points are resolved to the target class's implementation first: behind a JDK proxy the
+ * signature carries the interface method, which has neither the implementation's annotations nor
+ * its parameter names. The signatures are still named after the join point's method, as
+ * {@code joinPoint.getSignature()} names them.
+ */
+public class MethodMetadataRegistry implements ParameterNameDiscoverer {
+
+    private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+    private final Map<Method, MethodMetadata> metadata = new ConcurrentHashMap<>();
+    private final Map<TargetMethod, MethodMetadata> targetMetadata = new ConcurrentHashMap<>();
+
+    public MethodMetadata get(JoinPoint joinPoint) {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Object target = joinPoint.getTarget();
+        if (target == null || method.getDeclaringClass() == target.getClass()) {
+            return get(method);
+        }
+        TargetMethod key = new TargetMethod(method, target.getClass());
+        MethodMetadata existing = targetMetadata.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        return targetMetadata.computeIfAbsent(key, k -> {
+            Method specific = AopUtils.getMostSpecificMethod(k.method(), k.targetClass());
+            return specific.equals(k.method()) ? get(specific)
+                    : new MethodMetadata(specific, k.method(), get(specific).getParameterNames());
+        });
+    }
+
+    public MethodMetadata get(Method method) {
+        MethodMetadata existing = metadata.get(method);
+        if (existing != null) {
+            return existing;
+        }
+        return metadata.computeIfAbsent(method, m -> new MethodMetadata(m, parameterNameDiscoverer.getParameterNames(m)));
+    }
+
+    @Override
+    public String[] getParameterNames(Method method) {
+        return get(method).getParameterNames();
+    }
+
+    @Override
+    public String[] getParameterNames(Constructor<?> ctor) {
+        return parameterNameDiscoverer.getParameterNames(ctor);
+    }
+
+    private record TargetMethod(Method method, Class<?> targetClass) {
+    }
+}
@@ -0,0 +1,170 @@
+package ru.t1.apupynin.common.aspects.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.ClassUtils;
+import org.springframework.web.filter.reactive.ServerWebExchangeContextFilter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.util.context.ContextView;
+import ru.t1.apupynin.common.aspects.web.HttpRequestInfo;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Reactor side of {@link AsyncResults}; loaded only when Reactor is present.
+ */
+@Slf4j
+final class ReactorResults {
+
+    private static final boolean WEBFLUX_PRESENT = ClassUtils.isPresent(
+            "org.springframework.web.filter.reactive.ServerWebExchangeContextFilter",
+            ReactorResults.class.getClassLoader());
+
+    private ReactorResults() {
+    }
+
+    static ReturnKind kindOf(Class<?> returnType) {
+        if (returnType == Mono.class) {
+            return ReturnKind.MONO;
+        }
+        if (returnType == Flux.class) {
+            return ReturnKind.FLUX;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    static CompletableFuture<Object> toFuture(Object result, ReturnKind kind) {
+        if (kind == ReturnKind.FLUX) {
+            return ((Flux<Object>) result).collectList().<Object>map(list -> list).toFuture();
+        }
+        return ((Mono<Object>) result).toFuture();
+    }
+
+    @SuppressWarnings("unchecked")
+    static Object fromFuture(ReturnKind kind, Supplier<CompletableFuture<Object>> supplier) {
+        Mono<Object> mono = Mono.defer(() -> Mono.fromFuture(supplier.get()));
+        return kind == ReturnKind.FLUX ? mono.flatMapIterable(list -> (List<Object>) list) : mono;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Object onCompletion(Object result, ReturnKind kind, AsyncResults.Completion completion) {
+        if (kind == ReturnKind.FLUX) {
+            Flux<Object> flux = (Flux<Object>) result;
+            return Flux.deferContextual(context -> {
+                Signals signals = new Signals(completion, requestInfo(context));
+                return flux
+                        .doOnComplete(() -> signals.complete(null, null))
+                        .doOnError(error -> signals.complete(null, error))
+                        .doOnCancel(signals::cancel);
+            });
+        }
+        Mono<Object> mono = (Mono<Object>) result;
+        return Mono.deferContextual(context -> {
+            Signals signals = new Signals(completion, requestInfo(context));
+            return mono
+                    .doOnSuccess(value -> signals.complete(value, null))
+                    .doOnError(error -> signals.complete(null, error))
+                    .doOnCancel(signals::cancel);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    static Object onSubscribe(Object result, ReturnKind kind, Consumer<HttpRequestInfo> action) {
+        if (kind == ReturnKind.FLUX) {
+            return Flux.deferContextual(context -> {
+                run(action, context);
+                return (Flux<Object>) result;
+            });
+        }
+        return Mono.deferContextual(context -> {
+            run(action, context);
+            return (Mono<Object>) result;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    static <P> Object withPermit(Object result, ReturnKind kind, Supplier<P> acquire,
+                                 BiConsumer<P, Throwable> release) {
+        if (kind == ReturnKind.FLUX) {
+            return Flux.defer(() -> {
+                P permit = acquire.get();
+                AtomicReference<Throwable> failure = new AtomicReference<>();
+                return ((Flux<Object>) result)
+                        .doOnError(failure::set)
+                        .doFinally(signal -> release.accept(permit, outcome(signal, failure.get())));
+            });
+        }
+        return Mono.defer(() -> {
+            P permit = acquire.get();
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            return ((Mono<Object>) result)
+                    .doOnError(failure::set)
+                    .doFinally(signal -> release.accept(permit, outcome(signal, failure.get())));
+        });
+    }
+
+    private static Throwable outcome(SignalType signal, Throwable failure) {
+        if (signal == SignalType.CANCEL && failure == null) {
+            return new CancellationException("Subscription cancelled");
+        }
+        return failure;
+    }
+
+    private static void run(Consumer<HttpRequestInfo> action, ContextView context) {
+        try {
+            action.accept(requestInfo(context));
+        } catch (Exception e) {
+            log.error("Failed to handle subscription", e);
+        }
+    }
+
+    private static HttpRequestInfo requestInfo(ContextView context) {
+        return WEBFLUX_PRESENT ? Exchanges.requestInfo(context) : null;
+    }
+
+    /**
+     * Terminal signals of one subscription. Only the first is reported: a {@code Mono} may still be
+     * cancelled after its value, e.g. by {@code next()} or {@code toFuture()}.
+     */
+    private static final class Signals {
+
+        private final AsyncResults.Completion completion;
+        private final HttpRequestInfo request;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        Signals(AsyncResults.Completion completion, HttpRequestInfo request) {
+            this.completion = completion;
+            this.request = request;
+        }
+
+        void complete(Object value, Throwable error) {
+            if (done.compareAndSet(false, true)) {
+                AsyncResults.complete(completion, value, error, System.nanoTime() - start, request);
+            }
+        }
+
+        void cancel() {
+            complete(null, new CancellationException("Subscription cancelled"));
+        }
+    }
+
+    private static final class Exchanges {
+
+        static HttpRequestInfo requestInfo(ContextView context) {
+            return ServerWebExchangeContextFilter.getExchange(context)
+                    .map(exchange -> new HttpRequestInfo(exchange.getRequest().getPath().value(),
+                            HttpRequestInfo.BODY_NOT_AVAILABLE))
+                    .orElse(null);
+        }
+    }
+}
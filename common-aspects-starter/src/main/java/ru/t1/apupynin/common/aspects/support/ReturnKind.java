@@ -0,0 +1,33 @@
+package ru.t1.apupynin.common.aspects.support;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * How an advised method delivers its result. Asynchronous kinds complete after the advice
+ * returns, so aspects observe them through {@link AsyncResults} instead of the call itself.
+ */
+public enum ReturnKind {
+
+    SYNC,
+    COMPLETION_STAGE,
+    MONO,
+    FLUX;
+
+    public boolean isAsync() {
+        return this != SYNC;
+    }
+
+    static ReturnKind of(Class<?> returnType) {
+        if (CompletionStage.class.isAssignableFrom(returnType) && returnType.isAssignableFrom(CompletableFuture.class)) {
+            return COMPLETION_STAGE;
+        }
+        if (AsyncResults.REACTOR_PRESENT) {
+            ReturnKind kind = ReactorResults.kindOf(returnType);
+            if (kind != null) {
+                return kind;
+            }
+        }
+        return SYNC;
+    }
+}
@@ -0,0 +1,188 @@
+package ru.t1.apupynin.common.aspects.trace;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Spans and HTTP log fields of one request, from the HTTP log aspect that opened it until that
+ * aspect publishes it as the request's single event.
+ * <p>
+ * Spans with the same kind and name are aggregated, so a method called in a loop costs one entry;
+ * at most {@code maxSpans} distinct entries are kept and the rest only counted. Spans reported
+ * after {@link #close()} are ignored.
+ */
+public final class RequestTrace {
+
+    private final String traceId;
+    private final int maxSpans;
+    private final long startNanos = System.nanoTime();
+    private final LocalDateTime startTimestamp = LocalDateTime.now();
+    private final Map<SpanKey, SpanStats> spans = new LinkedHashMap<>();
+    private int droppedSpans;
+    private boolean closed;
+    private long durationNanos;
+    private volatile Supplier<Map<String, Object>> income;
+    private volatile Supplier<Map<String, Object>> outcome;
+
+    RequestTrace(String traceId, int maxSpans) {
+        this.traceId = traceId;
+        this.maxSpans = maxSpans;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    /**
+     * @param startNanos {@code System.nanoTime()} at the start of the call
+     * @return {@code false} when the trace is already closed
+     */
+    public synchronized boolean addSpan(String kind, String name, long startNanos, long durationNanos,
+                                        boolean error, boolean slow) {
+        if (closed) {
+            return false;
+        }
+        SpanKey key = new SpanKey(kind, name);
+        SpanStats stats = spans.get(key);
+        if (stats == null) {
+            if (spans.size() >= maxSpans) {
+                droppedSpans++;
+                return true;
+            }
+            stats = new SpanStats(startNanos - this.startNanos);
+            spans.put(key, stats);
+        }
+        stats.add(durationNanos, error, slow);
+        return true;
+    }
+
+    /**
+     * The first income wins, so a nested income-logged method does not replace the request's own.
+     */
+    public void setIncome(Supplier<Map<String, Object>> income) {
+        if (this.income == null) {
+            this.income = income;
+        }
+    }
+
+    /**
+     * The last outcome wins, so the outermost outcome-logged method, which completes last, is kept.
+     */
+    public void setOutcome(Supplier<Map<String, Object>> outcome) {
+        this.outcome = outcome;
+    }
+
+    /**
+     * Stops accepting spans.
+     *
+     * @return total duration of the request
+     */
+    public synchronized long close() {
+        if (!closed) {
+            closed = true;
+            durationNanos = System.nanoTime() - startNanos;
+        }
+        return durationNanos;
+    }
+
+    /**
+     * Builds the closing event; the income and outcome fields are nested under their own keys.
+     */
+    public Map<String, Object> toMessage(String serviceName, Throwable error) {
+        Map<String, Object> incomeFields = income != null ? income.get() : null;
+        Map<String, Object> outcomeFields = outcome != null ? outcome.get() : null;
+        Map<String, Object> request = incomeFields != null ? incomeFields : outcomeFields;
+
+        Map<String, Object> message = new HashMap<>();
+        message.put("timestamp", startTimestamp.toString());
+        message.put("traceId", traceId);
+        if (request != null) {
+            message.put("methodSignature", request.get("methodSignature"));
+            message.put("uri", request.get("uri"));
+        }
+        synchronized (this) {
+            message.put("totalDurationMs", toMillis(durationNanos));
+            message.put("spans", spanBreakdown());
+            if (droppedSpans > 0) {
+                message.put("droppedSpans", droppedSpans);
+            }
+        }
+        if (incomeFields != null) {
+            message.put("income", incomeFields);
+        }
+        if (outcomeFields != null) {
+            message.put("outcome", outcomeFields);
+        }
+        if (error != null) {
+            message.put("exceptionMessage", error.getClass().getName() + ": " + error.getMessage());
+        }
+        message.put("serviceName", serviceName);
+        message.put("requestType", "TRACE");
+        return message;
+    }
+
+    private List<Map<String, Object>> spanBreakdown() {
+        List<Map.Entry<SpanKey, SpanStats>> entries = new ArrayList<>(spans.entrySet());
+        entries.sort(Comparator.comparingLong(entry -> entry.getValue().offsetNanos));
+        List<Map<String, Object>> breakdown = new ArrayList<>(entries.size());
+        for (Map.Entry<SpanKey, SpanStats> entry : entries) {
+            SpanStats stats = entry.getValue();
+            Map<String, Object> span = new LinkedHashMap<>();
+            span.put("kind", entry.getKey().kind());
+            span.put("name", entry.getKey().name());
+            span.put("offsetMs", toMillis(stats.offsetNanos));
+            span.put("count", stats.count);
+            span.put("totalMs", toMillis(stats.totalNanos));
+            if (stats.count > 1) {
+                span.put("maxMs", toMillis(stats.maxNanos));
+            }
+            if (stats.errors > 0) {
+                span.put("errors", stats.errors);
+            }
+            if (stats.slow > 0) {
+                span.put("slow", stats.slow);
+            }
+            breakdown.add(span);
+        }
+        return breakdown;
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+
+    private record SpanKey(String kind, String name) {
+    }
+
+    private static final class SpanStats {
+
+        private final long offsetNanos;
+        private int count;
+        private long totalNanos;
+        private long maxNanos;
+        private int errors;
+        private int slow;
+
+        private SpanStats(long offsetNanos) {
+            this.offsetNanos = offsetNanos;
+        }
+
+        private void add(long durationNanos, boolean error, boolean slow) {
+            count++;
+            totalNanos += durationNanos;
+            maxNanos = Math.max(maxNanos, durationNanos);
+            if (error) {
+                errors++;
+            }
+            if (slow) {
+                this.slow++;
+            }
+        }
+    }
+}
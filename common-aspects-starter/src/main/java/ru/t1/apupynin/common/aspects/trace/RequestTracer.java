@@ -0,0 +1,66 @@
+package ru.t1.apupynin.common.aspects.trace;
+
+import org.slf4j.MDC;
+
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Holds the open {@link RequestTrace} of the calling thread and mirrors its id into the MDC, so
+ * application log lines of the request can be tied to its event. The MDC key is our own, so the
+ * {@code traceId} managed by Micrometer Tracing or Brave is left alone; a value already under the
+ * key is restored when the trace is detached.
+ * <p>
+ * Aspects read the trace on the calling thread when a call starts and report the span to that
+ * instance, so completions on other threads still land in the right trace. Calls that start on
+ * other threads, including inside publishers, are not traced.
+ */
+public class RequestTracer {
+
+    public static final String MDC_KEY = "t1TraceId";
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final ThreadLocal<Binding> current = new ThreadLocal<>();
+    private final int maxSpans;
+
+    public RequestTracer(int maxSpans) {
+        this.maxSpans = maxSpans;
+    }
+
+    /**
+     * @return the trace of the calling thread, or {@code null} outside a traced request
+     */
+    public RequestTrace current() {
+        Binding binding = current.get();
+        return binding != null ? binding.trace() : null;
+    }
+
+    /**
+     * Starts a trace on the calling thread, which must {@link #detach} it before returning.
+     */
+    public RequestTrace open() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        RequestTrace trace = new RequestTrace(HEX.toHexDigits(random.nextLong()) + HEX.toHexDigits(random.nextLong()),
+                maxSpans);
+        current.set(new Binding(trace, MDC.get(MDC_KEY)));
+        MDC.put(MDC_KEY, trace.getTraceId());
+        return trace;
+    }
+
+    public void detach(RequestTrace trace) {
+        Binding binding = current.get();
+        if (binding == null || binding.trace() != trace) {
+            return;
+        }
+        current.remove();
+        if (binding.previousMdcValue() != null) {
+            MDC.put(MDC_KEY, binding.previousMdcValue());
+        } else {
+            MDC.remove(MDC_KEY);
+        }
+    }
+
+    private record Binding(RequestTrace trace, String previousMdcValue) {
+    }
+}
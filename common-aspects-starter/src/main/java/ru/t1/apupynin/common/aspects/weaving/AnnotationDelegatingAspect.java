@@ -0,0 +1,99 @@
+package ru.t1.apupynin.common.aspects.weaving;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import ru.t1.apupynin.common.aspects.annotation.CacheEvict;
+import ru.t1.apupynin.common.aspects.annotation.CachePut;
+import ru.t1.apupynin.common.aspects.annotation.Cached;
+import ru.t1.apupynin.common.aspects.annotation.HttpIncomeRequestLog;
+import ru.t1.apupynin.common.aspects.annotation.HttpOutcomeRequestLog;
+import ru.t1.apupynin.common.aspects.annotation.Metric;
+
+/**
+ * AspectJ counterpart of the proxy-based aspects for {@code t1.weaving.mode=aspectj}. Woven into the
+ * annotated methods themselves, so self-invocations and private methods are advised and a call pays no
+ * proxy interceptor chain; each advice delegates to the aspect bean of the context that owns the advised
+ * object, as resolved by {@link AspectDelegates}.
+ * <p>
+ * Registered for load-time weaving by {@code META-INF/aop.xml}; for compile-time weaving add
+ * common-aspects-starter as an aspect library of ajc. The singleton accessors are declared here so the
+ * aspect works from the aspect path without being compiled by ajc.
+ */
+@Aspect
+public class AnnotationDelegatingAspect {
+
+    private static final AnnotationDelegatingAspect INSTANCE = new AnnotationDelegatingAspect();
+
+    public static AnnotationDelegatingAspect aspectOf() {
+        return INSTANCE;
+    }
+
+    public static boolean hasAspect() {
+        return true;
+    }
+
+    @Around(value = "execution(!static * *(..)) && @annotation(cached)", argNames = "pjp,cached")
+    public Object cached(ProceedingJoinPoint pjp, Cached cached) throws Throwable {
+        AspectDelegates delegates = AspectDelegates.forTarget(pjp.getTarget());
+        if (delegates == null || delegates.cachedAspect == null) {
+            return pjp.proceed();
+        }
+        return delegates.cachedAspect.aroundCached(pjp, cached);
+    }
+
+    @Around(value = "execution(!static * *(..)) && @annotation(cachePut)", argNames = "pjp,cachePut")
+    public Object cachePut(ProceedingJoinPoint pjp, CachePut cachePut) throws Throwable {
+        AspectDelegates delegates = AspectDelegates.forTarget(pjp.getTarget());
+        if (delegates == null || delegates.cachedAspect == null) {
+            return pjp.proceed();
+        }
+        return delegates.cachedAspect.aroundCachePut(pjp, cachePut);
+    }
+
+    @Around(value = "execution(!static * *(..)) && @annotation(cacheEvict)", argNames = "pjp,cacheEvict")
+    public Object cacheEvict(ProceedingJoinPoint pjp, CacheEvict cacheEvict) throws Throwable {
+        AspectDelegates delegates = AspectDelegates.forTarget(pjp.getTarget());
+        if (delegates == null || delegates.cachedAspect == null) {
+            return pjp.proceed();
+        }
+        return delegates.cachedAspect.aroundCacheEvict(pjp, cacheEvict);
+    }
+
+    @Around(value = "execution(!static * *(..)) && @annotation(metric)", argNames = "pjp,metric")
+    public Object metric(ProceedingJoinPoint pjp, Metric metric) throws Throwable {
+        AspectDelegates delegates = AspectDelegates.forTarget(pjp.getTarget());
+        if (delegates == null || delegates.metricAspect == null) {
+            return pjp.proceed();
+        }
+        return delegates.metricAspect.measureExecutionTime(pjp, metric);
+    }
+
+    @Around(value = "execution(!static * *(..)) && @annotation(annotation)", argNames = "pjp,annotation")
+    public Object httpIncomeRequestLog(ProceedingJoinPoint pjp, HttpIncomeRequestLog annotation) throws Throwable {
+        AspectDelegates delegates = AspectDelegates.forTarget(pjp.getTarget());
+        if (delegates == null || delegates.httpIncomeRequestLogAspect == null) {
+            return pjp.proceed();
+        }
+        return delegates.httpIncomeRequestLogAspect.logHttpIncomeRequest(pjp, annotation);
+    }
+
+    @Around(value = "execution(!static * *(..)) && @annotation(annotation)", argNames = "pjp,annotation")
+    public Object httpOutcomeRequestLog(ProceedingJoinPoint pjp, HttpOutcomeRequestLog annotation) throws Throwable {
+        AspectDelegates delegates = AspectDelegates.forTarget(pjp.getTarget());
+        if (delegates == null || delegates.httpOutcomeRequestLogAspect == null) {
+            return pjp.proceed();
+        }
+        return delegates.httpOutcomeRequestLogAspect.logHttpOutcomeRequest(pjp, annotation);
+    }
+
+    @Around(value = "execution(!static * *(..)) && @annotation(ru.t1.apupynin.common.aspects.annotation.LogDatasourceError)",
+            argNames = "pjp")
+    public Object logDatasourceError(ProceedingJoinPoint pjp) throws Throwable {
+        AspectDelegates delegates = AspectDelegates.forTarget(pjp.getTarget());
+        if (delegates == null || delegates.logDatasourceErrorAspect == null) {
+            return pjp.proceed();
+        }
+        return delegates.logDatasourceErrorAspect.logDatasourceError(pjp);
+    }
+}
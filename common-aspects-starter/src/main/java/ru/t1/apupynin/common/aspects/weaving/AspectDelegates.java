@@ -0,0 +1,137 @@
+package ru.t1.apupynin.common.aspects.weaving;
+
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.weaver.loadtime.Agent;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.instrument.classloading.InstrumentationLoadTimeWeaver;
+import ru.t1.apupynin.common.aspects.aspect.CachedAspect;
+import ru.t1.apupynin.common.aspects.aspect.HttpIncomeRequestLogAspect;
+import ru.t1.apupynin.common.aspects.aspect.HttpOutcomeRequestLogAspect;
+import ru.t1.apupynin.common.aspects.aspect.LogDatasourceErrorAspect;
+import ru.t1.apupynin.common.aspects.aspect.MetricAspect;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands the context's aspect beans to {@link AnnotationDelegatingAspect}, which AspectJ instantiates
+ * outside of Spring. Every live context in weaving mode binds its own delegates, so parent and child
+ * contexts, or the contexts a test framework keeps cached, each advise their own beans; see
+ * {@link #forTarget}. Until a context has created this bean, its woven methods run unadvised.
+ */
+@Slf4j
+public class AspectDelegates implements BeanFactoryAware, InitializingBean, DisposableBean {
+
+    private static volatile AspectDelegates[] bound = new AspectDelegates[0];
+
+    final CachedAspect cachedAspect;
+    final MetricAspect metricAspect;
+    final HttpIncomeRequestLogAspect httpIncomeRequestLogAspect;
+    final HttpOutcomeRequestLogAspect httpOutcomeRequestLogAspect;
+    final LogDatasourceErrorAspect logDatasourceErrorAspect;
+
+    private final Map<Class<?>, String[]> beanNamesByType = new ConcurrentHashMap<>();
+    private ConfigurableListableBeanFactory beanFactory;
+
+    public AspectDelegates(CachedAspect cachedAspect, MetricAspect metricAspect,
+                           HttpIncomeRequestLogAspect httpIncomeRequestLogAspect,
+                           HttpOutcomeRequestLogAspect httpOutcomeRequestLogAspect,
+                           LogDatasourceErrorAspect logDatasourceErrorAspect) {
+        this.cachedAspect = cachedAspect;
+        this.metricAspect = metricAspect;
+        this.httpIncomeRequestLogAspect = httpIncomeRequestLogAspect;
+        this.httpOutcomeRequestLogAspect = httpOutcomeRequestLogAspect;
+        this.logDatasourceErrorAspect = logDatasourceErrorAspect;
+    }
+
+    /**
+     * Delegates of the context that owns {@code target}. With a single bound context that is the
+     * context; otherwise the one holding {@code target} as a singleton, else the one defining a bean of
+     * its type, else (for objects that are no bean at all) the most recently bound one.
+     *
+     * @return {@code null} when no context is bound
+     */
+    static AspectDelegates forTarget(Object target) {
+        AspectDelegates[] contexts = bound;
+        if (contexts.length == 0) {
+            return null;
+        }
+        if (contexts.length == 1 || target == null) {
+            return contexts[contexts.length - 1];
+        }
+        AspectDelegates byType = null;
+        for (int i = contexts.length - 1; i >= 0; i--) {
+            String[] names = contexts[i].beanNames(target.getClass());
+            if (names.length == 0) {
+                continue;
+            }
+            if (contexts[i].holds(names, target)) {
+                return contexts[i];
+            }
+            if (byType == null) {
+                byType = contexts[i];
+            }
+        }
+        return byType != null ? byType : contexts[contexts.length - 1];
+    }
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) {
+        this.beanFactory = (ConfigurableListableBeanFactory) beanFactory;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        synchronized (AspectDelegates.class) {
+            AspectDelegates[] contexts = Arrays.copyOf(bound, bound.length + 1);
+            contexts[contexts.length - 1] = this;
+            bound = contexts;
+        }
+        if (!isLoadTimeWeaverActive()) {
+            log.info("t1.weaving.mode=aspectj without a load-time weaving agent: annotated methods are advised "
+                    + "only in classes that were compile-time woven with common-aspects-starter on the aspect path");
+        }
+    }
+
+    @Override
+    public void destroy() {
+        synchronized (AspectDelegates.class) {
+            bound = Arrays.stream(bound).filter(delegates -> delegates != this).toArray(AspectDelegates[]::new);
+        }
+    }
+
+    private String[] beanNames(Class<?> type) {
+        String[] names = beanNamesByType.get(type);
+        if (names == null) {
+            names = beanNamesByType.computeIfAbsent(type, t -> beanFactory.getBeanNamesForType(t, true, false));
+        }
+        return names;
+    }
+
+    private boolean holds(String[] names, Object target) {
+        for (String name : names) {
+            if (beanFactory.containsSingleton(name)) {
+                Object singleton = beanFactory.getSingleton(name);
+                if (singleton == target || AopProxyUtils.getSingletonTarget(singleton) == target) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isLoadTimeWeaverActive() {
+        try {
+            Agent.getInstrumentation();
+            return true;
+        } catch (UnsupportedOperationException | LinkageError e) {
+            return InstrumentationLoadTimeWeaver.isInstrumentationAvailable();
+        }
+    }
+}
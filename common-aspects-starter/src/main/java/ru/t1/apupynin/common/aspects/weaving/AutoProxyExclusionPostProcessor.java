@@ -0,0 +1,64 @@
+package ru.t1.apupynin.common.aspects.weaving;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.config.AopConfigUtils;
+import org.springframework.beans.MutablePropertyValues;
+import org.springframework.beans.PropertyValue;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the auto-proxy creator from turning the given aspect beans into advisors, so with woven advice
+ * the annotated beans are neither proxied for these aspects nor advised twice. Other {@code @Aspect}
+ * beans and advisors are unaffected.
+ */
+@Slf4j
+public class AutoProxyExclusionPostProcessor implements BeanFactoryPostProcessor {
+
+    private static final String INCLUDE_PATTERNS = "includePatterns";
+
+    private final Collection<Class<?>> aspectTypes;
+
+    public AutoProxyExclusionPostProcessor(Class<?>... aspectTypes) {
+        this.aspectTypes = List.of(aspectTypes);
+    }
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+        if (!beanFactory.containsBeanDefinition(AopConfigUtils.AUTO_PROXY_CREATOR_BEAN_NAME)) {
+            return;
+        }
+        Set<String> excluded = new LinkedHashSet<>();
+        for (Class<?> type : aspectTypes) {
+            excluded.addAll(Arrays.asList(beanFactory.getBeanNamesForType(type, true, false)));
+        }
+        if (excluded.isEmpty()) {
+            return;
+        }
+        String exclusion = excluded.stream().map(Pattern::quote).collect(Collectors.joining("|", "(?!(?:", ")$)"));
+
+        BeanDefinition definition = beanFactory.getBeanDefinition(AopConfigUtils.AUTO_PROXY_CREATOR_BEAN_NAME);
+        MutablePropertyValues properties = definition.getPropertyValues();
+        List<String> patterns = new ArrayList<>();
+        PropertyValue existing = properties.getPropertyValue(INCLUDE_PATTERNS);
+        if (existing != null && existing.getValue() instanceof Collection<?> values) {
+            for (Object value : values) {
+                patterns.add(exclusion + "(?:" + value + ")");
+            }
+        } else {
+            patterns.add(exclusion + ".*");
+        }
+        properties.add(INCLUDE_PATTERNS, patterns);
+        log.debug("Aspects {} are applied by AspectJ weaving instead of proxies", excluded);
+    }
+}
@@ -0,0 +1,14 @@
+package ru.t1.apupynin.common.aspects.weaving;
+
+public enum WeavingMode {
+    /**
+     * Advice is applied by Spring AOP proxies: only calls through the proxy to public methods are advised.
+     */
+    PROXY,
+
+    /**
+     * Advice is woven into the annotated methods by AspectJ at compile or load time, see
+     * {@link AnnotationDelegatingAspect}; the aspects are no longer applied through proxies.
+     */
+    ASPECTJ
+}
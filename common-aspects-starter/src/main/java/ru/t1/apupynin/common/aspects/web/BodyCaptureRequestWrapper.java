@@ -0,0 +1,159 @@
+package ru.t1.apupynin.common.aspects.web;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import ru.t1.apupynin.common.aspects.logging.JsonLogField;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Copies the first bytes of the request body into a pooled buffer while the application reads it.
+ * The body is never read on behalf of the application, so only what the controller consumed is
+ * captured, and nothing beyond the buffer size is retained however large the body is.
+ */
+public class BodyCaptureRequestWrapper extends HttpServletRequestWrapper {
+
+    private final CaptureBufferPool pool;
+    private byte[] buffer;
+    private int count;
+    private boolean truncated;
+    private boolean released;
+    private ServletInputStream inputStream;
+    private BufferedReader reader;
+
+    BodyCaptureRequestWrapper(HttpServletRequest request, CaptureBufferPool pool) {
+        super(request);
+        this.pool = pool;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        if (inputStream == null) {
+            inputStream = new CapturingInputStream(super.getInputStream());
+        }
+        return inputStream;
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        if (reader == null) {
+            reader = new BufferedReader(new InputStreamReader(getInputStream(), getCharset()));
+        }
+        return reader;
+    }
+
+    /**
+     * @return the body bytes read so far, decoded with the request encoding; {@code null} when
+     * the application has not read the body
+     */
+    public synchronized String getCapturedBody() {
+        if (buffer == null) {
+            return null;
+        }
+        String body = new String(buffer, 0, count, getCharset());
+        return truncated ? body + JsonLogField.TRUNCATED_SUFFIX : body;
+    }
+
+    synchronized void release() {
+        released = true;
+        if (buffer != null) {
+            pool.release(buffer);
+            buffer = null;
+        }
+    }
+
+    private synchronized void capture(int b) {
+        if (ensureBuffer()) {
+            if (count < buffer.length) {
+                buffer[count++] = (byte) b;
+            } else {
+                truncated = true;
+            }
+        }
+    }
+
+    private synchronized void capture(byte[] bytes, int offset, int length) {
+        if (length <= 0 || !ensureBuffer()) {
+            return;
+        }
+        int fits = Math.min(length, buffer.length - count);
+        System.arraycopy(bytes, offset, buffer, count, fits);
+        count += fits;
+        truncated = fits < length;
+    }
+
+    private boolean ensureBuffer() {
+        if (released || truncated) {
+            return false;
+        }
+        if (buffer == null) {
+            buffer = pool.acquire();
+        }
+        return true;
+    }
+
+    private Charset getCharset() {
+        String encoding = getCharacterEncoding();
+        try {
+            return encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+        } catch (Exception e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    private class CapturingInputStream extends ServletInputStream {
+
+        private final ServletInputStream delegate;
+
+        CapturingInputStream(ServletInputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = delegate.read();
+            if (b >= 0) {
+                capture(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = delegate.read(b, off, len);
+            capture(b, off, read);
+            return read;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return delegate.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            delegate.setReadListener(readListener);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return delegate.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
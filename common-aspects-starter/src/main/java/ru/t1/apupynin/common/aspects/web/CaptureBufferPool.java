@@ -0,0 +1,31 @@
+package ru.t1.apupynin.common.aspects.web;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Bounded pool of fixed-size capture buffers. When the pool is empty a fresh buffer is allocated,
+ * and buffers released into a full pool are left to the garbage collector.
+ */
+class CaptureBufferPool {
+
+    private final int bufferSize;
+    private final ArrayBlockingQueue<byte[]> buffers;
+
+    CaptureBufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.buffers = new ArrayBlockingQueue<>(Math.max(1, maxPooled));
+    }
+
+    byte[] acquire() {
+        byte[] buffer = buffers.poll();
+        return buffer != null ? buffer : new byte[bufferSize];
+    }
+
+    void release(byte[] buffer) {
+        buffers.offer(buffer);
+    }
+
+    int bufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,50 @@
+package ru.t1.apupynin.common.aspects.web;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.util.ClassUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.util.WebUtils;
+
+/**
+ * The parts of the current HTTP request the log aspects report. It is captured once where the
+ * request is known and handed to asynchronous callbacks explicitly, so completions running on
+ * another thread do not depend on thread-bound request state.
+ */
+public record HttpRequestInfo(String uri, String body) {
+
+    public static final String BODY_NOT_AVAILABLE = "Body not available";
+
+    private static final boolean SERVLET_PRESENT = ClassUtils.isPresent("jakarta.servlet.http.HttpServletRequest",
+            HttpRequestInfo.class.getClassLoader());
+
+    /**
+     * @param withBody whether to decode the body captured by {@link RequestBodyCaptureFilter}
+     * @return the servlet request being handled by the calling thread, or {@code null} outside one
+     */
+    public static HttpRequestInfo current(boolean withBody) {
+        return SERVLET_PRESENT ? ServletRequests.current(withBody) : null;
+    }
+
+    private static final class ServletRequests {
+
+        static HttpRequestInfo current(boolean withBody) {
+            RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+            if (!(attributes instanceof ServletRequestAttributes servletAttributes)) {
+                return null;
+            }
+            HttpServletRequest request = servletAttributes.getRequest();
+            return new HttpRequestInfo(request.getRequestURI(), withBody ? body(request) : null);
+        }
+
+        private static String body(HttpServletRequest request) {
+            BodyCaptureRequestWrapper capture = WebUtils.getNativeRequest(request, BodyCaptureRequestWrapper.class);
+            if (capture == null) {
+                return BODY_NOT_AVAILABLE;
+            }
+            String body = capture.getCapturedBody();
+            return body != null ? body : "";
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package ru.t1.apupynin.common.aspects.web;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Wraps requests whose content type is on the allow-list into a {@link BodyCaptureRequestWrapper},
+ * so that {@code @HttpIncomeRequestLog} can log the body without consuming it.
+ */
+public class RequestBodyCaptureFilter extends OncePerRequestFilter {
+
+    private final CaptureBufferPool pool;
+    private final List<MediaType> contentTypes;
+
+    public RequestBodyCaptureFilter(int maxBytes, List<String> contentTypes, int poolSize) {
+        this.pool = new CaptureBufferPool(maxBytes, poolSize);
+        this.contentTypes = contentTypes.stream().map(MediaType::parseMediaType).toList();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!isCapturable(request)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        BodyCaptureRequestWrapper wrapper = new BodyCaptureRequestWrapper(request, pool);
+        try {
+            filterChain.doFilter(wrapper, response);
+        } finally {
+            // an async request may still be reading its body on another thread
+            if (!request.isAsyncStarted()) {
+                wrapper.release();
+            }
+        }
+    }
+
+    private boolean isCapturable(HttpServletRequest request) {
+        if (pool.bufferSize() <= 0 || request.getContentType() == null) {
+            return false;
+        }
+        try {
+            MediaType contentType = MediaType.parseMediaType(request.getContentType());
+            return contentTypes.stream().anyMatch(allowed -> allowed.includes(contentType));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
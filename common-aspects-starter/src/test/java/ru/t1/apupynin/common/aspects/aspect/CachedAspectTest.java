@@ -0,0 +1,396 @@
+package ru.t1.apupynin.common.aspects.aspect;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import ru.t1.apupynin.common.aspects.annotation.CacheEvict;
+import ru.t1.apupynin.common.aspects.annotation.Cached;
+import ru.t1.apupynin.common.aspects.autoconfigure.AspectProperties;
+import ru.t1.apupynin.common.aspects.cache.CacheEntry;
+import ru.t1.apupynin.common.aspects.cache.CacheExpressionEvaluator;
+import ru.t1.apupynin.common.aspects.cache.CacheInvalidationBus;
+import ru.t1.apupynin.common.aspects.cache.CacheInvalidator;
+import ru.t1.apupynin.common.aspects.cache.CacheKeyResolver;
+import ru.t1.apupynin.common.aspects.cache.CacheOperationSource;
+import ru.t1.apupynin.common.aspects.cache.CacheRegistry;
+import ru.t1.apupynin.common.aspects.cache.DefaultKeyGenerator;
+import ru.t1.apupynin.common.aspects.cache.InMemoryCacheInvalidationBus;
+import ru.t1.apupynin.common.aspects.cache.Weigher;
+import ru.t1.apupynin.common.aspects.cache.WTinyLfuCache;
+import ru.t1.apupynin.common.aspects.support.MethodMetadataRegistry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachedAspectTest {
+
+    private final List<CacheRegistry> registries = new ArrayList<>();
+
+    @AfterEach
+    void closeRegistries() {
+        registries.forEach(CacheRegistry::close);
+    }
+
+    @Test
+    void doesNotWriteBackALoadInvalidatedByAnotherNode() throws Exception {
+        InMemoryCacheInvalidationBus bus = new InMemoryCacheInvalidationBus();
+        Node local = new Node(new AspectProperties(), bus);
+        Node remote = new Node(new AspectProperties(), bus);
+        UserService service = new UserService();
+        UserService users = local.proxy(service);
+        service.names.put(1L, "old");
+        CountDownLatch loading = new CountDownLatch(1);
+        service.loading = loading;
+        service.release = new CountDownLatch(1);
+
+        CompletableFuture<String> inFlight = CompletableFuture.supplyAsync(() -> users.find(1L));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        service.names.put(1L, "new");
+        remote.invalidator.evict("users", 1L);
+        service.release.countDown();
+
+        assertThat(inFlight.get(5, TimeUnit.SECONDS)).isEqualTo("old");
+        assertThat(local.registry.getCache("users").getEntry(1L)).isNull();
+        assertThat(users.find(1L)).isEqualTo("new");
+        assertThat(service.loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void doesNotWriteBackALoadInvalidatedLocally() throws Exception {
+        Node node = new Node(new AspectProperties(), null);
+        UserService service = new UserService();
+        UserService users = node.proxy(service);
+        service.names.put(1L, "old");
+        CountDownLatch loading = new CountDownLatch(1);
+        service.loading = loading;
+        service.release = new CountDownLatch(1);
+
+        CompletableFuture<String> inFlight = CompletableFuture.supplyAsync(() -> users.find(1L));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        users.rename(1L, "new");
+        service.release.countDown();
+
+        assertThat(inFlight.get(5, TimeUnit.SECONDS)).isEqualTo("old");
+        assertThat(users.find(1L)).isEqualTo("new");
+    }
+
+    @Test
+    void cachesLoadsThatWereNotInvalidated() {
+        Node node = new Node(new AspectProperties(), null);
+        UserService service = new UserService();
+        UserService users = node.proxy(service);
+        service.names.put(1L, "a");
+
+        assertThat(users.find(1L)).isEqualTo("a");
+        assertThat(users.find(1L)).isEqualTo("a");
+
+        assertThat(service.loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void batchLoadsOnlyTheMissesAndMergesInRequestOrder() {
+        Node node = new Node(new AspectProperties(), null);
+        CatalogService service = new CatalogService();
+        CatalogService catalog = node.proxy(service);
+        service.names.putAll(Map.of(1L, "a", 2L, "b", 3L, "c"));
+        assertThat(catalog.find(2L)).isEqualTo("b");
+
+        Map<Long, String> found = catalog.findAll(List.of(3L, 2L, 1L));
+
+        assertThat(found).containsExactly(Map.entry(3L, "c"), Map.entry(2L, "b"), Map.entry(1L, "a"));
+        assertThat(service.batches).containsExactly(List.of(3L, 1L));
+        assertThat(catalog.findAll(List.of(1L, 2L, 3L))).containsExactly(
+                Map.entry(1L, "a"), Map.entry(2L, "b"), Map.entry(3L, "c"));
+        assertThat(catalog.find(3L)).isEqualTo("c");
+        assertThat(service.batches).hasSize(1);
+        assertThat(service.singles.get()).isEqualTo(1);
+    }
+
+    @Test
+    void batchMergesCollectionResultsByResultKeyInRequestOrder() {
+        Node node = new Node(new AspectProperties(), null);
+        CatalogService service = new CatalogService();
+        CatalogService catalog = node.proxy(service);
+        service.names.putAll(Map.of(1L, "a", 2L, "b", 3L, "c"));
+        catalog.findProducts(List.of(2L));
+
+        List<Product> products = catalog.findProducts(List.of(3L, 1L, 2L));
+
+        assertThat(products).extracting(Product::id).containsExactly(3L, 1L, 2L);
+        assertThat(service.batches).containsExactly(List.of(2L), List.of(3L, 1L));
+    }
+
+    @Test
+    void batchLoadsDuplicateElementsOnce() {
+        Node node = new Node(new AspectProperties(), null);
+        CatalogService service = new CatalogService();
+        CatalogService catalog = node.proxy(service);
+        service.names.putAll(Map.of(1L, "a", 2L, "b"));
+
+        Map<Long, String> found = catalog.findAll(List.of(1L, 1L, 2L, 1L));
+        List<Product> products = catalog.findProducts(List.of(2L, 1L, 2L));
+
+        assertThat(found).containsExactly(Map.entry(1L, "a"), Map.entry(2L, "b"));
+        assertThat(products).extracting(Product::id).containsExactly(2L, 1L);
+        assertThat(service.batches).containsExactly(List.of(1L, 2L), List.of(2L, 1L));
+    }
+
+    @Test
+    void batchAsksAgainForElementsTheLoaderDidNotReturn() {
+        Node node = new Node(new AspectProperties(), null);
+        CatalogService service = new CatalogService();
+        CatalogService catalog = node.proxy(service);
+        service.names.put(1L, "a");
+
+        assertThat(catalog.findAll(List.of(1L, 99L))).containsExactly(Map.entry(1L, "a"));
+        assertThat(catalog.findAll(List.of(1L, 99L))).containsExactly(Map.entry(1L, "a"));
+
+        assertThat(service.batches).containsExactly(List.of(1L, 99L), List.of(99L));
+    }
+
+    @Test
+    void batchCachesMissingElementsWhenNullsAreCached() {
+        Node node = new Node(new AspectProperties(), null);
+        CatalogService service = new CatalogService();
+        CatalogService catalog = node.proxy(service);
+        service.names.put(1L, "a");
+
+        assertThat(catalog.findAllCachingNulls(List.of(1L, 99L))).containsExactly(Map.entry(1L, "a"));
+        assertThat(catalog.findAllCachingNulls(List.of(99L, 1L))).containsExactly(Map.entry(1L, "a"));
+
+        assertThat(service.batches).containsExactly(List.of(1L, 99L));
+        assertThat(node.registry.getCache("optional").getEntry(99L)).isNotNull();
+    }
+
+    @Test
+    void falseConditionBypassesTheCache() {
+        Node node = new Node(new AspectProperties(), null);
+        AccountService service = new AccountService();
+        AccountService accounts = node.proxy(service);
+        service.owners.put(-1L, "system");
+
+        assertThat(accounts.find(-1L)).isEqualTo("system");
+        assertThat(accounts.find(-1L)).isEqualTo("system");
+
+        assertThat(service.loads.get()).isEqualTo(2);
+        assertThat(node.registry.getCache("accounts").size()).isZero();
+    }
+
+    @Test
+    void unlessKeepsMatchingResultsOutOfTheCache() {
+        Node node = new Node(new AspectProperties(), null);
+        AccountService service = new AccountService();
+        AccountService accounts = node.proxy(service);
+        service.owners.putAll(Map.of(1L, "pending-a", 2L, "b"));
+
+        accounts.find(1L);
+        accounts.find(1L);
+        accounts.find(2L);
+        accounts.find(2L);
+
+        assertThat(service.loads.get()).isEqualTo(3);
+        assertThat(node.registry.getCache("accounts").getEntry(1L)).isNull();
+    }
+
+    @Test
+    void nullResultsAreCachedOnlyWhenRequested() {
+        Node node = new Node(new AspectProperties(), null);
+        AccountService service = new AccountService();
+        AccountService accounts = node.proxy(service);
+
+        assertThat(accounts.find(7L)).isNull();
+        assertThat(accounts.find(7L)).isNull();
+        assertThat(accounts.findCachingNulls(7L)).isNull();
+        assertThat(accounts.findCachingNulls(7L)).isNull();
+
+        assertThat(service.loads.get()).isEqualTo(3);
+    }
+
+    @Test
+    void cachePropertiesOverrideTheAnnotation() {
+        AspectProperties properties = new AspectProperties();
+        AspectProperties.Cache optional = new AspectProperties.Cache();
+        optional.setCacheNulls(false);
+        properties.getCaches().put("optional-accounts", optional);
+        Node node = new Node(properties, null);
+        AccountService service = new AccountService();
+        AccountService accounts = node.proxy(service);
+
+        accounts.findCachingNulls(7L);
+        accounts.findCachingNulls(7L);
+
+        assertThat(service.loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void ttlComesFromCachePropertiesThenTheAnnotationThenTheDefault() {
+        AspectProperties properties = new AspectProperties();
+        properties.setCacheTtlMs(60_000);
+        AspectProperties.Cache configured = new AspectProperties.Cache();
+        configured.setTtlMs(30_000L);
+        properties.getCaches().put("configured", configured);
+        Node node = new Node(properties, null);
+        AccountService accounts = node.proxy(new AccountService());
+
+        accounts.findWithDefaultTtl(1L);
+        accounts.findWithAnnotatedTtl(1L);
+        accounts.findWithConfiguredTtl(1L);
+
+        assertThat(ttlMs(node, "default")).isEqualTo(60_000);
+        assertThat(ttlMs(node, "annotated")).isEqualTo(5_000);
+        assertThat(ttlMs(node, "configured")).isEqualTo(30_000);
+    }
+
+    private static long ttlMs(Node node, String cacheName) {
+        CacheEntry entry = node.registry.getCache(cacheName).getEntry(1L);
+        return TimeUnit.NANOSECONDS.toMillis(entry.getExpiresAtNanos() - entry.getWriteTimeNanos());
+    }
+
+    /**
+     * The aspect and its collaborators as the auto-configuration wires them, without a Spring context.
+     */
+    private final class Node {
+
+        final CacheRegistry registry;
+        final CacheInvalidator invalidator;
+        final CachedAspect aspect;
+
+        Node(AspectProperties properties, CacheInvalidationBus bus) {
+            MethodMetadataRegistry metadataRegistry = new MethodMetadataRegistry();
+            CacheExpressionEvaluator evaluator = new CacheExpressionEvaluator(metadataRegistry);
+            registry = new CacheRegistry(properties, (name, spec) -> new WTinyLfuCache(spec, Weigher.SINGLETON), null);
+            registries.add(registry);
+            invalidator = new CacheInvalidator(registry, bus, 5_000, 60_000);
+            CacheOperationSource operationSource = new CacheOperationSource(registry,
+                    new CacheKeyResolver(new DefaultKeyGenerator(), evaluator, new DefaultListableBeanFactory()),
+                    properties, properties.getCacheTtlMs());
+            aspect = new CachedAspect(registry, operationSource, evaluator, invalidator, metadataRegistry, properties,
+                    null);
+        }
+
+        <T> T proxy(T target) {
+            AspectJProxyFactory factory = new AspectJProxyFactory(target);
+            factory.setProxyTargetClass(true);
+            factory.addAspect(aspect);
+            return factory.getProxy();
+        }
+    }
+
+    public static class UserService {
+
+        final Map<Long, String> names = new ConcurrentHashMap<>();
+        final AtomicInteger loads = new AtomicInteger();
+        volatile CountDownLatch loading;
+        volatile CountDownLatch release;
+
+        @Cached(cacheName = "users", key = "#id")
+        public String find(Long id) {
+            loads.incrementAndGet();
+            String name = names.get(id);
+            CountDownLatch started = loading;
+            if (started != null) {
+                loading = null;
+                started.countDown();
+                await(release);
+            }
+            return name;
+        }
+
+        @CacheEvict(cacheName = "users", key = "#id")
+        public void rename(Long id, String name) {
+            names.put(id, name);
+        }
+
+        private static void await(CountDownLatch latch) {
+            try {
+                latch.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public record Product(Long id, String name) {
+    }
+
+    public static class CatalogService {
+
+        final Map<Long, String> names = new ConcurrentHashMap<>();
+        final List<List<Long>> batches = new CopyOnWriteArrayList<>();
+        final AtomicInteger singles = new AtomicInteger();
+
+        @Cached(cacheName = "names", key = "#id")
+        public String find(Long id) {
+            singles.incrementAndGet();
+            return names.get(id);
+        }
+
+        @Cached(cacheName = "names", batch = true)
+        public Map<Long, String> findAll(List<Long> ids) {
+            return load(ids);
+        }
+
+        @Cached(cacheName = "optional", batch = true, cacheNulls = true)
+        public Map<Long, String> findAllCachingNulls(List<Long> ids) {
+            return load(ids);
+        }
+
+        @Cached(cacheName = "products", batch = true, resultKey = "#result.id")
+        public List<Product> findProducts(List<Long> ids) {
+            batches.add(List.copyOf(ids));
+            return ids.stream().sorted().filter(names::containsKey).map(id -> new Product(id, names.get(id))).toList();
+        }
+
+        private Map<Long, String> load(List<Long> ids) {
+            batches.add(List.copyOf(ids));
+            Map<Long, String> loaded = new HashMap<>();
+            ids.stream().filter(names::containsKey).forEach(id -> loaded.put(id, names.get(id)));
+            return loaded;
+        }
+    }
+
+    public static class AccountService {
+
+        final Map<Long, String> owners = new ConcurrentHashMap<>();
+        final AtomicInteger loads = new AtomicInteger();
+
+        @Cached(cacheName = "accounts", key = "#id", condition = "#id > 0",
+                unless = "#result != null && #result.startsWith('pending')")
+        public String find(Long id) {
+            loads.incrementAndGet();
+            return owners.get(id);
+        }
+
+        @Cached(cacheName = "optional-accounts", key = "#id", cacheNulls = true)
+        public String findCachingNulls(Long id) {
+            loads.incrementAndGet();
+            return owners.get(id);
+        }
+
+        @Cached(cacheName = "default", key = "#id")
+        public String findWithDefaultTtl(Long id) {
+            return "owner";
+        }
+
+        @Cached(cacheName = "annotated", key = "#id", ttlMs = 5_000)
+        public String findWithAnnotatedTtl(Long id) {
+            return "owner";
+        }
+
+        @Cached(cacheName = "configured", key = "#id", ttlMs = 5_000)
+        public String findWithConfiguredTtl(Long id) {
+            return "owner";
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package ru.t1.apupynin.common.aspects.aspect;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import ru.t1.apupynin.common.aspects.annotation.HttpIncomeRequestLog;
+import ru.t1.apupynin.common.aspects.autoconfigure.AspectProperties;
+import ru.t1.apupynin.common.aspects.logging.AspectLogSummary;
+import ru.t1.apupynin.common.aspects.logging.LogEvent;
+import ru.t1.apupynin.common.aspects.logging.LogEventPipeline;
+import ru.t1.apupynin.common.aspects.logging.LogSampler;
+import ru.t1.apupynin.common.aspects.logging.OverflowPolicy;
+import ru.t1.apupynin.common.aspects.support.MethodMetadataRegistry;
+import ru.t1.apupynin.common.aspects.trace.RequestTrace;
+import ru.t1.apupynin.common.aspects.trace.RequestTracer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HttpIncomeRequestLogAspectTest {
+
+    private static final long SLOW_THRESHOLD_MS = 50;
+
+    private final List<LogEvent> shipped = new CopyOnWriteArrayList<>();
+    private final LogEventPipeline pipeline = new LogEventPipeline((topic, batch) -> {
+        shipped.addAll(batch);
+        return batch.size();
+    }, 64, OverflowPolicy.DROP, 1, 0, 16, 1);
+    private final RequestTracer tracer = new RequestTracer(16);
+    private final LogSampler sampler = new LogSampler(1, 0, 0, SLOW_THRESHOLD_MS);
+    private final Endpoints endpoints = new Endpoints();
+    private final Endpoints proxy = proxy(endpoints);
+
+    @Test
+    void outermostIncomeOwnsTheTraceAndNestedCallsJoinIt() {
+        proxy.handle("42");
+
+        List<LogEvent> events = drain();
+        assertThat(events).hasSize(1);
+        Map<String, Object> message = events.get(0).payload().get();
+        assertThat(message).containsEntry("requestType", "TRACE");
+        assertThat((String) message.get("methodSignature")).contains("handle");
+        assertThat(message.get("traceId")).isEqualTo(endpoints.nestedTrace.getTraceId());
+        assertThat(message.get("spans")).asList().hasSize(1);
+        assertThat(tracer.current()).isNull();
+    }
+
+    @Test
+    void tailSamplingDropsFastSuccessfulTraces() {
+        proxy.quiet();
+
+        assertThat(drain()).isEmpty();
+        assertThat(sampler.stats().sampledOut()).isEqualTo(1);
+    }
+
+    @Test
+    void tailSamplingKeepsFailedTraces() {
+        assertThatThrownBy(proxy::quietFailure).isInstanceOf(IllegalStateException.class);
+
+        List<LogEvent> events = drain();
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).type()).isEqualTo("ERROR");
+        assertThat(events.get(0).payload().get()).containsKey("exceptionMessage");
+        assertThat(sampler.stats().forced()).isEqualTo(1);
+        assertThat(tracer.current()).isNull();
+    }
+
+    @Test
+    void tailSamplingKeepsSlowTraces() throws Exception {
+        proxy.quietSlow();
+
+        List<LogEvent> events = drain();
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).type()).isEqualTo("INFO");
+        assertThat(sampler.stats().forced()).isEqualTo(1);
+    }
+
+    private List<LogEvent> drain() {
+        pipeline.start();
+        pipeline.stop();
+        return shipped;
+    }
+
+    private Endpoints proxy(Endpoints target) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new HttpIncomeRequestLogAspect(pipeline, new ObjectMapper(), sampler,
+                new MethodMetadataRegistry(), new AspectProperties(), new AspectLogSummary(60_000), tracer));
+        Endpoints proxy = factory.getProxy();
+        target.self = proxy;
+        target.tracer = tracer;
+        return proxy;
+    }
+
+    public static class Endpoints {
+
+        Endpoints self;
+        RequestTracer tracer;
+        RequestTrace nestedTrace;
+
+        @HttpIncomeRequestLog
+        public String handle(String id) {
+            tracer.current().addSpan("db", "find", System.nanoTime(), 1_000_000, false, false);
+            return self.nested(id);
+        }
+
+        @HttpIncomeRequestLog
+        public String nested(String id) {
+            nestedTrace = tracer.current();
+            return id;
+        }
+
+        @HttpIncomeRequestLog(sampleRate = 0)
+        public void quiet() {
+        }
+
+        @HttpIncomeRequestLog(sampleRate = 0)
+        public void quietFailure() {
+            throw new IllegalStateException("boom");
+        }
+
+        @HttpIncomeRequestLog(sampleRate = 0)
+        public void quietSlow() throws InterruptedException {
+            Thread.sleep(SLOW_THRESHOLD_MS + 10);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package ru.t1.apupynin.common.aspects.autoconfigure;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import ru.t1.apupynin.common.aspects.cache.CachePreloader;
+import ru.t1.apupynin.common.aspects.cache.CacheSnapshotStore;
+import ru.t1.apupynin.common.aspects.cache.CacheWarmer;
+import ru.t1.apupynin.common.aspects.logging.LogEventSink;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CacheWarmupAutoConfigurationTest {
+
+    private final ApplicationContextRunner runner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(JacksonAutoConfiguration.class,
+                    CommonAspectsAutoConfiguration.class))
+            .withBean(LogEventSink.class, () -> (topic, batch) -> batch.size());
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void noWarmerWithoutSnapshotsOrPreloaders() {
+        runner.run(context -> assertThat(context).doesNotHaveBean(CacheWarmer.class));
+    }
+
+    @Test
+    void snapshotsEnableTheWarmer() {
+        runner.withPropertyValues("t1.cache-warmup.snapshot-enabled=true",
+                        "t1.cache-warmup.directory=" + directory)
+                .run(context -> {
+                    assertThat(context).hasSingleBean(CacheSnapshotStore.class);
+                    assertThat(context).hasSingleBean(CacheWarmer.class);
+                });
+    }
+
+    @Test
+    void aPreloaderEnablesTheWarmer() {
+        runner.withBean(CachePreloader.class, () -> CachePreloader.of("users", () -> Map.of("a", "A")))
+                .run(context -> {
+                    assertThat(context).doesNotHaveBean(CacheSnapshotStore.class);
+                    assertThat(context).hasSingleBean(CacheWarmer.class);
+                });
+    }
+}
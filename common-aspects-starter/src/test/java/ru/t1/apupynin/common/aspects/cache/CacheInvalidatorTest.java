@@ -0,0 +1,164 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.t1.apupynin.common.aspects.autoconfigure.AspectProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CacheInvalidatorTest {
+
+    private static final long TTL = TimeUnit.MINUTES.toNanos(10);
+
+    private final List<CacheRegistry> registries = new ArrayList<>();
+
+    @AfterEach
+    void closeRegistries() {
+        registries.forEach(CacheRegistry::close);
+    }
+
+    @Test
+    void evictionReachesOtherNodes() {
+        InMemoryCacheInvalidationBus bus = new InMemoryCacheInvalidationBus();
+        CacheRegistry local = registry();
+        CacheRegistry remote = registry();
+        CacheInvalidator invalidator = new CacheInvalidator(local, bus, 5_000, 60_000);
+        new CacheInvalidator(remote, bus, 5_000, 60_000);
+        local.getCache("users").put("k", "v", TTL);
+        remote.getCache("users").put("k", "v", TTL);
+        remote.getCache("users").put("other", "v", TTL);
+
+        invalidator.evict("users", "k");
+
+        assertThat(local.getCache("users").getEntry("k")).isNull();
+        assertThat(remote.getCache("users").getEntry("k")).isNull();
+        assertThat(remote.getCache("users").getEntry("other")).isNotNull();
+
+        invalidator.evictAll("users");
+
+        assertThat(remote.getCache("users").size()).isZero();
+    }
+
+    @Test
+    void skipsItsOwnInvalidations() {
+        InMemoryCacheInvalidationBus bus = new InMemoryCacheInvalidationBus();
+        CacheRegistry local = registry();
+        CacheRegistry remote = registry();
+        CacheInvalidator invalidator = new CacheInvalidator(local, bus, 5_000, 60_000);
+        new CacheInvalidator(remote, bus, 5_000, 60_000);
+        remote.getCache("users").put("k", "stale", TTL);
+
+        local.getCache("users").put("k", "fresh", TTL);
+        invalidator.updated("users", "k");
+
+        assertThat(local.getCache("users").getEntry("k").getValue()).isEqualTo("fresh");
+        assertThat(remote.getCache("users").getEntry("k")).isNull();
+    }
+
+    @Test
+    void generationChangesWhenTheKeyIsInvalidatedAnywhere() {
+        InMemoryCacheInvalidationBus bus = new InMemoryCacheInvalidationBus();
+        CacheRegistry local = registry();
+        CacheInvalidator invalidator = new CacheInvalidator(local, bus, 5_000, 60_000);
+        CacheInvalidator remote = new CacheInvalidator(registry(), bus, 5_000, 60_000);
+        local.getCache("users");
+
+        long before = invalidator.generation("users", "k");
+        assertThat(invalidator.isCurrent("users", "k", before)).isTrue();
+
+        remote.evict("users", "k");
+        assertThat(invalidator.isCurrent("users", "k", before)).isFalse();
+
+        long afterKey = invalidator.generation("users", "k");
+        remote.evictAll("users");
+        assertThat(invalidator.isCurrent("users", "k", afterKey)).isFalse();
+
+        long afterAll = invalidator.generation("users", "k");
+        invalidator.updated("users", "k");
+        assertThat(invalidator.isCurrent("users", "k", afterAll)).isFalse();
+    }
+
+    @Test
+    void failedBroadcastEvictsLocallyAndShortensTtl() {
+        FailingBus bus = new FailingBus();
+        CacheRegistry registry = registry();
+        CacheInvalidator invalidator = new CacheInvalidator(registry, bus, 5_000, 60_000);
+        CacheEngine cache = registry.getCache("users");
+        assertThat(invalidator.ttlNanos("users", TTL)).isEqualTo(TTL);
+
+        cache.put("k", "v1", TTL);
+        invalidator.updated("users", "k");
+        bus.fail(bus.sent.get(0));
+
+        assertThat(cache.getEntry("k")).isNull();
+        assertThat(invalidator.ttlNanos("users", TTL)).isEqualTo(TimeUnit.SECONDS.toNanos(5));
+        assertThat(invalidator.ttlNanos("orders", TTL)).isEqualTo(TTL);
+    }
+
+    @Test
+    void shortTtlEndsAfterTheFallbackPeriod() {
+        FailingBus bus = new FailingBus();
+        CacheRegistry registry = registry();
+        CacheInvalidator invalidator = new CacheInvalidator(registry, bus, 5_000, 0);
+        registry.getCache("users");
+
+        invalidator.evictAll("users");
+        bus.fail(bus.sent.get(0));
+
+        assertThat(invalidator.ttlNanos("users", TTL)).isEqualTo(TTL);
+    }
+
+    @Test
+    void ignoresFailuresOfOtherNodes() {
+        FailingBus bus = new FailingBus();
+        CacheRegistry registry = registry();
+        CacheInvalidator invalidator = new CacheInvalidator(registry, bus, 5_000, 60_000);
+        CacheEngine cache = registry.getCache("users");
+        cache.put("k", "v1", TTL);
+
+        bus.fail(new CacheInvalidation("other-node", "users", List.of("k"), false));
+
+        assertThat(cache.getEntry("k")).isNotNull();
+        assertThat(invalidator.ttlNanos("users", TTL)).isEqualTo(TTL);
+    }
+
+    private CacheRegistry registry() {
+        CacheRegistry registry = new CacheRegistry(new AspectProperties(),
+                (name, spec) -> new WTinyLfuCache(spec, Weigher.SINGLETON), null);
+        registries.add(registry);
+        return registry;
+    }
+
+    /**
+     * Records published invalidations and reports them as failed on demand, as a bus whose broker
+     * rejected the send would.
+     */
+    private static final class FailingBus implements CacheInvalidationBus {
+
+        final List<CacheInvalidation> sent = new ArrayList<>();
+        final List<Consumer<CacheInvalidation>> failureListeners = new ArrayList<>();
+
+        @Override
+        public void publish(CacheInvalidation invalidation) {
+            sent.add(invalidation);
+        }
+
+        @Override
+        public void subscribe(Consumer<CacheInvalidation> listener) {
+        }
+
+        @Override
+        public void subscribeFailures(Consumer<CacheInvalidation> listener) {
+            failureListeners.add(listener);
+        }
+
+        void fail(CacheInvalidation invalidation) {
+            failureListeners.forEach(listener -> listener.accept(invalidation));
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CacheKeyResolverTest {
+
+    private final CacheKeyResolver resolver = new CacheKeyResolver(new DefaultKeyGenerator(),
+            new CacheExpressionEvaluator(), new DefaultListableBeanFactory());
+
+    @Test
+    void overloadsWithTheSameLeadingArgumentGetDistinctKeys() throws Exception {
+        assertDistinct(
+                key("", method("find", Long.class), 1L),
+                key("", method("find", Long.class, Boolean.class), 1L, false),
+                key("", method("find", String.class), "1"),
+                key("", method("find", Integer.class), 1));
+    }
+
+    @Test
+    void nullArgumentsAreNotAbsentArguments() throws Exception {
+        assertDistinct(
+                key("", method("all")),
+                key("", method("find", Long.class), (Object) null),
+                key("", method("find", Long.class, Boolean.class), null, null),
+                key("", method("find", Long.class, Boolean.class), 1L, null),
+                key("", method("find", Long.class, Boolean.class), null, true));
+    }
+
+    @Test
+    void arraysCompareByValueAndKeepTheirShape() throws Exception {
+        Method ints = method("byInts", int[].class);
+        Method objects = method("byObjects", Object[].class);
+
+        assertThat(key("", ints, (Object) new int[]{1, 2})).isEqualTo(key("", ints, (Object) new int[]{1, 2}))
+                .hasSameHashCodeAs(key("", ints, (Object) new int[]{1, 2}));
+        assertDistinct(
+                key("", ints, (Object) new int[]{1, 2}),
+                key("", method("byLongs", long[].class), (Object) new long[]{1, 2}),
+                key("", objects, (Object) new Object[]{1, 2}),
+                key("", objects, (Object) new Object[]{new Object[]{1, 2}}),
+                key("", method("find", Integer.class, Integer.class), 1, 2),
+                key("", ints, (Object) new int[]{2, 1}));
+    }
+
+    @Test
+    void expressionKeysOfArraysCompareByValue() throws Exception {
+        Method ints = method("byInts", int[].class);
+
+        assertThat(key("#ids", ints, (Object) new int[]{1, 2})).isEqualTo(key("#ids", ints, (Object) new int[]{1, 2}))
+                .isEqualTo(key("", ints, (Object) new int[]{1, 2}));
+        assertThat(key("#root.args", ints, (Object) new int[]{1, 2}))
+                .isEqualTo(key("#root.args", ints, (Object) new int[]{1, 2}));
+    }
+
+    @Test
+    void expressionKeysDistinguishTheirParts() throws Exception {
+        Method pair = method("pair", String.class, String.class);
+
+        assertDistinct(
+                key("{#first, #second}", pair, "ab", ""),
+                key("{#first, #second}", pair, "a", "b"),
+                key("{#first, #second}", pair, "", "ab"),
+                key("{#first, #second}", pair, null, "ab"));
+    }
+
+    @Test
+    void argumentReferencesUseTheArgumentItself() throws Exception {
+        Method find = method("find", Long.class);
+
+        assertThat(key("#id", find, 1L)).isEqualTo(1L);
+        assertThat(key("#p0", find, 1L)).isEqualTo(1L);
+        assertThat(key("#a0", find, 1L)).isEqualTo(1L);
+        assertThat(key("#id", find, (Object) null)).isEqualTo(key("", find, (Object) null))
+                .isNotEqualTo(key("", method("all")));
+        assertThat(key("#id == null ? null : #id", find, (Object) null)).isEqualTo(key("#id", find, (Object) null));
+    }
+
+    private Object key(String expression, Method method, Object... args) {
+        return resolver.resolveGenerator(expression, "", method).generate(new Repository(), method, args);
+    }
+
+    private static Method method(String name, Class<?>... parameterTypes) throws NoSuchMethodException {
+        return Repository.class.getMethod(name, parameterTypes);
+    }
+
+    private static void assertDistinct(Object... keys) {
+        Set<Object> unique = new HashSet<>(List.of(keys));
+        assertThat(unique).as("distinct keys of %s", List.of(keys)).hasSize(keys.length);
+    }
+
+    public static class Repository {
+
+        public String all() {
+            return null;
+        }
+
+        public String find(Long id) {
+            return null;
+        }
+
+        public String find(Long id, Boolean deleted) {
+            return null;
+        }
+
+        public String find(String id) {
+            return null;
+        }
+
+        public String find(Integer id) {
+            return null;
+        }
+
+        public String find(Integer first, Integer second) {
+            return null;
+        }
+
+        public String byInts(int[] ids) {
+            return null;
+        }
+
+        public String byLongs(long[] ids) {
+            return null;
+        }
+
+        public String byObjects(Object[] ids) {
+            return null;
+        }
+
+        public String pair(String first, String second) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CacheSnapshotStoreTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    @TempDir
+    Path directory;
+
+    private CacheSnapshotStore store() {
+        return new CacheSnapshotStore(directory, new JacksonCacheCodec(new ObjectMapper(), List.of()));
+    }
+
+    @Test
+    void restoresUnexpiredEntriesWithTheirRemainingTtl() throws Exception {
+        long now = System.nanoTime();
+        Map<Object, CacheEntry> hottest = new LinkedHashMap<>();
+        hottest.put("a", new Entry("1", now, now + MINUTE));
+        hottest.put("b", new Entry("2", now, now + 2 * MINUTE));
+        hottest.put("c", new Entry("3", now, now - 1));
+
+        assertThat(store().write("users", hottest)).isEqualTo(2);
+
+        RecordingCache restored = new RecordingCache();
+        assertThat(store().restore("users", restored)).isEqualTo(2);
+        assertThat(restored.values).containsExactly(Map.entry("b", "2"), Map.entry("a", "1"));
+        assertThat(restored.ttls.get(0)).isBetween(2 * MINUTE - TimeUnit.SECONDS.toNanos(10), 2 * MINUTE);
+        assertThat(restored.ttls.get(1)).isBetween(MINUTE - TimeUnit.SECONDS.toNanos(10), MINUTE);
+    }
+
+    @Test
+    void skipsEntriesTheCodecCannotHandle() throws Exception {
+        long now = System.nanoTime();
+        Map<Object, CacheEntry> hottest = new LinkedHashMap<>();
+        hottest.put("a", new Entry(new Unencodable("1"), now, now + MINUTE));
+        hottest.put("b", new Entry(new Untrusted("2"), now, now + MINUTE));
+        hottest.put("c", new Entry("3", now, now + MINUTE));
+
+        assertThat(store().write("users", hottest)).isEqualTo(2);
+
+        RecordingCache restored = new RecordingCache();
+        assertThat(store().restore("users", restored)).isEqualTo(1);
+        assertThat(restored.values).containsExactly(Map.entry("c", "3"));
+    }
+
+    @Test
+    void rewritingReplacesTheSnapshot() throws Exception {
+        long now = System.nanoTime();
+        store().write("users", Map.of("a", new Entry("1", now, now + MINUTE)));
+        store().write("users", Map.of("b", new Entry("2", now, now + MINUTE)));
+
+        RecordingCache restored = new RecordingCache();
+        store().restore("users", restored);
+
+        assertThat(restored.values).containsExactly(Map.entry("b", "2"));
+        try (var files = Files.list(directory)) {
+            assertThat(files.map(file -> file.getFileName().toString())).containsExactly("users.snapshot");
+        }
+    }
+
+    @Test
+    void listsOnlySnapshots() throws Exception {
+        assertThat(store().cacheNames()).isEmpty();
+        long now = System.nanoTime();
+        store().write("users", Map.of("a", new Entry("1", now, now + MINUTE)));
+        store().write("orders", Map.of("a", new Entry("1", now, now + MINUTE)));
+        Files.writeString(directory.resolve("notes.txt"), "x");
+
+        assertThat(store().cacheNames()).containsExactlyInAnyOrder("users", "orders");
+    }
+
+    @Test
+    void missingOrForeignSnapshotsRestoreNothing() throws Exception {
+        Files.writeString(directory.resolve("orders.snapshot"), "not a snapshot");
+        RecordingCache restored = new RecordingCache();
+
+        assertThat(store().restore("users", restored)).isZero();
+        assertThat(store().restore("orders", restored)).isZero();
+        assertThat(restored.values).isEmpty();
+    }
+
+    public record Unencodable(String name) {
+
+        @Override
+        public String name() {
+            throw new IllegalStateException("not serializable");
+        }
+    }
+
+    public record Untrusted(String name) {
+    }
+
+    private record Entry(Object getValue, long getWriteTimeNanos, long getExpiresAtNanos) implements CacheEntry {
+    }
+
+    private static final class RecordingCache implements CacheEngine {
+
+        final List<Map.Entry<Object, Object>> values = new ArrayList<>();
+        final List<Long> ttls = new ArrayList<>();
+
+        @Override
+        public CacheEntry getEntry(Object key) {
+            return null;
+        }
+
+        @Override
+        public void put(Object key, Object value, long ttlNanos) {
+            values.add(Map.entry(key, value));
+            ttls.add(ttlNanos);
+        }
+
+        @Override
+        public void invalidate(Object key) {
+        }
+
+        @Override
+        public void invalidateAll() {
+        }
+
+        @Override
+        public void cleanUp() {
+        }
+
+        @Override
+        public long size() {
+            return values.size();
+        }
+
+        @Override
+        public CacheStats stats() {
+            return new CacheStats(0, 0, values.size(), 0, 0);
+        }
+    }
+}
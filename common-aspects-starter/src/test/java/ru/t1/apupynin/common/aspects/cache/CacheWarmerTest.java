@@ -0,0 +1,158 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import ru.t1.apupynin.common.aspects.annotation.Cached;
+import ru.t1.apupynin.common.aspects.autoconfigure.AspectProperties;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CacheWarmerTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private final List<Node> nodes = new ArrayList<>();
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void close() {
+        nodes.forEach(node -> node.registry.close());
+    }
+
+    @Test
+    void restartRestoresTheHottestEntries() {
+        Node before = new Node(directory, List.of(), List.of(), 3, 0);
+        before.warmer.start();
+        CacheEngine users = before.registry.getCache("users");
+        for (String key : List.of("a", "b", "c", "d", "e")) {
+            users.put(key, key.toUpperCase(), MINUTE);
+        }
+        for (int i = 0; i < 10; i++) {
+            users.getEntry("a");
+            users.getEntry("b");
+            users.getEntry("c");
+        }
+        before.warmer.stop();
+
+        Node after = new Node(directory, List.of(), List.of(), 3, 0);
+        after.warmer.start();
+
+        CacheEngine restored = after.registry.getCaches().get("users");
+        assertThat(restored).isNotNull();
+        assertThat(restored.size()).isEqualTo(3);
+        assertThat(restored.getEntry("a").getValue()).isEqualTo("A");
+        assertThat(restored.getEntry("c").getValue()).isEqualTo("C");
+        assertThat(restored.getEntry("e")).isNull();
+    }
+
+    @Test
+    void preloadersRunAfterTheSnapshotWithTheDeclaredTtl() {
+        Node before = new Node(directory, List.of(), List.of(), 100, 0);
+        before.registry.getCache("users").put("a", "snapshot", MINUTE);
+        before.warmer.stop();
+
+        Map<String, String> loaded = new HashMap<>();
+        loaded.put("a", "preloaded");
+        loaded.put("b", "preloaded");
+        loaded.put("c", null);
+        Node after = new Node(directory, List.of(CachePreloader.of("users", () -> loaded)), List.of(), 100, 0);
+        long start = System.nanoTime();
+        after.warmer.start();
+
+        CacheEngine users = after.registry.getCache("users");
+        assertThat(users.getEntry("a").getValue()).isEqualTo("preloaded");
+        assertThat(users.getEntry("b").getValue()).isEqualTo("preloaded");
+        assertThat(users.getEntry("c")).isNull();
+        assertThat(users.getEntry("b").getExpiresAtNanos() - start)
+                .isBetween(TimeUnit.SECONDS.toNanos(10), TimeUnit.SECONDS.toNanos(15));
+    }
+
+    @Test
+    void snapshotsOnlyTheConfiguredCaches() {
+        Node node = new Node(directory, List.of(), List.of("users"), 100, 0);
+        node.registry.getCache("users").put("a", "A", MINUTE);
+        node.registry.getCache("orders").put("a", "A", MINUTE);
+
+        node.warmer.stop();
+
+        assertThat(directory.resolve("users.snapshot")).exists();
+        assertThat(directory.resolve("orders.snapshot")).doesNotExist();
+    }
+
+    @Test
+    void writesSnapshotsPeriodically() throws Exception {
+        Node node = new Node(directory, List.of(), List.of(), 100, 20);
+        node.warmer.start();
+        node.registry.getCache("users").put("a", "A", MINUTE);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!Files.exists(directory.resolve("users.snapshot")) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(directory.resolve("users.snapshot")).exists();
+        node.warmer.stop();
+        assertThat(node.warmer.isRunning()).isFalse();
+    }
+
+    @Test
+    void slowPreloaderDoesNotHoldUpStartupOrOtherCaches() {
+        CachePreloader slow = CachePreloader.of("slow", () -> {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+            return Map.of("a", "A");
+        });
+        CachePreloader fast = CachePreloader.of("users", () -> Map.of("a", "A"));
+        Node node = new Node(directory, List.of(slow, fast), List.of(), 100, 0);
+
+        long start = System.nanoTime();
+        node.warmer.start();
+
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(10));
+        assertThat(node.registry.getCache("users").getEntry("a").getValue()).isEqualTo("A");
+        assertThat(node.registry.getCache("slow").size()).isZero();
+    }
+
+    private final class Node {
+
+        final CacheRegistry registry;
+        final CacheWarmer warmer;
+
+        Node(Path directory, List<CachePreloader> preloaders, List<String> snapshotCacheNames, int maxEntries,
+             long snapshotIntervalMs) {
+            AspectProperties properties = new AspectProperties();
+            registry = new CacheRegistry(properties, (name, spec) -> new WTinyLfuCache(spec, Weigher.SINGLETON), null);
+            nodes.add(this);
+            DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+            beanFactory.registerBeanDefinition("userService", new RootBeanDefinition(UserService.class));
+            CacheOperationSource operationSource = new CacheOperationSource(registry,
+                    new CacheKeyResolver(new DefaultKeyGenerator(), new CacheExpressionEvaluator(), beanFactory),
+                    properties, properties.getCacheTtlMs());
+            CacheSnapshotStore store = new CacheSnapshotStore(directory,
+                    new JacksonCacheCodec(new ObjectMapper(), List.of()));
+            warmer = new CacheWarmer(registry, operationSource, store, preloaders, new CacheDeclarations(beanFactory),
+                    snapshotCacheNames, maxEntries, snapshotIntervalMs, 2_000, 2);
+        }
+    }
+
+    public static class UserService {
+
+        @Cached(cacheName = "users", ttlMs = 10_000)
+        public String find(String id) {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FrequencySketchTest {
+
+    @Test
+    void countsIncrementsUpToFifteen() {
+        FrequencySketch sketch = new FrequencySketch(512);
+
+        for (int i = 0; i < 5; i++) {
+            sketch.increment("hot");
+        }
+        assertThat(sketch.frequency("hot")).isEqualTo(5);
+        assertThat(sketch.frequency("cold")).isZero();
+
+        for (int i = 0; i < 20; i++) {
+            sketch.increment("hot");
+        }
+        assertThat(sketch.frequency("hot")).isEqualTo(15);
+    }
+
+    @Test
+    void halvesCountersOnceTheSampleIsFull() {
+        FrequencySketch sketch = new FrequencySketch(16);
+        for (int i = 0; i < 8; i++) {
+            sketch.increment("hot");
+        }
+
+        for (int i = 0; i < 10 * 16; i++) {
+            sketch.increment(i);
+        }
+
+        assertThat(sketch.frequency("hot")).isLessThanOrEqualTo(4);
+    }
+}
@@ -0,0 +1,70 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InvalidationKeyCodecTest {
+
+    @Test
+    void roundTripsSupportedKeys() throws IOException {
+        List<Object> keys = List.of("id", 42, 42L, new BigDecimal("1.50"), UUID.randomUUID(), TimeUnit.SECONDS,
+                LocalDate.of(2024, 1, 31), new CacheKey("a", 1, null, TimeUnit.DAYS));
+
+        for (Object key : keys) {
+            Object decoded = InvalidationKeyCodec.decode(InvalidationKeyCodec.encode(key));
+            assertThat(decoded).isEqualTo(key).hasSameHashCodeAs(key);
+        }
+    }
+
+    @Test
+    void refusesToEncodeOtherTypes() {
+        assertThat(InvalidationKeyCodec.encode(List.of(1))).isNull();
+        assertThat(InvalidationKeyCodec.encode(new CacheKey("a", new Object()))).isNull();
+    }
+
+    @Test
+    void rejectsNonEnumClassNames() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(13);
+        writeString(out, "java.lang.Thread");
+        writeString(out, "MAX_PRIORITY");
+
+        assertThatThrownBy(() -> InvalidationKeyCodec.decode(bytes.toByteArray()))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("not an enum");
+    }
+
+    @Test
+    void rejectsUnknownTags() {
+        assertThatThrownBy(() -> InvalidationKeyCodec.decode(new byte[]{99})).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void cacheCodecRejectsTypesOutsideTheTrustedPackages() {
+        JacksonCacheCodec codec = new JacksonCacheCodec(new ObjectMapper(), List.of());
+        byte[] gadget = "[\"org.springframework.context.support.ClassPathXmlApplicationContext\",\"http://localhost\"]"
+                .getBytes(StandardCharsets.UTF_8);
+
+        assertThatThrownBy(() -> codec.decode(gadget)).isInstanceOf(Exception.class);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
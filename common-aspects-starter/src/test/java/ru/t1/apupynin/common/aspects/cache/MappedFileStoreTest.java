@@ -0,0 +1,74 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MappedFileStoreTest {
+
+    private static final long CAPACITY = 64 * 1024;
+
+    private final CacheCodec codec = new JacksonCacheCodec(new ObjectMapper(), List.of());
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoversTheNewestValueOfEachKey() throws Exception {
+        Path file = directory.resolve("l2.dat");
+        try (MappedFileStore store = new MappedFileStore(file, CAPACITY, true, codec)) {
+            put(store, "a", "v1");
+            put(store, "a", "v2");
+            put(store, "b", "v1");
+        }
+
+        try (MappedFileStore store = new MappedFileStore(file, CAPACITY, true, codec)) {
+            assertThat(store.size()).isEqualTo(2);
+            assertThat(text(store.get("a"))).isEqualTo("v2");
+            assertThat(text(store.get("b"))).isEqualTo("v1");
+        }
+    }
+
+    @Test
+    void removedEntriesStayRemovedAfterARestart() throws Exception {
+        Path file = directory.resolve("l2.dat");
+        try (MappedFileStore store = new MappedFileStore(file, CAPACITY, true, codec)) {
+            put(store, "a", "v1");
+            put(store, "a", "v2");
+            put(store, "b", "v1");
+            store.remove("a");
+        }
+
+        try (MappedFileStore store = new MappedFileStore(file, CAPACITY, true, codec)) {
+            assertThat(store.get("a")).isNull();
+            assertThat(text(store.get("b"))).isEqualTo("v1");
+        }
+    }
+
+    @Test
+    void clearedStoreStaysEmptyAfterARestart() throws Exception {
+        Path file = directory.resolve("l2.dat");
+        try (MappedFileStore store = new MappedFileStore(file, CAPACITY, true, codec)) {
+            put(store, "a", "v1");
+            store.clear();
+        }
+
+        try (MappedFileStore store = new MappedFileStore(file, CAPACITY, true, codec)) {
+            assertThat(store.size()).isZero();
+        }
+    }
+
+    private void put(MappedFileStore store, String key, String value) throws Exception {
+        store.put(key, codec.encode(key), value.getBytes(StandardCharsets.UTF_8), System.currentTimeMillis() + 60_000);
+    }
+
+    private static String text(byte[] bytes) {
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+}
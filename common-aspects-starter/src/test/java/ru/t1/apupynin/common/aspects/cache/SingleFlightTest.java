@@ -0,0 +1,134 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    @Test
+    void coalescesConcurrentMissesIntoOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(CALLERS);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                Callable<Object> call = load("key", () -> {
+                    loads.incrementAndGet();
+                    release.await();
+                    return "value";
+                });
+                results.add(executor.submit(() -> {
+                    started.countDown();
+                    return call.call();
+                }));
+            }
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<Object> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("value");
+            }
+            assertThat(loads).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void sharesTheLoadFailureWithWaitersAndForgetsIt() throws Throwable {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Object> owner = executor.submit(load("key", () -> {
+                loading.countDown();
+                release.await();
+                throw new IllegalStateException("boom");
+            }));
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<Object> waiter = executor.submit(load("key", () -> "unexpected"));
+            Thread.sleep(50);
+            release.countDown();
+
+            assertThatThrownBy(() -> owner.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("boom");
+            assertThatThrownBy(() -> waiter.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("boom");
+            assertThat(singleFlight.execute("key", () -> "fresh")).isEqualTo("fresh");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void loadsReentrantCallsOfTheOwnerDirectly() throws Throwable {
+        Object value = singleFlight.execute("key", () -> singleFlight.execute("key", () -> "inner"));
+
+        assertThat(value).isEqualTo("inner");
+    }
+
+    @Test
+    void startsOneBackgroundLoadPerKey() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertThat(singleFlight.executeAsync("key", () -> release.await(5, TimeUnit.SECONDS), executor)).isTrue();
+            assertThat(singleFlight.executeAsync("key", () -> "second", executor)).isFalse();
+            release.countDown();
+        } finally {
+            executor.shutdown();
+            assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        }
+        assertThat(singleFlight.executeAsync("key", () -> "third", Runnable::run)).isTrue();
+    }
+
+    @Test
+    void handsCopiesOfTheInFlightFutureToLaterCallers() {
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<Object> load = new CompletableFuture<>();
+
+        CompletableFuture<Object> first = singleFlight.executeFuture("key", () -> {
+            loads.incrementAndGet();
+            return load;
+        });
+        CompletableFuture<Object> second = singleFlight.executeFuture("key", () -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture("unexpected");
+        });
+        second.cancel(false);
+        load.complete("value");
+
+        assertThat(first).isCompletedWithValue("value");
+        assertThat(loads).hasValue(1);
+    }
+
+    private Callable<Object> load(Object key, SingleFlight.Loader loader) {
+        return () -> {
+            try {
+                return singleFlight.execute(key, loader);
+            } catch (Exception e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        };
+    }
+}
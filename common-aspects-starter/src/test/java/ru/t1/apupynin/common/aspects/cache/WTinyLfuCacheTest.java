@@ -0,0 +1,90 @@
+package ru.t1.apupynin.common.aspects.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WTinyLfuCacheTest {
+
+    private static final long TTL = TimeUnit.MINUTES.toNanos(1);
+
+    @Test
+    void staysWithinMaxSize() {
+        WTinyLfuCache cache = new WTinyLfuCache(new CacheSpec(100, 0, 0, null), Weigher.SINGLETON);
+
+        for (int i = 0; i < 1_000; i++) {
+            cache.put(i, "v" + i, TTL);
+        }
+
+        assertThat(cache.size()).isEqualTo(100);
+        assertThat(cache.stats().evictions()).isEqualTo(900);
+    }
+
+    @Test
+    void keepsFrequentlyReadEntriesAgainstAScan() {
+        WTinyLfuCache cache = new WTinyLfuCache(new CacheSpec(100, 0, 0, null), Weigher.SINGLETON);
+        for (int i = 0; i < 50; i++) {
+            cache.put("hot" + i, i, TTL);
+        }
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 50; i++) {
+                assertThat(cache.getEntry("hot" + i)).isNotNull();
+            }
+        }
+
+        for (int i = 0; i < 5_000; i++) {
+            cache.put("scan" + i, i, TTL);
+        }
+
+        int retained = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.getEntry("hot" + i) != null) {
+                retained++;
+            }
+        }
+        assertThat(retained).isGreaterThanOrEqualTo(45);
+        assertThat(cache.size()).isEqualTo(100);
+    }
+
+    @Test
+    void admitsANewcomerOnceItIsMorePopularThanTheVictim() {
+        WTinyLfuCache cache = new WTinyLfuCache(new CacheSpec(10, 0, 0, null), Weigher.SINGLETON);
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, i, TTL);
+        }
+
+        for (int attempt = 0; attempt < 5; attempt++) {
+            cache.put("newcomer", "v", TTL);
+        }
+        cache.put("pusher", "v", TTL);
+
+        assertThat(cache.getEntry("newcomer")).isNotNull();
+        assertThat(cache.size()).isEqualTo(10);
+    }
+
+    @Test
+    void boundsWeightedCachesByTotalWeight() {
+        Weigher byLength = (key, value) -> ((String) value).length();
+        WTinyLfuCache cache = new WTinyLfuCache(new CacheSpec(0, 100, 0, null), byLength);
+
+        for (int i = 0; i < 50; i++) {
+            cache.put(i, "0123456789", TTL);
+        }
+
+        assertThat(cache.size()).isEqualTo(10);
+    }
+
+    @Test
+    void dropsExpiredEntriesOnRead() throws InterruptedException {
+        WTinyLfuCache cache = new WTinyLfuCache(new CacheSpec(10, 0, 0, null), Weigher.SINGLETON);
+        cache.put("k", "v", TimeUnit.MILLISECONDS.toNanos(1));
+
+        Thread.sleep(5);
+
+        assertThat(cache.getEntry("k")).isNull();
+        assertThat(cache.size()).isZero();
+        assertThat(cache.stats().expirations()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,295 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import ru.t1.apupynin.common.aspects.trace.RequestTrace;
+import ru.t1.apupynin.common.aspects.trace.RequestTracer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BinaryLogEventCodecTest {
+
+    private static final String SIGNATURE = "public java.lang.String ru.t1.demo.UserController.find(java.lang.Long)";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BinaryLogEventCodec codec = new BinaryLogEventCodec(objectMapper, false, 0);
+
+    @Test
+    void roundTripsValuesAndNestedStructures() throws IOException {
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("custom", "value");
+        nested.put("flags", List.of(true, false));
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("timestamp", "2024-01-31T10:00:00");
+        payload.put("count", 7);
+        payload.put("elapsedMs", -1L);
+        payload.put("throughputPerSec", 12.5);
+        payload.put("absent", null);
+        payload.put("nested", nested);
+        payload.put("array", new Object[]{1, "two"});
+        payload.put("unit", OverflowPolicy.DROP);
+
+        Map<String, Object> decoded = codec.decode(codec.encode(List.of(payload))).get(0);
+
+        assertThat(decoded).containsEntry("timestamp", "2024-01-31T10:00:00")
+                .containsEntry("count", 7L)
+                .containsEntry("elapsedMs", -1L)
+                .containsEntry("throughputPerSec", 12.5)
+                .containsEntry("absent", null)
+                .containsEntry("nested", nested)
+                .containsEntry("array", List.of(1L, "two"))
+                .containsEntry("unit", "DROP");
+        assertThat(decoded.keySet()).containsExactlyElementsOf(payload.keySet());
+    }
+
+    @Test
+    void roundTripsVarintBoundaries() throws IOException {
+        List<Long> numbers = List.of(0L, 1L, -1L, 63L, -64L, 64L, 127L, 128L, 16_383L, 16_384L,
+                (long) Integer.MAX_VALUE, (long) Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE);
+        Map<String, Object> payload = Map.of("values", numbers);
+
+        assertThat(codec.decode(codec.encode(List.of(payload))).get(0)).containsEntry("values", numbers);
+    }
+
+    @Test
+    void writesRepeatedStringsOnce() throws IOException {
+        List<Map<String, Object>> payloads = List.of(
+                Map.of("methodSignature", SIGNATURE, "serviceName", "users"),
+                Map.of("methodSignature", SIGNATURE, "serviceName", "users"),
+                Map.of("methodSignature", SIGNATURE, "serviceName", "users"));
+
+        byte[] message = codec.encode(payloads);
+
+        assertThat(occurrences(message, SIGNATURE.getBytes(StandardCharsets.UTF_8))).isEqualTo(1);
+        assertThat(codec.decode(message)).isEqualTo(payloads);
+    }
+
+    @Test
+    void writesJsonLogFieldsAsTheirJson() throws IOException {
+        JsonLogField parameters = JsonLogField.of(Map.of("id", 42), objectMapper, 1024);
+        JsonLogField truncated = JsonLogField.of("x".repeat(100), objectMapper, 16);
+
+        Map<String, Object> decoded = codec.decode(codec.encode(List.of(
+                Map.of("parameters", parameters, "body", truncated)))).get(0);
+
+        assertThat(decoded.get("parameters")).isEqualTo(Map.of("id", 42));
+        assertThat((String) decoded.get("body")).endsWith(JsonLogField.TRUNCATED_SUFFIX);
+    }
+
+    @Test
+    void compressesLargeMessages() throws IOException {
+        BinaryLogEventCodec compressing = new BinaryLogEventCodec(objectMapper, true, 64);
+        List<Map<String, Object>> payloads = List.of(Map.of("stackTrace", "at frame\n".repeat(200)));
+
+        byte[] message = compressing.encode(payloads);
+
+        assertThat(message[2] & BinaryLogEventCodec.FLAG_GZIP).isNotZero();
+        assertThat(message.length).isLessThan(codec.encode(payloads).length);
+        assertThat(compressing.decode(message)).isEqualTo(payloads);
+        assertThat(codec.decode(message)).isEqualTo(payloads);
+    }
+
+    @Test
+    void rejectsTruncatedMessages() throws IOException {
+        byte[] message = codec.encode(List.of(Map.of("methodSignature", SIGNATURE, "count", 3)));
+
+        for (int length = 0; length < message.length; length++) {
+            byte[] truncated = Arrays.copyOf(message, length);
+            assertThatThrownBy(() -> codec.decode(truncated)).isInstanceOf(IOException.class);
+        }
+    }
+
+    @Test
+    void rejectsTruncatedCompressedMessages() throws IOException {
+        BinaryLogEventCodec compressing = new BinaryLogEventCodec(objectMapper, true, 0);
+        byte[] message = compressing.encode(List.of(Map.of("methodSignature", SIGNATURE)));
+
+        byte[] truncated = Arrays.copyOf(message, message.length - 4);
+        assertThatThrownBy(() -> codec.decode(truncated)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void rejectsUnknownVersions() throws IOException {
+        byte[] message = codec.encode(List.of(Map.of("count", 1)));
+        message[1] = BinaryLogEventCodec.VERSION + 1;
+
+        assertThatThrownBy(() -> codec.decode(message)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void decodesVersionOneMessagesWithTheirFieldTable() throws IOException {
+        ByteArrayOutputStream message = new ByteArrayOutputStream();
+        message.write(new byte[]{BinaryLogEventCodec.MAGIC, 1, 0});
+        message.write(new byte[]{1, 2});
+        message.write(new byte[]{0, 5, 0, 1, 'x'});
+        message.write(new byte[]{27, 0, 7});
+        message.write("traceId".getBytes(StandardCharsets.UTF_8));
+        message.write(new byte[]{3, 10});
+
+        assertThat(codec.decode(message.toByteArray())).containsExactly(Map.of("timestamp", "x", "traceId", 5L));
+    }
+
+    @Test
+    void decodesEveryEventTheAspectsEmit() throws IOException {
+        List<Map<String, Object>> events = List.of(incomeEvent(), outcomeEvent(), datasourceErrorEvent(),
+                errorRepeatedEvent(), circuitBreakerEvent(), slowMethodEvent(), latencySnapshotEvent(), traceEvent());
+
+        List<Map<String, Object>> decoded = codec.decode(codec.encode(events));
+
+        assertThat(decoded).hasSize(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertThat(objectMapper.readTree(objectMapper.writeValueAsString(decoded.get(i))))
+                    .isEqualTo(objectMapper.readTree(objectMapper.writeValueAsString(events.get(i))));
+            assertThat(fieldNames(events.get(i))).isSubsetOf(BinaryLogEventCodec.FIELDS);
+        }
+    }
+
+    private Map<String, Object> incomeEvent() {
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("timestamp", "2024-01-31T10:00:00");
+        message.put("methodSignature", SIGNATURE);
+        message.put("uri", "/users/42");
+        message.put("parameters", JsonLogField.of(List.of(42), objectMapper, 1024));
+        message.put("body", "{\"name\":\"a\"}");
+        message.put("serviceName", "users");
+        message.put("requestType", "INCOME");
+        return message;
+    }
+
+    private Map<String, Object> outcomeEvent() {
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("timestamp", "2024-01-31T10:00:00");
+        message.put("methodSignature", SIGNATURE);
+        message.put("uri", "http://orders/42");
+        message.put("parameters", JsonLogField.of(List.of(42), objectMapper, 1024));
+        message.put("body", JsonLogField.of(Map.of("id", 42), objectMapper, 1024));
+        message.put("durationMs", 12L);
+        message.put("exceptionMessage", "java.lang.IllegalStateException: boom");
+        message.put("serviceName", "users");
+        message.put("requestType", "OUTCOME");
+        return message;
+    }
+
+    private Map<String, Object> datasourceErrorEvent() {
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("timestamp", "2024-01-31T10:00:00");
+        message.put("methodSignature", SIGNATURE);
+        message.put("stackTrace", "java.sql.SQLException: down\n\tat Repo.find(Repo.java:10)");
+        message.put("exceptionMessage", "down");
+        message.put("methodParameters", JsonLogField.of(List.of(42), objectMapper, 1024));
+        message.put("serviceName", "users");
+        message.put("type", "ERROR");
+        message.put("fingerprint", "3f2a9c");
+        message.put("traceId", "trace-1");
+        return message;
+    }
+
+    private Map<String, Object> errorRepeatedEvent() {
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("timestamp", "2024-01-31T10:00:00");
+        message.put("methodSignature", SIGNATURE);
+        message.put("exceptionMessage", "down");
+        message.put("fingerprint", "3f2a9c");
+        message.put("count", 17L);
+        message.put("firstTimestamp", "2024-01-31T09:59:00");
+        message.put("lastTimestamp", "2024-01-31T10:00:00");
+        message.put("serviceName", "users");
+        message.put("type", "ERROR");
+        message.put("event", "ERROR_REPEATED");
+        return message;
+    }
+
+    private Map<String, Object> circuitBreakerEvent() {
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("timestamp", "2024-01-31T10:00:00");
+        message.put("methodSignature", "UserRepository");
+        message.put("fromState", "CLOSED");
+        message.put("toState", "OPEN");
+        message.put("failureRate", 0.6);
+        message.put("calls", 20);
+        message.put("serviceName", "users");
+        message.put("type", "WARNING");
+        message.put("event", "CIRCUIT_BREAKER_STATE");
+        return message;
+    }
+
+    private Map<String, Object> slowMethodEvent() {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("timestamp", "2024-01-31T10:00:00");
+        payload.put("service", "users");
+        payload.put("type", "WARNING");
+        payload.put("event", "SLOW_METHOD");
+        payload.put("method", SIGNATURE);
+        payload.put("elapsedMs", 250L);
+        payload.put("thresholdMs", 100.0);
+        payload.put("baselineMs", 40.5);
+        payload.put("params", JsonLogField.of(List.of(42), objectMapper, 1024));
+        return payload;
+    }
+
+    private Map<String, Object> latencySnapshotEvent() {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("timestamp", "2024-01-31T10:00:00");
+        payload.put("service", "users");
+        payload.put("type", "METRIC");
+        payload.put("event", "LATENCY_SNAPSHOT");
+        payload.put("method", SIGNATURE);
+        payload.put("count", 1000L);
+        payload.put("throughputPerSec", 16.7);
+        payload.put("meanMs", 3.2);
+        payload.put("p50Ms", 2.9);
+        payload.put("p90Ms", 5.1);
+        payload.put("p99Ms", 9.8);
+        payload.put("p999Ms", 15.0);
+        payload.put("maxMs", 21.4);
+        return payload;
+    }
+
+    private Map<String, Object> traceEvent() {
+        RequestTracer tracer = new RequestTracer(1);
+        RequestTrace trace = tracer.open();
+        long start = System.nanoTime();
+        trace.addSpan("db", "find", start, 2_000_000, false, false);
+        trace.addSpan("db", "find", start, 3_000_000, true, true);
+        trace.addSpan("http", "orders", start, 1_000_000, false, false);
+        trace.setIncome(this::incomeEvent);
+        trace.setOutcome(this::outcomeEvent);
+        trace.close();
+        tracer.detach(trace);
+        return trace.toMessage("users", new IllegalStateException("boom"));
+    }
+
+    private static List<String> fieldNames(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            return map.entrySet().stream()
+                    .flatMap(entry -> Stream.concat(Stream.of((String) entry.getKey()),
+                            fieldNames(entry.getValue()).stream()))
+                    .toList();
+        }
+        if (value instanceof Collection<?> collection) {
+            return collection.stream().flatMap(element -> fieldNames(element).stream()).toList();
+        }
+        return List.of();
+    }
+
+    private static int occurrences(byte[] bytes, byte[] pattern) {
+        int count = 0;
+        for (int i = 0; i + pattern.length <= bytes.length; i++) {
+            if (Arrays.equals(bytes, i, i + pattern.length, pattern, 0, pattern.length)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
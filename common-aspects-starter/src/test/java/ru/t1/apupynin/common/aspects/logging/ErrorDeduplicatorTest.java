@@ -0,0 +1,113 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.t1.apupynin.common.aspects.logging.ErrorDeduplicator.Occurrence.KNOWN;
+import static ru.t1.apupynin.common.aspects.logging.ErrorDeduplicator.Occurrence.NEW;
+import static ru.t1.apupynin.common.aspects.logging.ErrorDeduplicator.Occurrence.SUPPRESSED;
+
+class ErrorDeduplicatorTest {
+
+    private static final long WINDOW_MS = 100;
+
+    private final List<ErrorRepeats> repeats = new CopyOnWriteArrayList<>();
+
+    @Test
+    void reportsNewThenSuppressesThenReportsKnown() throws Exception {
+        ErrorDeduplicator deduplicator = deduplicator(100);
+        IllegalStateException error = new IllegalStateException("boom");
+
+        assertThat(deduplicator.record("repo.find()", error).occurrence()).isEqualTo(NEW);
+        assertThat(deduplicator.record("repo.find()", error).occurrence()).isEqualTo(SUPPRESSED);
+        assertThat(deduplicator.record("repo.find()", error).occurrence()).isEqualTo(SUPPRESSED);
+        Thread.sleep(WINDOW_MS + 10);
+
+        assertThat(deduplicator.record("repo.find()", error).occurrence()).isEqualTo(KNOWN);
+        assertThat(repeats).hasSize(1);
+        assertThat(repeats.get(0).count()).isEqualTo(2);
+        assertThat(repeats.get(0).methodSignature()).isEqualTo("repo.find()");
+    }
+
+    @Test
+    void separatesFingerprintsByMethod() {
+        ErrorDeduplicator deduplicator = deduplicator(100);
+        IllegalStateException error = new IllegalStateException("boom");
+
+        ErrorDeduplicator.Result first = deduplicator.record("repo.find()", error);
+        ErrorDeduplicator.Result second = deduplicator.record("repo.save()", error);
+
+        assertThat(second.occurrence()).isEqualTo(NEW);
+        assertThat(second.fingerprint()).isNotEqualTo(first.fingerprint());
+    }
+
+    @Test
+    void flushesRepeatsWhenTheWindowCloses() throws Exception {
+        ErrorDeduplicator deduplicator = deduplicator(100);
+        IllegalStateException error = new IllegalStateException("boom");
+        deduplicator.record("repo.find()", error);
+        deduplicator.record("repo.find()", error);
+
+        deduplicator.flush(false);
+        assertThat(repeats).isEmpty();
+
+        Thread.sleep(WINDOW_MS + 10);
+        deduplicator.flush(false);
+        assertThat(repeats).hasSize(1);
+        assertThat(repeats.get(0).count()).isEqualTo(1);
+
+        deduplicator.flush(false);
+        assertThat(repeats).hasSize(1);
+    }
+
+    @Test
+    void flushesPendingRepeatsOnStop() {
+        ErrorDeduplicator deduplicator = deduplicator(100);
+        deduplicator.start();
+        IllegalStateException error = new IllegalStateException("boom");
+        deduplicator.record("repo.find()", error);
+        deduplicator.record("repo.find()", error);
+        deduplicator.record("repo.find()", error);
+
+        deduplicator.stop();
+
+        assertThat(repeats).hasSize(1);
+        assertThat(repeats.get(0).count()).isEqualTo(2);
+        assertThat(repeats.get(0).lastMessage()).isEqualTo("boom");
+    }
+
+    @Test
+    void forgetsFingerprintsAfterTheRetention() throws Exception {
+        ErrorDeduplicator deduplicator = deduplicator(100);
+        IllegalStateException error = new IllegalStateException("boom");
+        deduplicator.record("repo.find()", error);
+
+        Thread.sleep(WINDOW_MS * 10 + 10);
+        deduplicator.flush(false);
+
+        assertThat(deduplicator.record("repo.find()", error).occurrence()).isEqualTo(NEW);
+    }
+
+    @Test
+    void suppressesAndCountsNewFingerprintsWhenFull() {
+        ErrorDeduplicator deduplicator = deduplicator(1);
+        IllegalStateException error = new IllegalStateException("boom");
+
+        assertThat(deduplicator.record("repo.find()", error).occurrence()).isEqualTo(NEW);
+        assertThat(deduplicator.record("repo.save()", error).occurrence()).isEqualTo(SUPPRESSED);
+        assertThat(deduplicator.record("repo.delete()", error).occurrence()).isEqualTo(SUPPRESSED);
+
+        assertThat(deduplicator.getOverflowed()).isEqualTo(2);
+        assertThat(deduplicator.record("repo.find()", error).occurrence()).isEqualTo(SUPPRESSED);
+        assertThat(deduplicator.getOverflowed()).isEqualTo(2);
+    }
+
+    private ErrorDeduplicator deduplicator(int maxFingerprints) {
+        ErrorDeduplicator deduplicator = new ErrorDeduplicator(WINDOW_MS, 5, maxFingerprints);
+        deduplicator.addRepeatListener(repeats::add);
+        return deduplicator;
+    }
+}
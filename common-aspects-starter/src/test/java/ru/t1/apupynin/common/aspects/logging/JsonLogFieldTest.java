@@ -0,0 +1,74 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JsonLogFieldTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void truncatesLongTextAndMarksIt() {
+        assertThat(JsonLogField.truncate("abcdef", 3)).isEqualTo("abc" + JsonLogField.TRUNCATED_SUFFIX);
+        assertThat(JsonLogField.truncate("abc", 3)).isEqualTo("abc");
+        assertThat(JsonLogField.truncate("abcdef", 0)).isEqualTo("abcdef");
+        assertThat(JsonLogField.truncate(null, 3)).isNull();
+    }
+
+    @Test
+    void doesNotSplitASurrogatePair() {
+        String text = "ab😀cd";
+
+        assertThat(JsonLogField.truncate(text, 3)).isEqualTo("ab" + JsonLogField.TRUNCATED_SUFFIX);
+        assertThat(JsonLogField.truncate(text, 4)).isEqualTo("ab😀" + JsonLogField.TRUNCATED_SUFFIX);
+    }
+
+    @Test
+    void embedsValuesWithinTheLimitAsJson() throws Exception {
+        JsonNode node = render(Map.of("id", 42), 1024);
+
+        assertThat(node.isObject()).isTrue();
+        assertThat(node.get("id").asInt()).isEqualTo(42);
+    }
+
+    @Test
+    void replacesOversizedValuesWithAMarkedPrefix() throws Exception {
+        JsonNode node = render(List.of("x".repeat(100)), 20);
+
+        assertThat(node.isTextual()).isTrue();
+        assertThat(node.asText()).startsWith("[\"xxx").endsWith(JsonLogField.TRUNCATED_SUFFIX);
+        assertThat(node.asText().length()).isEqualTo(20 + JsonLogField.TRUNCATED_SUFFIX.length());
+    }
+
+    @Test
+    void doesNotSplitAUtf8Sequence() throws Exception {
+        // two-byte Cyrillic letters after the two-byte prefix ["
+        for (int limit = 10; limit < 14; limit++) {
+            String text = render(List.of("привет мир"), limit).asText();
+
+            String prefix = text.substring(0, text.length() - JsonLogField.TRUNCATED_SUFFIX.length());
+            assertThat(prefix).doesNotContain("�");
+            assertThat("[\"привет мир").startsWith(prefix);
+            assertThat(prefix.getBytes(StandardCharsets.UTF_8).length).isBetween(limit - 1, limit);
+        }
+    }
+
+    @Test
+    void writesUnlimitedValuesDirectly() throws Exception {
+        JsonNode node = render(Map.of("text", "y".repeat(10_000)), 0);
+
+        assertThat(node.get("text").asText()).hasSize(10_000);
+    }
+
+    private JsonNode render(Object value, int maxBytes) throws Exception {
+        String json = objectMapper.writeValueAsString(Map.of("field", JsonLogField.of(value, objectMapper, maxBytes)));
+        return objectMapper.readTree(json).get("field");
+    }
+}
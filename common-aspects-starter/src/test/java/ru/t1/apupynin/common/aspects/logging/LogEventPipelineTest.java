@@ -0,0 +1,95 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogEventPipelineTest {
+
+    private final List<LogEvent> shipped = new CopyOnWriteArrayList<>();
+    private final LogEventSink sink = (topic, batch) -> {
+        shipped.addAll(batch);
+        return batch.size();
+    };
+
+    @Test
+    void dropsNewEventsWhenFull() {
+        LogEventPipeline pipeline = new LogEventPipeline(sink, 4, OverflowPolicy.DROP, 1, 0, 16, 1);
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(pipeline.publish(event(i))).isTrue();
+        }
+        assertThat(pipeline.publish(event(4))).isFalse();
+
+        assertThat(pipeline.stats()).isEqualTo(new LogPipelineStats(4, 1, 0, 0, 4));
+    }
+
+    @Test
+    void samplesAboveTheHighWaterMark() {
+        LogEventPipeline pipeline = new LogEventPipeline(sink, 8, OverflowPolicy.SAMPLE, 0, 0, 16, 1);
+
+        int accepted = 0;
+        for (int i = 0; i < 8; i++) {
+            if (pipeline.publish(event(i))) {
+                accepted++;
+            }
+        }
+
+        assertThat(accepted).isEqualTo(6);
+        assertThat(pipeline.stats().dropped()).isEqualTo(2);
+    }
+
+    @Test
+    void blocksForTheTimeoutThenDrops() {
+        LogEventPipeline pipeline = new LogEventPipeline(sink, 2, OverflowPolicy.BLOCK, 1, 50, 16, 1);
+        pipeline.publish(event(0));
+        pipeline.publish(event(1));
+
+        long start = System.nanoTime();
+        boolean accepted = pipeline.publish(event(2));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(accepted).isFalse();
+        assertThat(elapsedMs).isGreaterThanOrEqualTo(50);
+        assertThat(pipeline.stats().dropped()).isEqualTo(1);
+    }
+
+    @Test
+    void blockedPublisherGetsInOnceTheDrainerFreesSpace() {
+        LogEventPipeline pipeline = new LogEventPipeline(sink, 2, OverflowPolicy.BLOCK, 1, 5_000, 16, 1);
+        pipeline.publish(event(0));
+        pipeline.publish(event(1));
+
+        pipeline.start();
+        try {
+            assertThat(pipeline.publish(event(2))).isTrue();
+        } finally {
+            pipeline.stop();
+        }
+
+        assertThat(shipped).hasSize(3);
+        assertThat(pipeline.stats()).isEqualTo(new LogPipelineStats(3, 0, 3, 0, 0));
+    }
+
+    @Test
+    void drainsQueuedEventsOnStop() {
+        LogEventPipeline pipeline = new LogEventPipeline(sink, 1024, OverflowPolicy.DROP, 1, 0, 16, 1);
+        pipeline.start();
+        for (int i = 0; i < 500; i++) {
+            pipeline.publish(event(i));
+        }
+
+        pipeline.stop();
+
+        assertThat(shipped).hasSize(500);
+        assertThat(pipeline.stats().queued()).isZero();
+    }
+
+    private static LogEvent event(int i) {
+        return new LogEvent("logs", "service", "INFO", () -> Map.of("i", i));
+    }
+}
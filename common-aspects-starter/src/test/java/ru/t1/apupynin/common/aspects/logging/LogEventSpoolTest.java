@@ -0,0 +1,87 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogEventSpoolTest {
+
+    @TempDir
+    Path directory;
+
+    private volatile boolean available;
+    private final List<Object> delivered = new CopyOnWriteArrayList<>();
+    private final LogEventSink delegate = (topic, batch) -> {
+        if (!available) {
+            return 0;
+        }
+        batch.forEach(event -> delivered.add(event.payload().get().get("id")));
+        return batch.size();
+    };
+
+    @Test
+    void spoolsWhileTheTransportFailsAndReplaysInOrder() throws Exception {
+        LogEventSpool spool = spool();
+        spool.sink().send("logs", List.of(event(0), event(1)));
+        spool.sink().send("logs", List.of(event(2)));
+        assertThat(spool.isSpooling()).isTrue();
+        assertThat(spool.stats().spooled()).isEqualTo(3);
+
+        available = true;
+        spool.start();
+        try {
+            awaitTrue(() -> !spool.isSpooling());
+        } finally {
+            spool.stop();
+        }
+
+        assertThat(delivered).containsExactly("e0", "e1", "e2");
+        assertThat(spool.stats().replayed()).isEqualTo(3);
+        assertThat(spool.stats().pending()).isZero();
+    }
+
+    @Test
+    void replaysEventsLeftOnDiskAfterARestart() throws Exception {
+        LogEventSpool first = spool();
+        first.sink().send("logs", List.of(event(0), event(1)));
+        first.stop();
+
+        available = true;
+        LogEventSpool second = spool();
+        assertThat(second.isSpooling()).isTrue();
+        second.start();
+        try {
+            awaitTrue(() -> !second.isSpooling());
+        } finally {
+            second.stop();
+        }
+
+        assertThat(delivered).containsExactly("e0", "e1");
+    }
+
+    private LogEventSpool spool() throws IOException {
+        return new LogEventSpool(delegate, new ObjectMapper(), directory, 4096, 1 << 20, 1_000, 16, 10, 1_000);
+    }
+
+    private static LogEvent event(int i) {
+        return new LogEvent("logs", "service", "INFO", () -> Map.of("id", "e" + i));
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
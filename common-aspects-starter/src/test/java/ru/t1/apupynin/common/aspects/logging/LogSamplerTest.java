@@ -0,0 +1,76 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogSamplerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    @Test
+    void errorsAndSlowCallsAreKeptWhateverTheSampleRate() {
+        LogSampler sampler = new LogSampler(0, 0, 0, 100);
+        SamplingPolicy policy = sampler.createPolicy(-1, -1, -1);
+
+        assertThat(sampler.sampleTail(policy, FAST, true)).isTrue();
+        assertThat(sampler.sampleTail(policy, SLOW, false)).isTrue();
+        assertThat(sampler.sampleTail(policy, FAST, false)).isFalse();
+
+        assertThat(sampler.stats()).isEqualTo(new LogSamplingStats(0, 2, 1, 0));
+    }
+
+    @Test
+    void forcedSamplesBypassAndDoNotSpendTheRateLimit() {
+        LogSampler sampler = new LogSampler(1, 0, 0, 100);
+        SamplingPolicy policy = sampler.createPolicy(-1, 1, -1);
+
+        assertThat(sampler.sampleTail(policy, FAST, false)).isTrue();
+        assertThat(sampler.sampleTail(policy, FAST, false)).isFalse();
+        for (int i = 0; i < 10; i++) {
+            assertThat(sampler.sampleTail(policy, FAST, true)).isTrue();
+        }
+
+        assertThat(sampler.stats()).isEqualTo(new LogSamplingStats(1, 10, 0, 1));
+    }
+
+    @Test
+    void headSamplingIsRateLimitedPerPolicy() {
+        LogSampler sampler = new LogSampler(1, 0, 0, 0);
+        SamplingPolicy limited = sampler.createPolicy(-1, 2, -1);
+        SamplingPolicy other = sampler.createPolicy(-1, 2, -1);
+
+        assertThat(sampler.sampleHead(limited)).isTrue();
+        assertThat(sampler.sampleHead(limited)).isTrue();
+        assertThat(sampler.sampleHead(limited)).isFalse();
+        assertThat(sampler.sampleHead(other)).isTrue();
+
+        assertThat(sampler.stats().rateLimited()).isEqualTo(1);
+    }
+
+    @Test
+    void sampleRateKeepsItsShareOfCalls() {
+        LogSampler sampler = new LogSampler(1, 0, 0, 0);
+        SamplingPolicy policy = sampler.createPolicy(0.25, -1, -1);
+        int kept = 0;
+        for (int i = 0; i < 20_000; i++) {
+            if (sampler.sampleHead(policy)) {
+                kept++;
+            }
+        }
+
+        assertThat(kept).isBetween(4_500, 5_500);
+        assertThat(sampler.stats().sampledOut()).isEqualTo(20_000 - kept);
+    }
+
+    @Test
+    void zeroSlowThresholdNeverForcesFastCalls() {
+        LogSampler sampler = new LogSampler(0, 0, 0, 0);
+        SamplingPolicy policy = sampler.createPolicy(-1, -1, -1);
+
+        assertThat(sampler.sampleTail(policy, TimeUnit.SECONDS.toNanos(60), false)).isFalse();
+    }
+}
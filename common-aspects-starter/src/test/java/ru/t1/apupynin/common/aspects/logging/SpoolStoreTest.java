@@ -0,0 +1,111 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpoolStoreTest {
+
+    private static final int SEGMENT_BYTES = 64;
+    private static final int RECORD_BYTES = 8 + 10;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysFromTheCheckpointAfterReopening() throws IOException {
+        try (SpoolStore store = new SpoolStore(directory, 4096, 1 << 20)) {
+            for (int i = 0; i < 5; i++) {
+                assertThat(store.append(record(i))).isTrue();
+            }
+            store.commit(store.peek(2));
+        }
+
+        try (SpoolStore store = new SpoolStore(directory, 4096, 1 << 20)) {
+            assertThat(store.pendingRecords()).isEqualTo(3);
+            assertThat(texts(store.peek(10))).containsExactly("record-002", "record-003", "record-004");
+        }
+    }
+
+    @Test
+    void dropsATornRecordAndAppendsOverIt() throws IOException {
+        try (SpoolStore store = new SpoolStore(directory, 4096, 1 << 20)) {
+            for (int i = 0; i < 3; i++) {
+                store.append(record(i));
+            }
+        }
+        corrupt(segments().get(0), 2 * RECORD_BYTES + 8);
+
+        try (SpoolStore store = new SpoolStore(directory, 4096, 1 << 20)) {
+            assertThat(store.pendingRecords()).isEqualTo(2);
+            store.append(record(7));
+            assertThat(texts(store.peek(10))).containsExactly("record-000", "record-001", "record-007");
+        }
+    }
+
+    @Test
+    void rollsSegmentsAndRejectsAppendsWhenFull() throws IOException {
+        try (SpoolStore store = new SpoolStore(directory, SEGMENT_BYTES, 2 * SEGMENT_BYTES)) {
+            for (int i = 0; i < 6; i++) {
+                assertThat(store.append(record(i))).isTrue();
+            }
+            assertThat(store.append(record(6))).isFalse();
+            assertThat(store.append(new byte[SEGMENT_BYTES])).isFalse();
+            assertThat(segments()).hasSize(2);
+
+            SpoolStore.Batch batch = store.peek(4);
+            assertThat(texts(batch)).containsExactly("record-000", "record-001", "record-002", "record-003");
+            store.commit(batch);
+
+            assertThat(segments()).hasSize(1);
+            assertThat(store.append(record(6))).isTrue();
+            assertThat(texts(store.peek(10))).containsExactly("record-004", "record-005", "record-006");
+        }
+    }
+
+    @Test
+    void peekDoesNotConsume() throws IOException {
+        try (SpoolStore store = new SpoolStore(directory, 4096, 1 << 20)) {
+            store.append(record(0));
+
+            assertThat(texts(store.peek(10))).containsExactly("record-000");
+            assertThat(texts(store.peek(10))).containsExactly("record-000");
+            assertThat(store.isEmpty()).isFalse();
+
+            store.commit(store.peek(10));
+            assertThat(store.isEmpty()).isTrue();
+            assertThat(store.peek(10).records()).isEmpty();
+        }
+    }
+
+    private static byte[] record(int i) {
+        return String.format("record-%03d", i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> texts(SpoolStore.Batch batch) {
+        return batch.records().stream().map(bytes -> new String(bytes, StandardCharsets.UTF_8)).toList();
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".seg")).sorted().toList();
+        }
+    }
+
+    private static void corrupt(Path file, int position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'X'}), position);
+        }
+    }
+}
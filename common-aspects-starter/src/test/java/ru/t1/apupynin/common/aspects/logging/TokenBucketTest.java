@@ -0,0 +1,68 @@
+package ru.t1.apupynin.common.aspects.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTest {
+
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    void allowsABurstThenOnePermitPerInterval() {
+        TokenBucket bucket = new TokenBucket(10, 5);
+        long start = System.nanoTime();
+
+        assertThat(acquired(bucket, start, 10)).isEqualTo(5);
+        assertThat(bucket.tryAcquire(start + INTERVAL / 2)).isFalse();
+        assertThat(bucket.tryAcquire(start + INTERVAL)).isTrue();
+        assertThat(bucket.tryAcquire(start + INTERVAL)).isFalse();
+        assertThat(acquired(bucket, start + 3 * INTERVAL, 10)).isEqualTo(2);
+    }
+
+    @Test
+    void idleTimeRefillsNoMoreThanTheBurst() {
+        TokenBucket bucket = new TokenBucket(10, 5);
+        long start = System.nanoTime();
+        acquired(bucket, start, 5);
+
+        assertThat(acquired(bucket, start + TimeUnit.SECONDS.toNanos(60), 10)).isEqualTo(5);
+    }
+
+    @Test
+    void burstOfOneSpacesEveryPermit() {
+        TokenBucket bucket = new TokenBucket(0.5, 1);
+        long start = System.nanoTime();
+        long interval = TimeUnit.SECONDS.toNanos(2);
+
+        assertThat(bucket.tryAcquire(start)).isTrue();
+        assertThat(bucket.tryAcquire(start + interval - 1)).isFalse();
+        assertThat(bucket.tryAcquire(start + interval)).isTrue();
+    }
+
+    @Test
+    void sustainedCallersGetTheConfiguredRate() {
+        TokenBucket bucket = new TokenBucket(100, 10);
+        long start = System.nanoTime();
+        int granted = 0;
+        for (long t = start; t < start + TimeUnit.SECONDS.toNanos(10); t += TimeUnit.MICROSECONDS.toNanos(100)) {
+            if (bucket.tryAcquire(t)) {
+                granted++;
+            }
+        }
+
+        assertThat(granted).isBetween(1_000, 1_010);
+    }
+
+    private static int acquired(TokenBucket bucket, long now, int attempts) {
+        int granted = 0;
+        for (int i = 0; i < attempts; i++) {
+            if (bucket.tryAcquire(now)) {
+                granted++;
+            }
+        }
+        return granted;
+    }
+}
@@ -0,0 +1,73 @@
+package ru.t1.apupynin.common.aspects.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.t1.apupynin.common.aspects.autoconfigure.AspectProperties;
+import ru.t1.apupynin.common.aspects.cache.CacheEngine;
+import ru.t1.apupynin.common.aspects.cache.CacheRegistry;
+import ru.t1.apupynin.common.aspects.cache.Weigher;
+import ru.t1.apupynin.common.aspects.cache.WTinyLfuCache;
+import ru.t1.apupynin.common.aspects.support.MethodMetadata;
+import ru.t1.apupynin.common.aspects.support.MethodMetadataRegistry;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CommonAspectsMeterBinderTest {
+
+    private final CacheRegistry cacheRegistry = new CacheRegistry(new AspectProperties(),
+            (name, spec) -> new WTinyLfuCache(spec, Weigher.SINGLETON), null);
+    private final CommonAspectsMeterBinder binder = new CommonAspectsMeterBinder(cacheRegistry, null, null, null);
+
+    @AfterEach
+    void close() {
+        cacheRegistry.close();
+    }
+
+    @Test
+    void recordsMethodTimingsInEveryBoundRegistry() throws Exception {
+        MethodMetadata method = new MethodMetadataRegistry().get(Greeter.class.getMethod("greet", String.class));
+        MeterRegistry first = new SimpleMeterRegistry();
+        MeterRegistry second = new SimpleMeterRegistry();
+
+        binder.record(method, 1_000);
+        binder.bindTo(first);
+        binder.record(method, 2_000);
+        binder.bindTo(second);
+        binder.record(method, 3_000);
+
+        assertThat(first.get("t1.method.duration").tags("class", "Greeter", "method", "greet").timer().count())
+                .isEqualTo(2);
+        assertThat(second.get("t1.method.duration").timer().totalTime(TimeUnit.NANOSECONDS)).isEqualTo(3_000);
+    }
+
+    @Test
+    void cacheMetersShareTheStarterPrefix() {
+        CacheEngine existing = cacheRegistry.getCache("users");
+        MeterRegistry registry = new SimpleMeterRegistry();
+        binder.bindTo(registry);
+        cacheRegistry.getCache("orders");
+
+        existing.put("a", "b", TimeUnit.MINUTES.toNanos(1));
+        existing.getEntry("a");
+        existing.getEntry("missing");
+
+        assertThat(registry.get("t1.cache.gets").tags("cache", "users", "result", "hit").functionCounter().count())
+                .isEqualTo(1);
+        assertThat(registry.get("t1.cache.gets").tags("cache", "users", "result", "miss").functionCounter().count())
+                .isEqualTo(1);
+        assertThat(registry.get("t1.cache.size").tag("cache", "users").gauge().value()).isEqualTo(1);
+        assertThat(registry.get("t1.cache.puts").tag("cache", "orders").functionCounter().count()).isZero();
+        assertThat(registry.getMeters()).allSatisfy(meter -> assertThat(meter.getId().getName()).startsWith("t1."));
+    }
+
+    public static class Greeter {
+
+        public String greet(String name) {
+            return "hello " + name;
+        }
+    }
+}
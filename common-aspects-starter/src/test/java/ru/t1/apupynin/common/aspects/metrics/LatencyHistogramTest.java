@@ -0,0 +1,103 @@
+package ru.t1.apupynin.common.aspects.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LatencyHistogramTest {
+
+    private static final double MAX_RELATIVE_ERROR = 1.0 / 64;
+
+    @Test
+    void bucketsTileTheLongRange() {
+        int last = LatencyHistogram.indexOf(Long.MAX_VALUE);
+        assertThat(LatencyHistogram.lowestValueAt(0)).isZero();
+        assertThat(LatencyHistogram.highestValueAt(last)).isEqualTo(Long.MAX_VALUE);
+
+        for (int i = 0; i <= last; i++) {
+            assertThat(LatencyHistogram.indexOf(LatencyHistogram.lowestValueAt(i))).isEqualTo(i);
+            assertThat(LatencyHistogram.indexOf(LatencyHistogram.highestValueAt(i))).isEqualTo(i);
+            assertThat(LatencyHistogram.indexOf(LatencyHistogram.medianValueAt(i))).isEqualTo(i);
+            if (i < last) {
+                assertThat(LatencyHistogram.lowestValueAt(i + 1)).isEqualTo(LatencyHistogram.highestValueAt(i) + 1);
+            }
+        }
+    }
+
+    @Test
+    void bucketMidpointIsWithinAFractionOfEveryValueInTheBucket() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            long value = random.nextLong() >>> 1 + random.nextInt(63);
+            long reported = LatencyHistogram.medianValueAt(LatencyHistogram.indexOf(value));
+            assertThat((double) Math.abs(reported - value)).isLessThanOrEqualTo(value * MAX_RELATIVE_ERROR);
+        }
+        for (long value = 0; value < 64; value++) {
+            assertThat(LatencyHistogram.medianValueAt(LatencyHistogram.indexOf(value))).isEqualTo(value);
+        }
+    }
+
+    @Test
+    void percentilesOfAUniformDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 100_000; micros++) {
+            histogram.record(micros * 1_000);
+        }
+
+        HistogramSnapshot snapshot = histogram.snapshotAndReset();
+
+        assertThat(snapshot.count()).isEqualTo(100_000);
+        assertThat(snapshot.mean()).isEqualTo(50_000_500);
+        assertThat(snapshot.max()).isEqualTo(100_000_000);
+        assertClose(snapshot.p50(), 50_000_000);
+        assertClose(snapshot.p90(), 90_000_000);
+        assertClose(snapshot.p99(), 99_000_000);
+        assertClose(snapshot.p999(), 99_900_000);
+    }
+
+    @Test
+    void percentilesOfALogNormalDistribution() {
+        Random random = new Random(7);
+        long[] values = new long[50_000];
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(13 + random.nextGaussian());
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        HistogramSnapshot snapshot = histogram.snapshotAndReset();
+
+        assertClose(snapshot.p50(), exact(values, 0.50));
+        assertClose(snapshot.p90(), exact(values, 0.90));
+        assertClose(snapshot.p99(), exact(values, 0.99));
+        assertClose(snapshot.p999(), exact(values, 0.999));
+        assertThat(snapshot.max()).isEqualTo(values[values.length - 1]);
+    }
+
+    @Test
+    void snapshotResetsTheInterval() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(10);
+
+        HistogramSnapshot first = histogram.snapshotAndReset();
+
+        assertThat(first.count()).isEqualTo(2);
+        assertThat(first.p50()).isZero();
+        assertThat(first.max()).isEqualTo(10);
+        assertThat(histogram.snapshotAndReset()).isEqualTo(HistogramSnapshot.EMPTY);
+    }
+
+    private static long exact(long[] sorted, double quantile) {
+        return sorted[(int) Math.ceil(quantile * sorted.length) - 1];
+    }
+
+    private static void assertClose(long reported, long expected) {
+        assertThat((double) reported).isCloseTo(expected, within(expected * MAX_RELATIVE_ERROR));
+    }
+}
@@ -0,0 +1,54 @@
+package ru.t1.apupynin.common.aspects.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CallGuardTest {
+
+    @Test
+    void rejectsCallsBeyondTheBulkhead() {
+        CallGuard guard = new CallGuard(breaker(), new Bulkhead(1, 0));
+        CircuitBreaker.Phase permit = guard.acquire();
+
+        assertThatThrownBy(guard::acquire).isInstanceOf(CallNotPermittedException.class);
+        assertThat(guard.getRejected()).isEqualTo(1);
+
+        guard.release(permit, null);
+        assertThat(guard.getBulkhead().getActiveCalls()).isZero();
+        guard.release(guard.acquire(), null);
+    }
+
+    @Test
+    void releasesTheBulkheadWhenTheBreakerRejects() {
+        CallGuard guard = new CallGuard(breaker(), new Bulkhead(1, 0));
+        for (int i = 0; i < 2; i++) {
+            guard.release(guard.acquire(), new IllegalStateException());
+        }
+
+        assertThatThrownBy(guard::acquire).isInstanceOf(CallNotPermittedException.class);
+        assertThat(guard.getBulkhead().getActiveCalls()).isZero();
+    }
+
+    @Test
+    void doesNotCountRejectionsAndCancellationsAsFailures() {
+        CallGuard guard = new CallGuard(breaker(), null);
+
+        for (int i = 0; i < 5; i++) {
+            guard.release(guard.acquire(), new CallNotPermittedException("nested"));
+            guard.release(guard.acquire(), new CancellationException());
+        }
+
+        assertThat(guard.getBreaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    private static CircuitBreaker breaker() {
+        return new CircuitBreaker("test", 0.5, 2, TimeUnit.MINUTES.toNanos(1), 10,
+                TimeUnit.MINUTES.toNanos(1), 1, transition -> {
+                });
+    }
+}
@@ -0,0 +1,129 @@
+package ru.t1.apupynin.common.aspects.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.t1.apupynin.common.aspects.resilience.CircuitBreaker.State.CLOSED;
+import static ru.t1.apupynin.common.aspects.resilience.CircuitBreaker.State.HALF_OPEN;
+import static ru.t1.apupynin.common.aspects.resilience.CircuitBreaker.State.OPEN;
+
+class CircuitBreakerTest {
+
+    private static final long OPEN_MS = 50;
+
+    private final List<CircuitBreaker.Transition> transitions = new CopyOnWriteArrayList<>();
+
+    @Test
+    void staysClosedUntilMinimumCallsAreSeen() {
+        CircuitBreaker breaker = breaker(2);
+
+        fail(breaker, 3);
+
+        assertThat(breaker.getState()).isEqualTo(CLOSED);
+    }
+
+    @Test
+    void opensWhenTheFailureRateReachesTheThreshold() {
+        CircuitBreaker breaker = breaker(2);
+        succeed(breaker, 2);
+
+        fail(breaker, 2);
+
+        assertThat(breaker.getState()).isEqualTo(OPEN);
+        assertThat(breaker.tryAcquire()).isNull();
+        assertThat(transitions).singleElement().satisfies(transition -> {
+            assertThat(transition.from()).isEqualTo(CLOSED);
+            assertThat(transition.to()).isEqualTo(OPEN);
+            assertThat(transition.failureRate()).isEqualTo(0.5);
+            assertThat(transition.calls()).isEqualTo(4);
+        });
+    }
+
+    @Test
+    void closesAfterEnoughSuccessfulProbes() throws InterruptedException {
+        CircuitBreaker breaker = openBreaker(2);
+        Thread.sleep(OPEN_MS + 10);
+
+        CircuitBreaker.Phase first = breaker.tryAcquire();
+        CircuitBreaker.Phase second = breaker.tryAcquire();
+        assertThat(breaker.getState()).isEqualTo(HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isNull();
+
+        breaker.record(first, false);
+        breaker.record(second, false);
+
+        assertThat(breaker.getState()).isEqualTo(CLOSED);
+        assertThat(transitions).extracting(CircuitBreaker.Transition::to).containsExactly(OPEN, HALF_OPEN, CLOSED);
+        fail(breaker, 3);
+        assertThat(breaker.getState()).as("window starts empty after closing").isEqualTo(CLOSED);
+    }
+
+    @Test
+    void reopensOnAFailedProbe() throws InterruptedException {
+        CircuitBreaker breaker = openBreaker(2);
+        Thread.sleep(OPEN_MS + 10);
+
+        breaker.record(breaker.tryAcquire(), true);
+
+        assertThat(breaker.getState()).isEqualTo(OPEN);
+        assertThat(breaker.tryAcquire()).isNull();
+    }
+
+    @Test
+    void givesBackTheSlotOfAProbeWithoutVerdict() throws InterruptedException {
+        CircuitBreaker breaker = openBreaker(1);
+        Thread.sleep(OPEN_MS + 10);
+
+        for (int i = 0; i < 3; i++) {
+            CircuitBreaker.Phase probe = breaker.tryAcquire();
+            assertThat(probe).isNotNull();
+            breaker.ignore(probe);
+        }
+        breaker.record(breaker.tryAcquire(), false);
+
+        assertThat(breaker.getState()).isEqualTo(CLOSED);
+    }
+
+    @Test
+    void reopensWhenProbesNeverAnswer() throws InterruptedException {
+        CircuitBreaker breaker = openBreaker(1);
+        Thread.sleep(OPEN_MS + 10);
+        CircuitBreaker.Phase hung = breaker.tryAcquire();
+        assertThat(breaker.tryAcquire()).isNull();
+
+        Thread.sleep(OPEN_MS + 10);
+        assertThat(breaker.tryAcquire()).isNull();
+        assertThat(breaker.getState()).isEqualTo(OPEN);
+
+        breaker.record(hung, false);
+        assertThat(breaker.getState()).as("late result of an earlier phase").isEqualTo(OPEN);
+    }
+
+    private CircuitBreaker openBreaker(int halfOpenCalls) {
+        CircuitBreaker breaker = breaker(halfOpenCalls);
+        fail(breaker, 4);
+        assertThat(breaker.getState()).isEqualTo(OPEN);
+        return breaker;
+    }
+
+    private CircuitBreaker breaker(int halfOpenCalls) {
+        return new CircuitBreaker("test", 0.5, 4, TimeUnit.MINUTES.toNanos(1), 10,
+                TimeUnit.MILLISECONDS.toNanos(OPEN_MS), halfOpenCalls, transitions::add);
+    }
+
+    private static void succeed(CircuitBreaker breaker, int calls) {
+        for (int i = 0; i < calls; i++) {
+            breaker.record(breaker.tryAcquire(), false);
+        }
+    }
+
+    private static void fail(CircuitBreaker breaker, int calls) {
+        for (int i = 0; i < calls; i++) {
+            breaker.record(breaker.tryAcquire(), true);
+        }
+    }
+}
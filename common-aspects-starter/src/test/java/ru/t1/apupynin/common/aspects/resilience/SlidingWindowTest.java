@@ -0,0 +1,59 @@
+package ru.t1.apupynin.common.aspects.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlidingWindowTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void countsCallsAndFailuresWithinTheWindow() {
+        SlidingWindow window = new SlidingWindow(10 * SECOND, 10);
+        long now = System.nanoTime();
+
+        window.record(false, now);
+        window.record(true, now);
+        window.record(true, now + 3 * SECOND);
+
+        assertThat(calls(window.totals(now + 3 * SECOND))).isEqualTo(3);
+        assertThat(failures(window.totals(now + 3 * SECOND))).isEqualTo(2);
+    }
+
+    @Test
+    void forgetsSlicesThatLeftTheWindow() {
+        SlidingWindow window = new SlidingWindow(10 * SECOND, 10);
+        long now = System.nanoTime();
+        window.record(true, now);
+        window.record(false, now + 5 * SECOND);
+
+        long totals = window.totals(now + 10 * SECOND + SECOND / 2);
+
+        assertThat(calls(totals)).isEqualTo(1);
+        assertThat(failures(totals)).isZero();
+    }
+
+    @Test
+    void restartsASliceReusedOnTheNextLap() {
+        SlidingWindow window = new SlidingWindow(10 * SECOND, 10);
+        long now = System.nanoTime();
+        window.record(true, now);
+
+        window.record(false, now + 10 * SECOND);
+
+        long totals = window.totals(now + 10 * SECOND);
+        assertThat(calls(totals)).isEqualTo(1);
+        assertThat(failures(totals)).isZero();
+    }
+
+    private static long calls(long totals) {
+        return totals >>> 32;
+    }
+
+    private static long failures(long totals) {
+        return totals & 0xFFFFFFFFL;
+    }
+}
@@ -0,0 +1,152 @@
+package ru.t1.apupynin.common.aspects.support;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AsyncResultsTest {
+
+    private final List<Signal> signals = new CopyOnWriteArrayList<>();
+    private final AsyncResults.Completion completion = (value, error, elapsedNanos, request) ->
+            signals.add(new Signal(value, error));
+
+    @Test
+    void completionStageReportsEachOutcomeOnce() {
+        CompletableFuture<Object> completed = new CompletableFuture<>();
+        CompletableFuture<Object> failed = new CompletableFuture<>();
+        CompletableFuture<Object> cancelled = new CompletableFuture<>();
+        for (CompletableFuture<Object> future : List.of(completed, failed, cancelled)) {
+            assertThat(AsyncResults.onCompletion(future, ReturnKind.COMPLETION_STAGE, System.nanoTime(), completion))
+                    .isSameAs(future);
+        }
+        assertThat(signals).isEmpty();
+
+        completed.complete("value");
+        failed.completeExceptionally(new IllegalStateException("boom"));
+        cancelled.cancel(true);
+
+        assertThat(signals).hasSize(3);
+        assertThat(signals.get(0).value()).isEqualTo("value");
+        assertThat(signals.get(0).error()).isNull();
+        assertThat(signals.get(1).error()).isInstanceOf(IllegalStateException.class);
+        assertThat(signals.get(2).error()).isInstanceOf(CancellationException.class);
+    }
+
+    @Test
+    void monoReportsOncePerSubscriptionAtCompletion() {
+        Mono<Object> mono = wrap(Mono.fromSupplier(() -> "value"));
+        assertThat(signals).isEmpty();
+
+        assertThat(mono.block()).isEqualTo("value");
+        assertThat(mono.block()).isEqualTo("value");
+        assertThat(wrap(Mono.empty()).block()).isNull();
+
+        assertThat(signals).containsExactly(new Signal("value", null), new Signal("value", null),
+                new Signal(null, null));
+    }
+
+    @Test
+    void monoReportsItsErrorOnce() {
+        IllegalStateException boom = new IllegalStateException("boom");
+
+        assertThatThrownBy(() -> wrap(Mono.error(boom)).block()).isSameAs(boom);
+
+        assertThat(signals).containsExactly(new Signal(null, boom));
+    }
+
+    @Test
+    void monoReportsCancellationOnce() {
+        Disposable subscription = wrap(Mono.never()).subscribe();
+
+        subscription.dispose();
+        subscription.dispose();
+
+        assertThat(signals).hasSize(1);
+        assertThat(signals.get(0).error()).isInstanceOf(CancellationException.class);
+    }
+
+    @Test
+    void monoCancelledAfterItsValueReportsTheValueOnly() {
+        assertThat(Flux.from(wrap(Mono.just("value"))).next().block()).isEqualTo("value");
+        assertThat(wrap(Mono.just("value")).toFuture().join()).isEqualTo("value");
+
+        assertThat(signals).containsExactly(new Signal("value", null), new Signal("value", null));
+    }
+
+    @Test
+    void fluxReportsCompletionErrorAndCancellationOnce() {
+        IllegalStateException boom = new IllegalStateException("boom");
+
+        assertThat(wrapFlux(Flux.range(1, 3)).collectList().block()).containsExactly(1, 2, 3);
+        assertThatThrownBy(() -> wrapFlux(Flux.concat(Flux.just(1), Flux.error(boom))).blockLast()).isSameAs(boom);
+        assertThat(wrapFlux(Flux.range(1, 10)).take(2).collectList().block()).containsExactly(1, 2);
+
+        assertThat(signals).hasSize(3);
+        assertThat(signals.get(0)).isEqualTo(new Signal(null, null));
+        assertThat(signals.get(1)).isEqualTo(new Signal(null, boom));
+        assertThat(signals.get(2).error()).isInstanceOf(CancellationException.class);
+    }
+
+    @Test
+    void failingCompletionDoesNotBreakTheResult() {
+        Object result = AsyncResults.onCompletion(Mono.just("value"), ReturnKind.MONO, System.nanoTime(),
+                (value, error, elapsedNanos, request) -> {
+                    throw new IllegalStateException("handler");
+                });
+
+        assertThat(((Mono<?>) result).block()).isEqualTo("value");
+    }
+
+    @Test
+    void permitIsReleasedOncePerSubscriptionWhateverTheOutcome() {
+        AtomicInteger acquired = new AtomicInteger();
+        List<Throwable> released = new ArrayList<>();
+        IllegalStateException boom = new IllegalStateException("boom");
+
+        permitted(Mono.just("value"), acquired, released).block();
+        assertThatThrownBy(() -> permitted(Mono.error(boom), acquired, released).block()).isSameAs(boom);
+        permitted(Mono.never(), acquired, released).subscribe().dispose();
+        permitted(Flux.range(1, 10), acquired, released).take(2).blockLast();
+
+        assertThat(acquired).hasValue(4);
+        assertThat(released).hasSize(4);
+        assertThat(released.get(0)).isNull();
+        assertThat(released.get(1)).isSameAs(boom);
+        assertThat(released.get(2)).isInstanceOf(CancellationException.class);
+        assertThat(released.get(3)).isInstanceOf(CancellationException.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Mono<Object> wrap(Mono<?> mono) {
+        return (Mono<Object>) AsyncResults.onCompletion(mono, ReturnKind.MONO, System.nanoTime(), completion);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Flux<Object> wrapFlux(Flux<?> flux) {
+        return (Flux<Object>) AsyncResults.onCompletion(flux, ReturnKind.FLUX, System.nanoTime(), completion);
+    }
+
+    private static Mono<?> permitted(Mono<?> mono, AtomicInteger acquired, List<Throwable> released) {
+        return (Mono<?>) AsyncResults.withPermit(mono, ReturnKind.MONO, acquired::incrementAndGet,
+                (permit, error) -> released.add(error));
+    }
+
+    private static Flux<?> permitted(Flux<?> flux, AtomicInteger acquired, List<Throwable> released) {
+        return (Flux<?>) AsyncResults.withPermit(flux, ReturnKind.FLUX, acquired::incrementAndGet,
+                (permit, error) -> released.add(error));
+    }
+
+    private record Signal(Object value, Throwable error) {
+    }
+}
@@ -0,0 +1,111 @@
+package ru.t1.apupynin.common.aspects.support;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import ru.t1.apupynin.common.aspects.annotation.Sensitive;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MethodMetadataRegistryTest {
+
+    private final MethodMetadataRegistry registry = new MethodMetadataRegistry();
+    private final SignatureRecorder recorder = new SignatureRecorder(registry);
+
+    @Test
+    void namesNestedClassMethodsLikeTheJoinPoint() {
+        Repository repository = proxy(new Repository(), true);
+
+        repository.find(1L, new int[0], null);
+        repository.count();
+        repository.describe();
+
+        assertThat(recorder.calls).hasSize(3).allSatisfy(this::assertSameSignature);
+        assertThat(recorder.calls.get(0).metadata().getShortSignature()).isEqualTo("Repository.find(..)");
+        assertThat(recorder.calls.get(1).metadata().getShortSignature()).isEqualTo("Repository.count()");
+        assertThat(recorder.calls.get(2).metadata().getShortSignature()).isEqualTo("BaseRepository.describe()");
+    }
+
+    @Test
+    void namesInterfaceProxyMethodsAfterTheInterface() {
+        Store store = proxy(new Repository(), false);
+
+        store.find(1L, new int[0], null);
+
+        Call call = recorder.calls.get(0);
+        assertSameSignature(call);
+        assertThat(call.metadata().getShortSignature()).isEqualTo("Store.find(..)");
+        assertThat(call.metadata().getMethod().getDeclaringClass()).isEqualTo(Repository.class);
+        assertThat(call.metadata().getParameterNames()).containsExactly("id", "shards", "filter");
+        assertThat(call.metadata().loggableArguments(new Object[]{1L, null, "f"})).containsExactly(1L, null, "***");
+    }
+
+    private void assertSameSignature(Call call) {
+        assertThat(call.metadata().getLongSignature()).isEqualTo(call.longSignature());
+        assertThat(call.metadata().getShortSignature()).isEqualTo(call.shortSignature());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(Repository target, boolean proxyTargetClass) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(proxyTargetClass);
+        if (!proxyTargetClass) {
+            factory.addInterface(Store.class);
+        }
+        factory.addAspect(recorder);
+        return (T) factory.getProxy();
+    }
+
+    private record Call(String longSignature, String shortSignature, MethodMetadata metadata) {
+    }
+
+    @Aspect
+    public static class SignatureRecorder {
+
+        final MethodMetadataRegistry registry;
+        final List<Call> calls = new ArrayList<>();
+
+        SignatureRecorder(MethodMetadataRegistry registry) {
+            this.registry = registry;
+        }
+
+        @Around("execution(* ru.t1.apupynin.common.aspects.support.MethodMetadataRegistryTest.*.*(..))")
+        public Object record(ProceedingJoinPoint pjp) throws Throwable {
+            calls.add(new Call(pjp.getSignature().toLongString(), pjp.getSignature().toShortString(),
+                    registry.get(pjp)));
+            return pjp.proceed();
+        }
+    }
+
+    public interface Store {
+
+        String find(Long id, int[] shards, Repository.Filter filter);
+    }
+
+    public static class BaseRepository {
+
+        public String describe() {
+            return "base";
+        }
+    }
+
+    public static class Repository extends BaseRepository implements Store {
+
+        public static class Filter {
+        }
+
+        @Override
+        public String find(Long id, int[] shards, @Sensitive Filter filter) {
+            return "found";
+        }
+
+        public long count() {
+            return 0;
+        }
+    }
+}
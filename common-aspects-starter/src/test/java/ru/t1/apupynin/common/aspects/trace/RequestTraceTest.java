@@ -0,0 +1,84 @@
+package ru.t1.apupynin.common.aspects.trace;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestTraceTest {
+
+    private static final long MS = 1_000_000;
+
+    @Test
+    void aggregatesSpansByKindAndName() {
+        RequestTrace trace = new RequestTrace("t", 16);
+        long start = System.nanoTime();
+
+        trace.addSpan("db", "find", start, 2 * MS, false, false);
+        trace.addSpan("db", "find", start, 5 * MS, true, false);
+        trace.addSpan("db", "find", start, 1 * MS, false, true);
+        trace.addSpan("cache", "find", start, 1 * MS, false, false);
+        trace.close();
+
+        List<Map<String, Object>> spans = spans(trace);
+        assertThat(spans).hasSize(2);
+        Map<String, Object> db = spans.stream().filter(span -> span.get("kind").equals("db")).findFirst().orElseThrow();
+        assertThat(db).containsEntry("count", 3)
+                .containsEntry("totalMs", 8.0)
+                .containsEntry("maxMs", 5.0)
+                .containsEntry("errors", 1)
+                .containsEntry("slow", 1);
+        Map<String, Object> cache = spans.stream().filter(span -> span.get("kind").equals("cache")).findFirst().orElseThrow();
+        assertThat(cache).containsEntry("count", 1).doesNotContainKeys("maxMs", "errors", "slow");
+    }
+
+    @Test
+    void countsSpansBeyondTheLimit() {
+        RequestTrace trace = new RequestTrace("t", 2);
+        long start = System.nanoTime();
+
+        trace.addSpan("db", "a", start, MS, false, false);
+        trace.addSpan("db", "b", start, MS, false, false);
+        trace.addSpan("db", "c", start, MS, false, false);
+        trace.addSpan("db", "a", start, MS, false, false);
+        trace.close();
+
+        assertThat(spans(trace)).hasSize(2);
+        assertThat(trace.toMessage("svc", null)).containsEntry("droppedSpans", 1);
+    }
+
+    @Test
+    void ignoresSpansAfterClose() {
+        RequestTrace trace = new RequestTrace("t", 16);
+        trace.close();
+
+        assertThat(trace.addSpan("db", "a", System.nanoTime(), MS, false, false)).isFalse();
+        assertThat(spans(trace)).isEmpty();
+    }
+
+    @Test
+    void keepsTheFirstIncomeAndTheLastOutcome() {
+        RequestTrace trace = new RequestTrace("t", 16);
+
+        trace.setIncome(() -> Map.of("methodSignature", "outer", "uri", "/outer"));
+        trace.setIncome(() -> Map.of("methodSignature", "inner", "uri", "/inner"));
+        trace.setOutcome(() -> Map.of("methodSignature", "first"));
+        trace.setOutcome(() -> Map.of("methodSignature", "last"));
+        trace.close();
+
+        Map<String, Object> message = trace.toMessage("svc", new IllegalStateException("boom"));
+        assertThat(message).containsEntry("methodSignature", "outer")
+                .containsEntry("uri", "/outer")
+                .containsEntry("outcome", Map.of("methodSignature", "last"))
+                .containsEntry("traceId", "t")
+                .containsEntry("requestType", "TRACE")
+                .containsEntry("exceptionMessage", "java.lang.IllegalStateException: boom");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> spans(RequestTrace trace) {
+        return (List<Map<String, Object>>) trace.toMessage("svc", null).get("spans");
+    }
+}
@@ -0,0 +1,53 @@
+package ru.t1.apupynin.common.aspects.trace;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestTracerTest {
+
+    private final RequestTracer tracer = new RequestTracer(16);
+
+    @AfterEach
+    void clearMdc() {
+        MDC.clear();
+    }
+
+    @Test
+    void leavesTheTracingLibraryTraceIdAlone() {
+        MDC.put("traceId", "brave-trace");
+
+        RequestTrace trace = tracer.open();
+        assertThat(MDC.get(RequestTracer.MDC_KEY)).isEqualTo(trace.getTraceId());
+        assertThat(MDC.get("traceId")).isEqualTo("brave-trace");
+
+        tracer.detach(trace);
+        assertThat(MDC.get(RequestTracer.MDC_KEY)).isNull();
+        assertThat(MDC.get("traceId")).isEqualTo("brave-trace");
+        assertThat(tracer.current()).isNull();
+    }
+
+    @Test
+    void restoresThePreviousMdcValue() {
+        MDC.put(RequestTracer.MDC_KEY, "outer");
+
+        RequestTrace trace = tracer.open();
+        tracer.detach(trace);
+
+        assertThat(MDC.get(RequestTracer.MDC_KEY)).isEqualTo("outer");
+    }
+
+    @Test
+    void ignoresDetachOfAnotherTrace() {
+        RequestTrace other = tracer.open();
+        tracer.detach(other);
+        RequestTrace trace = tracer.open();
+
+        tracer.detach(other);
+
+        assertThat(tracer.current()).isSameAs(trace);
+        assertThat(MDC.get(RequestTracer.MDC_KEY)).isEqualTo(trace.getTraceId());
+    }
+}
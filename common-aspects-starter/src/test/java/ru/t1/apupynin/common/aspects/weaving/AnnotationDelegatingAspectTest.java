@@ -0,0 +1,215 @@
+package ru.t1.apupynin.common.aspects.weaving;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.aop.config.AopConfigUtils;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.PriorityOrdered;
+import ru.t1.apupynin.common.aspects.annotation.Metric;
+import ru.t1.apupynin.common.aspects.autoconfigure.CommonAspectsAutoConfiguration;
+import ru.t1.apupynin.common.aspects.logging.LogEventSink;
+import ru.t1.apupynin.common.aspects.metrics.LatencyObserver;
+import ru.t1.apupynin.common.aspects.support.MethodMetadata;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the aspect the way woven code would call it: around the context's unproxied bean, from outside
+ * the context. The load-time weaving agent itself is not installed in tests.
+ */
+class AnnotationDelegatingAspectTest {
+
+    private final ApplicationContextRunner runner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(AopAutoConfiguration.class, JacksonAutoConfiguration.class,
+                    CommonAspectsAutoConfiguration.class))
+            .withUserConfiguration(Beans.class)
+            .withPropertyValues("t1.weaving.mode=aspectj");
+
+    @Test
+    void runsUnadvisedWithoutABoundContext() {
+        Greeter greeter = woven(new Greeter());
+
+        assertThat(greeter.greet("a")).isEqualTo("hello a");
+    }
+
+    @Test
+    void annotatedBeansAreNotProxiedAndEachAdviceRunsOnce() {
+        runner.run(context -> {
+            Greeter greeter = context.getBean(Greeter.class);
+            assertThat(AopUtils.isAopProxy(greeter)).isFalse();
+
+            woven(greeter).greet("a");
+
+            assertThat(context.getBean(CountingObserver.class).calls).hasValue(1);
+        });
+    }
+
+    @Test
+    void otherAspectsKeepProxyingWithinTheExistingIncludePatterns() {
+        runner.run(context -> {
+            Audited audited = context.getBean(Audited.class);
+            assertThat(AopUtils.isAopProxy(audited)).isTrue();
+
+            audited.touch();
+
+            assertThat(context.getBean(AuditAspect.class).calls).hasValue(1);
+            assertThat(context.getBean(IgnoredAspect.class).calls).hasValue(0);
+            assertThat(context.getBean(CountingObserver.class).calls).hasValue(0);
+        });
+    }
+
+    @Test
+    void eachLiveContextAdvisesItsOwnBeans() {
+        runner.run(first -> runner.run(second -> {
+            woven(first.getBean(Greeter.class)).greet("a");
+            woven(second.getBean(Greeter.class)).greet("b");
+            woven(second.getBean(Greeter.class)).greet("c");
+
+            assertThat(calls(first)).isEqualTo(1);
+            assertThat(calls(second)).isEqualTo(2);
+        }));
+    }
+
+    @Test
+    void childContextBeansAreAdvisedOnceByTheParentAspects() {
+        runner.run(parent -> new ApplicationContextRunner()
+                .withParent(parent)
+                .withBean("childGreeter", Greeter.class)
+                .run(child -> {
+                    woven(child.getBean("childGreeter", Greeter.class)).greet("a");
+
+                    assertThat(calls(parent)).isEqualTo(1);
+                }));
+    }
+
+    private static int calls(ApplicationContext context) {
+        return context.getBean(CountingObserver.class).calls.get();
+    }
+
+    private static <T> T woven(T target) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(AnnotationDelegatingAspect.aspectOf());
+        return factory.getProxy();
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    static class Beans {
+
+        @Bean
+        LogEventSink logEventSink() {
+            return (topic, batch) -> batch.size();
+        }
+
+        @Bean
+        CountingObserver countingObserver() {
+            return new CountingObserver();
+        }
+
+        @Bean
+        Greeter greeter() {
+            return new Greeter();
+        }
+
+        @Bean
+        Audited audited() {
+            return new Audited();
+        }
+
+        @Bean
+        AuditAspect auditAspect() {
+            return new AuditAspect();
+        }
+
+        @Bean
+        IgnoredAspect ignoredAspect() {
+            return new IgnoredAspect();
+        }
+
+        @Bean
+        static IncludeAuditAspects includeAuditAspects() {
+            return new IncludeAuditAspects();
+        }
+    }
+
+    /**
+     * Restricts auto-proxying to {@code audit*} aspects before the starter adds its exclusions, as an
+     * application's {@code <aop:include>} would.
+     */
+    static class IncludeAuditAspects implements BeanFactoryPostProcessor, PriorityOrdered {
+
+        @Override
+        public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+            beanFactory.getBeanDefinition(AopConfigUtils.AUTO_PROXY_CREATOR_BEAN_NAME).getPropertyValues()
+                    .add("includePatterns", List.of("audit.*"));
+        }
+
+        @Override
+        public int getOrder() {
+            return 0;
+        }
+    }
+
+    static class CountingObserver implements LatencyObserver {
+
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public void record(MethodMetadata method, long elapsedNanos) {
+            calls.incrementAndGet();
+        }
+    }
+
+    public static class Greeter {
+
+        @Metric
+        public String greet(String name) {
+            return "hello " + name;
+        }
+    }
+
+    public static class Audited {
+
+        public void touch() {
+        }
+    }
+
+    @Aspect
+    static class AuditAspect {
+
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Around("execution(* ru.t1.apupynin.common.aspects.weaving.AnnotationDelegatingAspectTest.Audited.*(..))")
+        public Object audit(ProceedingJoinPoint pjp) throws Throwable {
+            calls.incrementAndGet();
+            return pjp.proceed();
+        }
+    }
+
+    @Aspect
+    static class IgnoredAspect {
+
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Around("execution(* ru.t1.apupynin.common.aspects.weaving.AnnotationDelegatingAspectTest.Audited.*(..))")
+        public Object ignore(ProceedingJoinPoint pjp) throws Throwable {
+            calls.incrementAndGet();
+            return pjp.proceed();
+        }
+    }
+}
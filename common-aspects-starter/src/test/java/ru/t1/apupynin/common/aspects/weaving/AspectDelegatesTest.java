@@ -0,0 +1,109 @@
+package ru.t1.apupynin.common.aspects.weaving;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AspectDelegatesTest {
+
+    private final List<AspectDelegates> bound = new ArrayList<>();
+
+    @AfterEach
+    void unbind() {
+        bound.forEach(AspectDelegates::destroy);
+    }
+
+    @Test
+    void nothingIsAdvisedBeforeAContextBinds() {
+        assertThat(AspectDelegates.forTarget(new Greeter())).isNull();
+    }
+
+    @Test
+    void singleContextAdvisesEveryObject() {
+        AspectDelegates context = bind(new DefaultListableBeanFactory());
+
+        assertThat(AspectDelegates.forTarget(new Greeter())).isSameAs(context);
+        assertThat(AspectDelegates.forTarget(null)).isSameAs(context);
+    }
+
+    @Test
+    void eachContextAdvisesItsOwnBeans() {
+        Greeter first = new Greeter();
+        Greeter second = new Greeter();
+        DefaultListableBeanFactory firstFactory = new DefaultListableBeanFactory();
+        firstFactory.registerSingleton("greeter", first);
+        DefaultListableBeanFactory secondFactory = new DefaultListableBeanFactory();
+        secondFactory.registerSingleton("greeter", second);
+        AspectDelegates firstContext = bind(firstFactory);
+        AspectDelegates secondContext = bind(secondFactory);
+
+        assertThat(AspectDelegates.forTarget(first)).isSameAs(firstContext);
+        assertThat(AspectDelegates.forTarget(second)).isSameAs(secondContext);
+    }
+
+    @Test
+    void recognizesBeansBehindProxies() {
+        Greeter greeter = new Greeter();
+        DefaultListableBeanFactory proxying = new DefaultListableBeanFactory();
+        ProxyFactory proxyFactory = new ProxyFactory(greeter);
+        proxyFactory.setProxyTargetClass(true);
+        proxying.registerSingleton("greeter", proxyFactory.getProxy());
+        DefaultListableBeanFactory other = new DefaultListableBeanFactory();
+        other.registerSingleton("greeter", new Greeter());
+        AspectDelegates proxyingContext = bind(proxying);
+        bind(other);
+
+        assertThat(AspectDelegates.forTarget(greeter)).isSameAs(proxyingContext);
+    }
+
+    @Test
+    void fallsBackToTheContextDefiningTheTypeThenToTheLatest() {
+        DefaultListableBeanFactory defining = new DefaultListableBeanFactory();
+        RootBeanDefinition prototype = new RootBeanDefinition(Greeter.class);
+        prototype.setScope(RootBeanDefinition.SCOPE_PROTOTYPE);
+        defining.registerBeanDefinition("greeter", prototype);
+        AspectDelegates definingContext = bind(defining);
+        AspectDelegates latest = bind(new DefaultListableBeanFactory());
+
+        assertThat(AspectDelegates.forTarget(new Greeter())).isSameAs(definingContext);
+        assertThat(AspectDelegates.forTarget(new Unregistered())).isSameAs(latest);
+    }
+
+    @Test
+    void closedContextStopsAdvising() {
+        Greeter greeter = new Greeter();
+        DefaultListableBeanFactory factory = new DefaultListableBeanFactory();
+        factory.registerSingleton("greeter", greeter);
+        AspectDelegates closing = bind(factory);
+        AspectDelegates remaining = bind(new DefaultListableBeanFactory());
+
+        closing.destroy();
+
+        assertThat(AspectDelegates.forTarget(greeter)).isSameAs(remaining);
+    }
+
+    private AspectDelegates bind(DefaultListableBeanFactory beanFactory) {
+        AspectDelegates delegates = new AspectDelegates(null, null, null, null, null);
+        delegates.setBeanFactory(beanFactory);
+        delegates.afterPropertiesSet();
+        bound.add(delegates);
+        return delegates;
+    }
+
+    public static class Greeter {
+
+        public String greet(String name) {
+            return "hello " + name;
+        }
+    }
+
+    public static class Unregistered {
+    }
+}
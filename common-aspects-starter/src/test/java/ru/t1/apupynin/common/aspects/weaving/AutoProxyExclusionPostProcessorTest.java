@@ -0,0 +1,83 @@
+package ru.t1.apupynin.common.aspects.weaving;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AnnotationAwareAspectJAutoProxyCreator;
+import org.springframework.aop.config.AopConfigUtils;
+import org.springframework.beans.PropertyValue;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AutoProxyExclusionPostProcessorTest {
+
+    private final AutoProxyExclusionPostProcessor postProcessor =
+            new AutoProxyExclusionPostProcessor(WovenAspect.class);
+
+    @Test
+    void excludesTheWovenAspectsOnly() {
+        DefaultListableBeanFactory beanFactory = beanFactory();
+
+        postProcessor.postProcessBeanFactory(beanFactory);
+
+        List<String> patterns = includePatterns(beanFactory);
+        assertThat(matches(patterns, "wovenAspect")).isFalse();
+        assertThat(matches(patterns, "auditAspect")).isTrue();
+        assertThat(matches(patterns, "wovenAspectHelper")).isTrue();
+    }
+
+    @Test
+    void keepsTheExistingIncludePatterns() {
+        DefaultListableBeanFactory beanFactory = beanFactory();
+        beanFactory.getBeanDefinition(AopConfigUtils.AUTO_PROXY_CREATOR_BEAN_NAME).getPropertyValues()
+                .add("includePatterns", List.of("audit.*", "woven.*"));
+
+        postProcessor.postProcessBeanFactory(beanFactory);
+
+        List<String> patterns = includePatterns(beanFactory);
+        assertThat(matches(patterns, "wovenAspect")).isFalse();
+        assertThat(matches(patterns, "auditAspect")).isTrue();
+        assertThat(matches(patterns, "wovenAspectHelper")).isTrue();
+        assertThat(matches(patterns, "otherAspect")).isFalse();
+    }
+
+    @Test
+    void leavesContextsWithoutAutoProxyingAlone() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerBeanDefinition("wovenAspect", new RootBeanDefinition(WovenAspect.class));
+
+        postProcessor.postProcessBeanFactory(beanFactory);
+
+        assertThat(beanFactory.containsBeanDefinition(AopConfigUtils.AUTO_PROXY_CREATOR_BEAN_NAME)).isFalse();
+    }
+
+    private static DefaultListableBeanFactory beanFactory() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerBeanDefinition(AopConfigUtils.AUTO_PROXY_CREATOR_BEAN_NAME,
+                new RootBeanDefinition(AnnotationAwareAspectJAutoProxyCreator.class));
+        beanFactory.registerBeanDefinition("wovenAspect", new RootBeanDefinition(WovenAspect.class));
+        beanFactory.registerBeanDefinition("auditAspect", new RootBeanDefinition(Object.class));
+        return beanFactory;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> includePatterns(DefaultListableBeanFactory beanFactory) {
+        PropertyValue value = beanFactory.getBeanDefinition(AopConfigUtils.AUTO_PROXY_CREATOR_BEAN_NAME)
+                .getPropertyValues().getPropertyValue("includePatterns");
+        assertThat(value).isNotNull();
+        return (List<String>) value.getValue();
+    }
+
+    /**
+     * Same check as {@link AnnotationAwareAspectJAutoProxyCreator} applies to aspect bean names.
+     */
+    private static boolean matches(List<String> patterns, String beanName) {
+        return patterns.stream().anyMatch(pattern -> Pattern.compile(pattern).matcher(beanName).matches());
+    }
+
+    public static class WovenAspect {
+    }
+}
@@ -0,0 +1,139 @@
+package ru.t1.apupynin.common.aspects.web;
+
+import jakarta.servlet.ServletInputStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import ru.t1.apupynin.common.aspects.logging.JsonLogField;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestBodyCaptureFilterTest {
+
+    private static final int MAX_BYTES = 8;
+
+    @Test
+    void capturesOnlyWhatTheApplicationRead() throws Exception {
+        BodyCaptureRequestWrapper wrapper = wrap("{\"id\":1}", new CaptureBufferPool(MAX_BYTES, 1));
+        assertThat(wrapper.getCapturedBody()).isNull();
+
+        byte[] read = new byte[4];
+        assertThat(wrapper.getInputStream().read(read, 0, read.length)).isEqualTo(4);
+
+        assertThat(wrapper.getCapturedBody()).isEqualTo("{\"id");
+    }
+
+    @Test
+    void truncatesBulkReadsAtTheCap() throws Exception {
+        BodyCaptureRequestWrapper wrapper = wrap("0123456789abcdef", new CaptureBufferPool(MAX_BYTES, 1));
+
+        assertThat(wrapper.getInputStream().readAllBytes()).hasSize(16);
+
+        assertThat(wrapper.getCapturedBody()).isEqualTo("01234567" + JsonLogField.TRUNCATED_SUFFIX);
+    }
+
+    @Test
+    void truncatesSingleByteReadsAtTheCap() throws Exception {
+        BodyCaptureRequestWrapper exact = wrap("01234567", new CaptureBufferPool(MAX_BYTES, 1));
+        readByteByByte(exact.getInputStream());
+        BodyCaptureRequestWrapper longer = wrap("012345678", new CaptureBufferPool(MAX_BYTES, 1));
+        readByteByByte(longer.getInputStream());
+
+        assertThat(exact.getCapturedBody()).isEqualTo("01234567");
+        assertThat(longer.getCapturedBody()).isEqualTo("01234567" + JsonLogField.TRUNCATED_SUFFIX);
+    }
+
+    @Test
+    void decodesWithTheRequestEncoding() throws Exception {
+        MockHttpServletRequest request = request("é");
+        request.setCharacterEncoding("ISO-8859-1");
+        request.setContent("é".getBytes(StandardCharsets.ISO_8859_1));
+        BodyCaptureRequestWrapper wrapper = new BodyCaptureRequestWrapper(request, new CaptureBufferPool(MAX_BYTES, 1));
+
+        assertThat(wrapper.getReader().readLine()).isEqualTo("é");
+
+        assertThat(wrapper.getCapturedBody()).isEqualTo("é");
+    }
+
+    @Test
+    void releaseReturnsTheBufferAndStopsCapturing() throws Exception {
+        CaptureBufferPool pool = new CaptureBufferPool(MAX_BYTES, 1);
+        byte[] pooled = new byte[MAX_BYTES];
+        pool.release(pooled);
+        BodyCaptureRequestWrapper wrapper = wrap("0123456789", pool);
+        ServletInputStream in = wrapper.getInputStream();
+        in.read(new byte[2], 0, 2);
+
+        wrapper.release();
+        in.read(new byte[2], 0, 2);
+
+        assertThat(wrapper.getCapturedBody()).isNull();
+        assertThat(pool.acquire()).isSameAs(pooled);
+        assertThat(pool.acquire()).isNotSameAs(pooled);
+    }
+
+    @Test
+    void filterReleasesTheBufferAfterTheChain() throws Exception {
+        RequestBodyCaptureFilter filter = new RequestBodyCaptureFilter(MAX_BYTES, List.of("application/json"), 1);
+        AtomicReference<BodyCaptureRequestWrapper> seen = new AtomicReference<>();
+        AtomicReference<String> captured = new AtomicReference<>();
+
+        filter.doFilter(request("{\"id\":1}"), new MockHttpServletResponse(), (req, res) -> {
+            seen.set((BodyCaptureRequestWrapper) req);
+            req.getInputStream().readAllBytes();
+            captured.set(seen.get().getCapturedBody());
+        });
+
+        assertThat(captured).hasValue("{\"id\":1}");
+        assertThat(seen.get().getCapturedBody()).isNull();
+    }
+
+    @Test
+    void filterKeepsTheBufferOfAsyncRequests() throws Exception {
+        RequestBodyCaptureFilter filter = new RequestBodyCaptureFilter(MAX_BYTES, List.of("application/json"), 1);
+        MockHttpServletRequest request = request("{\"id\":1}");
+        AtomicReference<BodyCaptureRequestWrapper> seen = new AtomicReference<>();
+
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            seen.set((BodyCaptureRequestWrapper) req);
+            request.setAsyncStarted(true);
+        });
+        seen.get().getInputStream().readAllBytes();
+
+        assertThat(seen.get().getCapturedBody()).isEqualTo("{\"id\":1}");
+    }
+
+    @Test
+    void filterLeavesOtherContentTypesUnwrapped() throws Exception {
+        RequestBodyCaptureFilter filter = new RequestBodyCaptureFilter(MAX_BYTES, List.of("application/json"), 1);
+        MockHttpServletRequest request = request("payload");
+        request.setContentType("application/octet-stream");
+        AtomicReference<Object> seen = new AtomicReference<>();
+
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> seen.set(req));
+
+        assertThat(seen).hasValue(request);
+    }
+
+    private static BodyCaptureRequestWrapper wrap(String body, CaptureBufferPool pool) {
+        return new BodyCaptureRequestWrapper(request(body), pool);
+    }
+
+    private static MockHttpServletRequest request(String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/accounts");
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private static void readByteByByte(ServletInputStream in) throws IOException {
+        while (in.read() >= 0) {
+            // drain
+        }
+    }
+}